@@ -33,6 +33,22 @@ public class ContextStore {
 	protected Map<String, Date> timerStore         = new HashMap<>();
 	protected Map<Integer, Integer> counters       = new HashMap<>();
 
+	public ContextStore() {
+	}
+
+	/**
+	 * Creates a copy of the given context store.
+	 *
+	 * @param other The context store to copy from
+	 */
+	public ContextStore(final ContextStore other) {
+
+		this.headers.putAll(other.headers);
+		this.constants.putAll(other.constants);
+		this.tmpStore.putAll(other.tmpStore);
+		this.timerStore.putAll(other.timerStore);
+		this.counters.putAll(other.counters);
+	}
 
 	// --- Headers ---
 	public void addHeader(final String key, final String value) {
@@ -0,0 +1,340 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.structr.api.config.Settings;
+import org.structr.api.util.Cachable;
+import org.structr.api.util.ConcurrentFixedSizeCache;
+
+/**
+ * Bounded, thread-safe cache for the results of permission resolution
+ * along permission-propagating relationships, keyed by node, principal
+ * and permission.
+ *
+ * Every result is recorded together with the IDs of the nodes and
+ * principals that were examined to obtain it, so that a modification
+ * of one of those objects removes only the results that depend on it.
+ * A resolution that reuses a cached result inherits its dependencies,
+ * and the dependency information is removed together with the result.
+ */
+public class PermissionResolutionCache {
+
+	private static final int maxSize                                          = Math.max(1, Settings.ResolutionCacheSize.getValue());
+	private static final ConcurrentFixedSizeCache<CacheKey, CacheEntry> cache = new ConcurrentFixedSizeCache<>(maxSize);
+	private static final Map<Long, Set<CacheEntry>> dependencies              = new ConcurrentHashMap<>();
+	private static final Set<Resolution> active                               = ConcurrentHashMap.newKeySet();
+	private static final AtomicLong invalidations                             = new AtomicLong();
+	private static final AtomicLong misses                                    = new AtomicLong();
+	private static final AtomicLong hits                                      = new AtomicLong();
+
+	/**
+	 * Starts a new permission resolution for the given principal. The
+	 * results of the resolution are not visible to other threads until
+	 * {@link #commit(Resolution)} is called.
+	 *
+	 * @param principalId
+	 * @return the resolution
+	 */
+	public static Resolution begin(final long principalId) {
+
+		final Resolution resolution = new Resolution(principalId);
+
+		resolution.addDependency(principalId);
+
+		active.add(resolution);
+
+		return resolution;
+	}
+
+	public static Boolean get(final Resolution resolution, final long nodeId, final Permission permission) {
+
+		final CacheEntry entry = cache.get(new CacheKey(nodeId, resolution.principalId, permission));
+		if (entry != null) {
+
+			// the outcome of the current resolution depends on everything
+			// the cached result depends on
+			resolution.dependencies.addAll(entry.dependencies);
+
+			// entry is being removed concurrently
+			if (entry.removed) {
+				resolution.invalidated = true;
+			}
+
+			hits.incrementAndGet();
+
+			return entry.value;
+		}
+
+		misses.incrementAndGet();
+
+		return null;
+	}
+
+	/**
+	 * Makes the results of the given resolution available, unless one
+	 * of the objects it depends on was modified while it was running.
+	 *
+	 * @param resolution
+	 */
+	public static void commit(final Resolution resolution) {
+
+		try {
+
+			if (resolution.invalidated || resolution.results.isEmpty()) {
+				return;
+			}
+
+			// all results of a resolution share the same dependencies
+			final Set<Long> snapshot = new HashSet<>(resolution.dependencies);
+
+			for (final Map.Entry<CacheKey, Boolean> result : resolution.results.entrySet()) {
+
+				final CacheEntry entry = new CacheEntry(result.getKey(), snapshot, result.getValue());
+
+				// register dependencies first so that concurrent invalidations can see the entry
+				register(entry);
+
+				if (entry.value) {
+
+					final CacheEntry previous = cache.get(entry.key);
+
+					cache.put(entry.key, entry);
+
+					if (previous != null && previous != entry) {
+						unregister(previous);
+					}
+
+				} else {
+
+					// a positive result always wins over a negative one
+					if (cache.putIfAbsent(entry.key, entry) != entry) {
+						unregister(entry);
+					}
+				}
+
+				resolution.published.add(entry);
+			}
+
+			if (resolution.invalidated) {
+
+				// something changed in the meantime, results may be stale
+				for (final CacheEntry entry : resolution.published) {
+					remove(entry);
+				}
+			}
+
+		} finally {
+
+			active.remove(resolution);
+		}
+	}
+
+	/**
+	 * Removes all cached results that depend on the node or principal
+	 * with the given ID.
+	 *
+	 * @param id
+	 */
+	public static void invalidate(final long id) {
+
+		for (final Resolution resolution : active) {
+
+			if (resolution.dependencies.contains(id)) {
+				resolution.invalidated = true;
+			}
+		}
+
+		final Set<CacheEntry> entries = dependencies.remove(id);
+		if (entries != null) {
+
+			for (final CacheEntry entry : entries) {
+				remove(entry);
+			}
+		}
+	}
+
+	public static void invalidate() {
+
+		for (final Resolution resolution : active) {
+			resolution.invalidated = true;
+		}
+
+		invalidations.addAndGet(cache.size());
+
+		dependencies.clear();
+		cache.clear();
+	}
+
+	public static int getSize() {
+		return cache.size();
+	}
+
+	public static long getHitCount() {
+		return hits.get();
+	}
+
+	public static long getMissCount() {
+		return misses.get();
+	}
+
+	public static long getInvalidationCount() {
+		return invalidations.get();
+	}
+
+	static int getDependencyCount() {
+		return dependencies.size();
+	}
+
+	// ----- private methods -----
+	private static void register(final CacheEntry entry) {
+
+		for (final Long id : entry.dependencies) {
+
+			dependencies.compute(id, (k, set) -> {
+
+				final Set<CacheEntry> entries = set != null ? set : ConcurrentHashMap.newKeySet();
+
+				entries.add(entry);
+
+				return entries;
+			});
+		}
+	}
+
+	private static void unregister(final CacheEntry entry) {
+
+		for (final Long id : entry.dependencies) {
+
+			dependencies.computeIfPresent(id, (k, set) -> {
+
+				set.remove(entry);
+
+				return set.isEmpty() ? null : set;
+			});
+		}
+	}
+
+	private static void remove(final CacheEntry entry) {
+
+		if (!entry.removed) {
+
+			entry.removed = true;
+			invalidations.incrementAndGet();
+
+			// the key may have been taken over by a newer result
+			if (cache.get(entry.key) == entry) {
+				cache.remove(entry.key);
+			}
+
+			unregister(entry);
+		}
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The state of a single permission resolution, i.e. the results it
+	 * produced and the IDs of all objects it examined.
+	 */
+	public static class Resolution {
+
+		private final Set<Long> dependencies          = ConcurrentHashMap.newKeySet();
+		private final Set<CacheEntry> published       = new HashSet<>();
+		private final Map<CacheKey, Boolean> results  = new HashMap<>();
+		private volatile boolean invalidated          = false;
+		private long principalId                      = -1L;
+
+		private Resolution(final long principalId) {
+			this.principalId = principalId;
+		}
+
+		public void addDependency(final long id) {
+			dependencies.add(id);
+		}
+
+		public void store(final long nodeId, final Permission permission, final boolean value) {
+
+			final CacheKey key = new CacheKey(nodeId, principalId, permission);
+
+			if (value || !results.containsKey(key)) {
+				results.put(key, value);
+			}
+		}
+	}
+
+	private static class CacheEntry implements Cachable {
+
+		private volatile boolean removed = false;
+		private Set<Long> dependencies   = null;
+		private CacheKey key             = null;
+		private boolean value            = false;
+
+		CacheEntry(final CacheKey key, final Set<Long> dependencies, final boolean value) {
+
+			this.dependencies = dependencies;
+			this.value        = value;
+			this.key          = key;
+		}
+
+		@Override
+		public void onRemoveFromCache() {
+
+			// evicted due to size restrictions
+			removed = true;
+			unregister(this);
+		}
+	}
+
+	private static class CacheKey {
+
+		private Permission permission = null;
+		private long principalId      = -1L;
+		private long nodeId           = -1L;
+
+		CacheKey(final long nodeId, final long principalId, final Permission permission) {
+
+			this.principalId = principalId;
+			this.permission  = permission;
+			this.nodeId      = nodeId;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(nodeId) * 31 * 31 + Long.hashCode(principalId) * 31 + permission.name().hashCode();
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+
+			if (other instanceof CacheKey) {
+
+				final CacheKey key = (CacheKey)other;
+
+				return nodeId == key.nodeId && principalId == key.principalId && permission.name().equals(key.permission.name());
+			}
+
+			return false;
+		}
+	}
+}
@@ -852,6 +852,39 @@ public class SecurityContext {
 		this.contextStore = contextStore;
 	}
 
+	/**
+	 * Creates a copy of this security context with a separate copy of
+	 * the context store, so that it can safely be used on another thread.
+	 *
+	 * @return the copy
+	 */
+	public SecurityContext fork() {
+
+		final SecurityContext copy = (this instanceof SuperUserSecurityContext) ? new SuperUserSecurityContext() : new SecurityContext();
+
+		copy.uuidWasSetManually         = uuidWasSetManually;
+		copy.doTransactionNotifications = doTransactionNotifications;
+		copy.modifyAccessTime           = modifyAccessTime;
+		copy.ignoreResultCount          = ignoreResultCount;
+		copy.ensureCardinality          = ensureCardinality;
+		copy.serializationDepth         = serializationDepth;
+		copy.accessMode                 = accessMode;
+		copy.authenticator              = authenticator;
+		copy.cachedUser                 = cachedUser;
+		copy.request                    = request;
+		copy.response                   = response;
+		copy.customView                 = customView;
+		copy.cachedUserName             = cachedUserName;
+		copy.cachedUserId               = cachedUserId;
+		copy.sessionId                  = sessionId;
+		copy.contextStore               = new ContextStore(getContextStore());
+
+		copy.ranges.putAll(ranges);
+		copy.attrs.putAll(attrs);
+
+		return copy;
+	}
+
 	// ----- nested classes -----
 	private static class SuperUserSecurityContext extends SecurityContext {
 
@@ -18,6 +18,8 @@
  */
 package org.structr.common.fulltext;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.common.error.FrameworkException;
@@ -35,6 +37,23 @@ public class DummyFulltextIndexer implements FulltextIndexer {
 		logger.warn("No fulltext indexer installed, this is a dummy implementation that does nothing.");
 	}
 
+	@Override
+	public void removeFromFulltextIndex(final Indexable indexable) throws FrameworkException {
+	}
+
+	@Override
+	public Map<String, Double> search(final String query, final int maxResults) throws FrameworkException {
+
+		logger.warn("No fulltext indexer installed, this is a dummy implementation that does nothing.");
+
+		return new LinkedHashMap<>();
+	}
+
+	@Override
+	public Map<String, Double> search(final String query, final Class type, final int maxResults) throws FrameworkException {
+		return search(query, maxResults);
+	}
+
 	@Override
 	public GraphObjectMap getContextObject(String searchTerm, String text, int contextLength) {
 
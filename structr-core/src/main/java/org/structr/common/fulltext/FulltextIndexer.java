@@ -18,6 +18,7 @@
  */
 package org.structr.common.fulltext;
 
+import java.util.Map;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObjectMap;
 
@@ -26,5 +27,31 @@ import org.structr.core.GraphObjectMap;
 public interface FulltextIndexer {
 
 	void addToFulltextIndex(final Indexable indexable) throws FrameworkException;
+	void removeFromFulltextIndex(final Indexable indexable) throws FrameworkException;
+
+	/**
+	 * Returns the UUIDs of the indexed objects that best match the given
+	 * query, ordered by descending relevance score.
+	 *
+	 * @param query
+	 * @param maxResults
+	 * @return a map of UUIDs to scores, in result order
+	 * @throws FrameworkException
+	 */
+	Map<String, Double> search(final String query, final int maxResults) throws FrameworkException;
+
+	/**
+	 * Returns the UUIDs of the indexed objects of the given type (or one
+	 * of its subtypes) that best match the given query, ordered by
+	 * descending relevance score.
+	 *
+	 * @param query
+	 * @param type
+	 * @param maxResults
+	 * @return a map of UUIDs to scores, in result order
+	 * @throws FrameworkException
+	 */
+	Map<String, Double> search(final String query, final Class type, final int maxResults) throws FrameworkException;
+
 	GraphObjectMap getContextObject(final String searchTerm, final String text, final int contextLength);
 }
@@ -50,6 +50,7 @@ import org.structr.common.Permissions;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.core.app.StructrApp;
+import org.structr.core.graph.ChangelogStore;
 import org.structr.core.graph.NodeService;
 import org.structr.schema.ConfigurationProvider;
 import org.structr.schema.SchemaService;
@@ -342,6 +343,9 @@ public class Services implements StructrServices {
 
 			serviceCache.clear();
 
+			// close changelog files
+			ChangelogStore.getInstance().close();
+
 			// shut down configuration provider
 			configuration.shutdown();
 
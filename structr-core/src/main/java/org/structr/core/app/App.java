@@ -33,6 +33,7 @@ import org.structr.core.graph.MaintenanceCommand;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.RelationshipSpec;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyMap;
 
@@ -50,11 +51,13 @@ public interface App extends Closeable {
 	public <T extends NodeInterface> T create(final Class<T> type, final String name) throws FrameworkException;
 	public <T extends NodeInterface> T create(final Class<T> type, final PropertyMap properties) throws FrameworkException;
 	public <T extends NodeInterface> T create(final Class<T> type, final NodeAttribute<?>... attributes) throws FrameworkException;
+	public <T extends NodeInterface> List<T> createNodes(final Class<T> type, final List<PropertyMap> properties) throws FrameworkException;
 
 	public void delete(final NodeInterface node) throws FrameworkException;
 
 	public <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R create(final A fromNode, final B toNode, final Class<R> relType) throws FrameworkException;
 	public <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R create(final A fromNode, final B toNode, final Class<R> relType, final PropertyMap properties) throws FrameworkException;
+	public <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> List<R> createRelationships(final Class<R> relType, final List<RelationshipSpec<A, B>> specs) throws FrameworkException;
 
 	public void delete(final RelationshipInterface relationship);
 
@@ -21,6 +21,7 @@ package org.structr.core.app;
 import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -58,6 +59,7 @@ import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.NodeServiceCommand;
 import org.structr.core.graph.RelationshipFactory;
 import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.RelationshipSpec;
 import org.structr.core.graph.Tx;
 import org.structr.core.graph.search.SearchNodeCommand;
 import org.structr.core.graph.search.SearchRelationshipCommand;
@@ -105,32 +107,25 @@ public class StructrApp implements App {
 		}
 
 		final CreateNodeCommand<T> command = command(CreateNodeCommand.class);
-		final PropertyMap properties       = new PropertyMap(source);
-		String finalType                   = type.getSimpleName();
+		final PropertyMap properties       = getPropertiesWithType(type, source);
 
-		// try to identify the actual type from input set (creation wouldn't work otherwise anyway)
-		final String typeFromInput = properties.get(NodeInterface.type);
-		if (typeFromInput != null) {
-
-			Class actualType = StructrApp.getConfiguration().getNodeEntityClass(typeFromInput);
-			if (actualType == null) {
-
-				// overwrite type information when creating a node (adhere to type specified by resource!)
-				properties.put(AbstractNode.type, type.getSimpleName());
+		return command.execute(properties);
+	}
 
-			} else if (actualType.isInterface() || Modifier.isAbstract(actualType.getModifiers())) {
+	@Override
+	public <T extends NodeInterface> List<T> createNodes(final Class<T> type, final List<PropertyMap> source) throws FrameworkException {
 
-				throw new FrameworkException(422, "Invalid abstract type " + type.getSimpleName() + ", please supply a non-abstract class name in the type property");
+		if (type == null) {
+			throw new FrameworkException(422, "Empty type (null). Please supply a valid class name in the type property.");
+		}
 
-			} else {
+		final CreateNodeCommand<T> command = command(CreateNodeCommand.class);
+		final List<PropertyMap> properties = new ArrayList<>(source.size());
 
-				finalType = actualType.getSimpleName();
-			}
+		for (final PropertyMap map : source) {
+			properties.add(getPropertiesWithType(type, map));
 		}
 
-		// set type
-		properties.put(AbstractNode.type, finalType);
-
 		return command.execute(properties);
 	}
 
@@ -162,6 +157,11 @@ public class StructrApp implements App {
 		return command(CreateRelationshipCommand.class).execute(fromNode, toNode, relType, properties);
 	}
 
+	@Override
+	public <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> List<R> createRelationships(final Class<R> relType, final List<RelationshipSpec<A, B>> specs) throws FrameworkException {
+		return command(CreateRelationshipCommand.class).execute(relType, specs);
+	}
+
 	@Override
 	public void delete(final RelationshipInterface relationship) {
 		removeRelFromCache(relationship);
@@ -558,6 +558,37 @@ public class StructrApp implements App {
 	private static final Map<Class, URI> typeIdMap   = new LinkedHashMap<>();
 
 	// ---------- private methods -----
+	private <T extends NodeInterface> PropertyMap getPropertiesWithType(final Class<T> type, final PropertyMap source) throws FrameworkException {
+
+		final PropertyMap properties = new PropertyMap(source);
+		String finalType             = type.getSimpleName();
+
+		// try to identify the actual type from input set (creation wouldn't work otherwise anyway)
+		final String typeFromInput = properties.get(NodeInterface.type);
+		if (typeFromInput != null) {
+
+			Class actualType = StructrApp.getConfiguration().getNodeEntityClass(typeFromInput);
+			if (actualType == null) {
+
+				// overwrite type information when creating a node (adhere to type specified by resource!)
+				properties.put(AbstractNode.type, type.getSimpleName());
+
+			} else if (actualType.isInterface() || Modifier.isAbstract(actualType.getModifiers())) {
+
+				throw new FrameworkException(422, "Invalid abstract type " + type.getSimpleName() + ", please supply a non-abstract class name in the type property");
+
+			} else {
+
+				finalType = actualType.getSimpleName();
+			}
+		}
+
+		// set type
+		properties.put(AbstractNode.type, finalType);
+
+		return properties;
+	}
+
 	private synchronized Long getNodeFromCache(final String uuid) {
 
 		if (nodeUuidMap == null) {
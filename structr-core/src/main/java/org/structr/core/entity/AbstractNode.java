@@ -69,6 +69,7 @@ import org.structr.common.GraphObjectComparator;
 import org.structr.common.IdSorter;
 import org.structr.common.Permission;
 import org.structr.common.PermissionPropagation;
+import org.structr.common.PermissionResolutionCache;
 import org.structr.common.PermissionResolutionMask;
 import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
@@ -105,10 +106,9 @@ import org.structr.schema.action.Function;
  */
 public abstract class AbstractNode implements NodeInterface, AccessControllable, CMISInfo, CMISItemInfo {
 
-	private static final int permissionResolutionMaxLevel                                                 = Settings.ResolutionDepth.getValue();
-	private static final Logger logger                                                                    = LoggerFactory.getLogger(AbstractNode.class.getName());
-	private static final FixedSizeCache<String, Object> relationshipTemplateInstanceCache                 = new FixedSizeCache<>(1000);
-	private static final Map<Long, Map<Long, PermissionResolutionResult>> globalPermissionResolutionCache = new HashMap<>();
+	private static final int permissionResolutionMaxLevel                                 = Settings.ResolutionDepth.getValue();
+	private static final Logger logger                                                    = LoggerFactory.getLogger(AbstractNode.class.getName());
+	private static final FixedSizeCache<String, Object> relationshipTemplateInstanceCache = new FixedSizeCache<>(1000);
 
 	public static final View defaultView = new View(AbstractNode.class, PropertyView.Public, id, type);
 
@@ -790,10 +790,10 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 		final boolean doLog = securityContext.hasParameter("logPermissionResolution");
 
-		return isGranted(permission, accessingUser, new PermissionResolutionMask(), 0, new AlreadyTraversed(), true, doLog);
+		return isGranted(permission, accessingUser, new PermissionResolutionMask(), 0, new AlreadyTraversed(), true, doLog, null);
 	}
 
-	private boolean isGranted(final Permission permission, final Principal accessingUser, final PermissionResolutionMask mask, final int level, final AlreadyTraversed alreadyTraversed, final boolean resolvePermissions, final boolean doLog) {
+	private boolean isGranted(final Permission permission, final Principal accessingUser, final PermissionResolutionMask mask, final int level, final AlreadyTraversed alreadyTraversed, final boolean resolvePermissions, final boolean doLog, final PermissionResolutionCache.Resolution resolution) {
 
 		if (level > 100) {
 			logger.warn("Aborting recursive permission resolution because of recursion level > 100, this is quite likely an infinite loop.");
@@ -815,6 +815,16 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			return true;
 		}
 
+		// record everything the enclosing resolution depends on
+		if (resolution != null) {
+
+			resolution.addDependency(getId());
+
+			if (accessingUser != null) {
+				resolution.addDependency(accessingUser.getId());
+			}
+		}
+
 		// check owner
 		final Principal _owner = getOwnerNode();
 		final boolean hasOwner = (_owner != null);
@@ -885,51 +895,61 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			// Check permissions from domain relationships
 			if (resolvePermissions) {
 
-				final Queue<BFSInfo> bfsNodes   = new LinkedList<>();
-				final BFSInfo root              = new BFSInfo(null, this);
+				final PermissionResolutionCache.Resolution bfsResolution = PermissionResolutionCache.begin(accessingUser.getId());
+				final Queue<BFSInfo> bfsNodes                            = new LinkedList<>();
+				final BFSInfo root                                       = new BFSInfo(null, this);
 
 				// add initial element
 				bfsNodes.add(root);
 
-				do {
+				try {
 
-					final BFSInfo info = bfsNodes.poll();
-					if (info != null && info.level < permissionResolutionMaxLevel) {
+					do {
 
-						final Boolean value = info.node.getPermissionResolutionResult(accessingUser.getId(), permission);
-						if (value != null) {
+						final BFSInfo info = bfsNodes.poll();
+						if (info != null && info.level < permissionResolutionMaxLevel) {
 
-							// returning immediately
-							if (Boolean.TRUE.equals(value)) {
+							bfsResolution.addDependency(info.node.getId());
 
-								// do backtracking
-								backtrack(info, accessingUser.getId(), permission, true, 0, doLog);
+							final Boolean value = PermissionResolutionCache.get(bfsResolution, info.node.getId(), permission);
+							if (value != null) {
 
-								return true;
-							}
+								// returning immediately
+								if (Boolean.TRUE.equals(value)) {
+
+									// do backtracking
+									backtrack(info, bfsResolution, permission, true, 0, doLog);
 
-						} else {
+									return true;
+								}
 
-							if (info.node.hasEffectivePermissions(info, accessingUser, permission, mask, level, alreadyTraversed, bfsNodes, doLog)) {
+							} else {
 
-								// do backtracking
-								backtrack(info, accessingUser.getId(), permission, true, 0, doLog);
+								if (info.node.hasEffectivePermissions(info, accessingUser, permission, mask, level, alreadyTraversed, bfsNodes, doLog, bfsResolution)) {
 
-								return true;
+									// do backtracking
+									backtrack(info, bfsResolution, permission, true, 0, doLog);
+
+									return true;
+								}
 							}
 						}
-					}
 
-				} while (!bfsNodes.isEmpty());
+					} while (!bfsNodes.isEmpty());
+
+					// do backtracking
+					backtrack(root, bfsResolution, permission, false, 0, doLog);
 
-				// do backtracking
-				backtrack(root, accessingUser.getId(), permission, false, 0, doLog);
+				} finally {
+
+					PermissionResolutionCache.commit(bfsResolution);
+				}
 			}
 
 			// Last: recursively check possible parent principals
 			for (Principal parent : accessingUser.getParents()) {
 
-				if (isGranted(permission, parent, mask, level+1, alreadyTraversed, false, doLog)) {
+				if (isGranted(permission, parent, mask, level+1, alreadyTraversed, false, doLog, resolution)) {
 					return true;
 				}
 			}
@@ -938,7 +958,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		return false;
 	}
 
-	private void backtrack(final BFSInfo info, final long principalId, final Permission permission, final boolean value, final int level, final boolean doLog) {
+	private void backtrack(final BFSInfo info, final PermissionResolutionCache.Resolution resolution, final Permission permission, final boolean value, final int level, final boolean doLog) {
 
 		if (doLog) {
 
@@ -957,12 +977,12 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			System.out.print(info.node.getType() + " (" + info.node.getUuid() + ") --> ");
 		}
 
-		info.node.storePermissionResolutionResult(principalId, permission, value);
+		resolution.store(info.node.getId(), permission, value);
 
 		// go to parent(s)
 		if (info.parent != null) {
 
-			backtrack(info.parent, principalId, permission, value, level+1, doLog);
+			backtrack(info.parent, resolution, permission, value, level+1, doLog);
 		}
 
 		if (doLog && level == 0) {
@@ -971,7 +991,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 	}
 
 
-	private boolean hasEffectivePermissions(final BFSInfo parent, final Principal principal, final Permission permission, final PermissionResolutionMask mask, final int level, final AlreadyTraversed alreadyTraversed, final Queue<BFSInfo> bfsNodes, final boolean doLog) {
+	private boolean hasEffectivePermissions(final BFSInfo parent, final Principal principal, final Permission permission, final PermissionResolutionMask mask, final int level, final AlreadyTraversed alreadyTraversed, final Queue<BFSInfo> bfsNodes, final boolean doLog, final PermissionResolutionCache.Resolution resolution) {
 
 		// check nodes here to avoid circles in permission-propagating relationships
 		if (alreadyTraversed.contains("Node", dbNode.getId())) {
@@ -1006,9 +1026,9 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 							final AbstractNode otherNode = (AbstractNode)rel.getOtherNode(this);
 
-							if (otherNode.isGranted(permission, principal, mask, level+1, alreadyTraversed, false, doLog)) {
+							if (otherNode.isGranted(permission, principal, mask, level+1, alreadyTraversed, false, doLog, resolution)) {
 
-								otherNode.storePermissionResolutionResult(principal.getId(), permission, true);
+								resolution.store(otherNode.getId(), permission, true);
 
 								// break early
 								return true;
@@ -1149,71 +1169,6 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		mask.handleProperties(rel.getDeltaProperties());
 	}
 
-	private Boolean getPermissionResolutionResult(final long principalId, final Permission permission) {
-
-		Map<Long, PermissionResolutionResult> permissionResolutionCache = globalPermissionResolutionCache.get(getId());
-		if (permissionResolutionCache == null) {
-
-			permissionResolutionCache = new HashMap<>();
-			globalPermissionResolutionCache.put(getId(), permissionResolutionCache);
-		}
-
-		PermissionResolutionResult result = permissionResolutionCache.get(principalId);
-		if (result != null) {
-
-			if (permission.equals(Permission.read)) {
-				return result.read;
-			}
-
-			if (permission.equals(Permission.write)) {
-				return result.write;
-			}
-
-			if (permission.equals(Permission.delete)) {
-				return result.delete;
-			}
-
-			if (permission.equals(Permission.accessControl)) {
-				return result.accessControl;
-			}
-		}
-
-		return null;
-	}
-
-	private void storePermissionResolutionResult(final long principalId, final Permission permission, final boolean value) {
-
-		Map<Long, PermissionResolutionResult> permissionResolutionCache = globalPermissionResolutionCache.get(getId());
-		if (permissionResolutionCache == null) {
-
-			permissionResolutionCache = new HashMap<>();
-			globalPermissionResolutionCache.put(getId(), permissionResolutionCache);
-		}
-
-		PermissionResolutionResult result = permissionResolutionCache.get(principalId);
-		if (result == null) {
-
-			result = new PermissionResolutionResult();
-			permissionResolutionCache.put(principalId, result);
-		}
-
-		if (permission.equals(Permission.read) && (result.read == null || result.read == false)) {
-			result.read = value;
-		}
-
-		if (permission.equals(Permission.write) && (result.write == null || result.write == false)) {
-			result.write = value;
-		}
-
-		if (permission.equals(Permission.delete) && (result.delete == null || result.delete == false)) {
-			result.delete = value;
-		}
-
-		if (permission.equals(Permission.accessControl) && (result.accessControl == null || result.accessControl == false)) {
-			result.accessControl = value;
-		}
-	}
-
 	/**
 	 * Return the (cached) incoming relationship between this node and the
 	 * given principal which holds the security information.
@@ -1251,12 +1206,12 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	@Override
 	public void onModification(SecurityContext securityContext, ErrorBuffer errorBuffer, final ModificationQueue modificationQueue) throws FrameworkException {
-		clearPermissionResolutionCache();
+		PermissionResolutionCache.invalidate(getId());
 	}
 
 	@Override
 	public void onDeletion(SecurityContext securityContext, ErrorBuffer errorBuffer, PropertyMap properties) throws FrameworkException {
-		clearPermissionResolutionCache();
+		PermissionResolutionCache.invalidate(getId());
 	}
 
 	@Override
@@ -1265,6 +1220,9 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	@Override
 	public void afterModification(SecurityContext securityContext) {
+
+		// make sure that no results computed before the commit survive
+		PermissionResolutionCache.invalidate(getId());
 	}
 
 	@Override
@@ -1273,22 +1231,22 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	@Override
 	public void ownerModified(SecurityContext securityContext) {
-		clearPermissionResolutionCache();
+		PermissionResolutionCache.invalidate(getId());
 	}
 
 	@Override
 	public void securityModified(SecurityContext securityContext) {
-		clearPermissionResolutionCache();
+		PermissionResolutionCache.invalidate(getId());
 	}
 
 	@Override
 	public void locationModified(SecurityContext securityContext) {
-		clearPermissionResolutionCache();
+		PermissionResolutionCache.invalidate(getId());
 	}
 
 	@Override
 	public void propagatedModification(SecurityContext securityContext) {
-		clearPermissionResolutionCache();
+		PermissionResolutionCache.invalidate(getId());
 	}
 
 	@Override
@@ -1530,7 +1488,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 	}
 
 	public static void clearPermissionResolutionCache() {
-		globalPermissionResolutionCache.clear();
+		PermissionResolutionCache.invalidate();
 	}
 
 	public static <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R getRelationshipForType(final Class<R> type) {
@@ -2115,12 +2073,4 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			}
 		}
 	}
-
-	private static class PermissionResolutionResult {
-
-		Boolean read          = false;
-		Boolean write         = false;
-		Boolean delete        = false;
-		Boolean accessControl = false;
-	}
 }
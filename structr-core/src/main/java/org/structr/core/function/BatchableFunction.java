@@ -19,10 +19,9 @@
 package org.structr.core.function;
 
 /**
- * Interface to identify functions that support batching.
+ * Interface to identify functions that support batching. Implementations
+ * obtain the batch settings from {@link org.structr.schema.action.ActionContext#isBatched()}
+ * and {@link org.structr.schema.action.ActionContext#getBatchSize()}.
  */
 public interface BatchableFunction {
-
-	void setBatched(final boolean isBatched);
-	void setBatchSize(final int batchSize);
 }
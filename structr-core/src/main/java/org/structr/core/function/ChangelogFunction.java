@@ -25,6 +25,7 @@ import com.google.gson.JsonParser;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import org.mozilla.javascript.NativeObject;
@@ -38,6 +39,7 @@ import org.structr.core.GraphObjectMap;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.ChangelogStore;
 import org.structr.core.property.EndNodeProperty;
 import org.structr.core.property.Property;
 import org.structr.core.property.StringProperty;
@@ -83,44 +85,38 @@ public class ChangelogFunction extends Function<Object, Object> {
 
 			if (sources[0] instanceof GraphObject) {
 
-				final String changelog = ((GraphObject) sources[0]).getProperty(GraphObject.structrChangeLog);
+				final GraphObject obj                 = (GraphObject) sources[0];
+				final ChangelogFilter changelogFilter = new ChangelogFilter();
 
-				if (changelog != null && !("".equals(changelog))) {
+				if (sources.length >= 3 && sources[2] != null) {
 
-					final ChangelogFilter changelogFilter = new ChangelogFilter();
+					if (sources[2] instanceof NativeObject) {
 
-					if (sources.length >= 3 && sources[2] != null) {
+						changelogFilter.processJavaScriptConfigurationObject((NativeObject) sources[2]);
 
-						if (sources[2] instanceof NativeObject) {
+					} else {
 
-							changelogFilter.processJavaScriptConfigurationObject((NativeObject) sources[2]);
+						final int maxLength = sources.length;
 
-						} else {
-
-							final int maxLength = sources.length;
-
-							for (int i = 2; (i + 2) <= maxLength; i += 2) {
-
-								if (sources[i] != null && sources[i+1] != null) {
-									changelogFilter.addFilterEntry(sources[i].toString(), sources[i+1]);
-								}
+						for (int i = 2; (i + 2) <= maxLength; i += 2) {
 
+							if (sources[i] != null && sources[i+1] != null) {
+								changelogFilter.addFilterEntry(sources[i].toString(), sources[i+1]);
 							}
 
-							if (maxLength % 2 == 1 && sources[maxLength-1] != null) {
-								logger.warn("Ignoring dangling filterKey: {}", sources[maxLength-1]);
-							}
 						}
-					}
 
-					if (sources.length >= 2 && Boolean.TRUE.equals(sources[1])) {
-						changelogFilter.setResolveTargets(true);
+						if (maxLength % 2 == 1 && sources[maxLength-1] != null) {
+							logger.warn("Ignoring dangling filterKey: {}", sources[maxLength-1]);
+						}
 					}
+				}
 
-					return changelogFilter.getFilteredChangelog(changelog);
+				if (sources.length >= 2 && Boolean.TRUE.equals(sources[1])) {
+					changelogFilter.setResolveTargets(true);
 				}
 
-				return new ArrayList();
+				return changelogFilter.getFilteredChangelog(obj);
 
 			} else {
 
@@ -212,8 +208,8 @@ public class ChangelogFunction extends Function<Object, Object> {
 
 			assignStringsIfPresent(javascriptConfigObject.get("verb"), _filterVerbs);
 
-			assignLongIfPresent(javascriptConfigObject.get("timeFrom"), _filterTimeFrom);
-			assignLongIfPresent(javascriptConfigObject.get("timeTo"), _filterTimeTo);
+			_filterTimeFrom = toLongIfPresent(javascriptConfigObject.get("timeFrom"), _filterTimeFrom);
+			_filterTimeTo   = toLongIfPresent(javascriptConfigObject.get("timeTo"), _filterTimeTo);
 
 			assignStringsIfPresent(javascriptConfigObject.get("userId"), _filterUserId);
 			assignStringsIfPresent(javascriptConfigObject.get("userName"), _filterUserName);
@@ -228,11 +224,13 @@ public class ChangelogFunction extends Function<Object, Object> {
 
 		}
 
-		private void assignLongIfPresent (final Object possibleLong, Long targetLongReference) {
+		private Long toLongIfPresent (final Object possibleLong, final Long defaultValue) {
 
 			if (possibleLong != null) {
-				targetLongReference = new Double(ScriptRuntime.toNumber(possibleLong)).longValue();
+				return new Double(ScriptRuntime.toNumber(possibleLong)).longValue();
 			}
+
+			return defaultValue;
 		}
 
 		private void assignStringsIfPresent (final Object possibleListOrString, ArrayList<String> targetListReference) {
@@ -250,16 +248,27 @@ public class ChangelogFunction extends Function<Object, Object> {
 			_resolveTargets = resolve;
 		}
 
-		public List getFilteredChangelog (final String changelog) throws FrameworkException {
+		public List getFilteredChangelog (final GraphObject obj) throws FrameworkException {
+
+			final List<String> entries = new ArrayList<>();
+			final List list            = new ArrayList();
+
+			// entries from the time before the changelog store was introduced
+			final String legacyChangelog = obj.getProperty(GraphObject.structrChangeLog);
+			if (legacyChangelog != null && !("".equals(legacyChangelog))) {
+
+				entries.addAll(Arrays.asList(legacyChangelog.split("\n")));
+			}
 
-			final List list = new ArrayList();
+			// the time range is applied by the store, so only matching entries are read
+			entries.addAll(ChangelogStore.getInstance().read(obj.getUuid(), _filterTimeFrom, _filterTimeTo));
 
 			_noFilterConfig = (
 					_filterVerbs.isEmpty() && _filterTimeFrom == null && _filterTimeTo == null && _filterUserId.isEmpty() &&
 					_filterUserName.isEmpty() && _filterRelType.isEmpty() && _filterRelDir == null && _filterTarget.isEmpty() && _filterKey.isEmpty()
 			);
 
-			for (final String entry : changelog.split("\n")) {
+			for (final String entry : entries) {
 
 				final JsonObject jsonObj = _jsonParser.parse(entry).getAsJsonObject();
 				final String verb = jsonObj.get("verb").getAsString();
@@ -39,9 +39,6 @@ public class DeleteFunction extends Function<Object, Object> implements Batchabl
 
 	public static final String ERROR_MESSAGE_DELETE = "Usage: ${delete(entityOrCollection)}. Example: ${delete(this)}";
 
-	private boolean batched = false;
-	private int batchSize   = -1;
-
 	@Override
 	public String getName() {
 		return "delete()";
@@ -55,7 +52,7 @@ public class DeleteFunction extends Function<Object, Object> implements Batchabl
 			final App app = StructrApp.getInstance(ctx.getSecurityContext());
 			for (final Object obj : sources) {
 
-				deleteObject(app, obj);
+				deleteObject(app, obj, ctx.isBatched(), ctx.getBatchSize());
 			}
 		}
 
@@ -72,19 +69,8 @@ public class DeleteFunction extends Function<Object, Object> implements Batchabl
 		return "Deletes the given entity from the database";
 	}
 
-	// ----- interface BatchableFunction -----
-	@Override
-	public void setBatched(boolean isBatched) {
-		this.batched = isBatched;
-	}
-
-	@Override
-	public void setBatchSize(int batchSize) {
-		this.batchSize = batchSize;
-	}
-
 	// ----- private methods -----
-	private void deleteObject(final App app, final Object obj) throws FrameworkException {
+	private void deleteObject(final App app, final Object obj, final boolean batched, final int batchSize) throws FrameworkException {
 
 		if (obj instanceof NodeInterface) {
 
@@ -110,7 +96,7 @@ public class DeleteFunction extends Function<Object, Object> implements Batchabl
 
 						while (iterator.hasNext()) {
 
-							deleteObject(app, iterator.next());
+							deleteObject(app, iterator.next(), batched, batchSize);
 
 							if ((++count % batchSize) == 0) {
 								break;
@@ -131,7 +117,7 @@ public class DeleteFunction extends Function<Object, Object> implements Batchabl
 
 				for (final Object o : (Iterable)obj) {
 
-					deleteObject(app, o);
+					deleteObject(app, o, batched, batchSize);
 				}
 			}
 		}
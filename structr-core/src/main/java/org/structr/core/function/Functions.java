@@ -40,6 +40,7 @@ import org.structr.core.parser.CacheExpression;
 import org.structr.core.parser.ConstantExpression;
 import org.structr.core.parser.EachExpression;
 import org.structr.core.parser.Expression;
+import org.structr.core.parser.ExpressionCache;
 import org.structr.core.parser.FilterExpression;
 import org.structr.core.parser.FunctionExpression;
 import org.structr.core.parser.FunctionValueExpression;
@@ -73,6 +74,9 @@ public class Functions {
 
 			functions.put(name, new UnlicensedFunction(name, edition));
 		}
+
+		// parsed expressions contain references to functions
+		ExpressionCache.clear();
 	}
 
 	public static Set<String> getNames() {
@@ -89,6 +93,25 @@ public class Functions {
 
 	public static Object evaluate(final ActionContext actionContext, final GraphObject entity, final String expression) throws FrameworkException, UnlicensedException {
 
+		Expression root = ExpressionCache.get(expression);
+		if (root == null) {
+
+			root = ExpressionCache.putIfAbsent(expression, parse(expression));
+		}
+
+		return root.evaluate(actionContext, entity);
+	}
+
+	/**
+	 * Parses the given StructrScript expression into a tree of {@link Expression}
+	 * objects that can be evaluated repeatedly.
+	 *
+	 * @param expression
+	 * @return the root of the expression tree
+	 * @throws FrameworkException
+	 */
+	public static Expression parse(final String expression) throws FrameworkException {
+
 		final String expressionWithoutNewlines = expression.replace('\n', ' ').replace('\r', ' ');
 		final StreamTokenizer tokenizer = new StreamTokenizer(new StringReader(expressionWithoutNewlines));
 		tokenizer.eolIsSignificant(true);
@@ -214,7 +237,7 @@ public class Functions {
 			throw new FrameworkException(422, "Invalid expression: mismatched closing bracket after " + lastToken);
 		}
 
-		return root.evaluate(actionContext, entity);
+		return root;
 	}
 
 	public static String cleanString(final Object input) {
@@ -19,10 +19,8 @@
 package org.structr.core.graph;
 
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.Map;
 import org.structr.api.DatabaseService;
-import org.structr.api.util.Iterables;
 import org.structr.common.SecurityContext;
 import org.structr.common.StructrAndSpatialPredicate;
 import org.structr.common.error.ErrorBuffer;
@@ -44,7 +42,7 @@ public class BulkCreateLabelsCommand extends NodeServiceCommand implements Maint
 		final SecurityContext superUserContext    = SecurityContext.getSuperUserInstance();
 		final NodeFactory nodeFactory             = new NodeFactory(superUserContext);
 		final boolean removeUnused                = !attributes.containsKey("removeUnused");
-		final Iterator<AbstractNode> nodeIterator = Iterables.map(nodeFactory, Iterables.filter(new StructrAndSpatialPredicate(true, false, false), graphDb.getNodesByTypeProperty(entityType))).iterator();
+		final Partitioner<AbstractNode> partitions = nodePartitioner(graphDb, nodeFactory, null, entityType, new StructrAndSpatialPredicate(true, false, false));
 
 		if (entityType == null) {
 
@@ -55,7 +53,7 @@ public class BulkCreateLabelsCommand extends NodeServiceCommand implements Maint
 			info("Starting creation of labels for all nodes of type {}", entityType);
 		}
 
-		final long count = bulkGraphOperation(securityContext, nodeIterator, 10000, "CreateLabels", new BulkGraphOperation<AbstractNode>() {
+		final long count = parallelBulkGraphOperation(securityContext, partitions, 10000, "CreateLabels", new BulkGraphOperation<AbstractNode>() {
 
 			@Override
 			public void handleGraphObject(SecurityContext securityContext, AbstractNode node) {
@@ -18,13 +18,11 @@
  */
 package org.structr.core.graph;
 
-import java.util.Iterator;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.DatabaseService;
 import org.structr.api.graph.Node;
-import org.structr.api.util.Iterables;
 import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -56,13 +54,13 @@ public class BulkFixNodePropertiesCommand extends NodeServiceCommand implements
 			final Class type = SchemaHelper.getEntityClassForRawType(entityTypeName);
 			if (type != null) {
 
-				final DatabaseService db                  = StructrApp.getInstance(securityContext).getDatabaseService();
-				final NodeFactory factory                 = new NodeFactory(securityContext);
-				final Iterator<AbstractNode> nodeIterator = Iterables.map(factory, db.getNodesByLabel(entityTypeName)).iterator();
+				final DatabaseService db                   = StructrApp.getInstance(securityContext).getDatabaseService();
+				final NodeFactory factory                  = new NodeFactory(securityContext);
+				final Partitioner<AbstractNode> partitions = nodePartitioner(db, factory, entityTypeName, null, null);
 
 				logger.info("Trying to fix properties of all {} nodes", type.getSimpleName() );
 
-				long nodeCount = bulkGraphOperation(securityContext, nodeIterator, 100, "FixNodeProperties", new BulkGraphOperation<AbstractNode>() {
+				long nodeCount = parallelBulkGraphOperation(securityContext, partitions, 100, "FixNodeProperties", new BulkGraphOperation<AbstractNode>() {
 
 					private void fixProperty(AbstractNode node, Property propertyToFix) {
 
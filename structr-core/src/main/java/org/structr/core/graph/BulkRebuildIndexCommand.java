@@ -19,12 +19,10 @@
 package org.structr.core.graph;
 
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.DatabaseService;
-import org.structr.api.util.Iterables;
 import org.structr.common.SecurityContext;
 import org.structr.common.StructrAndSpatialPredicate;
 import org.structr.common.error.ErrorBuffer;
@@ -83,11 +81,9 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 	// ----- private methods -----
 	private void rebuildNodeIndex(final String entityType) {
 
-		final NodeFactory nodeFactory       = new NodeFactory(SecurityContext.getSuperUserInstance());
-		final DatabaseService graphDb       = (DatabaseService) arguments.get("graphDb");
-		Iterator<AbstractNode> nodeIterator = null;
-
-		nodeIterator = Iterables.map(nodeFactory, Iterables.filter(new StructrAndSpatialPredicate(true, false, false), graphDb.getNodesByTypeProperty(entityType))).iterator();
+		final NodeFactory nodeFactory                  = new NodeFactory(SecurityContext.getSuperUserInstance());
+		final DatabaseService graphDb                  = (DatabaseService) arguments.get("graphDb");
+		final Partitioner<AbstractNode> nodePartitions = nodePartitioner(graphDb, nodeFactory, null, entityType, new StructrAndSpatialPredicate(true, false, false));
 
 		if (entityType == null) {
 
@@ -98,7 +94,7 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 			info("Starting (re-)indexing all nodes of type {}", entityType);
 		}
 
-		long count = bulkGraphOperation(securityContext, nodeIterator, 1000, "RebuildNodeIndex", new BulkGraphOperation<AbstractNode>() {
+		long count = parallelBulkGraphOperation(securityContext, nodePartitions, 1000, "RebuildNodeIndex", new BulkGraphOperation<AbstractNode>() {
 
 			@Override
 			public void handleGraphObject(SecurityContext securityContext, AbstractNode node) {
@@ -121,9 +117,9 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 
 	private void rebuildRelationshipIndex(final String relType) {
 
-		final RelationshipFactory relFactory             = new RelationshipFactory(SecurityContext.getSuperUserInstance());
-		final DatabaseService graphDb                    = (DatabaseService) arguments.get("graphDb");
-		final Iterator<AbstractRelationship> relIterator = Iterables.map(relFactory, Iterables.filter(new StructrAndSpatialPredicate(true, false, false), graphDb.getRelationshipsByType(relType))).iterator();
+		final RelationshipFactory relFactory                 = new RelationshipFactory(SecurityContext.getSuperUserInstance());
+		final DatabaseService graphDb                        = (DatabaseService) arguments.get("graphDb");
+		final Partitioner<AbstractRelationship> relPartitions = relationshipPartitioner(graphDb, relFactory, relType, new StructrAndSpatialPredicate(true, false, false));
 
 		if (relType == null) {
 
@@ -135,7 +131,7 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 
 		}
 
-		long count = bulkGraphOperation(securityContext, relIterator, 1000, "RebuildRelIndex", new BulkGraphOperation<AbstractRelationship>() {
+		long count = parallelBulkGraphOperation(securityContext, relPartitions, 1000, "RebuildRelIndex", new BulkGraphOperation<AbstractRelationship>() {
 
 			@Override
 			public void handleGraphObject(SecurityContext securityContext, AbstractRelationship rel) {
@@ -18,12 +18,10 @@
  */
 package org.structr.core.graph;
 
-import java.util.Iterator;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.DatabaseService;
-import org.structr.api.util.Iterables;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
@@ -60,22 +58,22 @@ public class BulkSetUuidCommand extends NodeServiceCommand implements Maintenanc
 
 		if (nodeType != null || Boolean.TRUE.equals(allNodes)) {
 
-			Iterator<AbstractNode> nodeIterator = null;
+			Partitioner<AbstractNode> nodePartitions = null;
 
 			if (Boolean.TRUE.equals(allNodes)) {
 
-				nodeIterator = Iterables.map(nodeFactory, graphDb.getAllNodes()).iterator();
+				nodePartitions = nodePartitioner(graphDb, nodeFactory, null, null, null);
 
 				info("Start setting UUID on all nodes");
 
 			} else {
 
-				nodeIterator = Iterables.map(nodeFactory, graphDb.getNodesByTypeProperty(nodeType)).iterator();
+				nodePartitions = nodePartitioner(graphDb, nodeFactory, null, nodeType, null);
 
 				info("Start setting UUID on nodes of type {}", new Object[] { nodeType });
 			}
 
-			final long count = bulkGraphOperation(securityContext, nodeIterator, 1000, "SetNodeUuid", new BulkGraphOperation<AbstractNode>() {
+			final long count = parallelBulkGraphOperation(securityContext, nodePartitions, 1000, "SetNodeUuid", new BulkGraphOperation<AbstractNode>() {
 
 				@Override
 				public void handleGraphObject(final SecurityContext securityContext, final AbstractNode node) {
@@ -117,22 +115,22 @@ public class BulkSetUuidCommand extends NodeServiceCommand implements Maintenanc
 
 		if (relType != null || Boolean.TRUE.equals(allRels)) {
 
-			Iterator<AbstractRelationship> relIterator = null;
+			Partitioner<AbstractRelationship> relPartitions = null;
 
 			if (Boolean.TRUE.equals(allRels)) {
 
-				relIterator = Iterables.map(relFactory, graphDb.getAllRelationships()).iterator();
+				relPartitions = relationshipPartitioner(graphDb, relFactory, null, null);
 
 				info("Start setting UUID on all rels", new Object[] { relType });
 
 			} else {
 
-				relIterator = Iterables.map(relFactory, graphDb.getRelationshipsByType(relType)).iterator();
+				relPartitions = relationshipPartitioner(graphDb, relFactory, relType, null);
 
 				info("Start setting UUID on rels of type {}", new Object[] { relType });
 			}
 
-			final long count = bulkGraphOperation(securityContext, relIterator, 1000, "SetRelationshipUuid", new BulkGraphOperation<AbstractRelationship>() {
+			final long count = parallelBulkGraphOperation(securityContext, relPartitions, 1000, "SetRelationshipUuid", new BulkGraphOperation<AbstractRelationship>() {
 
 				@Override
 				public void handleGraphObject(SecurityContext securityContext, AbstractRelationship rel) {
@@ -0,0 +1,441 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+
+/**
+ * Append-only store for the changelog entries of nodes and relationships,
+ * keyed by UUID.
+ *
+ * Entries are appended to numbered segment files, and each segment has an
+ * index file that records UUID, offset, length and timestamp of every
+ * entry it contains. The index files are read into memory on first use,
+ * so that the entries of a single object can be read (and filtered by
+ * time) without scanning the segments, and appending to the changelog
+ * of an object costs the same regardless of the size of its history.
+ *
+ * The store is not transactional with the graph: entries are appended
+ * after the transaction has been committed, so the entries of the last
+ * transactions before a crash can be missing. The files are not part of
+ * the database, and are therefore neither included in database backups
+ * nor in deployment exports.
+ */
+public class ChangelogStore {
+
+	private static final Logger logger           = LoggerFactory.getLogger(ChangelogStore.class.getName());
+	private static final ChangelogStore instance = new ChangelogStore();
+	private static final String SEGMENT_SUFFIX   = ".log";
+	private static final String INDEX_SUFFIX     = ".idx";
+
+	private final Map<String, Entries> index = new ConcurrentHashMap<>();
+	private final JsonParser parser          = new JsonParser();
+	private FileChannel segmentChannel       = null;
+	private FileChannel indexChannel         = null;
+	private String path                      = null;
+	private int segment                      = 0;
+
+	private ChangelogStore() {}
+
+	public static ChangelogStore getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Appends the given changelog entries (one JSON object per line) to
+	 * the changelog of the object with the given UUID.
+	 *
+	 * @param uuid
+	 * @param changelog
+	 */
+	public synchronized void append(final String uuid, final String changelog) {
+
+		if (uuid == null || changelog == null || changelog.isEmpty()) {
+			return;
+		}
+
+		try {
+
+			open(true);
+
+			for (final String line : changelog.split("\n")) {
+
+				if (!line.isEmpty()) {
+
+					final byte[] data = (line + "\n").getBytes(StandardCharsets.UTF_8);
+					final long time   = getTime(line);
+
+					if (segmentChannel.size() + data.length > getMaxSegmentSize()) {
+						openSegment(segment + 1);
+					}
+
+					final long offset = segmentChannel.size();
+
+					// data first, so that the index never points to a missing entry
+					writeFully(segmentChannel, ByteBuffer.wrap(data));
+					writeFully(indexChannel, indexRecord(uuid, offset, data.length, time));
+
+					index.computeIfAbsent(uuid, k -> new Entries()).add(segment, offset, data.length, time);
+				}
+			}
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to write changelog for {}: {}", uuid, ioex.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the changelog entries of the object with the given UUID
+	 * whose timestamp lies within the given range, in the order they
+	 * were appended.
+	 *
+	 * @param uuid
+	 * @param timeFrom lower bound or null
+	 * @param timeTo upper bound or null
+	 * @return the matching entries
+	 */
+	public List<String> read(final String uuid, final Long timeFrom, final Long timeTo) {
+
+		final List<String> result = new ArrayList<>();
+		final Entries entries;
+
+		synchronized (this) {
+
+			try {
+
+				if (!open(false)) {
+					return result;
+				}
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to open changelog: {}", ioex.getMessage());
+				return result;
+			}
+
+			entries = index.get(uuid);
+		}
+
+		if (entries != null) {
+
+			final Map<Integer, FileChannel> channels = new HashMap<>();
+
+			try {
+
+				for (final long[] entry : entries.select(timeFrom, timeTo)) {
+
+					final int segmentNumber = (int)entry[0];
+					FileChannel channel     = channels.get(segmentNumber);
+
+					if (channel == null) {
+
+						channel = FileChannel.open(getSegmentFile(segmentNumber, SEGMENT_SUFFIX).toPath(), StandardOpenOption.READ);
+						channels.put(segmentNumber, channel);
+					}
+
+					final ByteBuffer buffer = ByteBuffer.allocate((int)entry[2]);
+					long position           = entry[1];
+
+					while (buffer.hasRemaining()) {
+
+						final int count = channel.read(buffer, position);
+						if (count < 0) {
+							throw new EOFException("Changelog segment " + segmentNumber + " is truncated");
+						}
+
+						position += count;
+					}
+
+					result.add(new String(buffer.array(), 0, buffer.limit() - 1, StandardCharsets.UTF_8));
+				}
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to read changelog for {}: {}", uuid, ioex.getMessage());
+
+			} finally {
+
+				for (final FileChannel channel : channels.values()) {
+
+					try { channel.close(); } catch (IOException ignore) {}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	public synchronized void close() {
+
+		closeChannels();
+
+		index.clear();
+		path = null;
+	}
+
+	// ----- private methods -----
+	private boolean open(final boolean create) throws IOException {
+
+		final String currentPath = Settings.getFullSettingPath(Settings.ChangelogPath);
+
+		if (currentPath.equals(path)) {
+			return true;
+		}
+
+		// base path changed (or first use)
+		close();
+
+		final File directory = new File(currentPath);
+		if (!directory.isDirectory()) {
+
+			if (!create) {
+				return false;
+			}
+
+			directory.mkdirs();
+		}
+
+		path = currentPath;
+
+		final TreeMap<Integer, File> segments = new TreeMap<>();
+		final File[] files                    = directory.listFiles();
+
+		if (files != null) {
+
+			for (final File file : files) {
+
+				final String name = file.getName();
+				if (name.endsWith(INDEX_SUFFIX)) {
+
+					try {
+
+						segments.put(Integer.valueOf(name.substring(0, name.length() - INDEX_SUFFIX.length())), file);
+
+					} catch (NumberFormatException ignore) {}
+				}
+			}
+		}
+
+		for (final Map.Entry<Integer, File> entry : segments.entrySet()) {
+			loadIndex(entry.getKey(), entry.getValue());
+		}
+
+		openSegment(segments.isEmpty() ? 1 : segments.lastKey());
+
+		logger.info("Changelog opened at {}, {} objects in {} segments", path, index.size(), Math.max(1, segments.size()));
+
+		return true;
+	}
+
+	private void loadIndex(final int segmentNumber, final File file) throws IOException {
+
+		final long segmentSize = getSegmentFile(segmentNumber, SEGMENT_SUFFIX).length();
+		long validLength       = 0L;
+
+		try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+			while (true) {
+
+				final String uuid;
+				final long offset;
+				final int length;
+				final long time;
+
+				try {
+
+					uuid   = dis.readUTF();
+					offset = dis.readLong();
+					length = dis.readInt();
+					time   = dis.readLong();
+
+				} catch (EOFException eof) {
+					break;
+				}
+
+				if (offset + length > segmentSize) {
+					break;
+				}
+
+				index.computeIfAbsent(uuid, k -> new Entries()).add(segmentNumber, offset, length, time);
+
+				validLength += 2 + uuid.getBytes(StandardCharsets.UTF_8).length + 20;
+			}
+		}
+
+		if (validLength < file.length()) {
+
+			// incomplete record from an interrupted write
+			logger.warn("Truncating changelog index {} to {} bytes", file.getName(), validLength);
+
+			try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+				channel.truncate(validLength);
+			}
+		}
+	}
+
+	private void openSegment(final int segmentNumber) throws IOException {
+
+		closeChannels();
+
+		segment        = segmentNumber;
+		segmentChannel = FileChannel.open(getSegmentFile(segmentNumber, SEGMENT_SUFFIX).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		indexChannel   = FileChannel.open(getSegmentFile(segmentNumber, INDEX_SUFFIX).toPath(),   StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	private void closeChannels() {
+
+		try {
+
+			if (segmentChannel != null) {
+				segmentChannel.close();
+			}
+
+			if (indexChannel != null) {
+				indexChannel.close();
+			}
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to close changelog: {}", ioex.getMessage());
+		}
+
+		segmentChannel = null;
+		indexChannel   = null;
+	}
+
+	private File getSegmentFile(final int segmentNumber, final String suffix) {
+		return new File(path, String.format("%08d", segmentNumber) + suffix);
+	}
+
+	private long getMaxSegmentSize() {
+		return Math.max(1, Settings.ChangelogSegmentSize.getValue()) * 1024L * 1024L;
+	}
+
+	private long getTime(final String line) {
+
+		try {
+
+			final JsonObject obj   = parser.parse(line).getAsJsonObject();
+			final JsonElement time = obj.get("time");
+
+			if (time != null && !time.isJsonNull()) {
+				return time.getAsLong();
+			}
+
+		} catch (Throwable t) {
+			logger.warn("Unable to parse changelog entry {}: {}", line, t.getMessage());
+		}
+
+		return System.currentTimeMillis();
+	}
+
+	private ByteBuffer indexRecord(final String uuid, final long offset, final int length, final long time) {
+
+		final byte[] id         = uuid.getBytes(StandardCharsets.UTF_8);
+		final ByteBuffer buffer = ByteBuffer.allocate(2 + id.length + 20);
+
+		// same layout as DataOutput.writeUTF for ASCII strings
+		buffer.putShort((short)id.length);
+		buffer.put(id);
+		buffer.putLong(offset);
+		buffer.putInt(length);
+		buffer.putLong(time);
+		buffer.flip();
+
+		return buffer;
+	}
+
+	private void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	// ----- nested classes -----
+	/**
+	 * Location and timestamp of all changelog entries of a single object.
+	 */
+	private static class Entries {
+
+		private int[] segments = new int[4];
+		private long[] offsets = new long[4];
+		private int[] lengths  = new int[4];
+		private long[] times   = new long[4];
+		private int size       = 0;
+
+		synchronized void add(final int segment, final long offset, final int length, final long time) {
+
+			if (size == segments.length) {
+
+				final int newLength = size * 2;
+
+				segments = Arrays.copyOf(segments, newLength);
+				offsets  = Arrays.copyOf(offsets, newLength);
+				lengths  = Arrays.copyOf(lengths, newLength);
+				times    = Arrays.copyOf(times, newLength);
+			}
+
+			segments[size] = segment;
+			offsets[size]  = offset;
+			lengths[size]  = length;
+			times[size]    = time;
+
+			size++;
+		}
+
+		synchronized List<long[]> select(final Long timeFrom, final Long timeTo) {
+
+			final List<long[]> result = new ArrayList<>();
+
+			// entries of concurrent transactions can be slightly out of order, so no binary search here
+			for (int i=0; i<size; i++) {
+
+				final long time = times[i];
+
+				if ((timeFrom == null || timeFrom <= time) && (timeTo == null || timeTo >= time)) {
+					result.add(new long[] { segments[i], offsets[i], lengths[i] });
+				}
+			}
+
+			return result;
+		}
+	}
+}
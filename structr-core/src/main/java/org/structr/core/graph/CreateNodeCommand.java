@@ -18,9 +18,12 @@
  */
 package org.structr.core.graph;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -55,6 +58,8 @@ import org.structr.schema.SchemaHelper;
  */
 public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceCommand {
 
+	private static final int BATCH_SIZE = 1000;
+
 	public T execute(final Collection<NodeAttribute<?>> attributes) throws FrameworkException {
 
 		PropertyMap properties = new PropertyMap();
@@ -87,134 +92,230 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 		if (graphDb != null) {
 
 			final NodeFactory<T> nodeFactory = new NodeFactory<>(securityContext);
-			final PropertyMap properties     = new PropertyMap(attributes);
-			final PropertyMap toNotify       = new PropertyMap();
-			final Object typeObject          = properties.get(AbstractNode.type);
-			final Class nodeType             = getTypeOrGeneric(typeObject);
-			final Set<String> labels         = TypeProperty.getLabelsForType(nodeType);
-			final CreationContainer tmp      = new CreationContainer();
-			final Date now                   = new Date();
-			final boolean isCreation         = true;
+			final NodeCreation creation      = prepare(user, attributes);
 
-			// use user-supplied UUID?
-			String uuid = properties.get(GraphObject.id);
-			if (uuid == null) {
+			node = initialize(nodeFactory, user, createNode(graphDb, user, creation.labels, creation.tmp.getData()), creation);
+		}
 
-				// no, create new one
-				uuid = getNextUuid();
+		if (node != null) {
 
-				properties.put(GraphObject.id, uuid);
+			notifyCreation(node);
+		}
 
-			} else {
+		return node;
+	}
 
-				// enable UUID validation
-				securityContext.uuidWasSetManually(true);
-			}
+	/**
+	 * Creates one node for each of the given property maps. The nodes are
+	 * grouped by type and written in batches, using a single database
+	 * statement per batch.
+	 *
+	 * @param attributes
+	 * @return the new nodes, in the order of the given property maps
+	 * @throws FrameworkException
+	 */
+	public List<T> execute(final List<PropertyMap> attributes) throws FrameworkException {
 
-			// use property keys to set property values on creation dummy
-			// set default values for common properties in creation query
-			GraphObject.id.setProperty(securityContext, tmp, uuid);
-			GraphObject.type.setProperty(securityContext, tmp, nodeType.getSimpleName());
-			AbstractNode.createdDate.setProperty(securityContext, tmp, now);
-			AbstractNode.lastModifiedDate.setProperty(securityContext, tmp, now);
+		final DatabaseService graphDb = (DatabaseService) arguments.get("graphDb");
+		final Principal user          = securityContext.getUser(false);
+		final List<T> nodes           = new ArrayList<>();
 
-			// default property values
-			AbstractNode.visibleToPublicUsers.setProperty(securityContext, tmp,        getOrDefault(properties, AbstractNode.visibleToPublicUsers, false));
-			AbstractNode.visibleToAuthenticatedUsers.setProperty(securityContext, tmp, getOrDefault(properties, AbstractNode.visibleToAuthenticatedUsers, false));
-			AbstractNode.hidden.setProperty(securityContext, tmp,                      getOrDefault(properties, AbstractNode.hidden, false));
-			AbstractNode.deleted.setProperty(securityContext, tmp,                     getOrDefault(properties, AbstractNode.deleted, false));
+		if (graphDb != null) {
 
-			if (user != null) {
+			final Map<Set<String>, List<NodeCreation>> groups = new LinkedHashMap<>();
+			final List<NodeCreation> creations                = new ArrayList<>();
+			final NodeFactory<T> nodeFactory                  = new NodeFactory<>(securityContext);
 
-				final String userId = user.getProperty(GraphObject.id);
+			for (final PropertyMap properties : attributes) {
 
-				AbstractNode.createdBy.setProperty(securityContext, tmp, userId);
-				AbstractNode.lastModifiedBy.setProperty(securityContext, tmp, userId);
+				final NodeCreation creation = prepare(user, properties);
+
+				groups.computeIfAbsent(creation.labels, k -> new ArrayList<>()).add(creation);
+				creations.add(creation);
 			}
 
-			// prevent double setting of properties
-			properties.remove(AbstractNode.id);
-			properties.remove(AbstractNode.type);
-			properties.remove(AbstractNode.visibleToPublicUsers);
-			properties.remove(AbstractNode.visibleToAuthenticatedUsers);
-			properties.remove(AbstractNode.hidden);
-			properties.remove(AbstractNode.deleted);
-			properties.remove(AbstractNode.lastModifiedDate);
-			properties.remove(AbstractNode.lastModifiedBy);
-			properties.remove(AbstractNode.createdDate);
-			properties.remove(AbstractNode.createdBy);
+			for (final Entry<Set<String>, List<NodeCreation>> group : groups.entrySet()) {
+
+				final List<NodeCreation> list = group.getValue();
+				final int size                = list.size();
+
+				for (int i=0; i<size; i+=BATCH_SIZE) {
 
-			// move properties to creation container that can be set directly on creation
-			tmp.filterIndexableForCreation(securityContext, properties, tmp, toNotify);
+					final List<NodeCreation> batch       = list.subList(i, Math.min(size, i + BATCH_SIZE));
+					final List<Map<String, Object>> data = new ArrayList<>(batch.size());
 
-			// collect default values and try to set them on creation
-			for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(nodeType, PropertyView.All)) {
+					for (final NodeCreation creation : batch) {
+						data.add(creation.tmp.getData());
+					}
+
+					final List<Node> created = createNodes(graphDb, user, group.getKey(), data);
+					final int count          = batch.size();
 
-				if (key instanceof AbstractPrimitiveProperty && !tmp.hasProperty(key.jsonName())) {
+					for (int j=0; j<count; j++) {
 
-					final Object defaultValue = key.defaultValue();
-					if (defaultValue != null) {
+						final NodeCreation creation = batch.get(j);
 
-						key.setProperty(securityContext, tmp, defaultValue);
+						creation.node = initialize(nodeFactory, user, created.get(j), creation);
 					}
 				}
 			}
 
-			node = (T) nodeFactory.instantiateWithType(createNode(graphDb, user, labels, tmp.getData()), nodeType, null, isCreation);
-			if (node != null) {
+			// notify nodes of their creation in the original order
+			for (final NodeCreation creation : creations) {
+
+				final T node = creation.node;
+				if (node != null) {
+
+					notifyCreation(node);
+					nodes.add(node);
+				}
+			}
+		}
+
+		return nodes;
+	}
 
-				TransactionCommand.nodeCreated(user, node);
+	// ----- private methods -----
+	private NodeCreation prepare(final Principal user, final PropertyMap attributes) throws FrameworkException {
 
-				securityContext.disableModificationOfAccessTime();
-				node.setProperties(securityContext, properties);
-				securityContext.enableModificationOfAccessTime();
+		final NodeCreation creation  = new NodeCreation();
+		final PropertyMap properties = new PropertyMap(attributes);
+		final PropertyMap toNotify   = new PropertyMap();
+		final Object typeObject      = properties.get(AbstractNode.type);
+		final Class nodeType         = getTypeOrGeneric(typeObject);
+		final Set<String> labels     = TypeProperty.getLabelsForType(nodeType);
+		final CreationContainer tmp  = new CreationContainer();
+		final Date now               = new Date();
 
-				// ensure modification callbacks are called (necessary for validation)
-				for (final Entry<PropertyKey, Object> entry : toNotify.entrySet()) {
+		// use user-supplied UUID?
+		String uuid = properties.get(GraphObject.id);
+		if (uuid == null) {
 
-					final PropertyKey key = entry.getKey();
-					final Object value    = entry.getValue();
+			// no, create new one
+			uuid = getNextUuid();
 
-					if (!key.isUnvalidated()) {
-						TransactionCommand.nodeModified(securityContext.getCachedUser(), (AbstractNode)node, key, null, value);
-					}
-				}
+			properties.put(GraphObject.id, uuid);
+
+		} else {
 
-				properties.clear();
+			// enable UUID validation
+			securityContext.uuidWasSetManually(true);
+		}
+
+		// use property keys to set property values on creation dummy
+		// set default values for common properties in creation query
+		GraphObject.id.setProperty(securityContext, tmp, uuid);
+		GraphObject.type.setProperty(securityContext, tmp, nodeType.getSimpleName());
+		AbstractNode.createdDate.setProperty(securityContext, tmp, now);
+		AbstractNode.lastModifiedDate.setProperty(securityContext, tmp, now);
+
+		// default property values
+		AbstractNode.visibleToPublicUsers.setProperty(securityContext, tmp,        getOrDefault(properties, AbstractNode.visibleToPublicUsers, false));
+		AbstractNode.visibleToAuthenticatedUsers.setProperty(securityContext, tmp, getOrDefault(properties, AbstractNode.visibleToAuthenticatedUsers, false));
+		AbstractNode.hidden.setProperty(securityContext, tmp,                      getOrDefault(properties, AbstractNode.hidden, false));
+		AbstractNode.deleted.setProperty(securityContext, tmp,                     getOrDefault(properties, AbstractNode.deleted, false));
+
+		if (user != null) {
+
+			final String userId = user.getProperty(GraphObject.id);
+
+			AbstractNode.createdBy.setProperty(securityContext, tmp, userId);
+			AbstractNode.lastModifiedBy.setProperty(securityContext, tmp, userId);
+		}
 
-				// ensure indexing of newly created node
-				node.addToIndex();
+		// prevent double setting of properties
+		properties.remove(AbstractNode.id);
+		properties.remove(AbstractNode.type);
+		properties.remove(AbstractNode.visibleToPublicUsers);
+		properties.remove(AbstractNode.visibleToAuthenticatedUsers);
+		properties.remove(AbstractNode.hidden);
+		properties.remove(AbstractNode.deleted);
+		properties.remove(AbstractNode.lastModifiedDate);
+		properties.remove(AbstractNode.lastModifiedBy);
+		properties.remove(AbstractNode.createdDate);
+		properties.remove(AbstractNode.createdBy);
 
-				// invalidate UUID cache
-				StructrApp.invalidate(uuid);
+		// move properties to creation container that can be set directly on creation
+		tmp.filterIndexableForCreation(securityContext, properties, tmp, toNotify);
+
+		// collect default values and try to set them on creation
+		for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(nodeType, PropertyView.All)) {
+
+			if (key instanceof AbstractPrimitiveProperty && !tmp.hasProperty(key.jsonName())) {
+
+				final Object defaultValue = key.defaultValue();
+				if (defaultValue != null) {
+
+					key.setProperty(securityContext, tmp, defaultValue);
+				}
 			}
 		}
 
+		creation.properties = properties;
+		creation.toNotify   = toNotify;
+		creation.nodeType   = nodeType;
+		creation.labels     = labels;
+		creation.uuid       = uuid;
+		creation.tmp        = tmp;
+
+		return creation;
+	}
+
+	private T initialize(final NodeFactory<T> nodeFactory, final Principal user, final Node dbNode, final NodeCreation creation) throws FrameworkException {
+
+		final PropertyMap properties = creation.properties;
+		final T node                 = (T) nodeFactory.instantiateWithType(dbNode, creation.nodeType, null, true);
+
 		if (node != null) {
 
-			// notify node of its creation
-			node.onNodeCreation();
+			TransactionCommand.nodeCreated(user, node);
+
+			securityContext.disableModificationOfAccessTime();
+			node.setProperties(securityContext, properties);
+			securityContext.enableModificationOfAccessTime();
 
-			// iterate post creation transformations
-			final Set<Transformation<GraphObject>> transformations = StructrApp.getConfiguration().getEntityCreationTransformations(node.getClass());
-			for (Transformation<GraphObject> transformation : transformations) {
+			// ensure modification callbacks are called (necessary for validation)
+			for (final Entry<PropertyKey, Object> entry : creation.toNotify.entrySet()) {
 
-				transformation.apply(securityContext, node);
+				final PropertyKey key = entry.getKey();
+				final Object value    = entry.getValue();
+
+				if (!key.isUnvalidated()) {
+					TransactionCommand.nodeModified(securityContext.getCachedUser(), (AbstractNode)node, key, null, value);
+				}
 			}
+
+			properties.clear();
+
+			// ensure indexing of newly created node
+			node.addToIndex();
+
+			// invalidate UUID cache
+			StructrApp.invalidate(creation.uuid);
 		}
 
 		return node;
 	}
 
-	// ----- private methods -----
+	private void notifyCreation(final T node) throws FrameworkException {
+
+		// notify node of its creation
+		node.onNodeCreation();
+
+		// iterate post creation transformations
+		final Set<Transformation<GraphObject>> transformations = StructrApp.getConfiguration().getEntityCreationTransformations(node.getClass());
+		for (Transformation<GraphObject> transformation : transformations) {
+
+			transformation.apply(securityContext, node);
+		}
+	}
+
 	private Node createNode(final DatabaseService graphDb, final Principal user, final Set<String> labels, final Map<String, Object> properties) throws FrameworkException {
 
-		final Map<String, Object> parameters         = new HashMap<>();
-		final Map<String, Object> ownsProperties     = new HashMap<>();
-		final Map<String, Object> securityProperties = new HashMap<>();
-		final StringBuilder buf                      = new StringBuilder();
-		final String newUuid                         = (String)properties.get("id");
-		final String tenantId                        = graphDb.getTenantIdentifier();
+		final Map<String, Object> parameters = new HashMap<>();
+		final StringBuilder buf              = new StringBuilder();
+		final String newUuid                 = (String)properties.get("id");
+		final String tenantId                = graphDb.getTenantIdentifier();
 
 		if (user != null && user.shouldSkipSecurityRelationships() == false) {
 
@@ -236,23 +337,10 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 			buf.append(" {nodeProperties})<-[s:SECURITY {securityProperties}]-(u)");
 			buf.append(" RETURN n");
 
-			// configure OWNS relationship
-			ownsProperties.put(GraphObject.id.dbName(),                getNextUuid());
-			ownsProperties.put(GraphObject.type.dbName(),              PrincipalOwnsNode.class.getSimpleName());
-			ownsProperties.put(AbstractRelationship.sourceId.dbName(), user.getUuid());
-			ownsProperties.put(AbstractRelationship.targetId.dbName(), newUuid);
-
-			// configure SECURITY relationship
-			securityProperties.put(Security.allowed.dbName(),              new String[] { Permission.read.name(), Permission.write.name(), Permission.delete.name(), Permission.accessControl.name() } );
-			securityProperties.put(GraphObject.id.dbName(),                getNextUuid());
-			securityProperties.put(GraphObject.type.dbName(),              Security.class.getSimpleName());
-			securityProperties.put(AbstractRelationship.sourceId.dbName(), user.getUuid());
-			securityProperties.put(AbstractRelationship.targetId.dbName(), newUuid);
-
 			// store properties in statement
 			parameters.put("userId",             user.getId());
-			parameters.put("ownsProperties",     ownsProperties);
-			parameters.put("securityProperties", securityProperties);
+			parameters.put("ownsProperties",     getOwnsProperties(user, newUuid));
+			parameters.put("securityProperties", getSecurityProperties(user, newUuid));
 
 		} else {
 
@@ -297,6 +385,105 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 		throw new RuntimeException("Unable to create new node.");
 	}
 
+	private List<Node> createNodes(final DatabaseService graphDb, final Principal user, final Set<String> labels, final List<Map<String, Object>> properties) throws FrameworkException {
+
+		final List<Node> nodes = new ArrayList<>(properties.size());
+
+		try {
+
+			if (user != null && user.shouldSkipSecurityRelationships() == false) {
+
+				final Map<String, Object> parameters = new HashMap<>();
+				final List<Map<String, Object>> rows = new ArrayList<>(properties.size());
+				final StringBuilder buf              = new StringBuilder();
+				final String tenantId                = graphDb.getTenantIdentifier();
+
+				buf.append("MATCH (u:Principal) WHERE id(u) = {userId}");
+				buf.append(" UNWIND {rows} AS row");
+				buf.append(" CREATE (u)-[o:OWNS]->(n");
+
+				if (tenantId != null) {
+
+					buf.append(":");
+					buf.append(tenantId);
+				}
+
+				for (final String label : labels) {
+
+					buf.append(":");
+					buf.append(label);
+				}
+
+				buf.append(")<-[s:SECURITY]-(u)");
+				buf.append(" SET n = row.nodeProperties, o = row.ownsProperties, s = row.securityProperties");
+				buf.append(" RETURN n");
+
+				for (final Map<String, Object> nodeProperties : properties) {
+
+					final String newUuid          = (String)nodeProperties.get("id");
+					final Map<String, Object> row = new HashMap<>();
+
+					row.put("nodeProperties",     nodeProperties);
+					row.put("ownsProperties",     getOwnsProperties(user, newUuid));
+					row.put("securityProperties", getSecurityProperties(user, newUuid));
+
+					rows.add(row);
+				}
+
+				parameters.put("userId", user.getId());
+				parameters.put("rows",   rows);
+
+				final NativeResult result = graphDb.execute(buf.toString(), parameters);
+				while (result.hasNext()) {
+
+					nodes.add((Node)result.next().get("n"));
+				}
+
+			} else {
+
+				nodes.addAll(graphDb.createNodes(labels, properties));
+			}
+
+		} catch (DataFormatException dex) {
+			throw new FrameworkException(422, dex.getMessage());
+		} catch (ConstraintViolationException qex) {
+			throw new FrameworkException(422, qex.getMessage());
+		}
+
+		if (nodes.size() != properties.size()) {
+			throw new RuntimeException("Unable to create new nodes.");
+		}
+
+		return nodes;
+	}
+
+	private Map<String, Object> getOwnsProperties(final Principal user, final String newUuid) {
+
+		final Map<String, Object> ownsProperties = new HashMap<>();
+
+		// configure OWNS relationship
+		ownsProperties.put(GraphObject.id.dbName(),                getNextUuid());
+		ownsProperties.put(GraphObject.type.dbName(),              PrincipalOwnsNode.class.getSimpleName());
+		ownsProperties.put(AbstractRelationship.sourceId.dbName(), user.getUuid());
+		ownsProperties.put(AbstractRelationship.targetId.dbName(), newUuid);
+
+		return ownsProperties;
+	}
+
+	private Map<String, Object> getSecurityProperties(final Principal user, final String newUuid) {
+
+		final Map<String, Object> securityProperties = new HashMap<>();
+
+		// configure SECURITY relationship
+		securityProperties.put(Security.allowed.dbName(),              new String[] { Permission.read.name(), Permission.write.name(), Permission.delete.name(), Permission.accessControl.name() } );
+		securityProperties.put(GraphObject.id.dbName(),                getNextUuid());
+		securityProperties.put(GraphObject.type.dbName(),              Security.class.getSimpleName());
+		securityProperties.put(AbstractRelationship.sourceId.dbName(), user.getUuid());
+		securityProperties.put(AbstractRelationship.targetId.dbName(), newUuid);
+
+		return securityProperties;
+	}
+
 	private Class getTypeOrGeneric(final Object typeObject) {
 
 		if (typeObject != null) {
@@ -316,4 +503,16 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 
 		return defaultValue;
 	}
+
+	// ----- nested classes -----
+	private class NodeCreation {
+
+		private CreationContainer tmp  = null;
+		private PropertyMap properties = null;
+		private PropertyMap toNotify   = null;
+		private Set<String> labels     = null;
+		private Class nodeType         = null;
+		private String uuid            = null;
+		private T node                 = null;
+	}
 }
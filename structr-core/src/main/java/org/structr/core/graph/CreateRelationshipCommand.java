@@ -18,9 +18,17 @@
  */
 package org.structr.core.graph;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.DatabaseService;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
 import org.structr.common.error.FrameworkException;
@@ -39,7 +47,8 @@ import org.structr.core.property.PropertyMap;
  */
 public class CreateRelationshipCommand extends NodeServiceCommand {
 
-	private static final Logger logger = LoggerFactory.getLogger(CreateRelationshipCommand.class.getName());
+	private static final Logger logger  = LoggerFactory.getLogger(CreateRelationshipCommand.class.getName());
+	private static final int BATCH_SIZE = 1000;
 
 	public <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R execute(final A fromNode, final B toNode, final Class<R> relType) throws FrameworkException {
 		return createRelationship(fromNode, toNode, relType, null);
@@ -49,6 +58,23 @@ public class CreateRelationshipCommand extends NodeServiceCommand {
 		return createRelationship(fromNode, toNode, relType, properties);
 	}
 
+	/**
+	 * Creates one relationship of the given type for each of the given
+	 * specs, writing them in batches with a single database statement
+	 * per batch.
+	 *
+	 * @param <A>
+	 * @param <B>
+	 * @param <R>
+	 * @param relType
+	 * @param specs
+	 * @return the new relationships, in the order of the given specs
+	 * @throws FrameworkException
+	 */
+	public <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> List<R> execute(final Class<R> relType, final List<RelationshipSpec<A, B>> specs) throws FrameworkException {
+		return createRelationships(relType, specs);
+	}
+
 	private synchronized <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R createRelationship(final A fromNode, final B toNode, final Class<R> relType, final PropertyMap attributes) throws FrameworkException {
 
 		// disable updating access time when creating relationships
@@ -109,6 +135,145 @@ public class CreateRelationshipCommand extends NodeServiceCommand {
 		return newRel;
 	}
 
+	private synchronized <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> List<R> createRelationships(final Class<R> relType, final List<RelationshipSpec<A, B>> specs) throws FrameworkException {
+
+		final DatabaseService graphDb            = (DatabaseService) arguments.get("graphDb");
+		final RelationshipFactory<R> factory     = new RelationshipFactory(securityContext);
+		final List<RelationshipSpec<A, B>> batch = new ArrayList<>();
+		final List<Map<String, Object>> data     = new ArrayList<>();
+		final Set<String> pendingKeys            = new HashSet<>();
+		final List<R> result                     = new ArrayList<>();
+		final R template                         = instantiate(relType);
+		final Date now                           = new Date();
+		final Principal user                     = securityContext.getCachedUser();
+
+		if (graphDb == null) {
+			return result;
+		}
+
+		// disable updating access time when creating relationships
+		securityContext.disableModificationOfAccessTime();
+
+		for (final RelationshipSpec<A, B> spec : specs) {
+
+			final A fromNode              = spec.getSourceNode();
+			final B toNode                = spec.getTargetNode();
+			final CreationContainer tmp   = new CreationContainer();
+			final Map<String, Object> row = new HashMap<>();
+			final Set<String> keys        = getCardinalityKeys(template, fromNode, toNode);
+
+			// cardinality must be checked against the relationships of previous
+			// specs that involve the same nodes, so they are written first
+			if (!Collections.disjoint(pendingKeys, keys)) {
+
+				flush(graphDb, factory, template, relType, user, batch, data, result);
+				pendingKeys.clear();
+			}
+
+			template.ensureCardinality(securityContext, fromNode, toNode);
+
+			// date properties need converter
+			AbstractRelationship.createdDate.setProperty(securityContext, tmp, now);
+			AbstractRelationship.lastModifiedDate.setProperty(securityContext, tmp, now);
+
+			// set initial properties manually (caution, this can only be used for primitive properties!)
+			tmp.getData().put(GraphObject.id.jsonName(), getNextUuid());
+			tmp.getData().put(GraphObject.type.jsonName(), relType.getSimpleName());
+			tmp.getData().put(AbstractRelationship.relType.jsonName(), template.name());
+			tmp.getData().put(AbstractRelationship.sourceId.jsonName(), fromNode.getUuid());
+			tmp.getData().put(AbstractRelationship.targetId.jsonName(), toNode.getUuid());
+			tmp.getData().put(AbstractRelationship.visibleToPublicUsers.jsonName(), false);
+			tmp.getData().put(AbstractRelationship.visibleToAuthenticatedUsers.jsonName(), false);
+			tmp.getData().put(AbstractRelationship.cascadeDelete.jsonName(), template.getCascadingDeleteFlag());
+
+			if (user != null) {
+				tmp.getData().put(AbstractRelationship.createdBy.jsonName(), user.getUuid());
+			}
+
+			row.put("start",      fromNode.getNode().getId());
+			row.put("end",        toNode.getNode().getId());
+			row.put("properties", tmp.getData());
+
+			pendingKeys.addAll(keys);
+			batch.add(spec);
+			data.add(row);
+
+			if (batch.size() >= BATCH_SIZE) {
+
+				flush(graphDb, factory, template, relType, user, batch, data, result);
+				pendingKeys.clear();
+			}
+		}
+
+		flush(graphDb, factory, template, relType, user, batch, data, result);
+
+		// enable access time update again for subsequent calls
+		securityContext.enableModificationOfAccessTime();
+
+		return result;
+	}
+
+	private <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> void flush(final DatabaseService graphDb, final RelationshipFactory<R> factory, final R template, final Class<R> relType, final Principal user, final List<RelationshipSpec<A, B>> batch, final List<Map<String, Object>> data, final List<R> result) throws FrameworkException {
+
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		final List<Relationship> rels = graphDb.createRelationships(template, data);
+		final int count               = batch.size();
+
+		if (rels.size() != count) {
+			throw new RuntimeException("Unable to create new relationships.");
+		}
+
+		for (int i=0; i<count; i++) {
+
+			final R newRel = factory.instantiateWithType(rels.get(i), relType, null, true);
+			if (newRel != null) {
+
+				newRel.setProperties(securityContext, new PropertyMap(batch.get(i).getProperties()));
+
+				// notify transaction handler
+				TransactionCommand.relationshipCreated(user, newRel);
+
+				// notify relationship of its creation
+				newRel.onRelationshipCreation();
+
+				// iterate post creation transformations
+				for (Transformation<GraphObject> transformation : StructrApp.getConfiguration().getEntityCreationTransformations(newRel.getClass())) {
+
+					transformation.apply(securityContext, newRel);
+				}
+
+				result.add(newRel);
+			}
+		}
+
+		batch.clear();
+		data.clear();
+	}
+
+	/**
+	 * Returns the keys that identify the relationships whose existence
+	 * {@link Relation#ensureCardinality} depends on.
+	 */
+	private Set<String> getCardinalityKeys(final Relation template, final NodeInterface fromNode, final NodeInterface toNode) {
+
+		final Set<String> keys = new HashSet<>();
+
+		keys.add(fromNode.getUuid() + "->" + toNode.getUuid());
+
+		if (Relation.Multiplicity.One.equals(template.getSourceMultiplicity())) {
+			keys.add("->" + toNode.getUuid());
+		}
+
+		if (Relation.Multiplicity.One.equals(template.getTargetMultiplicity())) {
+			keys.add(fromNode.getUuid() + "->");
+		}
+
+		return keys;
+	}
+
 	private <T extends Relation> T instantiate(final Class<T> type) {
 
 		try {
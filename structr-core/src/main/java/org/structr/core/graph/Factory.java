@@ -19,16 +19,22 @@
 package org.structr.core.graph;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.NetworkException;
+import org.structr.api.DatabaseService;
 import org.structr.api.QueryResult;
+import org.structr.api.graph.Direction;
 import org.structr.api.graph.Relationship;
 import org.structr.common.FactoryDefinition;
 import org.structr.common.SecurityContext;
@@ -37,6 +43,9 @@ import org.structr.core.Adapter;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
 import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Relation;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.property.RelationProperty;
 import org.structr.schema.SchemaHelper;
 
 public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>, Function<S, T> {
@@ -192,6 +201,71 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 		this.disablePaging = true;
 	}
 
+	/**
+	 * Loads the relationships that are needed to resolve the relation
+	 * properties in the given set of keys for all given objects with one
+	 * database query per property, instead of one query per object.
+	 *
+	 * @param objects the objects whose relationships should be loaded
+	 * @param keys the property keys that will be read from the objects
+	 */
+	public static void prefetchRelationships(final Iterable<? extends GraphObject> objects, final Iterable<PropertyKey> keys) {
+
+		if (objects == null || keys == null) {
+			return;
+		}
+
+		final Map<Class, Set<Long>> nodeIdsByType = new HashMap<>();
+
+		for (final GraphObject obj : objects) {
+
+			if (obj instanceof NodeInterface) {
+
+				final Class type  = obj.getClass();
+				Set<Long> nodeIds = nodeIdsByType.get(type);
+
+				if (nodeIds == null) {
+
+					nodeIds = new LinkedHashSet<>();
+					nodeIdsByType.put(type, nodeIds);
+				}
+
+				nodeIds.add(((NodeInterface)obj).getNode().getId());
+			}
+		}
+
+		// a single object does not benefit from prefetching
+		if (nodeIdsByType.isEmpty() || (nodeIdsByType.size() == 1 && nodeIdsByType.values().iterator().next().size() == 1)) {
+			return;
+		}
+
+		final DatabaseService db = StructrApp.getInstance().getDatabaseService();
+
+		for (final PropertyKey key : keys) {
+
+			if (key instanceof RelationProperty) {
+
+				final RelationProperty relationProperty = (RelationProperty)key;
+				final Relation relation                 = relationProperty.getRelation();
+
+				if (relation != null) {
+
+					final Direction direction = "in".equals(relationProperty.getDirectionKey()) ? Direction.INCOMING : Direction.OUTGOING;
+					final Class declaringType = key.getDeclaringClass();
+
+					for (final Map.Entry<Class, Set<Long>> entry : nodeIdsByType.entrySet()) {
+
+						// only prefetch for types that actually have this property
+						if (declaringType == null || declaringType.isAssignableFrom(entry.getKey())) {
+
+							db.prefetchRelationships(entry.getValue(), direction, relation);
+						}
+					}
+				}
+			}
+		}
+	}
+
 	protected Class<T> getClassForName(final String rawType) {
 		return SchemaHelper.getEntityClassForRawType(rawType);
 	}
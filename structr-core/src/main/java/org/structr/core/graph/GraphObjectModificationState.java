@@ -28,8 +28,11 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import org.structr.api.config.Settings;
+import org.structr.api.graph.Relationship;
 import org.structr.api.graph.RelationshipType;
 import org.structr.common.AccessPathCache;
+import org.structr.common.PermissionPropagation;
+import org.structr.common.PermissionResolutionCache;
 import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.ErrorBuffer;
@@ -37,6 +40,7 @@ import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Principal;
+import org.structr.core.entity.Security;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 
@@ -69,6 +73,7 @@ public class GraphObjectModificationState implements ModificationEvent {
 	private String uuid                          = null;
 	private int status                           = 0;
 	private String callbackId                    = null;
+	private long[] permissionEndNodeIds          = null;
 
 	@Override
 	public String getCallbackId() {
@@ -93,7 +98,18 @@ public class GraphObjectModificationState implements ModificationEvent {
 		this.isNode = (object instanceof NodeInterface);
 
 		if (!isNode) {
-			this.relType = ((RelationshipInterface)object).getRelType();
+
+			final RelationshipInterface rel = (RelationshipInterface)object;
+
+			this.relType = rel.getRelType();
+
+			// remember end nodes of relationships that take part in permission resolution
+			if (rel instanceof Security || rel instanceof PermissionPropagation) {
+
+				final Relationship dbRelationship = rel.getRelationship();
+
+				this.permissionEndNodeIds = new long[] { dbRelationship.getStartNode().getId(), dbRelationship.getEndNode().getId() };
+			}
 		}
 
 		// store uuid for later use
@@ -246,6 +262,13 @@ public class GraphObjectModificationState implements ModificationEvent {
 		if (relType != null) {
 			AccessPathCache.invalidateForRelType(relType.name());
 		}
+
+		if (permissionEndNodeIds != null) {
+
+			for (final long id : permissionEndNodeIds) {
+				PermissionResolutionCache.invalidate(id);
+			}
+		}
 	}
 
 	public boolean isPassivelyDeleted() {
@@ -23,6 +23,8 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -55,6 +57,7 @@ public class ModificationQueue {
 	private final Collection<ModificationEvent> modificationEvents                          = new ArrayDeque<>(1000);
 	private final Map<String, TransactionPostProcess> postProcesses                         = new LinkedHashMap<>();
 	private final Set<String> alreadyPropagated                                             = new LinkedHashSet<>();
+	private final List<Runnable> afterCommitActions                                         = new LinkedList<>();
 	private final Set<String> synchronizationKeys                                           = new TreeSet<>();
 
 	/**
@@ -162,21 +165,16 @@ public class ModificationQueue {
 
 		if (Settings.ChangelogEnabled.getValue() && !modificationEvents.isEmpty()) {
 
+			final ChangelogStore store = ChangelogStore.getInstance();
+
 			for (final ModificationEvent ev: modificationEvents) {
 
 				if (!ev.isDeleted()) {
 
 					try {
-						final GraphObject obj = ev.getGraphObject();
-						if (obj != null) {
-
-							final String existingLog = obj.getProperty(GraphObject.structrChangeLog);
-							final String newLog      = ev.getChangeLog();
-							final String newValue    = existingLog != null ? existingLog + newLog : newLog;
 
-							obj.unlockSystemPropertiesOnce();
-							obj.setProperty(GraphObject.structrChangeLog, newValue);
-						}
+						// append only, the existing changelog is never read or rewritten
+						store.append(ev.getUuid(), ev.getChangeLog());
 
 					} catch (Throwable t) {
 						logger.warn("", t);
@@ -186,6 +184,27 @@ public class ModificationQueue {
 		}
 	}
 
+	/**
+	 * Runs the actions registered with {@link #afterCommit(Runnable)}, in
+	 * registration order. Failures are logged and do not affect the
+	 * (already committed) transaction.
+	 */
+	public void doAfterCommitActions() {
+
+		for (final Runnable action : afterCommitActions) {
+
+			try {
+
+				action.run();
+
+			} catch (Throwable t) {
+				logger.warn("", t);
+			}
+		}
+
+		afterCommitActions.clear();
+	}
+
 	public void clear() {
 
 		// clear collections afterwards
@@ -313,6 +332,10 @@ public class ModificationQueue {
 		}
 	}
 
+	public void afterCommit(final Runnable action) {
+		afterCommitActions.add(action);
+	}
+
 	public boolean isDeleted(final Node node) {
 
 		final GraphObjectModificationState state = modifications.get("N" + node.getId());
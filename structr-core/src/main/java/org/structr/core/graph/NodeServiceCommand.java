@@ -20,14 +20,31 @@ package org.structr.core.graph;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.DatabaseService;
 import org.structr.api.Predicate;
+import org.structr.api.RetryException;
+import org.structr.api.config.Settings;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.Relationship;
 import org.structr.api.service.Command;
+import org.structr.api.util.Iterables;
 import org.structr.common.Filter;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -44,6 +61,7 @@ public abstract class NodeServiceCommand extends Command {
 
 	private static final Logger logger                        = LoggerFactory.getLogger(NodeServiceCommand.class.getName());
 	private static final ArrayBlockingQueue<String> uuidQueue = new ArrayBlockingQueue<>(100000);
+	private static final int MAX_RETRIES                      = 5;
 
 	protected SecurityContext securityContext = null;
 	private Writable logWritable              = null;
@@ -136,6 +154,128 @@ public abstract class NodeServiceCommand extends Command {
 		return objectCount;
 	}
 
+	/**
+	 * Executes the given operation on all objects provided by the given
+	 * partitioner, using multiple threads.
+	 *
+	 * The ID space is split into partitions of the given size, which are
+	 * processed by a pool of worker threads, each partition in its own
+	 * transaction. Partitions whose transaction fails with a
+	 * {@link RetryException} (i.e. a deadlock) are retried, other
+	 * failures are reported and skipped like in the sequential version.
+	 * The progress is stored as a checkpoint in the global settings, so
+	 * that an interrupted operation resumes where it stopped when it is
+	 * run again. Since partitions are processed concurrently and not in ID
+	 * order, the operation must not depend on the order of the objects.
+	 *
+	 * @param <T>
+	 * @param securityContext
+	 * @param partitioner the partitioner that provides the objects to operate on
+	 * @param partitionSize the number of IDs per partition
+	 * @param description
+	 * @param operation the operation to execute
+	 * @return the number of objects processed
+	 */
+	public <T> long parallelBulkGraphOperation(final SecurityContext securityContext, final Partitioner<T> partitioner, final long partitionSize, final String description, final BulkGraphOperation<T> operation) {
+
+		final App app                 = StructrApp.getInstance(securityContext);
+		final String checkpointKey    = "bulk." + description + "." + partitioner.getName() + ".checkpoint";
+		final int threadCount         = Math.max(1, Settings.MaintenanceThreads.getValue(4));
+		final AtomicLong objectCount  = new AtomicLong();
+		final AtomicLong failureCount = new AtomicLong();
+		long maxId                    = -1L;
+
+		try (final Tx tx = app.tx()) {
+
+			maxId = partitioner.getMaxId();
+			tx.success();
+
+		} catch (Throwable t) {
+
+			operation.handleTransactionFailure(securityContext, t);
+			return 0L;
+		}
+
+		final long startId = getCheckpoint(app, checkpointKey);
+		if (startId > 0L) {
+
+			info("{}: resuming from checkpoint at ID {}", description, startId);
+		}
+
+		final Checkpoint checkpoint = new Checkpoint(startId, partitionSize, maxId);
+		final ExecutorService pool  = Executors.newFixedThreadPool(threadCount, new BulkThreadFactory(description));
+		final List<Future<?>> tasks = new LinkedList<>();
+		final long t0               = System.currentTimeMillis();
+		long lastCheckpoint         = startId;
+
+		for (int i=0; i<threadCount; i++) {
+
+			tasks.add(pool.submit(() -> {
+
+				long fromId = checkpoint.next();
+				while (fromId >= 0L) {
+
+					processPartition(securityContext, partitioner, fromId, fromId + partitionSize, operation, objectCount, failureCount);
+
+					checkpoint.done(fromId);
+
+					fromId = checkpoint.next();
+				}
+			}));
+		}
+
+		pool.shutdown();
+
+		try {
+
+			while (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+
+				final long watermark = checkpoint.getWatermark();
+				if (watermark > lastCheckpoint) {
+
+					setCheckpoint(app, checkpointKey, watermark);
+					lastCheckpoint = watermark;
+				}
+
+				logProgress(description, objectCount.get(), watermark, maxId, t0);
+			}
+
+		} catch (InterruptedException iex) {
+
+			checkpoint.abort();
+			pool.shutdownNow();
+		}
+
+		for (final Future<?> task : tasks) {
+
+			try {
+				task.get();
+
+			} catch (InterruptedException | ExecutionException ex) {
+				operation.handleTransactionFailure(securityContext, ex.getCause() != null ? ex.getCause() : ex);
+			}
+		}
+
+		if (checkpoint.isAborted()) {
+
+			setCheckpoint(app, checkpointKey, checkpoint.getWatermark());
+			warn("{}: interrupted at ID {}, run again to resume", description, checkpoint.getWatermark());
+
+		} else {
+
+			// remove checkpoint
+			setCheckpoint(app, checkpointKey, null);
+		}
+
+		if (failureCount.get() > 0L) {
+			warn("{}: {} partitions failed", description, failureCount.get());
+		}
+
+		logProgress(description, objectCount.get(), checkpoint.getWatermark(), maxId, t0);
+
+		return objectCount.get();
+	}
+
 	/**
 	 * Executes the given transaction until the stop condition evaluates to
 	 * <b>true</b>.
@@ -190,6 +330,74 @@ public abstract class NodeServiceCommand extends Command {
 		this.logWritable = writable;
 	}
 
+	/**
+	 * Creates a partitioner for all nodes with the given label and / or
+	 * the given value of the type property.
+	 *
+	 * @param graphDb
+	 * @param factory the factory that creates the entities
+	 * @param label the label, or null
+	 * @param type the type, or null
+	 * @param predicate an optional filter, or null
+	 * @return the partitioner
+	 */
+	public static <T> Partitioner<T> nodePartitioner(final DatabaseService graphDb, final Function<Node, T> factory, final String label, final String type, final Predicate<Node> predicate) {
+
+		return new Partitioner<T>() {
+
+			@Override
+			public String getName() {
+				return "nodes." + label + "." + type;
+			}
+
+			@Override
+			public long getMaxId() {
+				return graphDb.getMaxNodeId();
+			}
+
+			@Override
+			public Iterable<T> getObjects(final long fromId, final long toId) {
+
+				final Iterable<Node> nodes = graphDb.getNodesInRange(fromId, toId, label, type);
+
+				return Iterables.map(factory, predicate != null ? Iterables.filter(predicate, nodes) : nodes);
+			}
+		};
+	}
+
+	/**
+	 * Creates a partitioner for all relationships of the given type.
+	 *
+	 * @param graphDb
+	 * @param factory the factory that creates the entities
+	 * @param type the relationship type, or null
+	 * @param predicate an optional filter, or null
+	 * @return the partitioner
+	 */
+	public static <T> Partitioner<T> relationshipPartitioner(final DatabaseService graphDb, final Function<Relationship, T> factory, final String type, final Predicate<Relationship> predicate) {
+
+		return new Partitioner<T>() {
+
+			@Override
+			public String getName() {
+				return "rels." + type;
+			}
+
+			@Override
+			public long getMaxId() {
+				return graphDb.getMaxRelationshipId();
+			}
+
+			@Override
+			public Iterable<T> getObjects(final long fromId, final long toId) {
+
+				final Iterable<Relationship> rels = graphDb.getRelationshipsInRange(fromId, toId, type);
+
+				return Iterables.map(factory, predicate != null ? Iterables.filter(predicate, rels) : rels);
+			}
+		};
+	}
+
 	// ----- protected methods -----
 	protected void info(final String msg, final Object... data) {
 
@@ -232,6 +440,208 @@ public abstract class NodeServiceCommand extends Command {
 		}
 	}
 
+	// ----- private methods -----
+	private <T> void processPartition(final SecurityContext securityContext, final Partitioner<T> partitioner, final long fromId, final long toId, final BulkGraphOperation<T> operation, final AtomicLong objectCount, final AtomicLong failureCount) {
+
+		final Predicate<Long> condition = operation.getCondition();
+		final App app                   = StructrApp.getInstance(securityContext);
+		boolean retry                   = true;
+		int retries                     = 0;
+
+		while (retry) {
+
+			long count = 0L;
+
+			retry = false;
+
+			try (final Tx tx = app.tx(operation.doValidation(), operation.doCallbacks(), operation.doNotifications())) {
+
+				for (final T obj : partitioner.getObjects(fromId, toId)) {
+
+					if (condition != null && !condition.accept(objectCount.get() + count)) {
+						break;
+					}
+
+					try {
+
+						operation.handleGraphObject(securityContext, obj);
+
+					} catch (RetryException rex) {
+
+						// deadlock, retry the whole partition
+						throw rex;
+
+					} catch (Throwable t) {
+
+						operation.handleThrowable(securityContext, t, obj);
+					}
+
+					count++;
+				}
+
+				tx.success();
+
+			} catch (RetryException rex) {
+
+				if (++retries <= MAX_RETRIES) {
+
+					// back off to let the concurrent transaction finish
+					try { Thread.sleep(retries * 100L); } catch (InterruptedException ignore) {}
+
+					retry = true;
+
+				} else {
+
+					operation.handleTransactionFailure(securityContext, rex);
+					failureCount.incrementAndGet();
+				}
+
+				continue;
+
+			} catch (Throwable t) {
+
+				// bulk transaction failed, what to do?
+				operation.handleTransactionFailure(securityContext, t);
+				failureCount.incrementAndGet();
+
+				continue;
+			}
+
+			objectCount.addAndGet(count);
+		}
+	}
+
+	private void logProgress(final String description, final long objectCount, final long watermark, final long maxId, final long t0) {
+
+		if (description != null) {
+
+			final long duration = Math.max(1L, System.currentTimeMillis() - t0);
+			final long percent  = maxId > 0L ? Math.min(100L, (watermark * 100L) / (maxId + 1L)) : 100L;
+
+			info("{}: {} objects processed, {}% of ID space done, {} objects/s", description, objectCount, percent, (objectCount * 1000L) / duration);
+		}
+	}
+
+	private long getCheckpoint(final App app, final String key) {
+
+		try {
+
+			final Object value = app.getGlobalSetting(key, null);
+			if (value != null) {
+
+				return Long.valueOf(value.toString());
+			}
+
+		} catch (Throwable t) {
+			logger.warn("Unable to read checkpoint {}: {}", key, t.getMessage());
+		}
+
+		return 0L;
+	}
+
+	private void setCheckpoint(final App app, final String key, final Long value) {
+
+		try {
+
+			app.setGlobalSetting(key, value);
+
+		} catch (Throwable t) {
+			logger.warn("Unable to store checkpoint {}: {}", key, t.getMessage());
+		}
+	}
+
+	// ----- nested classes -----
+	/**
+	 * Provides the objects for {@link NodeServiceCommand#parallelBulkGraphOperation}
+	 * in partitions of the ID space.
+	 *
+	 * @param <T>
+	 */
+	public interface Partitioner<T> {
+
+		/**
+		 * Returns a name that identifies the set of objects this
+		 * partitioner provides, used as part of the checkpoint key.
+		 *
+		 * @return the name
+		 */
+		String getName();
+
+		long getMaxId();
+
+		Iterable<T> getObjects(final long fromId, final long toId);
+	}
+
+	/**
+	 * Hands out partitions in ID order and keeps track of the lowest ID
+	 * below which all partitions have been processed.
+	 */
+	private static class Checkpoint {
+
+		private final TreeSet<Long> pending = new TreeSet<>();
+		private boolean aborted             = false;
+		private long partitionSize          = 0L;
+		private long nextId                 = 0L;
+		private long maxId                  = 0L;
+
+		Checkpoint(final long startId, final long partitionSize, final long maxId) {
+
+			this.nextId        = startId;
+			this.partitionSize = Math.max(1L, partitionSize);
+			this.maxId         = maxId;
+		}
+
+		synchronized long next() {
+
+			if (aborted || nextId > maxId) {
+				return -1L;
+			}
+
+			final long fromId = nextId;
+
+			pending.add(fromId);
+			nextId += partitionSize;
+
+			return fromId;
+		}
+
+		synchronized void done(final long fromId) {
+			pending.remove(fromId);
+		}
+
+		synchronized void abort() {
+			aborted = true;
+		}
+
+		synchronized boolean isAborted() {
+			return aborted;
+		}
+
+		synchronized long getWatermark() {
+			return pending.isEmpty() ? nextId : pending.first();
+		}
+	}
+
+	private static class BulkThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadCount = new AtomicInteger();
+		private String name                     = null;
+
+		BulkThreadFactory(final String name) {
+			this.name = name != null ? name : "BulkGraphOperation";
+		}
+
+		@Override
+		public Thread newThread(final Runnable r) {
+
+			final Thread thread = new Thread(r, name + "Worker" + threadCount.incrementAndGet());
+
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+
 	// create uuid producer that fills the queue
 	static {
 
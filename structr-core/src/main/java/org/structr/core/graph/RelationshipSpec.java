@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import org.structr.core.property.PropertyMap;
+
+/**
+ * The source node, target node and initial properties of a relationship
+ * that is to be created in a bulk operation.
+ *
+ * @param <A>
+ * @param <B>
+ */
+public class RelationshipSpec<A extends NodeInterface, B extends NodeInterface> {
+
+	private PropertyMap properties = null;
+	private A sourceNode           = null;
+	private B targetNode           = null;
+
+	public RelationshipSpec(final A sourceNode, final B targetNode) {
+		this(sourceNode, targetNode, null);
+	}
+
+	public RelationshipSpec(final A sourceNode, final B targetNode, final PropertyMap properties) {
+
+		this.sourceNode = sourceNode;
+		this.targetNode = targetNode;
+		this.properties = properties;
+	}
+
+	public A getSourceNode() {
+		return sourceNode;
+	}
+
+	public B getTargetNode() {
+		return targetNode;
+	}
+
+	public PropertyMap getProperties() {
+		return properties;
+	}
+}
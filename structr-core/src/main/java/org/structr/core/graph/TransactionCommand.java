@@ -25,6 +25,8 @@ import java.util.Map;
 import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.ConstraintViolationException;
+import org.structr.api.DataFormatException;
 import org.structr.api.DatabaseService;
 import org.structr.api.NetworkException;
 import org.structr.api.NotInTransactionException;
@@ -133,6 +135,23 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 				throw new FrameworkException(422, "Unable to commit transaction, transaction post processing failed", errorBuffer);
 			}
 
+			// write buffered changes before the commit so that errors
+			// like constraint violations cause the transaction to fail
+			try {
+
+				tx.flush();
+
+			} catch (ConstraintViolationException | DataFormatException ex) {
+
+				tx.failure();
+				throw new FrameworkException(422, ex.getMessage());
+
+			} catch (RuntimeException rex) {
+
+				tx.failure();
+				throw rex;
+			}
+
 			try {
 				tx.success();
 
@@ -236,6 +255,30 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 
 	}
 
+	/**
+	 * Registers an action that is run after the current top-level transaction
+	 * has been committed successfully. The action is discarded if the
+	 * transaction is rolled back, and run immediately if there is no
+	 * transaction.
+	 *
+	 * @param action
+	 */
+	public static void afterCommit(final Runnable action) {
+
+		final TransactionCommand command = currentCommand.get();
+		if (command != null) {
+
+			final ModificationQueue modificationQueue = command.getModificationQueue();
+			if (modificationQueue != null) {
+
+				modificationQueue.afterCommit(action);
+				return;
+			}
+		}
+
+		action.run();
+	}
+
 	public static void nodeCreated(final Principal user, final NodeInterface node) {
 
 		TransactionCommand command = currentCommand.get();
@@ -34,6 +34,7 @@ import org.structr.core.app.StructrApp;
 public class Tx implements AutoCloseable {
 
 	private final AtomicBoolean guard       = new AtomicBoolean(false);
+	private ModificationQueue callbackQueue = null;
 	private SecurityContext securityContext = null;
 	private boolean success                 = false;
 	private boolean doValidation            = true;
@@ -78,40 +79,64 @@ public class Tx implements AutoCloseable {
 
 		if (success && guard.compareAndSet(false, true)) {
 
-			boolean retry  = true;
-			while (retry) {
+			try {
 
-				retry = false;
+				boolean retry  = true;
+				while (retry) {
 
-				// experimental
-				try (final Tx tx = begin()) {
+					retry = false;
 
-					if (doCallbacks && modificationQueue != null) {
+					// begin() returns this object, so success is set again by the callback transaction
+					success = false;
 
-						modificationQueue.doOuterCallbacks(securityContext);
+					// experimental
+					try (final Tx tx = begin()) {
 
-						// notify listeners if desired, and allow this setting to be overriden locally AND remotely
-						if ( (securityContext == null) ? doNotifications : doNotifications && securityContext.doTransactionNotifications() ) {
+						if (doCallbacks && modificationQueue != null) {
 
-							final Collection<ModificationEvent> modificationEvents = modificationQueue.getModificationEvents();
-							for (final StructrTransactionListener listener : TransactionCommand.getTransactionListeners()) {
+							modificationQueue.doOuterCallbacks(securityContext);
 
-								listener.afterCommit(securityContext, modificationEvents, cmd.getSource());
+							// notify listeners if desired, and allow this setting to be overriden locally AND remotely
+							if ( (securityContext == null) ? doNotifications : doNotifications && securityContext.doTransactionNotifications() ) {
+
+								final Collection<ModificationEvent> modificationEvents = modificationQueue.getModificationEvents();
+								for (final StructrTransactionListener listener : TransactionCommand.getTransactionListeners()) {
+
+									listener.afterCommit(securityContext, modificationEvents, cmd.getSource());
+								}
 							}
+
+							modificationQueue.updateChangelog();
+							modificationQueue.clear();
 						}
 
-						modificationQueue.updateChangelog();
-						modificationQueue.clear();
+						tx.success();
+
+					} catch (RetryException rex) {
+						retry = true;
 					}
+				}
 
-					tx.success();
+			} finally {
 
-				} catch (RetryException rex) {
-					retry = true;
+				if (modificationQueue != null) {
+					modificationQueue.doAfterCommitActions();
 				}
+
+				// actions registered by the callbacks
+				if (callbackQueue != null) {
+
+					callbackQueue.doAfterCommitActions();
+					callbackQueue = null;
+				}
+
+				guard.set(false);
 			}
 
-			guard.set(false);
+		} else if (success && modificationQueue != null) {
+
+			// close() of the callback transaction above
+			callbackQueue = modificationQueue;
 		}
 	}
 
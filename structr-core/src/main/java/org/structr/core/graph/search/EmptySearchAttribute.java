@@ -18,18 +18,38 @@
  */
 package org.structr.core.graph.search;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
+import org.structr.api.graph.Direction;
 import org.structr.api.search.EmptyQuery;
+import org.structr.api.search.GraphQuery;
 import org.structr.api.search.Occurrence;
 import org.structr.core.GraphObject;
+import org.structr.core.entity.Relation;
+import org.structr.core.property.BooleanProperty;
+import org.structr.core.property.DateProperty;
+import org.structr.core.property.DoubleProperty;
+import org.structr.core.property.EnumProperty;
+import org.structr.core.property.IntProperty;
+import org.structr.core.property.LongProperty;
+import org.structr.core.property.LowercaseStringProperty;
 import org.structr.core.property.PropertyKey;
+import org.structr.core.property.RelationProperty;
+import org.structr.core.property.StringProperty;
 
 /**
  *
  *
  */
-public class EmptySearchAttribute<T> extends PropertySearchAttribute<T> {
+public class EmptySearchAttribute<T> extends PropertySearchAttribute<T> implements GraphQuery {
+
+	private static final Set<Class> StoredPropertyTypes = new HashSet<>(Arrays.asList(new Class[] {
+		StringProperty.class, LowercaseStringProperty.class, IntProperty.class, LongProperty.class,
+		DoubleProperty.class, BooleanProperty.class, DateProperty.class, EnumProperty.class
+	}));
 
 	public EmptySearchAttribute(PropertyKey<T> key, T value) {
 		super(key, value, Occurrence.REQUIRED, true);
@@ -42,9 +62,64 @@ public class EmptySearchAttribute<T> extends PropertySearchAttribute<T> {
 
 	@Override
 	public Class getQueryType() {
+
+		if (isGraphQuery()) {
+			return GraphQuery.class;
+		}
+
 		return EmptyQuery.class;
 	}
 
+	/**
+	 * Indicates whether this attribute is evaluated completely by the
+	 * database query, so that the result doesn't need to be filtered.
+	 *
+	 * @return whether the database query is sufficient
+	 */
+	public boolean isEvaluatedInDatabase() {
+
+		final PropertyKey key = getKey();
+
+		// relationship-based properties are resolved with a graph pattern,
+		// other properties only if their value is stored as it is (computed
+		// properties or subclasses with custom getters need to be filtered)
+		return isGraphQuery() || (key != null && !key.isCollection() && StoredPropertyTypes.contains(key.getClass()));
+	}
+
+	// ----- interface GraphQuery -----
+	@Override
+	public String getRelationshipType() {
+		return getRelation().name();
+	}
+
+	@Override
+	public Direction getDirection() {
+		return isOutgoing() ? Direction.OUTGOING : Direction.INCOMING;
+	}
+
+	@Override
+	public String getOtherLabel() {
+
+		final Relation relation = getRelation();
+		final Class otherType   = isOutgoing() ? relation.getTargetType() : relation.getSourceType();
+
+		if (otherType != null) {
+			return otherType.getSimpleName();
+		}
+
+		return null;
+	}
+
+	@Override
+	public boolean isEmptyQuery() {
+		return true;
+	}
+
+	// ----- protected methods -----
+	protected boolean isGraphQuery() {
+		return getKey() instanceof RelationProperty && getRelation() != null;
+	}
+
 	@Override
 	public boolean includeInResult(GraphObject entity) {
 
@@ -79,6 +154,15 @@ public class EmptySearchAttribute<T> extends PropertySearchAttribute<T> {
 		return true;
 	}
 
+	// ----- private methods -----
+	private Relation getRelation() {
+		return ((RelationProperty)getKey()).getRelation();
+	}
+
+	private boolean isOutgoing() {
+		return !"in".equals(((RelationProperty)getKey()).getDirectionKey());
+	}
+
 	private boolean equal(T nodeValue, T searchValue) {
 
 		// easy, both values are null => equal
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph.search;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.structr.api.search.IdQuery;
+import org.structr.api.search.Occurrence;
+import org.structr.core.GraphObject;
+
+/**
+ * Represents an attribute that restricts the result to a set of objects
+ * that is already known, e.g. the result of a {@link SourceSearchAttribute}.
+ */
+public class IdSearchAttribute<T> extends SearchAttribute<T> implements IdQuery {
+
+	private final Set<Long> ids = new LinkedHashSet<>();
+
+	public IdSearchAttribute(final Collection<? extends GraphObject> objects, final Occurrence occur) {
+
+		super(occur);
+
+		for (final GraphObject obj : objects) {
+			ids.add(obj.getId());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "IdSearchAttribute(" + ids.size() + " IDs)";
+	}
+
+	@Override
+	public Class getQueryType() {
+		return IdQuery.class;
+	}
+
+	@Override
+	public boolean isExactMatch() {
+		return true;
+	}
+
+	@Override
+	public boolean includeInResult(final GraphObject entity) {
+
+		final boolean contained = ids.contains(entity.getId());
+
+		if (Occurrence.FORBIDDEN.equals(getOccurrence())) {
+			return !contained;
+		}
+
+		return contained;
+	}
+
+	// ----- interface IdQuery -----
+	@Override
+	public Collection<Long> getIds() {
+		return ids;
+	}
+}
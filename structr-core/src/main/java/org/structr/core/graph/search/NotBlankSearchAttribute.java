@@ -18,6 +18,7 @@
  */
 package org.structr.core.graph.search;
 
+import org.structr.api.search.GraphQuery;
 import org.structr.api.search.NotEmptyQuery;
 import org.structr.api.search.Occurrence;
 import org.structr.core.GraphObject;
@@ -40,9 +41,19 @@ public class NotBlankSearchAttribute<T> extends EmptySearchAttribute<T> {
 
 	@Override
 	public Class getQueryType() {
+
+		if (isGraphQuery()) {
+			return GraphQuery.class;
+		}
+
 		return NotEmptyQuery.class;
 	}
 
+	@Override
+	public boolean isEmptyQuery() {
+		return false;
+	}
+
 	@Override
 	public boolean includeInResult(GraphObject entity) {
 
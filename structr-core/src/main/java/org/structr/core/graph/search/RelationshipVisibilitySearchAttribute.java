@@ -18,12 +18,22 @@
  */
 package org.structr.core.graph.search;
 
+import org.structr.api.search.Occurrence;
 import org.structr.api.search.RelationshipQuery;
 import org.structr.core.GraphObject;
 import org.structr.core.entity.AbstractRelationship;
 
 public class RelationshipVisibilitySearchAttribute<T> extends SearchAttribute<T> {
 
+	public RelationshipVisibilitySearchAttribute() {
+		super(Occurrence.REQUIRED);
+	}
+
+	@Override
+	public String getName() {
+		return GraphObject.visibleToPublicUsers.dbName();
+	}
+
 	@Override
 	public boolean includeInResult(GraphObject entity) {
 		return ((AbstractRelationship)entity).getSourceNode() != null && ((AbstractRelationship)entity).getTargetNode() != null;
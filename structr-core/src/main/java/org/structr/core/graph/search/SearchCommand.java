@@ -21,11 +21,11 @@ package org.structr.core.graph.search;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.Predicate;
@@ -52,6 +52,7 @@ import org.structr.core.property.AbstractPrimitiveProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 import org.structr.schema.ConfigurationProvider;
+import org.structr.schema.SchemaSnapshot;
 
 /**
  *
@@ -64,8 +65,8 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 	protected static final boolean INCLUDE_DELETED_AND_HIDDEN = true;
 	protected static final boolean PUBLIC_ONLY		  = false;
 
-	private static final Map<String, Set<String>> subtypeMapForType = new LinkedHashMap<>();
 	private static final Set<String> baseTypes                      = new LinkedHashSet<>();
+	private static volatile SubtypeCache subtypeCache               = new SubtypeCache(-1L);
 
 	public static final String LAT_LON_SEARCH_KEYWORD     = "latlon";
 	public static final String LOCATION_SEARCH_KEYWORD    = "location";
@@ -109,7 +110,6 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 
 		final Factory<S, T> factory  = getFactory(securityContext, includeDeletedAndHidden, publicOnly, pageSize, page);
 		boolean hasGraphSources      = false;
-		boolean hasSpatialSource     = false;
 
 		if (securityContext.getUser(false) == null && !isRelationshipSearch()) {
 
@@ -131,7 +131,6 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		// At this point, all search attributes are ready
 		final List<SourceSearchAttribute> sources    = new ArrayList<>();
 		boolean hasEmptySearchFields                 = false;
-		boolean hasRelationshipVisibilitySearch      = false;
 		Result intermediateResult                    = null;
 
 		// check for optional-only queries
@@ -157,7 +156,7 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 
 					}
 
-					if (item instanceof EmptySearchAttribute) {
+					if (item instanceof EmptySearchAttribute && !((EmptySearchAttribute)item).isEvaluatedInDatabase()) {
 						hasEmptySearchFields = true;
 					}
 				}
@@ -175,8 +174,6 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 						distanceSearch.setCoords(coords.toArray());
 					}
 				}
-
-				hasSpatialSource = true;
 			}
 
 			// store source attributes for later use
@@ -187,72 +184,48 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 				hasGraphSources = true;
 			}
 
-			if (attr instanceof EmptySearchAttribute) {
+			if (attr instanceof EmptySearchAttribute && !((EmptySearchAttribute)attr).isEvaluatedInDatabase()) {
 				hasEmptySearchFields = true;
 			}
-
-			if (attr instanceof RelationshipVisibilitySearchAttribute) {
-				hasRelationshipVisibilitySearch = true;
-			}
 		}
 
-		// only do "normal" query if no other sources are present
-		// use filters to filter sources otherwise
-		if (!hasSpatialSource && !sources.isEmpty()) {
-
-			intermediateResult = new Result(new ArrayList<>(), null, false, false);
+		// The results of graph sources are already known at this point, so
+		// we restrict the database query to their IDs. This lets the database
+		// do the filtering, sorting and paging for all other predicates.
+		if (hasGraphSources) {
 
-		} else {
-
-			// apply sorting
-			if (sortKey != null && !doNotSort) {
+			rootGroup.add(new IdSearchAttribute(mergeSources(sources), Occurrence.REQUIRED));
+		}
 
-				rootGroup.setSortKey(sortKey);
-				rootGroup.sortDescending(sortDescending);
-			}
+		// apply sorting
+		if (sortKey != null && !doNotSort) {
 
-			final Index<S> index = getIndex();
-			if (index != null) {
+			rootGroup.setSortKey(sortKey);
+			rootGroup.sortDescending(sortDescending);
+		}
 
-				// paging needs to be done AFTER instantiating all nodes
-				if (hasEmptySearchFields) {
-					factory.disablePaging();
-				}
+		final Index<S> index = getIndex();
+		if (index != null) {
 
-				// do query
-				final QueryResult hits = getIndex().query(rootGroup);
-				intermediateResult     = factory.instantiate(hits);
+			// paging needs to be done AFTER instantiating all nodes
+			if (hasEmptySearchFields) {
+				factory.disablePaging();
 			}
+
+			// do query
+			final QueryResult hits = getIndex().query(rootGroup);
+			intermediateResult     = factory.instantiate(hits);
 		}
 
-		if (intermediateResult != null && (hasEmptySearchFields || hasGraphSources || hasSpatialSource || hasRelationshipVisibilitySearch)) {
+		if (intermediateResult != null && hasEmptySearchFields) {
 
 			// sorted result set
 			final Set<GraphObject> intermediateResultSet = new LinkedHashSet<>(intermediateResult.getResults());
 			final List<GraphObject> finalResult          = new ArrayList<>();
 			int resultCount                              = 0;
 
-			// We need to find out whether there was a source for any of the possible sets that we want to merge.
-			// If there was only a single source, the final result is the result of that source. If there are
-			// multiple sources, the result is the intersection of all the sources, depending on the occur flag.
-
-			if (hasGraphSources) {
-
-				// merge sources according to their occur flag
-				final Set<GraphObject> mergedSources = mergeSources(sources);
-
-				if (hasSpatialSource) {
-
-					// CHM 2014-02-24: preserve sorting of intermediate result, might be sorted by distance which we cannot reproduce easily
-					intermediateResultSet.retainAll(mergedSources);
-
-				} else {
-
-					intermediateResultSet.addAll(mergedSources);
-				}
-			}
-
-			// Filter intermediate result
+			// Filter intermediate result, needed for blank values
+			// of properties that are not stored in the database
 			for (final GraphObject obj : intermediateResultSet) {
 
 				boolean addToResult = true;
@@ -714,23 +687,31 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 	}
 
 	// ----- static methods -----
-	public static synchronized void clearInheritanceMap() {
-		subtypeMapForType.clear();
+	public static void clearInheritanceMap() {
+		subtypeCache = new SubtypeCache(-1L);
 	}
 
-	public static synchronized Set<String> getAllSubtypesAsStringSet(final String type) {
+	public static Set<String> getAllSubtypesAsStringSet(final String type) {
+
+		final SchemaSnapshot schema = StructrApp.getConfiguration().getSchemaSnapshot();
+		SubtypeCache cache          = subtypeCache;
+
+		// start over when the schema has changed
+		if (cache.version != schema.getVersion()) {
 
-		Set<String> allSubtypes = subtypeMapForType.get(type);
+			cache        = new SubtypeCache(schema.getVersion());
+			subtypeCache = cache;
+		}
+
+		Set<String> allSubtypes = cache.subtypes.get(type);
 		if (allSubtypes == null) {
 
 			logger.debug("Subtype map cache miss.");
 
 			allSubtypes = new LinkedHashSet<>();
-			subtypeMapForType.put(type, allSubtypes);
 
-			final ConfigurationProvider configuration                             = StructrApp.getConfiguration();
-			final Map<String, Class<? extends NodeInterface>> nodeEntities        = configuration.getNodeEntities();
-			final Map<String, Class<? extends RelationshipInterface>> relEntities = configuration.getRelationshipEntities();
+			final Map<String, Class<? extends NodeInterface>> nodeEntities        = schema.getNodeEntities();
+			final Map<String, Class<? extends RelationshipInterface>> relEntities = schema.getRelationshipEntities();
 
 			// add type first (this is neccesary because two class objects of the same dynamic type node are not equal
 			// to each other and not assignable, if the schema node was modified in the meantime)
@@ -772,12 +753,16 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 				}
 			}
 
+			allSubtypes = Collections.unmodifiableSet(allSubtypes);
+
+			cache.subtypes.put(type, allSubtypes);
+
 		} else {
 
 			logger.debug("Subtype map cache hit.");
 		}
 
-		return Collections.unmodifiableSet(allSubtypes);
+		return allSubtypes;
 	}
 
 	public static boolean isTypeAssignableFromOtherType (Class type, Class otherType) {
@@ -872,5 +857,13 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		}
 	}
 
+	private static class SubtypeCache {
 
+		private final Map<String, Set<String>> subtypes = new ConcurrentHashMap<>();
+		private long version                            = -1L;
+
+		SubtypeCache(final long version) {
+			this.version = version;
+		}
+	}
 }
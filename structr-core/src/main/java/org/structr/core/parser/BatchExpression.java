@@ -39,7 +39,6 @@ public class BatchExpression extends Expression {
 	private Expression batchExpression = null;
 	private Expression sizeExpression  = null;
 	private boolean background         = false;
-	private int batchSize              = -1;
 
 	public BatchExpression() {
 		super("batch");
@@ -75,8 +74,12 @@ public class BatchExpression extends Expression {
 		final Object value = sizeExpression.evaluate(ctx, entity);
 		if (value != null && value instanceof Number) {
 
+			final boolean wasBatched = ctx.isBatched();
+			final int oldBatchSize   = ctx.getBatchSize();
+
 			// store batch size for children to use
-			this.batchSize = ((Number)value).intValue();
+			ctx.setBatchSize(((Number)value).intValue());
+			ctx.setBatched(true);
 
 			// initialize holders to store results from worker thread (must be final)
 			final StaticValue<FrameworkException> exception = new StaticValue<>(null);
@@ -97,6 +100,10 @@ public class BatchExpression extends Expression {
 
 			try { workerThread.join(); } catch (Throwable t) { t.printStackTrace(); }
 
+			// restore batch settings of enclosing expression
+			ctx.setBatchSize(oldBatchSize);
+			ctx.setBatched(wasBatched);
+
 			if (exception.get(null) != null) {
 				throw exception.get(null);
 			}
@@ -119,9 +126,4 @@ public class BatchExpression extends Expression {
 	public boolean isBatched() {
 		return true;
 	}
-
-	@Override
-	public int getBatchSize() {
-		return batchSize;
-	}
 }
@@ -26,8 +26,11 @@ import org.structr.core.GraphObject;
 import org.structr.schema.action.ActionContext;
 
 /**
+ * Base class for the nodes of a parsed StructrScript expression.
  *
- *
+ * Parsed expressions are cached and evaluated concurrently, so they
+ * must not be modified after parsing. Evaluation state belongs into
+ * the {@link ActionContext}.
  */
 public abstract class Expression {
 
@@ -85,15 +88,6 @@ public abstract class Expression {
 		return parent != null && parent.isBatched();
 	}
 
-	public int getBatchSize() {
-
-		if (parent != null) {
-			return parent.getBatchSize();
-		}
-
-		return -1;
-	}
-
 	public abstract Object evaluate(final ActionContext ctx, final GraphObject entity) throws FrameworkException, UnlicensedException;
 	public abstract Object transform(final ActionContext ctx, final GraphObject entity, final Object source) throws FrameworkException, UnlicensedException;
 }
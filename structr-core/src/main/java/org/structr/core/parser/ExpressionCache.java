@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.structr.api.config.Settings;
+import org.structr.api.util.ConcurrentFixedSizeCache;
+
+/**
+ * Bounded, thread-safe cache for parsed StructrScript expressions,
+ * keyed by source text.
+ */
+public class ExpressionCache {
+
+	private static final ConcurrentFixedSizeCache<String, Expression> cache = new ConcurrentFixedSizeCache<>(Math.max(1, Settings.ExpressionCacheSize.getValue()));
+	private static final AtomicLong misses                                  = new AtomicLong();
+	private static final AtomicLong hits                                    = new AtomicLong();
+
+	public static Expression get(final String source) {
+
+		final Expression expression = cache.get(source);
+		if (expression != null) {
+
+			hits.incrementAndGet();
+
+		} else {
+
+			misses.incrementAndGet();
+		}
+
+		return expression;
+	}
+
+	/**
+	 * Stores the given expression if no expression is cached for the given
+	 * source yet, and returns the expression that should be used.
+	 *
+	 * @param source
+	 * @param expression
+	 * @return the cached or the given expression
+	 */
+	public static Expression putIfAbsent(final String source, final Expression expression) {
+		return cache.putIfAbsent(source, expression);
+	}
+
+	public static void clear() {
+		cache.clear();
+	}
+
+	public static int getSize() {
+		return cache.size();
+	}
+
+	public static long getHitCount() {
+		return hits.get();
+	}
+
+	public static long getMissCount() {
+		return misses.get();
+	}
+}
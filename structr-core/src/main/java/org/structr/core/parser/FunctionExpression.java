@@ -74,11 +74,8 @@ public class FunctionExpression extends Expression {
 
 		if (function instanceof BatchableFunction) {
 
-			// enable batching if batchable function is found
-			((BatchableFunction)function).setBatchSize(getBatchSize());
-			((BatchableFunction)function).setBatched(isBatched());
-
-			// batchable functions must create their own transaction when in batched mode
+			// batchable functions must create their own transaction when in batched mode,
+			// the batch settings are available in the action context
 			return function.apply(ctx, entity, results.toArray());
 
 		} else if (isBatched()) {
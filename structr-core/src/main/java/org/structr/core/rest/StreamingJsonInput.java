@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.rest;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.structr.core.JsonInput;
+
+/**
+ * Reads property sets from a JSON stream one at a time, so that large
+ * arrays of objects can be processed without holding the whole input
+ * in memory.
+ *
+ * The input is interpreted like {@link JsonInputGSONAdapter} does: a
+ * single object yields one property set, an array yields one property
+ * set per element, and an empty input yields a single empty property set.
+ */
+public class StreamingJsonInput implements Iterator<JsonInput> {
+
+	private final JsonParser parser = new JsonParser();
+	private JsonReader reader       = null;
+	private boolean initialized     = false;
+	private boolean array           = false;
+	private boolean empty           = false;
+	private boolean done            = false;
+
+	public StreamingJsonInput(final Reader input) {
+
+		this.reader = new JsonReader(input);
+
+		// Gson parses leniently by default
+		reader.setLenient(true);
+	}
+
+	@Override
+	public boolean hasNext() {
+
+		try {
+
+			initialize();
+
+			if (done) {
+				return false;
+			}
+
+			if (empty) {
+				return true;
+			}
+
+			if (array) {
+
+				if (reader.hasNext()) {
+					return true;
+				}
+
+				reader.endArray();
+				done = true;
+
+				return false;
+			}
+
+			return reader.peek() == JsonToken.BEGIN_OBJECT;
+
+		} catch (IOException ioex) {
+			throw wrap(ioex);
+		}
+	}
+
+	@Override
+	public JsonInput next() {
+
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		if (empty) {
+
+			done = true;
+
+			return new JsonInput();
+		}
+
+		final JsonInput input = JsonInputGSONAdapter.deserialize(parser.parse(reader), null);
+
+		if (!array) {
+			done = true;
+		}
+
+		return input;
+	}
+
+	// ----- private methods -----
+	private void initialize() throws IOException {
+
+		if (initialized) {
+			return;
+		}
+
+		initialized = true;
+
+		final JsonToken token;
+
+		try {
+
+			token = reader.peek();
+
+		} catch (EOFException eof) {
+
+			empty = true;
+			return;
+		}
+
+		switch (token) {
+
+			case BEGIN_ARRAY:
+				reader.beginArray();
+				array = true;
+				break;
+
+			case BEGIN_OBJECT:
+				break;
+
+			case NULL:
+				done = true;
+				break;
+
+			default:
+				throw new JsonSyntaxException("Invalid JSON, expecting object or array");
+		}
+	}
+
+	private RuntimeException wrap(final IOException ioex) {
+
+		if (ioex instanceof MalformedJsonException || ioex instanceof EOFException) {
+			return new JsonSyntaxException(ioex);
+		}
+
+		return new JsonIOException(ioex);
+	}
+}
@@ -18,6 +18,7 @@
  */
 package org.structr.core.scheduler;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -25,23 +26,41 @@ import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.error.FrameworkException;
 
+/**
+ * Manages the execution of scheduled jobs.
+ *
+ * Jobs are assigned to lanes by their job type, and each lane has its own
+ * limit for the number of jobs that can be active (running or paused) at
+ * the same time, so that a long-running import does not block jobs of a
+ * different type. Within a lane, queued jobs with a higher priority are
+ * started first. Among jobs with the same priority, users with fewer
+ * active jobs in the lane, and then users who were served longest ago, are
+ * preferred, and the jobs of a single user are started in queue order.
+ */
 public class JobQueueManager {
 
+	private static final Logger logger               = LoggerFactory.getLogger(JobQueueManager.class.getName());
 	private static JobQueueManager singletonInstance = null;
 
 	private final Map<Long, ScheduledJob> queuedJobs  = new ConcurrentHashMap<>();
 	private final Map<Long, ScheduledJob> activeJobs  = new ConcurrentHashMap<>();
+	private final Map<String, Long> lastServedUsers   = new HashMap<>();
 	private final Queue<Long> jobIdQueue              = new ConcurrentLinkedDeque<>();
 	private final AtomicLong importJobIdCount         = new AtomicLong(0);
+	private long startCount                           = 0L;
 
 	private JobQueueManager() { }
 
 	/*
 	 * Public API
 	 */
-	public static JobQueueManager getInstance() {
+	public static synchronized JobQueueManager getInstance() {
 
 		if (singletonInstance == null) {
 			singletonInstance = new JobQueueManager();
@@ -57,16 +76,15 @@ public class JobQueueManager {
 			final Long jobId = importJobIdCount.incrementAndGet();
 			job.setJobId(jobId);
 
-			appendToQueueInternal(job);
-
-			if (!hasRunningJobs()) {
+			synchronized (this) {
 
-				startNextJobInQueue();
+				appendToQueueInternal(job);
+				startNextJobsInQueue();
+			}
 
-			} else {
+			if (queuedJobs.containsKey(jobId)) {
 
 				job.reportQueued();
-
 			}
 		}
 	}
@@ -77,12 +95,13 @@ public class JobQueueManager {
 	 * @param jobId Job to start
 	 * @return boolean "job started"
 	 */
-	public boolean startJob(final Long jobId) {
+	public synchronized boolean startJob(final Long jobId) {
 
 		final ScheduledJob job = removeFromQueueInternal(jobId);
 
 		if (job != null) {
 			activeJobs.put(jobId, job);
+			lastServedUsers.put(job.getUsername(), ++startCount);
 			job.startJob();
 			return true;
 		} else {
@@ -115,34 +134,38 @@ public class JobQueueManager {
 		});
 
 		jobIdQueue.forEach((Long jobId) -> {
-			addJobToList(jobInfoList, queuedJobs.get(jobId));
+
+			final ScheduledJob job = queuedJobs.get(jobId);
+			if (job != null) {
+
+				addJobToList(jobInfoList, job);
+			}
 		});
 
 		return jobInfoList;
 	}
 
 	private void addJobToList (final List<Map<String, Object>> list, final ScheduledJob job) {
-		list.add(job.getJobInfo());
+
+		final Map<String, Object> jobInfo = job.getJobInfo();
+
+		jobInfo.putAll(job.getMetrics());
+
+		list.add(jobInfo);
 	}
 
-	protected void jobFinished (final ScheduledJob job) {
+	protected synchronized void jobFinished (final ScheduledJob job) {
 
 		activeJobs.remove(job.jobId());
 
-		if (!hasRunningJobs()) {
-			startNextJobInQueue();
-		}
-
+		startNextJobsInQueue();
 	}
 
-	protected void jobAborted (final ScheduledJob job) {
+	protected synchronized void jobAborted (final ScheduledJob job) {
 
 		activeJobs.remove(job.jobId());
 
-		if (!hasRunningJobs()) {
-			startNextJobInQueue();
-		}
-
+		startNextJobsInQueue();
 	}
 
 
@@ -158,35 +181,107 @@ public class JobQueueManager {
 		return queuedJobs.remove(jobId);
 	}
 
-	private boolean hasRunningJobs() {
+	/**
+	 * Starts queued jobs until all lanes with queued jobs are at their
+	 * concurrency limit. Jobs that are RUNNING or PAUSED count against
+	 * the limit of their lane.
+	 */
+	private void startNextJobsInQueue() {
+
+		final Map<String, Integer> laneLimits = getLaneLimits();
+		ScheduledJob next                     = selectNextJob(laneLimits);
+
+		while (next != null) {
+
+			startJob(next.jobId());
+
+			next = selectNextJob(laneLimits);
+		}
+	}
+
+	private ScheduledJob selectNextJob(final Map<String, Integer> laneLimits) {
+
+		final Map<String, Integer> activeJobsPerLane = new HashMap<>();
+		final Map<String, Integer> activeJobsPerUser = new HashMap<>();
+		ScheduledJob next                            = null;
+
+		for (final ScheduledJob job : activeJobs.values()) {
+
+			activeJobsPerLane.merge(job.getLane(), 1, Integer::sum);
+			activeJobsPerUser.merge(userKey(job), 1, Integer::sum);
+		}
+
+		// queue order is the order of submission
+		for (final Long jobId : jobIdQueue) {
+
+			final ScheduledJob job = queuedJobs.get(jobId);
+			if (job != null) {
+
+				final String lane = job.getLane();
+				final int limit   = laneLimits.getOrDefault(lane, Settings.JobConcurrency.getValue(1));
+
+				if (activeJobsPerLane.getOrDefault(lane, 0) < Math.max(1, limit) && (next == null || isPreferred(job, next, activeJobsPerUser))) {
+
+					next = job;
+				}
+			}
+		}
+
+		return next;
+	}
+
+	private boolean isPreferred(final ScheduledJob job, final ScheduledJob other, final Map<String, Integer> activeJobsPerUser) {
+
+		if (job.getPriority() != other.getPriority()) {
+			return job.getPriority() > other.getPriority();
+		}
+
+		final int active      = activeJobsPerUser.getOrDefault(userKey(job), 0);
+		final int otherActive = activeJobsPerUser.getOrDefault(userKey(other), 0);
 
-		// if any job is RUNNING or PAUSED, dont auto-start new tasks
-		return (!activeJobs.isEmpty());
+		if (active != otherActive) {
+			return active < otherActive;
+		}
+
+		final long lastServed      = lastServedUsers.getOrDefault(job.getUsername(), 0L);
+		final long otherLastServed = lastServedUsers.getOrDefault(other.getUsername(), 0L);
 
-//		// if any job is RUNNING, dont auto-start new tasks
-//		// this effectively means that if a user PAUSES a job, the queue is stopped BUT
-//		// if another job is queued or the last running job finishes, then the next queued job is started
-//		boolean hasRunningJob = false;
-//
-//		for (ImportJob job : activeJobs.values()) {
-//			if (job.getCurrentStatus().equals(ImportJob.JobStatus.RUNNING)) {
-//				hasRunningJob = true;
-//			}
-//		}
-//
-//		return hasRunningJob;
+		// users who were served longest ago first, queue order otherwise
+		return lastServed < otherLastServed;
+	}
 
+	private String userKey(final ScheduledJob job) {
+		return job.getLane() + "/" + job.getUsername();
 	}
 
-	private void startNextJobInQueue() {
-		final Long jobId = jobIdQueue.peek();
+	private Map<String, Integer> getLaneLimits() {
+
+		final Map<String, Integer> limits = new HashMap<>();
+		final String source               = Settings.JobLanes.getValue();
+
+		if (StringUtils.isNotBlank(source)) {
+
+			for (final String lane : source.split("[, ]+")) {
+
+				final String[] parts = lane.split(":");
+				if (parts.length == 2) {
 
-		if (jobId != null) {
-			boolean didStart = startJob(jobId);
-			if (!didStart) {
-				startNextJobInQueue();
+					try {
+
+						limits.put(parts[0].trim(), Integer.valueOf(parts[1].trim()));
+
+					} catch (NumberFormatException nex) {
+
+						logger.warn("Invalid concurrency limit for job lane {}: {}", parts[0], parts[1]);
+					}
+
+				} else if (StringUtils.isNotBlank(lane)) {
+
+					logger.warn("Invalid job lane configuration {}, expected <jobType>:<limit>", lane);
+				}
 			}
 		}
+
+		return limits;
 	}
 }
-
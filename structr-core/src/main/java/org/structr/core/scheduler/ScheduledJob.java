@@ -46,8 +46,13 @@ public abstract class ScheduledJob {
 	final Lock lock          = new ReentrantLock();
 	final Condition paused   = lock.newCondition();
 
-	private Thread jobThread = null;
-	private Long jobId       = null;
+	private Thread jobThread               = null;
+	private Long jobId                     = null;
+	private long queuedTime                = 0L;
+	private volatile long startTime        = 0L;
+	private volatile long endTime          = 0L;
+	private volatile long processedObjects = 0L;
+	private int priority                   = 0;
 
 	protected Map<String, Object> configuration;
 	protected Principal user;
@@ -63,6 +68,11 @@ public abstract class ScheduledJob {
 		this.configuration = configuration;
 
 		this.currentStatus = JobStatus.QUEUED;
+		this.queuedTime    = System.currentTimeMillis();
+
+		if (configuration != null) {
+			this.priority = parseInt(configuration.get("priority"), 0);
+		}
 	}
 
 	public abstract boolean runInitialChecks() throws FrameworkException;
@@ -76,6 +86,7 @@ public abstract class ScheduledJob {
 
 	public void startJob() {
 		currentStatus = JobStatus.RUNNING;
+		startTime     = System.currentTimeMillis();
 
 		startNewThread(getRunnable(), false);
 	}
@@ -129,6 +140,46 @@ public abstract class ScheduledJob {
 		return username;
 	}
 
+	/**
+	 * Returns the lane this job is scheduled in. Each lane has its own
+	 * concurrency limit, the default is one lane per job type.
+	 *
+	 * @return the lane
+	 */
+	public String getLane() {
+		return getJobType();
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Returns the throughput metrics of this job, i.e. the time it spent in
+	 * the queue, the time it has been running and the number of objects it
+	 * processed so far.
+	 *
+	 * @return the metrics
+	 */
+	public Map<String, Object> getMetrics() {
+
+		final Map<String, Object> metrics = new LinkedHashMap<>();
+		final long now                    = System.currentTimeMillis();
+		final long started                = startTime;
+		final long finished               = endTime;
+		final long timeQueued             = (started > 0L ? started : now) - queuedTime;
+		final long timeRunning            = started > 0L ? (finished > 0L ? finished : now) - started : 0L;
+
+		metrics.put("lane",             getLane());
+		metrics.put("priority",         priority);
+		metrics.put("timeQueued",       timeQueued);
+		metrics.put("timeRunning",      timeRunning);
+		metrics.put("objectsProcessed", processedObjects);
+		metrics.put("objectsPerSecond", timeRunning > 0L ? (processedObjects * 1000.0) / timeRunning : 0.0);
+
+		return metrics;
+	}
+
 	public JobStatus getCurrentStatus () {
 		return currentStatus;
 	}
@@ -142,13 +193,19 @@ public abstract class ScheduledJob {
 	}
 
 	protected void jobFinished() {
+		endTime = System.currentTimeMillis();
 		JobQueueManager.getInstance().jobFinished(this);
 	}
 
 	protected void jobAborted() {
+		endTime = System.currentTimeMillis();
 		JobQueueManager.getInstance().jobAborted(this);
 	}
 
+	protected void setProcessedObjects(final long processedObjects) {
+		this.processedObjects = processedObjects;
+	}
+
 	protected void startNewThread(final Runnable runnable, final boolean wait) {
 
 		jobThread = new Thread(runnable);
@@ -19,11 +19,11 @@
 package org.structr.core.script;
 
 import java.io.StringWriter;
-import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.script.Bindings;
@@ -31,16 +31,17 @@ import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
-import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.StringUtils;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextFactory;
 import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
 import org.mozilla.javascript.Undefined;
 import org.renjin.script.RenjinScriptEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.util.ConcurrentFixedSizeCache;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.error.UnlicensedException;
@@ -57,9 +58,10 @@ import org.structr.schema.parser.DatePropertyParser;
  */
 public class Scripting {
 
-	private static final Logger logger                       = LoggerFactory.getLogger(Scripting.class.getName());
-	private static final Pattern ScriptEngineExpression      = Pattern.compile("^\\$\\{(\\w+)\\{(.*)\\}\\}$", Pattern.DOTALL);
-	private static final Map<String, Script> compiledScripts = Collections.synchronizedMap(new LRUMap<>(10000));
+	private static final Logger logger                                                        = LoggerFactory.getLogger(Scripting.class.getName());
+	private static final Pattern ScriptEngineExpression                                       = Pattern.compile("^\\$\\{(\\w+)\\{(.*)\\}\\}$", Pattern.DOTALL);
+	private static final ConcurrentFixedSizeCache<String, FutureTask<Script>> compiledScripts = new ConcurrentFixedSizeCache<>(10000);
+	private static volatile ScriptableObject sharedScope                                      = null;
 
 	public static String replaceVariables(final ActionContext actionContext, final GraphObject entity, final Object rawValue) throws FrameworkException {
 
@@ -221,7 +223,7 @@ public class Scripting {
 			scriptingContext.setGenerateObserverCount(false);
 			scriptingContext.setGeneratingDebug(true);
 
-			final Scriptable scope = scriptingContext.initStandardObjects();
+			final Scriptable scope             = createScope(scriptingContext);
 			final StructrScriptable scriptable = new StructrScriptable(actionContext, entity, scriptingContext);
 
 			scriptable.setParentScope(scope);
@@ -335,6 +337,31 @@ public class Scripting {
 		Context.exit();
 	}
 
+	private static ScriptableObject getSharedScope(final Context context) {
+
+		ScriptableObject scope = sharedScope;
+		if (scope == null) {
+
+			synchronized (Scripting.class) {
+
+				scope = sharedScope;
+				if (scope == null) {
+
+					scope = context.initStandardObjects(null, true);
+
+					// force initialization of lazily loaded objects before sealing
+					context.evaluateString(scope, "RegExp; getClass; java; Packages; JavaAdapter;", "init", 1, null);
+
+					scope.sealObject();
+
+					sharedScope = scope;
+				}
+			}
+		}
+
+		return scope;
+	}
+
 	private static String embedInFunction(final ActionContext actionContext, final String source) {
 
 		final StringBuilder buf = new StringBuilder();
@@ -347,21 +374,75 @@ public class Scripting {
 		return buf.toString();
 	}
 
+	/**
+	 * Returns the compiled script for the given source, compiling it if
+	 * necessary. Each source is compiled only once, threads requesting a
+	 * script that is being compiled wait for that compilation only.
+	 *
+	 * @param context
+	 * @param source
+	 * @param sourceName
+	 * @param lineNo
+	 * @return the compiled script
+	 */
 	public static Script compileOrGetCached(final Context context, final String source, final String sourceName, final int lineNo) {
 
-		synchronized (compiledScripts) {
+		FutureTask<Script> task = compiledScripts.get(source);
+		if (task == null) {
+
+			final FutureTask<Script> newTask = new FutureTask<>(() -> context.compileString(source, sourceName, lineNo, null));
+
+			task = compiledScripts.putIfAbsent(source, newTask);
+			if (task == newTask) {
 
-			Script script = compiledScripts.get(source);
-			if (script == null) {
+				// compile on the calling thread, the context is bound to it
+				newTask.run();
+			}
+		}
+
+		try {
+
+			return task.get();
+
+		} catch (InterruptedException iex) {
+
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(iex);
+
+		} catch (ExecutionException eex) {
+
+			// don't cache compilation errors
+			compiledScripts.remove(source);
 
-				script = context.compileString(source, sourceName, lineNo, null);
-				compiledScripts.put(source, script);
+			final Throwable cause = eex.getCause();
+			if (cause instanceof RuntimeException) {
+
+				throw (RuntimeException)cause;
 			}
 
-			return script;
+			throw new RuntimeException(cause);
 		}
 	}
 
+	/**
+	 * Creates a new top-level scope for a single script evaluation. The
+	 * standard objects are not copied into the new scope, they are
+	 * inherited from a shared, sealed scope that is initialized once.
+	 *
+	 * @param context
+	 * @return a new scope
+	 */
+	public static Scriptable createScope(final Context context) {
+
+		final ScriptableObject shared = getSharedScope(context);
+		final Scriptable scope        = context.newObject(shared);
+
+		scope.setPrototype(shared);
+		scope.setParentScope(null);
+
+		return scope;
+	}
+
 	// this is only public to be testable :(
 	public static List<String> extractScripts(final String source) {
 
@@ -70,6 +70,7 @@ import org.structr.core.property.GenericProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.schema.ConfigurationProvider;
 import org.structr.schema.SchemaService;
+import org.structr.schema.SchemaSnapshot;
 
 /**
  * The module service main class.
@@ -116,6 +117,8 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	private final Set<String> dynamicViews                                                         = new LinkedHashSet<>();
 
 	private FactoryDefinition factoryDefinition                                                    = new DefaultFactoryDefinition();
+	private volatile SchemaSnapshot snapshot                                                       = new SchemaSnapshot();
+	private volatile boolean snapshotOutdated                                                      = false;
 	private LicenseManager licenseManager                                                          = null;
 
 	// ----- interface ConfigurationProvider -----
@@ -138,26 +141,17 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 	@Override
 	public Map<String, Class<? extends NodeInterface>> getNodeEntities() {
-
-		synchronized (SchemaService.class) {
-			return nodeEntityClassCache;
-		}
+		return getSchemaSnapshot().getNodeEntities();
 	}
 
 	@Override
 	public Map<String, Class<? extends RelationshipInterface>> getRelationshipEntities() {
-
-		synchronized (SchemaService.class) {
-			return relationshipEntityClassCache;
-		}
+		return getSchemaSnapshot().getRelationshipEntities();
 	}
 
 	@Override
 	public Set<Class> getClassesForInterface(final String simpleName) {
-
-		synchronized (SchemaService.class) {
-			return interfaceCache.get(simpleName);
-		}
+		return getSchemaSnapshot().getClassesForInterface(simpleName);
 	}
 
 	@Override
@@ -167,34 +161,46 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 		if ((simpleName != null) && (!simpleName.isEmpty())) {
 
-			synchronized (SchemaService.class) {
+			final SchemaSnapshot schema = getSchemaSnapshot();
 
-				nodeEntityClass = nodeEntityClassCache.get(simpleName);
+			nodeEntityClass = schema.getNodeEntities().get(simpleName);
 
-				if (nodeEntityClass == null) {
+			if (nodeEntityClass == null) {
+				nodeEntityClass = schema.getResolvedNodeType(simpleName);
+			}
 
-					for (String possiblePath : nodeEntityPackages) {
+			if (nodeEntityClass == null && !schema.isUnknownNodeType(simpleName)) {
 
-						if (possiblePath != null) {
+				for (String possiblePath : schema.getNodeEntityPackages()) {
 
-							try {
+					if (possiblePath != null) {
 
-								Class nodeClass = Class.forName(possiblePath + "." + simpleName);
+						try {
 
-								if (!Modifier.isAbstract(nodeClass.getModifiers())) {
+							Class nodeClass = Class.forName(possiblePath + "." + simpleName);
 
-									nodeEntityClassCache.put(simpleName, nodeClass);
-									nodeEntityClass = nodeClass;
+							if (!Modifier.isAbstract(nodeClass.getModifiers())) {
 
-									// first match wins
-									break;
+								nodeEntityClassCache.put(simpleName, nodeClass);
+								schema.addResolvedNodeType(simpleName, nodeClass);
+								nodeEntityClass = nodeClass;
 
-								}
+								// do not wait for the schema lock here, the
+								// type is part of the next published snapshot
+								snapshotOutdated = true;
 
-							} catch (ClassNotFoundException ex) {}
-						}
+								// first match wins
+								break;
+
+							}
+
+						} catch (ClassNotFoundException ex) {}
 					}
 				}
+
+				if (nodeEntityClass == null) {
+					schema.addUnknownNodeType(simpleName);
+				}
 			}
 		}
 
@@ -209,36 +215,44 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 		if ((name != null) && (name.length() > 0)) {
 
-			synchronized (SchemaService.class) {
+			final SchemaSnapshot schema = getSchemaSnapshot();
 
-				relationClass = relationshipEntityClassCache.get(name);
+			relationClass = schema.getRelationshipEntities().get(name);
 
-				if (relationClass == null) {
+			if (relationClass == null) {
+				relationClass = schema.getResolvedRelationshipType(name);
+			}
 
-					for (String possiblePath : relationshipPackages) {
+			if (relationClass == null && !schema.isUnknownRelationshipType(name)) {
 
-						if (possiblePath != null) {
+				for (String possiblePath : schema.getRelationshipPackages()) {
 
-							try {
+					if (possiblePath != null) {
 
-								Class nodeClass = Class.forName(possiblePath + "." + name);
+						try {
 
-								if (!Modifier.isAbstract(nodeClass.getModifiers())) {
+							Class nodeClass = Class.forName(possiblePath + "." + name);
 
-									relationshipEntityClassCache.put(name, nodeClass);
+							if (!Modifier.isAbstract(nodeClass.getModifiers())) {
 
-									// first match wins
-									return nodeClass;
+								relationshipEntityClassCache.put(name, nodeClass);
+								schema.addResolvedRelationshipType(name, nodeClass);
 
-								}
+								snapshotOutdated = true;
 
-							} catch (ClassNotFoundException ex) {
+								// first match wins
+								return nodeClass;
 
-								// ignore
 							}
+
+						} catch (ClassNotFoundException ex) {
+
+							// ignore
 						}
 					}
 				}
+
+				schema.addUnknownRelationshipType(name);
 			}
 		}
 
@@ -246,6 +260,31 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 	}
 
+	/**
+	 * Returns the current snapshot of the type registry. The thread that
+	 * holds the schema lock sees its own, not yet published modifications.
+	 *
+	 * @return the current snapshot
+	 */
+	@Override
+	public SchemaSnapshot getSchemaSnapshot() {
+
+		if (snapshotOutdated && Thread.holdsLock(SchemaService.class)) {
+			return SchemaSnapshot.view(snapshot.getVersion() + 1, nodeEntityClassCache, relationshipEntityClassCache, interfaceCache, reverseInterfaceMap, nodeEntityPackages, relationshipPackages);
+		}
+
+		return snapshot;
+	}
+
+	/**
+	 * Publishes all modifications of the type registry to other threads.
+	 * Must be called at the end of the schema critical section.
+	 */
+	@Override
+	public void publishSchemaSnapshot() {
+		publishSnapshot();
+	}
+
 	public Class<? extends Agent> getAgentClass(final String name) {
 
 		Class agentClass = null;
@@ -288,7 +327,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 	@Override
 	public Map<String, Class> getInterfaces() {
-		return reverseInterfaceMap;
+		return getSchemaSnapshot().getInterfaces();
 	}
 
 	@Override
@@ -520,6 +559,8 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 				}
 			}
 		}
+
+		schemaChanged();
 	}
 
 	@Override
@@ -623,6 +664,8 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 		// extract interfaces for later use
 		getInterfacesForType(type);
+
+		schemaChanged();
 	}
 
 	/**
@@ -1008,12 +1051,50 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	}
 
 	// ----- private methods -----
+	/**
+	 * Marks the current snapshot as outdated and publishes a new one,
+	 * unless the calling thread holds the schema lock, in which case
+	 * the new snapshot is published at the end of the critical section.
+	 */
+	private void schemaChanged() {
+
+		snapshotOutdated = true;
+
+		if (!Thread.holdsLock(SchemaService.class)) {
+			publishSnapshot();
+		}
+	}
+
+	private void publishSnapshot() {
+
+		synchronized (SchemaService.class) {
+
+			if (snapshotOutdated) {
+
+				snapshotOutdated = false;
+				snapshot         = new SchemaSnapshot(snapshot.getVersion() + 1, nodeEntityClassCache, relationshipEntityClassCache, interfaceCache, reverseInterfaceMap, nodeEntityPackages, relationshipPackages);
+			}
+		}
+	}
+
 	private void scanResources() {
 
 		Set<String> resourcePaths = getResourcesToScan();
-		for (String resourcePath : resourcePaths) {
 
-			scanResource(resourcePath);
+		// publish all types at once
+		synchronized (SchemaService.class) {
+
+			try {
+
+				for (String resourcePath : resourcePaths) {
+
+					scanResource(resourcePath);
+				}
+
+			} finally {
+
+				publishSnapshot();
+			}
 		}
 
 		logger.info("{} JARs scanned", resourcePaths.size());
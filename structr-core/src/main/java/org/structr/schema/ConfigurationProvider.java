@@ -54,6 +54,8 @@ public interface ConfigurationProvider {
 	public Map<String, Class> getInterfaces();
 
 	public Set<Class> getClassesForInterface(final String simpleName);
+	public SchemaSnapshot getSchemaSnapshot();
+	public void publishSchemaSnapshot();
 
 
 	public void registerPropertyGroup(final Class entityClass, final PropertyKey propertyKey, final PropertyGroup propertyGroup);
@@ -141,26 +141,35 @@ public class SchemaService implements Service {
 					// this is a very critical section :)
 					synchronized (SchemaService.class) {
 
-						// clear propagating relationship cache
-						SchemaRelationshipNode.clearPropagatingRelationshipTypes();
+						try {
 
-						// compile all classes at once and register
-						final Map<String, Class> newTypes = nodeExtender.compile(errorBuffer);
+							// clear propagating relationship cache
+							SchemaRelationshipNode.clearPropagatingRelationshipTypes();
 
-						for (final Class newType : newTypes.values()) {
+							// compile all classes at once and register
+							final Map<String, Class> newTypes = nodeExtender.compile(errorBuffer);
 
-							// instantiate classes to execute static initializer of helpers
-							try {
+							for (final Class newType : newTypes.values()) {
 
-								// do full reload
-								config.registerEntityType(newType);
-								newType.newInstance();
+								// instantiate classes to execute static initializer of helpers
+								try {
 
-							} catch (Throwable ignore) {}
-						}
+									// do full reload
+									config.registerEntityType(newType);
+									newType.newInstance();
+
+								} catch (Throwable ignore) {}
+							}
 
-						// calculate difference between previous and new classes
-						removedClasses.keySet().removeAll(StructrApp.getConfiguration().getTypeAndPropertyMapping().keySet());
+							// calculate difference between previous and new classes
+							removedClasses.keySet().removeAll(StructrApp.getConfiguration().getTypeAndPropertyMapping().keySet());
+
+						} finally {
+
+							// make the current state visible to other threads, even if
+							// the compilation failed after old types were unregistered
+							config.publishSchemaSnapshot();
+						}
 					}
 
 					// create properties and views etc.
@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.schema;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.RelationshipInterface;
+
+/**
+ * An immutable view of the type registry of a {@link ConfigurationProvider}
+ * at a given point in time.
+ *
+ * A new snapshot with a higher version number is published after each
+ * modification of the registry, so readers never need to lock, and
+ * caches that depend on the registry can use the version number to
+ * detect schema changes.
+ */
+public class SchemaSnapshot {
+
+	private Map<String, Class<? extends RelationshipInterface>> relationshipEntities = null;
+	private Map<String, Class<? extends NodeInterface>> nodeEntities                 = null;
+	private Map<String, Set<Class>> classesForInterface                              = null;
+	private Map<String, Class> interfaces                                            = null;
+	private List<String> relationshipPackages                                        = null;
+	private List<String> nodeEntityPackages                                          = null;
+	private Map<String, Class<? extends RelationshipInterface>> resolvedRelationships = new ConcurrentHashMap<>();
+	private Map<String, Class<? extends NodeInterface>> resolvedNodes                = new ConcurrentHashMap<>();
+	private Set<String> unknownRelationshipTypes                                     = ConcurrentHashMap.newKeySet();
+	private Set<String> unknownNodeTypes                                             = ConcurrentHashMap.newKeySet();
+	private long version                                                             = 0L;
+
+	public SchemaSnapshot() {
+
+		this.relationshipEntities = Collections.emptyMap();
+		this.nodeEntities         = Collections.emptyMap();
+		this.classesForInterface  = Collections.emptyMap();
+		this.interfaces           = Collections.emptyMap();
+		this.relationshipPackages = Collections.emptyList();
+		this.nodeEntityPackages   = Collections.emptyList();
+	}
+
+	public SchemaSnapshot(final long version, final Map<String, Class<? extends NodeInterface>> nodeEntities, final Map<String, Class<? extends RelationshipInterface>> relationshipEntities, final Map<String, Set<Class>> classesForInterface, final Map<String, Class> interfaces, final Set<String> nodeEntityPackages, final Set<String> relationshipPackages) {
+
+		final Map<String, Set<Class>> interfaceCopy = new LinkedHashMap<>();
+
+		for (final Map.Entry<String, Set<Class>> entry : classesForInterface.entrySet()) {
+			interfaceCopy.put(entry.getKey(), Collections.unmodifiableSet(new LinkedHashSet<>(entry.getValue())));
+		}
+
+		this.relationshipEntities = Collections.unmodifiableMap(new LinkedHashMap<>(relationshipEntities));
+		this.nodeEntities         = Collections.unmodifiableMap(new LinkedHashMap<>(nodeEntities));
+		this.classesForInterface  = Collections.unmodifiableMap(interfaceCopy);
+		this.interfaces           = Collections.unmodifiableMap(new LinkedHashMap<>(interfaces));
+		this.relationshipPackages = Collections.unmodifiableList(new ArrayList<>(relationshipPackages));
+		this.nodeEntityPackages   = Collections.unmodifiableList(new ArrayList<>(nodeEntityPackages));
+		this.version              = version;
+	}
+
+	/**
+	 * Creates a snapshot that reads through to the given maps instead of
+	 * copying them. Only the thread that modifies the maps may use it.
+	 */
+	public static SchemaSnapshot view(final long version, final Map<String, Class<? extends NodeInterface>> nodeEntities, final Map<String, Class<? extends RelationshipInterface>> relationshipEntities, final Map<String, Set<Class>> classesForInterface, final Map<String, Class> interfaces, final Set<String> nodeEntityPackages, final Set<String> relationshipPackages) {
+
+		final SchemaSnapshot view = new SchemaSnapshot();
+
+		view.relationshipEntities = Collections.unmodifiableMap(relationshipEntities);
+		view.nodeEntities         = Collections.unmodifiableMap(nodeEntities);
+		view.classesForInterface  = Collections.unmodifiableMap(classesForInterface);
+		view.interfaces           = Collections.unmodifiableMap(interfaces);
+		view.relationshipPackages = new ArrayList<>(relationshipPackages);
+		view.nodeEntityPackages   = new ArrayList<>(nodeEntityPackages);
+		view.version              = version;
+
+		return view;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public Map<String, Class<? extends NodeInterface>> getNodeEntities() {
+		return nodeEntities;
+	}
+
+	public Map<String, Class<? extends RelationshipInterface>> getRelationshipEntities() {
+		return relationshipEntities;
+	}
+
+	public Set<Class> getClassesForInterface(final String simpleName) {
+		return classesForInterface.get(simpleName);
+	}
+
+	public Map<String, Class> getInterfaces() {
+		return interfaces;
+	}
+
+	public List<String> getNodeEntityPackages() {
+		return nodeEntityPackages;
+	}
+
+	public List<String> getRelationshipPackages() {
+		return relationshipPackages;
+	}
+
+	/**
+	 * Returns whether a previous lookup of the given node type name in
+	 * the packages of this snapshot failed. This information remains
+	 * valid as long as the snapshot is current.
+	 *
+	 * @param simpleName
+	 * @return whether the type is known to be missing
+	 */
+	public boolean isUnknownNodeType(final String simpleName) {
+		return unknownNodeTypes.contains(simpleName);
+	}
+
+	public void addUnknownNodeType(final String simpleName) {
+		unknownNodeTypes.add(simpleName);
+	}
+
+	/**
+	 * Returns a node type that was found in the packages of this snapshot
+	 * after it was published, or null.
+	 *
+	 * @param simpleName
+	 * @return the type or null
+	 */
+	public Class<? extends NodeInterface> getResolvedNodeType(final String simpleName) {
+		return resolvedNodes.get(simpleName);
+	}
+
+	public void addResolvedNodeType(final String simpleName, final Class<? extends NodeInterface> type) {
+		resolvedNodes.put(simpleName, type);
+	}
+
+	public Class<? extends RelationshipInterface> getResolvedRelationshipType(final String simpleName) {
+		return resolvedRelationships.get(simpleName);
+	}
+
+	public void addResolvedRelationshipType(final String simpleName, final Class<? extends RelationshipInterface> type) {
+		resolvedRelationships.put(simpleName, type);
+	}
+
+	public boolean isUnknownRelationshipType(final String simpleName) {
+		return unknownRelationshipTypes.contains(simpleName);
+	}
+
+	public void addUnknownRelationshipType(final String simpleName) {
+		unknownRelationshipTypes.add(simpleName);
+	}
+}
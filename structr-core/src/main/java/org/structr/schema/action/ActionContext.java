@@ -60,6 +60,8 @@ public class ActionContext {
 	protected StringBuilder outputBuffer           = new StringBuilder();
 	protected Locale locale                        = Locale.getDefault();
 	private boolean javaScriptContext              = false;
+	private boolean batched                        = false;
+	private int batchSize                          = -1;
 
 	public ActionContext(final SecurityContext securityContext) {
 		this(securityContext, null);
@@ -359,6 +361,29 @@ public class ActionContext {
 		this.javaScriptContext = javaScriptContext;
 	}
 
+	/**
+	 * Indicates whether the current evaluation takes place inside of
+	 * a batch() expression. This is stored here and not in the parsed
+	 * expression, because expressions are shared between threads.
+	 *
+	 * @return whether the current evaluation is batched
+	 */
+	public boolean isBatched() {
+		return batched;
+	}
+
+	public void setBatched(final boolean batched) {
+		this.batched = batched;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(final int batchSize) {
+		this.batchSize = batchSize;
+	}
+
 	public Locale getLocale() {
 		return locale;
 	}
@@ -20,19 +20,24 @@ package org.structr.schema.compiler;
 
 import java.io.IOException;
 import java.security.SecureClassLoader;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.tools.FileObject;
 import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.JavaFileObject.Kind;
 import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
 
 /**
  *
  *
  */
-public class ClassFileManager extends ForwardingJavaFileManager {
+public class ClassFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
 
 	/**
 	 * Instance of JavaClassObject that will store the compiled byte code of
@@ -50,6 +55,28 @@ public class ClassFileManager extends ForwardingJavaFileManager {
 		super(standardManager);
 	}
 
+	/**
+	 * Adds previously compiled byte code to this manager. The class will
+	 * be visible to the compiler on the class path, and it can be loaded
+	 * using the class loader of this manager.
+	 *
+	 * @param name
+	 * @param bytes
+	 */
+	public void addClass(final String name, final byte[] bytes) {
+		objects.put(name, new JavaClassObject(name, bytes));
+	}
+
+	/**
+	 * Returns the byte code of all classes known to this manager, keyed by
+	 * binary class name.
+	 *
+	 * @return unmodifiable map of class objects
+	 */
+	public Map<String, JavaClassObject> getClasses() {
+		return Collections.unmodifiableMap(objects);
+	}
+
 	/**
 	 * Will be used by us to get the class loader for our compiled class. It
 	 * creates an anonymous class extending the SecureClassLoader which uses
@@ -97,4 +124,57 @@ public class ClassFileManager extends ForwardingJavaFileManager {
 		
 		return obj;
 	}
+
+	/**
+	 * Adds the class objects of this manager to the class path, so that
+	 * classes can be compiled against previously compiled classes.
+	 * @param location
+	 * @param packageName
+	 * @param kinds
+	 * @param recurse
+	 * @return file objects
+	 * @throws java.io.IOException
+	 */
+	@Override
+	public Iterable<JavaFileObject> list(final Location location, final String packageName, final Set<Kind> kinds, final boolean recurse) throws IOException {
+
+		final Iterable<JavaFileObject> files = super.list(location, packageName, kinds, recurse);
+
+		if (StandardLocation.CLASS_PATH.equals(location) && kinds.contains(Kind.CLASS)) {
+
+			final List<JavaFileObject> result = new LinkedList<>();
+
+			for (final JavaClassObject obj : objects.values()) {
+
+				final String name = obj.getBinaryName();
+				final int pos     = name.lastIndexOf(".");
+				final String pkg  = pos >= 0 ? name.substring(0, pos) : "";
+
+				if (pkg.equals(packageName) || (recurse && pkg.startsWith(packageName + "."))) {
+					result.add(obj);
+				}
+			}
+
+			if (!result.isEmpty()) {
+
+				for (final JavaFileObject file : files) {
+					result.add(file);
+				}
+
+				return result;
+			}
+		}
+
+		return files;
+	}
+
+	@Override
+	public String inferBinaryName(final Location location, final JavaFileObject file) {
+
+		if (file instanceof JavaClassObject) {
+			return ((JavaClassObject)file).getBinaryName();
+		}
+
+		return super.inferBinaryName(location, file);
+	}
 }
\ No newline at end of file
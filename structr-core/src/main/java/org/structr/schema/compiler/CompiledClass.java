@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.schema.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The byte code of a dynamic class and its inner classes, together with
+ * the key of the source code it was compiled from.
+ *
+ * Compiled classes can be stored in and loaded from a cache directory,
+ * using one file per class that is named after the key.
+ */
+public class CompiledClass {
+
+	private static final Logger logger = LoggerFactory.getLogger(CompiledClass.class.getName());
+	private static final String SUFFIX = ".classes";
+
+	private final Map<String, byte[]> classFiles = new LinkedHashMap<>();
+	private boolean fromCache                    = false;
+	private String key                           = null;
+
+	public CompiledClass(final String key) {
+		this.key = key;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public boolean isFromCache() {
+		return fromCache;
+	}
+
+	public void addClassFile(final String binaryName, final byte[] bytes) {
+		classFiles.put(binaryName, bytes);
+	}
+
+	public Map<String, byte[]> getClassFiles() {
+		return classFiles;
+	}
+
+	/**
+	 * Writes this class to the given cache directory. Errors are logged
+	 * and otherwise ignored, the cache is an optimization only.
+	 *
+	 * @param directory
+	 */
+	public void store(final Path directory) {
+
+		try {
+
+			Files.createDirectories(directory);
+
+			final Path file = directory.resolve(key + SUFFIX);
+			final Path tmp  = directory.resolve(key + SUFFIX + ".tmp");
+
+			try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+
+				out.writeInt(classFiles.size());
+
+				for (final Map.Entry<String, byte[]> entry : classFiles.entrySet()) {
+
+					final byte[] bytes = entry.getValue();
+
+					out.writeUTF(entry.getKey());
+					out.writeInt(bytes.length);
+					out.write(bytes);
+				}
+			}
+
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to store compiled class {} in cache directory {}: {}", key, directory, ioex.getMessage());
+		}
+	}
+
+	/**
+	 * Loads the compiled class with the given key from the given cache
+	 * directory.
+	 *
+	 * @param directory
+	 * @param key
+	 * @return the compiled class, or null if the cache contains no valid entry for the key
+	 */
+	public static CompiledClass load(final Path directory, final String key) {
+
+		final Path file = directory.resolve(key + SUFFIX);
+
+		if (Files.isRegularFile(file)) {
+
+			try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+
+				final CompiledClass compiledClass = new CompiledClass(key);
+				final int count                   = in.readInt();
+
+				for (int i=0; i<count; i++) {
+
+					final String name  = in.readUTF();
+					final byte[] bytes = new byte[in.readInt()];
+
+					in.readFully(bytes);
+
+					compiledClass.addClassFile(name, bytes);
+				}
+
+				compiledClass.fromCache = true;
+
+				return compiledClass;
+
+			} catch (IOException | RuntimeException ex) {
+
+				logger.warn("Unable to load compiled class {} from cache directory {}: {}", key, directory, ex.getMessage());
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Removes all cache files from the given directory that do not belong
+	 * to one of the given keys.
+	 *
+	 * @param directory
+	 * @param keys
+	 */
+	public static void prune(final Path directory, final Set<String> keys) {
+
+		if (Files.isDirectory(directory)) {
+
+			try (final Stream<Path> files = Files.list(directory)) {
+
+				files.filter(file -> {
+
+					final String name = file.getFileName().toString();
+
+					return name.endsWith(SUFFIX) && !keys.contains(name.substring(0, name.length() - SUFFIX.length()));
+
+				}).forEach(file -> {
+
+					try { Files.delete(file); } catch (IOException ignore) {}
+				});
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to clean up cache directory {}: {}", directory, ioex.getMessage());
+			}
+		}
+	}
+}
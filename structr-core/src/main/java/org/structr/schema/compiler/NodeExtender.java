@@ -18,29 +18,38 @@
  */
 package org.structr.schema.compiler;
 
+import java.io.File;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.tools.Diagnostic;
 import javax.tools.Diagnostic.Kind;
 import javax.tools.DiagnosticListener;
 import javax.tools.JavaCompiler;
-import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.config.Settings;
+import org.structr.common.VersionHelper;
 import org.structr.common.error.DiagnosticErrorToken;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.core.Services;
@@ -49,27 +58,33 @@ import org.structr.core.graph.TransactionCommand;
 import org.structr.module.JarConfigurationProvider;
 
 /**
+ * Compiles the source code of dynamic schema types.
  *
- *
+ * Only classes whose source code, or the source code of one of the
+ * dynamic classes they directly or indirectly reference, changed since
+ * the last compilation are recompiled. The byte code of all other
+ * classes is reused, either from memory or from a cache directory, so
+ * that unchanged classes can be loaded without compilation on startup.
  */
 public class NodeExtender {
 
-	private static final Logger logger   = LoggerFactory.getLogger(NodeExtender.class.getName());
+	private static final Logger logger                              = LoggerFactory.getLogger(NodeExtender.class.getName());
+	private static final Pattern identifierPattern                  = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
 
-	private static final JavaCompiler compiler       = ToolProvider.getSystemJavaCompiler();
-	private static final JavaFileManager fileManager = new ClassFileManager(compiler.getStandardFileManager(null, null, null));
-	private static final ClassLoader classLoader     = fileManager.getClassLoader(null);
-	private static final Map<String, Class> classes  = new TreeMap<>();
+	private static final JavaCompiler compiler                      = ToolProvider.getSystemJavaCompiler();
+	private static final StandardJavaFileManager standardManager    = compiler.getStandardFileManager(null, null, null);
+	private static final Map<String, CompiledClass> compiledClasses = new HashMap<>();
+	private static final Map<String, Class> classes                 = new TreeMap<>();
+	private static volatile ClassLoader classLoader                 = new ClassFileManager(standardManager).getClassLoader(null);
+	private static String environmentKey                            = null;
 
-	private List<JavaFileObject> jfiles  = null;
-	private Set<String> fqcns            = null;
+	private Map<String, String> sources  = null;
 	private String initiatedBySessionId  = null;
 
 	public NodeExtender(final String initiatedBySessionId) {
 
 		this.initiatedBySessionId = initiatedBySessionId;
-		this.jfiles               = new ArrayList<>();
-		this.fqcns                = new LinkedHashSet<>();
+		this.sources              = new LinkedHashMap<>();
 	}
 
 	public static ClassLoader getClassLoader() {
@@ -90,8 +105,7 @@ public class NodeExtender {
 
 			final String packageName = JarConfigurationProvider.DYNAMIC_TYPES_PACKAGE;
 
-			jfiles.add(new CharSequenceJavaFileObject(className, content));
-			fqcns.add(packageName.concat(".".concat(className)));
+			sources.put(packageName.concat(".".concat(className)), content);
 
 			if (Settings.LogSchemaOutput.getValue()) {
 
@@ -106,73 +120,377 @@ public class NodeExtender {
 		}
 	}
 
-	public synchronized Map<String, Class> compile(final ErrorBuffer errorBuffer) throws ClassNotFoundException {
+	public Map<String, Class> compile(final ErrorBuffer errorBuffer) throws ClassNotFoundException {
+
+		synchronized (NodeExtender.class) {
+
+			if (!sources.isEmpty()) {
+
+				final Map<String, String> keys              = getKeys();
+				final Map<String, CompiledClass> reusable   = new LinkedHashMap<>();
+				final Path cacheDirectory                   = getCacheDirectory();
+				boolean fromCache                           = false;
+
+				for (final Map.Entry<String, String> entry : keys.entrySet()) {
+
+					final String fqcn   = entry.getKey();
+					final String key    = entry.getValue();
+					CompiledClass clazz = compiledClasses.get(fqcn);
+
+					if ((clazz == null || !key.equals(clazz.getKey())) && cacheDirectory != null) {
+						clazz = CompiledClass.load(cacheDirectory, key);
+					}
+
+					if (clazz != null && key.equals(clazz.getKey())) {
+
+						reusable.put(fqcn, clazz);
+						fromCache |= clazz.isFromCache();
+					}
+				}
+
+				if (fromCache) {
+
+					// byte code from the cache directory could be incompatible with the
+					// running system in ways the key does not reflect, so we fall back
+					// to a full compilation if the incremental compilation fails
+					if (!compile(keys, reusable, new ErrorBuffer(), cacheDirectory)) {
+
+						logger.info("Incremental compilation of dynamic entities failed, compiling all dynamic entities.");
+
+						compile(keys, new LinkedHashMap<>(), errorBuffer, cacheDirectory);
+					}
+
+				} else {
+
+					compile(keys, reusable, errorBuffer, cacheDirectory);
+				}
+			}
+
+			return classes;
+		}
+	}
+
+	public String getInitiatedBySessionId () {
+		return initiatedBySessionId;
+	}
+
+	public void setInitiatedBySessionId (final String initiatedBySessionId) {
+		this.initiatedBySessionId = initiatedBySessionId;
+	}
+
+	// ----- private methods -----
+	private boolean compile(final Map<String, String> keys, final Map<String, CompiledClass> reusable, final ErrorBuffer errorBuffer, final Path cacheDirectory) {
+
+		final ClassFileManager fileManager = new ClassFileManager(standardManager);
+		final List<JavaFileObject> jfiles  = new ArrayList<>();
+		final Writer errorWriter           = new StringWriter();
+		final List<Class> newClasses       = new LinkedList<>();
+		boolean success                    = true;
+
+		for (final CompiledClass clazz : reusable.values()) {
 
-		final Writer errorWriter     = new StringWriter();
-		final List<Class> newClasses = new LinkedList<>();
+			for (final Map.Entry<String, byte[]> classFile : clazz.getClassFiles().entrySet()) {
+				fileManager.addClass(classFile.getKey(), classFile.getValue());
+			}
+		}
+
+		for (final Map.Entry<String, String> entry : sources.entrySet()) {
+
+			final String fqcn = entry.getKey();
+
+			if (!reusable.containsKey(fqcn)) {
+				jfiles.add(new CharSequenceJavaFileObject(fqcn.substring(fqcn.lastIndexOf(".") + 1), entry.getValue()));
+			}
+		}
 
 		if (!jfiles.isEmpty()) {
 
-			logger.info("Compiling {} dynamic entities...", jfiles.size());
+			logger.info("Compiling {} of {} dynamic entities...", jfiles.size(), sources.size());
+
+			success = compiler.getTask(errorWriter, fileManager, new Listener(errorBuffer), null, null, jfiles).call();
+
+		} else {
 
-			Boolean success = compiler.getTask(errorWriter, fileManager, new Listener(errorBuffer), null, null, jfiles).call();
+			logger.info("Loading {} unmodified dynamic entities...", sources.size());
+		}
+
+		if (success) {
+
+			final Map<String, CompiledClass> newCompiledClasses = collectCompiledClasses(fileManager, keys, reusable);
+			final ClassLoader loader                            = fileManager.getClassLoader(null);
+
+			for (final String fqcn : sources.keySet()) {
+
+				try {
+
+					newClasses.add(loader.loadClass(fqcn));
+
+				} catch (Throwable t) {
+
+					logger.warn("Unable to load dynamic entity {}: {}", new Object[] { fqcn, t.toString() });
+					logger.warn("", t);
+
+					success = false;
+				}
+			}
 
 			if (success) {
 
-				final ClassLoader loader = fileManager.getClassLoader(null);
+				for (final Class oldType : classes.values()) {
+					StructrApp.getConfiguration().unregisterEntityType(oldType);
+				}
 
-				for (final String fqcn : fqcns) {
+				// clear classes map
+				classes.clear();
+
+				// add new classes to map
+				for (final Class newType : newClasses) {
+					classes.put(newType.getName(), newType);
+				}
 
-					try {
+				// store byte code for the next compilation
+				compiledClasses.clear();
+				compiledClasses.putAll(newCompiledClasses);
 
-						newClasses.add(loader.loadClass(fqcn));
+				classLoader = loader;
 
-					} catch (Throwable t) {
+				if (cacheDirectory != null) {
 
-						logger.warn("Unable to load dynamic entity {}: {}", new Object[] { fqcn, t.toString() });
-						logger.warn("", t);
+					for (final Map.Entry<String, CompiledClass> entry : newCompiledClasses.entrySet()) {
 
-						success = false;
+						if (!reusable.containsKey(entry.getKey())) {
+							entry.getValue().store(cacheDirectory);
+						}
 					}
+
+					CompiledClass.prune(cacheDirectory, new HashSet<>(keys.values()));
 				}
 
-				if (success) {
+				logger.info("Successfully compiled {} dynamic entities: {}", new Object[] { jfiles.size(), jfiles.stream().map(f -> f.getName().replaceFirst("/", "")).collect(Collectors.joining(", ")) });
 
-					for (final Class oldType : classes.values()) {
-						StructrApp.getConfiguration().unregisterEntityType(oldType);
-					}
+				final Map<String, Object> data = new LinkedHashMap();
+				data.put("success", true);
+				TransactionCommand.simpleBroadcast("SCHEMA_COMPILED", data, getInitiatedBySessionId());
 
-					// clear classes map
-					classes.clear();
+				Services.getInstance().setOverridingSchemaTypesAllowed(false);
+			}
+		}
 
-					// add new classes to map
-					for (final Class newType : newClasses) {
-						classes.put(newType.getName(), newType);
-					}
+		return success;
+	}
+
+	private Map<String, CompiledClass> collectCompiledClasses(final ClassFileManager fileManager, final Map<String, String> keys, final Map<String, CompiledClass> reusable) {
+
+		final Map<String, CompiledClass> result = new LinkedHashMap<>(reusable);
+
+		for (final JavaClassObject obj : fileManager.getClasses().values()) {
+
+			final String binaryName = obj.getBinaryName();
+			final int pos           = binaryName.indexOf("$");
+			final String fqcn       = pos >= 0 ? binaryName.substring(0, pos) : binaryName;
+
+			if (sources.containsKey(fqcn) && !reusable.containsKey(fqcn)) {
+
+				result.computeIfAbsent(fqcn, k -> new CompiledClass(keys.get(k))).addClassFile(binaryName, obj.getBytes());
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Computes a key for the source code of each class. The key of a class
+	 * is a hash of its own source code and the keys of all dynamic classes
+	 * it references, so it changes when anything it transitively depends on
+	 * changes. Classes that reference each other (directly or indirectly)
+	 * share the hash of their combined source code.
+	 *
+	 * @return the keys, by fully qualified class name
+	 */
+	private Map<String, String> getKeys() {
+
+		final Map<String, String> simpleNames     = new HashMap<>();
+		final Map<String, String> sourceHashes    = new HashMap<>();
+		final Map<String, Set<String>> references = new LinkedHashMap<>();
+		final Map<String, String> componentKeys   = new HashMap<>();
+		final Map<String, String> keys            = new LinkedHashMap<>();
+
+		for (final Map.Entry<String, String> entry : sources.entrySet()) {
+
+			final String fqcn = entry.getKey();
+
+			simpleNames.put(fqcn.substring(fqcn.lastIndexOf(".") + 1), fqcn);
+			sourceHashes.put(fqcn, DigestUtils.sha256Hex(entry.getValue()));
+		}
+
+		for (final Map.Entry<String, String> entry : sources.entrySet()) {
+			references.put(entry.getKey(), findReferences(entry.getKey(), entry.getValue(), simpleNames));
+		}
+
+		// components are returned in dependency order, so the keys of all
+		// referenced components are known when a component is processed
+		for (final Set<String> component : new ComponentFinder(references).getComponents()) {
 
-					logger.info("Successfully compiled {} dynamic entities: {}", new Object[] { jfiles.size(), jfiles.stream().map(f -> f.getName().replaceFirst("/", "")).collect(Collectors.joining(", ")) });
+			final StringBuilder buf          = new StringBuilder(getEnvironmentKey());
+			final Set<String> referencedKeys = new TreeSet<>();
 
-					final Map<String, Object> data = new LinkedHashMap();
-					data.put("success", true);
-					TransactionCommand.simpleBroadcast("SCHEMA_COMPILED", data, getInitiatedBySessionId());
+			for (final String fqcn : component) {
 
-					Services.getInstance().setOverridingSchemaTypesAllowed(false);
+				buf.append(fqcn);
+				buf.append(sourceHashes.get(fqcn));
 
+				for (final String reference : references.get(fqcn)) {
+
+					if (!component.contains(reference)) {
+						referencedKeys.add(componentKeys.get(reference));
+					}
 				}
+			}
 
+			for (final String referencedKey : referencedKeys) {
+				buf.append(referencedKey);
 			}
 
+			final String componentKey = DigestUtils.sha256Hex(buf.toString());
+
+			for (final String fqcn : component) {
+				componentKeys.put(fqcn, componentKey);
+			}
 		}
 
-		return classes;
+		for (final String fqcn : sources.keySet()) {
+			keys.put(fqcn, DigestUtils.sha256Hex(fqcn.concat(componentKeys.get(fqcn))));
+		}
+
+		return keys;
 	}
 
-	public String getInitiatedBySessionId () {
-		return initiatedBySessionId;
+	private Set<String> findReferences(final String fqcn, final String source, final Map<String, String> simpleNames) {
+
+		final Set<String> references = new TreeSet<>();
+		final Matcher matcher        = identifierPattern.matcher(source);
+
+		while (matcher.find()) {
+
+			final String reference = simpleNames.get(matcher.group());
+			if (reference != null && !reference.equals(fqcn)) {
+
+				references.add(reference);
+			}
+		}
+
+		return references;
 	}
 
-	public void setInitiatedBySessionId (final String initiatedBySessionId) {
-		this.initiatedBySessionId = initiatedBySessionId;
+	private Path getCacheDirectory() {
+
+		if (Settings.SchemaClassCache.getValue()) {
+			return Paths.get(Settings.getFullSettingPath(Settings.SchemaCachePath));
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns a key that identifies the Java version and the Structr
+	 * libraries the dynamic classes are compiled against.
+	 *
+	 * @return the environment key
+	 */
+	private static String getEnvironmentKey() {
+
+		if (environmentKey == null) {
+
+			final StringBuilder buf = new StringBuilder();
+
+			buf.append(System.getProperty("java.version"));
+			buf.append(VersionHelper.getClassPath());
+
+			try {
+
+				buf.append(new File(NodeExtender.class.getProtectionDomain().getCodeSource().getLocation().toURI()).lastModified());
+
+			} catch (Throwable ignore) {}
+
+			environmentKey = DigestUtils.sha256Hex(buf.toString());
+		}
+
+		return environmentKey;
+	}
+
+	/**
+	 * Finds the strongly connected components of the reference graph of
+	 * the dynamic classes (Tarjan's algorithm).
+	 */
+	private static class ComponentFinder {
+
+		private final List<Set<String>> components = new LinkedList<>();
+		private final Map<String, Integer> indexes = new HashMap<>();
+		private final Map<String, Integer> lowLinks = new HashMap<>();
+		private final LinkedList<String> stack     = new LinkedList<>();
+		private final Set<String> onStack          = new HashSet<>();
+		private Map<String, Set<String>> graph     = null;
+
+		ComponentFinder(final Map<String, Set<String>> graph) {
+			this.graph = graph;
+		}
+
+		/**
+		 * Returns the components, each component after all components
+		 * it references.
+		 *
+		 * @return the components
+		 */
+		List<Set<String>> getComponents() {
+
+			for (final String node : graph.keySet()) {
+
+				if (!indexes.containsKey(node)) {
+					visit(node);
+				}
+			}
+
+			return components;
+		}
+
+		private void visit(final String node) {
+
+			final int index = indexes.size();
+
+			indexes.put(node, index);
+			lowLinks.put(node, index);
+			stack.push(node);
+			onStack.add(node);
+
+			for (final String reference : graph.get(node)) {
+
+				if (!indexes.containsKey(reference)) {
+
+					visit(reference);
+					lowLinks.put(node, Math.min(lowLinks.get(node), lowLinks.get(reference)));
+
+				} else if (onStack.contains(reference)) {
+
+					lowLinks.put(node, Math.min(lowLinks.get(node), indexes.get(reference)));
+				}
+			}
+
+			if (lowLinks.get(node) == index) {
+
+				final Set<String> component = new TreeSet<>();
+				String member               = null;
+
+				do {
+
+					member = stack.pop();
+					onStack.remove(member);
+					component.add(member);
+
+				} while (!member.equals(node));
+
+				components.add(component);
+			}
+		}
 	}
 
 	private static class Listener implements DiagnosticListener<JavaFileObject> {
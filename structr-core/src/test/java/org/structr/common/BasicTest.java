@@ -19,6 +19,7 @@
 package org.structr.common;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -26,6 +27,7 @@ import java.util.UUID;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -36,6 +38,7 @@ import org.structr.api.NotFoundException;
 import org.structr.api.NotInTransactionException;
 import org.structr.api.graph.RelationshipType;
 import org.structr.api.util.Iterables;
+import org.structr.bolt.SessionTransaction;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
@@ -70,10 +73,12 @@ import org.structr.core.entity.TestThree;
 import org.structr.core.entity.TestTwo;
 import org.structr.core.entity.relationship.NodeHasLocation;
 import org.structr.core.entity.relationship.PrincipalOwnsNode;
+import org.structr.core.graph.Factory;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.NodeServiceCommand;
 import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.RelationshipSpec;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
@@ -1121,6 +1126,76 @@ public class BasicTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void test07BulkCreation() {
+
+		try (final Tx tx = app.tx()) {
+
+			final List<PropertyMap> properties = new LinkedList<>();
+
+			for (int i=0; i<100; i++) {
+
+				final PropertyMap map = new PropertyMap();
+
+				map.put(AbstractNode.name, "test" + i);
+
+				properties.add(map);
+			}
+
+			final List<RelationshipSpec<TestSix, TestOne>> specs = new LinkedList<>();
+			final List<TestOne> nodes                            = app.createNodes(TestOne.class, properties);
+			final TestSix source                                 = app.create(TestSix.class);
+
+			assertEquals("Invalid number of nodes created", 100, nodes.size());
+
+			for (int i=0; i<100; i++) {
+
+				final TestOne node = nodes.get(i);
+
+				assertNotNull("Bulk-created node has no UUID", node.getUuid());
+				assertEquals("Bulk-created nodes are not in input order", "test" + i, node.getName());
+				assertNotNull("Bulk-created node has no creation date", node.getProperty(AbstractNode.createdDate));
+
+				specs.add(new RelationshipSpec<>(source, node));
+			}
+
+			final List<SixOneManyToMany> rels = app.createRelationships(SixOneManyToMany.class, specs);
+
+			assertEquals("Invalid number of relationships created", 100, rels.size());
+			assertEquals("Invalid number of related nodes", 100, Iterables.count(source.getProperty(TestSix.manyToManyTestOnes)));
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+
+		// cardinality must be enforced between specs of the same batch
+		try (final Tx tx = app.tx()) {
+
+			final List<RelationshipSpec<TestSix, TestThree>> specs = new LinkedList<>();
+			final TestSix source1                                  = app.create(TestSix.class);
+			final TestSix source2                                  = app.create(TestSix.class);
+			final TestThree target                                 = app.create(TestThree.class);
+
+			specs.add(new RelationshipSpec<>(source1, target));
+			specs.add(new RelationshipSpec<>(source2, target));
+
+			app.createRelationships(SixThreeOneToMany.class, specs);
+
+			assertEquals("Cardinality not enforced in bulk creation", source2, target.getProperty(TestThree.oneToManyTestSix));
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+	}
+
 	@Test
 	public void test01ModifyNode() {
 
@@ -1776,6 +1851,128 @@ public class BasicTest extends StructrTest {
 
 	}
 
+	@Test
+	public void testBufferedWriteConstraintViolationFailsTransaction() {
+
+		TestOne first  = null;
+		TestOne second = null;
+
+		try {
+
+			// schema modifications must not be mixed with data modifications
+			try (final Tx tx = app.tx()) {
+
+				app.cypher("CREATE CONSTRAINT ON (n:TestOne) ASSERT n.bufferTest IS UNIQUE", null);
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				first  = createTestNode(TestOne.class);
+				second = createTestNode(TestOne.class);
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				// both writes are buffered and only sent to the database on commit
+				first.getNode().setProperty("bufferTest", "value");
+				second.getNode().setProperty("bufferTest", "value");
+
+				tx.success();
+
+				fail("Constraint violation of a buffered write should fail the transaction");
+
+			} catch (FrameworkException fex) {
+
+				assertEquals("Invalid error code", 422, fex.getStatus());
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				for (final TestOne test : app.nodeQuery(TestOne.class).getAsList()) {
+					assertFalse("Buffered write of failed transaction should be rolled back", test.getNode().hasProperty("bufferTest"));
+				}
+
+				tx.success();
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+
+		} finally {
+
+			try (final Tx tx = app.tx()) {
+
+				app.cypher("DROP CONSTRAINT ON (n:TestOne) ASSERT n.bufferTest IS UNIQUE", null);
+				tx.success();
+
+			} catch (Throwable t) {
+				logger.warn("Unable to drop constraint", t);
+			}
+		}
+	}
+
+	@Test
+	public void testPrefetchRelationships() {
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<20; i++) {
+
+				final TestSix testSix = createTestNode(TestSix.class, new NodeAttribute<>(TestSix.index, i % 2));
+
+				testSix.setProperty(TestSix.manyToManyTestOnes, createTestNodes(TestOne.class, 2));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final List<TestSix> plain      = app.nodeQuery(TestSix.class).and(TestSix.index, 0).getAsList();
+			final List<TestSix> prefetched = app.nodeQuery(TestSix.class).and(TestSix.index, 1).getAsList();
+
+			assertEquals("Invalid query result", 10, plain.size());
+			assertEquals("Invalid query result", 10, prefetched.size());
+
+			long count = SessionTransaction.getQueryCount();
+
+			for (final TestSix testSix : plain) {
+				assertEquals("Invalid number of related nodes", 2, testSix.getProperty(TestSix.manyToManyTestOnes).size());
+			}
+
+			final long plainQueries = SessionTransaction.getQueryCount() - count;
+
+			count = SessionTransaction.getQueryCount();
+
+			Factory.prefetchRelationships(prefetched, Arrays.asList(TestSix.manyToManyTestOnes));
+
+			for (final TestSix testSix : prefetched) {
+				assertEquals("Invalid number of related nodes", 2, testSix.getProperty(TestSix.manyToManyTestOnes).size());
+			}
+
+			final long prefetchedQueries = SessionTransaction.getQueryCount() - count;
+
+			assertTrue("Relationships should be loaded with one query per node without prefetching", plainQueries >= 10);
+			assertTrue("Relationships should be loaded in a batch when prefetched", prefetchedQueries < 10);
+			assertTrue("Relationships should be loaded in a batch when prefetched", prefetchedQueries < plainQueries);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
 	// ----- private methods -----
 	private AbstractRelationship cascadeRel(final Class type1, final Class type2, final int cascadeDeleteFlag) throws FrameworkException {
 
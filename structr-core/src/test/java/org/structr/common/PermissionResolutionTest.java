@@ -23,6 +23,7 @@ import static org.junit.Assert.fail;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
@@ -234,6 +235,132 @@ public class PermissionResolutionTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void test02PermissionResolutionCacheInvalidation() {
+
+		PermissionResolutionCache.invalidate();
+
+		// resolution for node 11 examined node 10
+		final PermissionResolutionCache.Resolution first = PermissionResolutionCache.begin(1L);
+
+		first.addDependency(10L);
+		first.addDependency(11L);
+		first.store(11L, Permission.read, true);
+
+		PermissionResolutionCache.commit(first);
+
+		// resolution for node 21 reuses the result for node 11
+		final PermissionResolutionCache.Resolution second = PermissionResolutionCache.begin(1L);
+
+		second.addDependency(21L);
+		Assert.assertEquals("Cached result should be returned", Boolean.TRUE, PermissionResolutionCache.get(second, 11L, Permission.read));
+		second.store(21L, Permission.read, true);
+
+		PermissionResolutionCache.commit(second);
+
+		// unrelated resolution
+		final PermissionResolutionCache.Resolution third = PermissionResolutionCache.begin(1L);
+
+		third.addDependency(31L);
+		third.store(31L, Permission.read, false);
+
+		PermissionResolutionCache.commit(third);
+
+		Assert.assertEquals("Invalid cache size", 3, PermissionResolutionCache.getSize());
+
+		// modification of an object that no result depends on
+		PermissionResolutionCache.invalidate(99L);
+
+		Assert.assertEquals("Unrelated invalidation should not remove results", 3, PermissionResolutionCache.getSize());
+
+		// modification of node 10 must remove the results for 11 and 21, but not for 31
+		PermissionResolutionCache.invalidate(10L);
+
+		final PermissionResolutionCache.Resolution check = PermissionResolutionCache.begin(1L);
+
+		Assert.assertNull("Dependent result should have been removed",           PermissionResolutionCache.get(check, 11L, Permission.read));
+		Assert.assertNull("Transitively dependent result should have been removed", PermissionResolutionCache.get(check, 21L, Permission.read));
+		Assert.assertEquals("Unrelated result should still be cached", Boolean.FALSE, PermissionResolutionCache.get(check, 31L, Permission.read));
+
+		PermissionResolutionCache.commit(check);
+
+		// results of a resolution that was invalidated while running must not be published
+		final PermissionResolutionCache.Resolution running = PermissionResolutionCache.begin(1L);
+
+		running.addDependency(41L);
+		running.store(41L, Permission.read, true);
+
+		PermissionResolutionCache.invalidate(41L);
+		PermissionResolutionCache.commit(running);
+
+		final PermissionResolutionCache.Resolution check2 = PermissionResolutionCache.begin(1L);
+
+		Assert.assertNull("Stale result should not be published", PermissionResolutionCache.get(check2, 41L, Permission.read));
+
+		PermissionResolutionCache.commit(check2);
+	}
+
+	@Test
+	public void test03PermissionResolutionCacheReadOnlyWorkload() {
+
+		PermissionResolutionCache.invalidate();
+
+		final PermissionResolutionCache.Resolution initial = PermissionResolutionCache.begin(1L);
+
+		initial.addDependency(10L);
+		initial.store(10L, Permission.read, true);
+
+		PermissionResolutionCache.commit(initial);
+
+		final long invalidations = PermissionResolutionCache.getInvalidationCount();
+		final long hits          = PermissionResolutionCache.getHitCount();
+
+		// many resolutions that only read cached results
+		for (int i=0; i<100000; i++) {
+
+			final PermissionResolutionCache.Resolution resolution = PermissionResolutionCache.begin(1L);
+
+			Assert.assertEquals("Cached result should be returned", Boolean.TRUE, PermissionResolutionCache.get(resolution, 10L, Permission.read));
+
+			PermissionResolutionCache.commit(resolution);
+		}
+
+		Assert.assertEquals("Read-only workload should not invalidate anything", invalidations, PermissionResolutionCache.getInvalidationCount());
+		Assert.assertEquals("Invalid hit count", hits + 100000, PermissionResolutionCache.getHitCount());
+		Assert.assertEquals("Invalid cache size", 1, PermissionResolutionCache.getSize());
+		Assert.assertEquals("Dependencies should be tracked once per result", 2, PermissionResolutionCache.getDependencyCount());
+	}
+
+	@Test
+	public void test04PermissionResolutionCacheEviction() {
+
+		PermissionResolutionCache.invalidate();
+
+		final int count = Settings.ResolutionCacheSize.getValue() * 2;
+
+		for (int i=0; i<count; i++) {
+
+			final PermissionResolutionCache.Resolution resolution = PermissionResolutionCache.begin(1L);
+
+			resolution.addDependency(1000L + i);
+			resolution.store(1000L + i, Permission.read, true);
+
+			PermissionResolutionCache.commit(resolution);
+		}
+
+		final int size = PermissionResolutionCache.getSize();
+
+		Assert.assertTrue("Cache size should be bounded", size < count);
+
+		// one dependency per cached result plus the shared principal
+		Assert.assertTrue("Dependencies of evicted results should be removed", PermissionResolutionCache.getDependencyCount() <= size + 1);
+
+		PermissionResolutionCache.invalidate();
+
+		Assert.assertEquals("Cache should be empty", 0, PermissionResolutionCache.getSize());
+		Assert.assertEquals("Dependencies should be empty", 0, PermissionResolutionCache.getDependencyCount());
+	}
+
 	// ----- private methods -----
 	public static void clearResourceAccess() {
 
@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Random;
 import org.apache.commons.lang3.StringUtils;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import org.junit.Test;
@@ -45,6 +46,7 @@ import org.structr.core.entity.TestOne;
 import org.structr.core.entity.TestSeven;
 import org.structr.core.entity.TestSix;
 import org.structr.core.entity.Principal;
+import org.structr.core.entity.SchemaNode;
 import org.structr.core.entity.relationship.NodeHasLocation;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.NodeInterface;
@@ -1945,6 +1947,130 @@ public class SearchAndSortingTest extends StructrTest {
 
 	}
 
+	@Test
+	public void test14RelationshipVisibilityForAnonymousUsers() {
+
+		try (final Tx tx = app.tx()) {
+
+			final TestSix publicSix    = createTestNode(TestSix.class, new NodeAttribute<>(GraphObject.visibleToPublicUsers, true));
+			final TestSix privateSix   = createTestNode(TestSix.class);
+			final TestOne publicOne1   = createTestNode(TestOne.class, new NodeAttribute<>(GraphObject.visibleToPublicUsers, true));
+			final TestOne publicOne2   = createTestNode(TestOne.class, new NodeAttribute<>(GraphObject.visibleToPublicUsers, true));
+			final TestOne privateOne   = createTestNode(TestOne.class);
+
+			// only relationships between two public nodes are visible
+			app.create(publicSix,  publicOne1, SixOneManyToMany.class);
+			app.create(publicSix,  publicOne2, SixOneManyToMany.class);
+			app.create(publicSix,  privateOne, SixOneManyToMany.class);
+			app.create(privateSix, publicOne1, SixOneManyToMany.class);
+			app.create(privateSix, privateOne, SixOneManyToMany.class);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		final App anonymousApp = StructrApp.getInstance(SecurityContext.getInstance(null, AccessMode.Frontend));
+
+		try (final Tx tx = anonymousApp.tx()) {
+
+			final Result<SixOneManyToMany> result = anonymousApp.relationshipQuery(SixOneManyToMany.class).getResult();
+
+			assertEquals("Anonymous users should only see relationships between public nodes", 2, result.size());
+			assertEquals("Result count should not include invisible relationships", 2, (int)result.getRawResultCount());
+
+			for (final SixOneManyToMany rel : result.getResults()) {
+
+				assertTrue("Start node of visible relationship should be public", rel.getSourceNode().getProperty(GraphObject.visibleToPublicUsers));
+				assertTrue("End node of visible relationship should be public",   rel.getTargetNode().getProperty(GraphObject.visibleToPublicUsers));
+			}
+
+			// paging is applied after visibility filtering
+			final Result<SixOneManyToMany> page = anonymousApp.relationshipQuery(SixOneManyToMany.class).pageSize(1).page(2).getResult();
+
+			assertEquals("Invalid page size", 1, page.size());
+			assertEquals("Result count should not include invisible relationships", 2, (int)page.getRawResultCount());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals("Superuser should see all relationships", 5, app.relationshipQuery(SixOneManyToMany.class).getResult().size());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void test15BlankSearchOnFunctionProperty() {
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(SchemaNode.class,
+				new NodeAttribute<>(SchemaNode.name, "Test"),
+				new NodeAttribute<>(new StringProperty("_testFunction"), "Function(this.name)")
+			);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		final Class testType = StructrApp.getConfiguration().getNodeEntityClass("Test");
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(testType, "named");
+			app.create(testType);
+			app.create(testType);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final PropertyKey key = StructrApp.key(testType, "testFunction");
+
+			// the value of a function property is not stored, so blank() must not be evaluated in the database
+			final Result result = app.nodeQuery(testType).blank(key).getResult();
+
+			assertEquals("Invalid blank search result for function property", 2, result.size());
+
+			for (final Object obj : result.getResults()) {
+				assertNull("Invalid blank search result for function property", ((GraphObject)obj).getProperty(AbstractNode.name));
+			}
+
+			// paging is applied after filtering
+			final Result page = app.nodeQuery(testType).blank(key).pageSize(1).page(1).getResult();
+
+			assertEquals("Invalid page size", 1, page.size());
+			assertEquals("Invalid result count for blank search on function property", 2, (int)page.getRawResultCount());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
 	// ----- private methods -----
 	private void testPaging(final Class type, final int pageSize, final int page, final int number, final int offset, final boolean includeDeletedAndHidden, final boolean publicOnly, final PropertyKey sortKey, final boolean sortDesc) throws FrameworkException {
 
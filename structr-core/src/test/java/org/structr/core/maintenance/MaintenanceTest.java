@@ -25,12 +25,15 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.fail;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -40,6 +43,7 @@ import org.structr.api.Transaction;
 import org.structr.api.graph.Label;
 import org.structr.api.graph.Node;
 import org.structr.api.util.Iterables;
+import org.structr.common.SecurityContext;
 import org.structr.common.StructrTest;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Result;
@@ -48,8 +52,11 @@ import org.structr.core.entity.TestEleven;
 import org.structr.core.entity.TestOne;
 import org.structr.core.entity.TestTwo;
 import org.structr.core.graph.BulkCreateLabelsCommand;
+import org.structr.core.graph.BulkGraphOperation;
 import org.structr.core.graph.BulkRebuildIndexCommand;
 import org.structr.core.graph.BulkSetNodePropertiesCommand;
+import org.structr.core.graph.NodeFactory;
+import org.structr.core.graph.NodeServiceCommand;
 import org.structr.core.graph.SyncCommand;
 import org.structr.core.graph.Tx;
 
@@ -381,6 +388,54 @@ public class MaintenanceTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testParallelBulkGraphOperationCheckpoint() {
+
+		try {
+
+			final List<TestOne> nodes        = createTestNodes(TestOne.class, 100);
+			final DatabaseService graphDb    = app.getDatabaseService();
+			final NodeServiceCommand command = app.command(BulkRebuildIndexCommand.class);
+			final Set<String> processed      = ConcurrentHashMap.newKeySet();
+			final String checkpointKey       = "bulk.TestCheckpoint.nodes.null.TestOne.checkpoint";
+			final List<Long> ids             = new LinkedList<>();
+
+			try (final Tx tx = app.tx()) {
+
+				for (final TestOne node : nodes) {
+					ids.add(node.getId());
+				}
+
+				tx.success();
+			}
+
+			Collections.sort(ids);
+
+			// simulate an interrupted run that has processed the first 50 nodes
+			app.setGlobalSetting(checkpointKey, ids.get(50));
+
+			final long count = command.parallelBulkGraphOperation(securityContext, NodeServiceCommand.nodePartitioner(graphDb, new NodeFactory<TestOne>(securityContext), null, "TestOne", null), 10, "TestCheckpoint", new BulkGraphOperation<TestOne>() {
+
+				@Override
+				public void handleGraphObject(final SecurityContext securityContext, final TestOne node) {
+					processed.add(node.getUuid());
+				}
+			});
+
+			assertEquals(50, count);
+			assertEquals(50, processed.size());
+
+			// checkpoint must be removed after a successful run
+			final Object checkpoint = app.getGlobalSetting(checkpointKey, null);
+			assertNull(checkpoint);
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
 	@Test
 	public void testBulkSetNodePropertiesCommand() {
 
@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.scheduler;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.structr.api.config.Settings;
+import org.structr.common.StructrTest;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.Tx;
+
+/**
+ * Tests the lane, priority and fairness rules of the job queue.
+ */
+public class JobQueueManagerTest extends StructrTest {
+
+	private final List<String> started = new CopyOnWriteArrayList<>();
+
+	@Test
+	public void testLanesAndPriorities() {
+
+		final String lanes = Settings.JobLanes.getValue();
+
+		Settings.JobLanes.setValue("LANE_A:2, LANE_B:1");
+
+		try (final Tx tx = app.tx()) {
+
+			final JobQueueManager manager = JobQueueManager.getInstance();
+			final Principal user1         = app.create(Principal.class, "user1");
+			final Principal user2         = app.create(Principal.class, "user2");
+
+			final TestJob a1 = new TestJob("a1", "LANE_A", user1, 0);
+			final TestJob a2 = new TestJob("a2", "LANE_A", user1, 0);
+			final TestJob a3 = new TestJob("a3", "LANE_A", user1, 0);
+			final TestJob a4 = new TestJob("a4", "LANE_A", user1, 0);
+			final TestJob a5 = new TestJob("a5", "LANE_A", user2, 5);
+			final TestJob b1 = new TestJob("b1", "LANE_B", user2, 0);
+			final TestJob b2 = new TestJob("b2", "LANE_B", user2, 0);
+
+			manager.addJob(a1);
+			manager.addJob(a2);
+			manager.addJob(a3);
+			manager.addJob(b1);
+			manager.addJob(b2);
+
+			// each lane is filled up to its own limit
+			assertEquals("Lanes should be filled up to their limit", list("a1", "a2", "b1"), started);
+
+			manager.addJob(a4);
+			manager.addJob(a5);
+
+			// the job with the highest priority is started first
+			a1.finish();
+			assertEquals("Job with higher priority should be started first", list("a1", "a2", "b1", "a5"), started);
+
+			// queue order among jobs with equal priority
+			a2.finish();
+			assertEquals("Jobs of the same priority should be started in queue order", list("a1", "a2", "b1", "a5", "a3"), started);
+
+			// a full lane does not block other lanes
+			b1.finish();
+			assertEquals("Lanes should be independent", list("a1", "a2", "b1", "a5", "a3", "b2"), started);
+
+			a3.finish();
+			a5.finish();
+			b2.finish();
+			a4.finish();
+
+			assertEquals("All jobs should be started", 7, started.size());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+
+		} finally {
+
+			Settings.JobLanes.setValue(lanes);
+		}
+	}
+
+	@Test
+	public void testFairScheduling() {
+
+		try (final Tx tx = app.tx()) {
+
+			final JobQueueManager manager = JobQueueManager.getInstance();
+			final Principal user1         = app.create(Principal.class, "user1");
+			final Principal user2         = app.create(Principal.class, "user2");
+
+			final TestJob c1 = new TestJob("c1", "LANE_C", user1, 0);
+			final TestJob c2 = new TestJob("c2", "LANE_C", user1, 0);
+			final TestJob c3 = new TestJob("c3", "LANE_C", user1, 0);
+			final TestJob c4 = new TestJob("c4", "LANE_C", user2, 0);
+
+			manager.addJob(c1);
+			manager.addJob(c2);
+			manager.addJob(c3);
+			manager.addJob(c4);
+
+			assertEquals("Lane should be filled up to the default limit", list("c1"), started);
+
+			// user2 was never served, so its job overtakes the older jobs of user1
+			c1.finish();
+			assertEquals("User who was served longest ago should be preferred", list("c1", "c4"), started);
+
+			c4.finish();
+			assertEquals("Jobs of a single user should be started in queue order", list("c1", "c4", "c2"), started);
+
+			c2.finish();
+			c3.finish();
+
+			assertEquals("All jobs should be started", 4, started.size());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	// ----- private methods -----
+	private List<String> list(final String... names) {
+
+		final List<String> list = new CopyOnWriteArrayList<>();
+
+		Collections.addAll(list, names);
+
+		return list;
+	}
+
+	// ----- nested classes -----
+	private class TestJob extends ScheduledJob {
+
+		private String lane = null;
+
+		TestJob(final String name, final String lane, final Principal user, final int priority) {
+
+			super(name, user, Collections.singletonMap("priority", priority));
+
+			this.lane = lane;
+		}
+
+		void finish() {
+			jobFinished();
+		}
+
+		@Override
+		public boolean runInitialChecks() throws FrameworkException {
+			return true;
+		}
+
+		@Override
+		public Runnable getRunnable() {
+
+			started.add(jobName);
+
+			return () -> {};
+		}
+
+		@Override
+		public String getJobType() {
+			return lane;
+		}
+
+		@Override
+		public String getJobStatusType() {
+			return "TEST_JOB_STATUS";
+		}
+
+		@Override
+		public String getJobExceptionMessageType() {
+			return "TEST_JOB_EXCEPTION";
+		}
+
+		@Override
+		public Map<String, Object> getStatusData(final JobStatusMessageSubtype subtype) {
+			return new LinkedHashMap<>();
+		}
+
+		@Override
+		public Map<String, Object> getJobInfo() {
+			return new LinkedHashMap<>();
+		}
+	}
+}
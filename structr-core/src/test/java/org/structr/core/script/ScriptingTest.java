@@ -30,6 +30,10 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.lang3.StringUtils;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -73,6 +77,7 @@ import org.structr.core.function.ToDateFunction;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
+import org.structr.core.parser.ExpressionCache;
 import org.structr.core.property.EnumProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
@@ -2485,4 +2490,166 @@ public class ScriptingTest extends StructrTest {
 			fail("Unexpected exception.");
 		}
 	}
+
+	@Test
+	public void testConcurrentScriptEvaluation() {
+
+		final int threadCount = Math.max(4, Runtime.getRuntime().availableProcessors());
+		final int iterations  = 50;
+
+		// every thread must get the correct result for each script, regardless of shared compiled scripts
+		assertEquals("Invalid number of concurrent script evaluations", threadCount * iterations, evaluateConcurrently(threadCount, iterations));
+	}
+
+	@Test
+	public void testExpressionCache() {
+
+		ExpressionCache.clear();
+
+		try (final Tx tx = app.tx()) {
+
+			final TestOne first     = app.create(TestOne.class, "first");
+			final TestOne second    = app.create(TestOne.class, "second");
+			final ActionContext ctx = new ActionContext(securityContext, null);
+			final long hits         = ExpressionCache.getHitCount();
+			final long misses       = ExpressionCache.getMissCount();
+
+			// the same parsed expression is evaluated for different entities
+			assertEquals("Invalid result for cached expression", "first",  Scripting.evaluate(ctx, first,  "${this.name}", "test"));
+			assertEquals("Invalid result for cached expression", "second", Scripting.evaluate(ctx, second, "${this.name}", "test"));
+			assertEquals("Invalid result for cached expression", "first",  Scripting.evaluate(ctx, first,  "${this.name}", "test"));
+
+			assertEquals("Expression should be parsed only once", misses + 1, ExpressionCache.getMissCount());
+			assertEquals("Invalid hit count", hits + 2, ExpressionCache.getHitCount());
+			assertEquals("Invalid cache size", 1, ExpressionCache.getSize());
+
+			// the cache is bounded
+			final int count = Settings.ExpressionCacheSize.getValue() * 2;
+
+			for (int i=0; i<count; i++) {
+
+				assertEquals("Invalid result for cached expression", "value" + i, Scripting.evaluate(ctx, null, "${concat('value', '" + i + "')}", "test"));
+			}
+
+			assertTrue("Expression cache should be bounded", ExpressionCache.getSize() < count);
+
+			// evicted expressions are parsed again
+			assertEquals("Invalid result for evicted expression", "value0", Scripting.evaluate(ctx, null, "${concat('value', '0')}", "test"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testChangelogStore() {
+
+		Settings.ChangelogEnabled.setValue(true);
+
+		try {
+
+			TestOne testOne = null;
+
+			try (final Tx tx = app.tx()) {
+
+				testOne = app.create(TestOne.class, "first");
+				tx.success();
+			}
+
+			final long start = System.currentTimeMillis();
+
+			for (final String name : new String[] { "second", "third" }) {
+
+				try (final Tx tx = app.tx()) {
+
+					testOne.setProperty(TestOne.name, name);
+					tx.success();
+				}
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final ActionContext ctx = new ActionContext(securityContext, null);
+				final long future       = System.currentTimeMillis() + 60000L;
+
+				assertNull("Changelog should not be stored in the node", testOne.getProperty(GraphObject.structrChangeLog));
+				assertEquals("Invalid changelog() result", 2, ((List)Scripting.evaluate(ctx, testOne, "${changelog(this, false, 'verb', 'change', 'key', 'name', 'timeFrom', " + start + ", 'timeTo', now)}", "test")).size());
+				assertEquals("Invalid changelog() result", 0, ((List)Scripting.evaluate(ctx, testOne, "${changelog(this, false, 'timeFrom', " + future + ")}", "test")).size());
+				assertEquals("Invalid changelog() result", 0, ((List)Scripting.evaluate(ctx, testOne, "${{ return Structr.changelog(Structr.get('this'), false, { timeFrom: " + future + " }); }}", "test")).size());
+
+				tx.success();
+			}
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+
+		} finally {
+
+			Settings.ChangelogEnabled.setValue(false);
+		}
+	}
+
+	// ----- private methods -----
+	private long evaluateConcurrently(final int threadCount, final int iterationsPerThread) {
+
+		final ExecutorService executor   = Executors.newFixedThreadPool(threadCount);
+		final List<Future<Long>> futures = new LinkedList<>();
+		long total                       = 0L;
+
+		try {
+
+			for (int i=0; i<threadCount; i++) {
+
+				final int offset = i;
+
+				futures.add(executor.submit(() -> {
+
+					long count = 0L;
+
+					try (final Tx tx = app.tx()) {
+
+						final ActionContext ctx = new ActionContext(securityContext, null);
+
+						for (int j=0; j<iterationsPerThread; j++) {
+
+							// a small set of distinct scripts so that the compile cache is shared between threads
+							final int value = (offset + j) % 16;
+
+							assertEquals("Invalid concurrent script evaluation result", Integer.toString(value * 2), Scripting.replaceVariables(ctx, null, "${{ var a = [" + value + "]; return a.map(function(x) { return x * 2; }).join(''); }}"));
+
+							count++;
+						}
+
+						tx.success();
+					}
+
+					return count;
+				}));
+			}
+
+			for (final Future<Long> future : futures) {
+				total += future.get();
+			}
+
+		} catch (ExecutionException ex) {
+
+			fail("Unexpected exception in concurrent script evaluation: " + ex.getCause());
+
+		} catch (InterruptedException iex) {
+
+			fail("Concurrent script evaluation was interrupted");
+
+		} finally {
+
+			executor.shutdown();
+		}
+
+		return total;
+	}
 }
@@ -29,6 +29,7 @@ import org.apache.commons.lang.StringUtils;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import org.junit.Test;
@@ -592,6 +593,32 @@ public class SchemaTest extends StructrTest {
 		assertTrue("Property view is not inherited correctly", views.contains("fav"));
 	}
 
+	@Test
+	public void testSchemaSnapshotVersion() {
+
+		final SchemaSnapshot before = StructrApp.getConfiguration().getSchemaSnapshot();
+
+		assertNull("Unknown type should not be in schema snapshot", before.getNodeEntities().get("SnapshotTest"));
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(SchemaNode.class, new NodeAttribute<>(SchemaNode.name, "SnapshotTest"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		final SchemaSnapshot after = StructrApp.getConfiguration().getSchemaSnapshot();
+
+		assertTrue("Schema snapshot version was not increased by schema change", after.getVersion() > before.getVersion());
+		assertNotNull("New type is missing in schema snapshot", after.getNodeEntities().get("SnapshotTest"));
+		assertNull("Schema snapshot is not immutable", before.getNodeEntities().get("SnapshotTest"));
+		assertNotNull("New type is not visible to lookups", StructrApp.getConfiguration().getNodeEntityClass("SnapshotTest"));
+	}
+
 	@Test
 	public void testBuiltinTypeFlag() {
 
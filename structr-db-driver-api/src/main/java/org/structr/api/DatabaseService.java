@@ -18,11 +18,14 @@
  */
 package org.structr.api;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import org.structr.api.graph.Direction;
 import org.structr.api.graph.GraphProperties;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipType;
 import org.structr.api.index.Index;
 
 /**
@@ -46,6 +49,28 @@ public interface DatabaseService {
 
 	Node createNode(final Set<String> labels, final Map<String, Object> properties);
 
+	/**
+	 * Creates one node with the given labels for each of the given
+	 * property maps, using as few database round trips as possible.
+	 *
+	 * @param labels
+	 * @param properties
+	 * @return the new nodes, in the order of the given property maps
+	 */
+	List<Node> createNodes(final Set<String> labels, final List<Map<String, Object>> properties);
+
+	/**
+	 * Creates one relationship of the given type for each of the given
+	 * maps, which must contain the IDs of the start and end node under
+	 * the keys <code>start</code> and <code>end</code>, and the initial
+	 * properties under the key <code>properties</code>.
+	 *
+	 * @param relationshipType
+	 * @param relationships
+	 * @return the new relationships, in the order of the given maps
+	 */
+	List<Relationship> createRelationships(final RelationshipType relationshipType, final List<Map<String, Object>> relationships);
+
 	Node getNodeById(final long id);
 	Relationship getRelationshipById(final long id);
 
@@ -56,6 +81,59 @@ public interface DatabaseService {
 	QueryResult<Relationship> getAllRelationships();
 	QueryResult<Relationship> getRelationshipsByType(final String type);
 
+	/**
+	 * Returns the highest ID that is currently used by a node, or -1 if
+	 * the database contains no nodes.
+	 *
+	 * @return the highest node ID
+	 */
+	long getMaxNodeId();
+
+	/**
+	 * Returns the highest ID that is currently used by a relationship,
+	 * or -1 if the database contains no relationships.
+	 *
+	 * @return the highest relationship ID
+	 */
+	long getMaxRelationshipId();
+
+	/**
+	 * Returns all nodes with IDs between fromId (inclusive) and toId
+	 * (exclusive), optionally restricted to the given label and / or
+	 * the given value of the type property.
+	 *
+	 * @param fromId
+	 * @param toId
+	 * @param label the label, or null
+	 * @param type the type, or null
+	 * @return the nodes
+	 */
+	QueryResult<Node> getNodesInRange(final long fromId, final long toId, final String label, final String type);
+
+	/**
+	 * Returns all relationships with IDs between fromId (inclusive) and
+	 * toId (exclusive), optionally restricted to the given type.
+	 *
+	 * @param fromId
+	 * @param toId
+	 * @param type the relationship type, or null
+	 * @return the relationships
+	 */
+	QueryResult<Relationship> getRelationshipsInRange(final long fromId, final long toId, final String type);
+
+	/**
+	 * Loads the relationships of the given type and direction for all
+	 * nodes with the given IDs at once and stores them in the nodes'
+	 * relationship caches, so that subsequent calls to
+	 * Node.getRelationships(direction, relationshipType) don't need to
+	 * access the database.
+	 *
+	 * @param nodeIds the IDs of the nodes to prefetch relationships for
+	 * @param direction the direction of the relationships
+	 * @param relationshipType the type of the relationships
+	 */
+	void prefetchRelationships(final Set<Long> nodeIds, final Direction direction, final RelationshipType relationshipType);
+
 	GraphProperties getGlobalProperties();
 
 	String getTenantIdentifier();
@@ -26,6 +26,12 @@ public interface Transaction extends AutoCloseable {
 	void failure();
 	void success();
 
+	/**
+	 * Writes all changes that are buffered in this transaction to the
+	 * database, without committing them.
+	 */
+	void flush();
+
 	@Override
 	void close();
 }
@@ -64,6 +64,7 @@ public class Settings {
 	public static final Setting<String> SnapshotsPath         = new StringSetting(generalGroup,   "Paths",       "snapshot.path",              "snapshots" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<String> LayoutsPath           = new StringSetting(generalGroup,   "Paths",       "layouts.path",               "layouts" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<String> WebDataPath           = new StringSetting(generalGroup,   "Paths",       "data.webapp.path",           "webapp-data" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<String> SchemaCachePath       = new StringSetting(generalGroup,   "Paths",       "schema.cache.path",          "schema-cache" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<Boolean> LogSchemaOutput      = new BooleanSetting(generalGroup,  "Logging",     "NodeExtender.log",           false);
 	public static final Setting<Boolean> RequestLogging       = new BooleanSetting(generalGroup,  "Logging",     "log.requests",               false);
 	public static final Setting<String> LogPrefix             = new StringSetting(generalGroup,   "Logging",     "log.prefix",                 "structr");
@@ -121,8 +122,16 @@ public class Settings {
 
 	// application settings
 	public static final Setting<Integer> ResolutionDepth      = new IntegerSetting(applicationGroup, "Security",   "application.security.resolution.depth",       5);
+	public static final Setting<Integer> ResolutionCacheSize  = new IntegerSetting(applicationGroup, "Security",   "application.security.resolution.cache.size",  100000);
 	public static final Setting<String> OwnerlessNodes        = new StringSetting(applicationGroup,  "Security",   "application.security.ownerless.nodes",        "read");
+	public static final Setting<Integer> ExpressionCacheSize  = new IntegerSetting(applicationGroup, "Scripting",  "application.scripting.expressioncache.size",  10000);
 	public static final Setting<Boolean> ChangelogEnabled     = new BooleanSetting(applicationGroup, "Changelog",  "application.changelog.enabled",               false);
+	public static final Setting<String> ChangelogPath         = new StringSetting(applicationGroup,  "Changelog",  "application.changelog.path",                  "changelog" + File.separator, "IMPORTANT: Path is relative to base.path. The changelog is written after each transaction has been committed and is not part of the database, so it is neither included in database backups nor in deployment exports. Back up this directory separately.");
+	public static final Setting<Integer> ChangelogSegmentSize = new IntegerSetting(applicationGroup, "Changelog",  "application.changelog.segment.size",          64);
+	public static final Setting<String> LogEventsPath         = new StringSetting(applicationGroup,  "Log Events", "application.logevents.path",                  "logevents" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<Integer> MessagingBatchSize   = new IntegerSetting(applicationGroup, "Messaging",  "application.messaging.batch.size",            100);
+	public static final Setting<Integer> MessagingParallelism = new IntegerSetting(applicationGroup, "Messaging",  "application.messaging.parallelism",           1);
+	public static final Setting<Integer> MessagingQueueSize   = new IntegerSetting(applicationGroup, "Messaging",  "application.messaging.queue.size",            10000);
 	public static final Setting<Boolean> FilesystemEnabled    = new BooleanSetting(applicationGroup, "Filesystem", "application.filesystem.enabled",              false);
 	public static final Setting<Boolean> UniquePaths          = new BooleanSetting(applicationGroup, "Filesystem", "application.filesystem.unique.paths",         true);
 	public static final Setting<String> DefaultChecksums      = new StringSetting(applicationGroup,  "Filesystem", "application.filesystem.checksums.default",    "", "List of checksums to be calculated on file creation by default.");
@@ -130,12 +139,21 @@ public class Settings {
 	public static final Setting<Integer> IndexingLimit        = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.limit",       50000);
 	public static final Setting<Integer> IndexingMinLength    = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.minlength",   3);
 	public static final Setting<Integer> IndexingMaxLength    = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.maxlength",   30);
+	public static final Setting<String> IndexingPath          = new StringSetting(applicationGroup,  "Filesystem", "application.filesystem.indexing.path",        "fulltext" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<Integer> IndexingMaxResults   = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.maxresults",  1000);
 	public static final Setting<Boolean> FollowSymlinks       = new BooleanSetting(applicationGroup, "Filesystem", "application.filesystem.mount.followSymlinks", true);
 	public static final Setting<String> DefaultUploadFolder   = new StringSetting(applicationGroup,  "Filesystem", "application.uploads.folder",                  "");
+	public static final Setting<Boolean> ThumbnailsAsync      = new BooleanSetting(applicationGroup, "Filesystem", "application.thumbnails.async",                true);
+	public static final Setting<Integer> ThumbnailThreads     = new IntegerSetting(applicationGroup, "Filesystem", "application.thumbnails.threads",              2);
+	public static final Setting<Integer> ThumbnailQueueSize   = new IntegerSetting(applicationGroup, "Filesystem", "application.thumbnails.queue.size",           1000);
+	public static final Setting<Integer> JobConcurrency       = new IntegerSetting(applicationGroup, "Jobs",       "application.jobs.concurrency",                1);
+	public static final Setting<String> JobLanes              = new StringSetting(applicationGroup,  "Jobs",       "application.jobs.lanes",                      "SCRIPT:4", "Comma-separated list of job types and the number of jobs of that type that may run concurrently, e.g. SCRIPT:4, CSV:1, XML:1");
+	public static final Setting<Integer> MaintenanceThreads   = new IntegerSetting(applicationGroup, "Maintenance", "application.maintenance.threads",            4);
 	public static final Setting<String> HttpProxyUrl          = new StringSetting(applicationGroup,  "Proxy",      "application.proxy.http.url",                  "");
 	public static final Setting<String> HttpProxyUser         = new StringSetting(applicationGroup,  "Proxy",      "application.proxy.http.username",             "");
 	public static final Setting<String> HttpProxyPassword     = new StringSetting(applicationGroup,  "Proxy",      "application.proxy.http.password",             "");
 	public static final Setting<Boolean> SchemAutoMigration   = new BooleanSetting(applicationGroup, "Schema",     "application.schema.automigration",            false);
+	public static final Setting<Boolean> SchemaClassCache     = new BooleanSetting(applicationGroup, "Schema",     "application.schema.classcache.enabled",       true);
 
 	// mail settings
 	public static final Setting<String> SmtpHost              = new StringSetting(smtpGroup,  "SMTP Settings", "smtp.host",         "localhost");
@@ -178,6 +196,8 @@ public class Settings {
 	public static final Setting<String> HtmlAuthenticator         = new StringSetting(servletsGroup,  "HtmlServlet", "HtmlServlet.authenticator",         "org.structr.web.auth.UiAuthenticator");
 	public static final Setting<String> HtmlDefaultView           = new StringSetting(servletsGroup,  "HtmlServlet", "HtmlServlet.defaultview",           "public");
 	public static final Setting<Integer> HtmlOutputDepth          = new IntegerSetting(servletsGroup, "HtmlServlet", "HtmlServlet.outputdepth",           3);
+	public static final Setting<Integer> HtmlRenderingThreads     = new IntegerSetting(servletsGroup, "HtmlServlet", "HtmlServlet.rendering.threads",     8);
+	public static final Setting<Integer> HtmlFragmentCacheSize    = new IntegerSetting(servletsGroup, "HtmlServlet", "HtmlServlet.fragmentcache.size",    1000);
 	public static final Setting<String> HtmlResourceProvider      = new StringSetting(servletsGroup,  "HtmlServlet", "HtmlServlet.resourceprovider",      "org.structr.web.common.UiResourceProvider");
 	public static final Setting<Boolean> HtmlUserAutologin        = new BooleanSetting(servletsGroup, "HtmlServlet", "HtmlServlet.user.autologin",        false);
 	public static final Setting<Boolean> HtmlUserAutocreate       = new BooleanSetting(servletsGroup, "HtmlServlet", "HtmlServlet.user.autocreate",       true);
@@ -193,6 +213,11 @@ public class Settings {
 	public static final Setting<Boolean> WebsocketUserAutologin    = new BooleanSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.user.autologin",    false);
 	public static final Setting<Boolean> WebsocketUserAutocreate   = new BooleanSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.user.autocreate",   false);
 	public static final Setting<Boolean> WebsocketFrontendAccess   = new BooleanSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.frontendAccess",    false);
+	public static final Setting<Boolean> WebsocketBroadcastAsync   = new BooleanSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.broadcast.async",   true);
+	public static final Setting<Integer> WebsocketBroadcastDelay   = new IntegerSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.broadcast.delay",   50);
+	public static final Setting<Integer> WebsocketBroadcastQueue   = new IntegerSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.broadcast.queue",   100000);
+	public static final Setting<Integer> WebsocketBroadcastThreads = new IntegerSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.broadcast.threads", 4);
+	public static final Setting<Integer> WebsocketClientQueue      = new IntegerSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.client.queue",      1000);
 
 	public static final Setting<String> CsvServletPath       = new StringSetting(servletsGroup,  "CsvServlet", "CsvServlet.path",              "/structr/csv/*");
 	public static final Setting<String> CsvServletClass      = new StringSetting(servletsGroup,  "CsvServlet", "CsvServlet.class",             "org.structr.rest.servlet.CsvServlet");
@@ -203,6 +228,8 @@ public class Settings {
 	public static final Setting<Boolean> CsvUserAutologin    = new BooleanSetting(servletsGroup, "CsvServlet", "CsvServlet.user.autologin",    false);
 	public static final Setting<Boolean> CsvUserAutocreate   = new BooleanSetting(servletsGroup, "CsvServlet", "CsvServlet.user.autocreate",   false);
 	public static final Setting<Boolean> CsvFrontendAccess   = new BooleanSetting(servletsGroup, "CsvServlet", "CsvServlet.frontendAccess",    false);
+	public static final Setting<Integer> CsvImportQueueSize  = new IntegerSetting(servletsGroup, "CsvServlet", "CsvServlet.import.queuesize",  4);
+	public static final Setting<Integer> CsvImportWriters    = new IntegerSetting(servletsGroup, "CsvServlet", "CsvServlet.import.writers",    1);
 
 	public static final Setting<String> UploadServletPath       = new StringSetting(servletsGroup,  "UploadServlet", "UploadServlet.path",                  "/structr/upload");
 	public static final Setting<String> UploadServletClass      = new StringSetting(servletsGroup,  "UploadServlet", "UploadServlet.class",                 "org.structr.web.servlet.UploadServlet");
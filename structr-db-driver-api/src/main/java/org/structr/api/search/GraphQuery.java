@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.search;
+
+import org.structr.api.graph.Direction;
+
+/**
+ * Query predicate that matches nodes by the existence of relationships
+ * of a given type and direction to nodes with a given label.
+ */
+public interface GraphQuery extends QueryPredicate {
+
+	String getRelationshipType();
+	Direction getDirection();
+	String getOtherLabel();
+
+	/**
+	 * Indicates whether this predicate matches nodes that do NOT
+	 * have any relationship of the given type and direction.
+	 *
+	 * @return whether this predicate matches nodes without relationships
+	 */
+	boolean isEmptyQuery();
+}
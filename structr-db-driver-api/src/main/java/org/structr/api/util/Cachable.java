@@ -19,9 +19,10 @@
 package org.structr.api.util;
 
 /**
- * Elements that can be values in a FixedSizeCache. This interface
- * provides an invalidation method for entries that are removed
- * from the FixedSizeCache due to size restrictions.
+ * Elements that can be values in a FixedSizeCache or a
+ * ConcurrentFixedSizeCache. This interface provides an invalidation
+ * method for entries that are removed from the cache due to size
+ * restrictions.
  */
 public interface Cachable {
 
@@ -0,0 +1,277 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe, map-like storage structure with a fixed maximum size
+ * that can be used concurrently by many threads without a global lock.
+ *
+ * The cache is split into independent segments, each of which uses the
+ * CLOCK (second chance) algorithm to evict entries when the insertion
+ * of a new entry causes the segment to exceed its share of the maximum
+ * size. Reads only set a reference bit, so they never block each other.
+ * Values that implement {@link Cachable} are notified when they are
+ * evicted due to size restrictions.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class ConcurrentFixedSizeCache<K, V> {
+
+	private static final int MIN_ENTRIES_PER_SEGMENT = 64;
+
+	private Segment<K, V>[] segments = null;
+	private int segmentMask          = 0;
+
+	public ConcurrentFixedSizeCache(final int maxSize) {
+		this(maxSize, Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	public ConcurrentFixedSizeCache(final int maxSize, final int concurrencyLevel) {
+
+		final int maxSegments = Math.max(1, Math.min(concurrencyLevel, maxSize / MIN_ENTRIES_PER_SEGMENT));
+		final int count       = Integer.highestOneBit(maxSegments);
+		final int perSegment  = Math.max(1, (maxSize + count - 1) / count);
+
+		this.segments    = new Segment[count];
+		this.segmentMask = count - 1;
+
+		for (int i=0; i<count; i++) {
+			segments[i] = new Segment<>(perSegment);
+		}
+	}
+
+	public void put(final K key, final V value) {
+		segmentFor(key).put(key, value);
+	}
+
+	/**
+	 * Stores the given value if no value is cached for the given key yet,
+	 * and returns the value that is associated with the key afterwards.
+	 *
+	 * @param key
+	 * @param value
+	 * @return the existing value or the given value
+	 */
+	public V putIfAbsent(final K key, final V value) {
+		return segmentFor(key).putIfAbsent(key, value);
+	}
+
+	public V get(final K key) {
+		return segmentFor(key).get(key);
+	}
+
+	public void remove(final K key) {
+		segmentFor(key).remove(key);
+	}
+
+	public void clear() {
+
+		for (final Segment<K, V> segment : segments) {
+			segment.clear();
+		}
+	}
+
+	public int size() {
+
+		int size = 0;
+
+		for (final Segment<K, V> segment : segments) {
+			size += segment.size();
+		}
+
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	// ----- private methods -----
+	private Segment<K, V> segmentFor(final K key) {
+
+		int hash = key.hashCode();
+
+		// spread bits so that sequential keys (i.e. database IDs) are distributed evenly
+		hash ^= (hash >>> 16);
+		hash *= 0x85ebca6b;
+		hash ^= (hash >>> 13);
+
+		return segments[hash & segmentMask];
+	}
+
+	// ----- nested classes -----
+	private static class Entry<K, V> {
+
+		private volatile boolean referenced = false;
+		private volatile boolean removed    = false;
+		private K key                       = null;
+		private V value                     = null;
+
+		Entry(final K key, final V value) {
+			this.key   = key;
+			this.value = value;
+		}
+	}
+
+	private static class Segment<K, V> {
+
+		private final ConcurrentHashMap<K, Entry<K, V>> map = new ConcurrentHashMap<>();
+		private final Queue<Entry<K, V>> clock              = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger removedEntries          = new AtomicInteger();
+		private final AtomicInteger size                    = new AtomicInteger();
+		private int maxSize                                 = 0;
+
+		Segment(final int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		V get(final K key) {
+
+			final Entry<K, V> entry = map.get(key);
+			if (entry != null) {
+
+				// avoid unnecessary writes to shared memory
+				if (!entry.referenced) {
+					entry.referenced = true;
+				}
+
+				return entry.value;
+			}
+
+			return null;
+		}
+
+		void put(final K key, final V value) {
+
+			final Entry<K, V> entry    = new Entry<>(key, value);
+			final Entry<K, V> previous = map.put(key, entry);
+
+			if (previous != null) {
+
+				markRemoved(previous);
+
+			} else {
+
+				size.incrementAndGet();
+			}
+
+			clock.add(entry);
+			evict();
+		}
+
+		V putIfAbsent(final K key, final V value) {
+
+			final Entry<K, V> entry    = new Entry<>(key, value);
+			final Entry<K, V> existing = map.putIfAbsent(key, entry);
+
+			if (existing != null) {
+
+				existing.referenced = true;
+
+				return existing.value;
+			}
+
+			size.incrementAndGet();
+			clock.add(entry);
+			evict();
+
+			return value;
+		}
+
+		void remove(final K key) {
+
+			final Entry<K, V> entry = map.remove(key);
+			if (entry != null) {
+
+				size.decrementAndGet();
+				markRemoved(entry);
+			}
+		}
+
+		void clear() {
+
+			map.clear();
+			clock.clear();
+			removedEntries.set(0);
+			size.set(0);
+		}
+
+		int size() {
+			return size.get();
+		}
+
+		// ----- private methods -----
+		private void markRemoved(final Entry<K, V> entry) {
+
+			entry.removed = true;
+
+			// removed entries are skipped lazily by the clock hand, but
+			// we must not let them accumulate if no eviction takes place
+			if (removedEntries.incrementAndGet() > maxSize) {
+
+				removedEntries.set(0);
+				clock.removeIf(e -> e.removed);
+			}
+		}
+
+		private void evict() {
+
+			while (size.get() > maxSize) {
+
+				final Entry<K, V> candidate = clock.poll();
+				if (candidate == null) {
+
+					// queue was drained concurrently
+					return;
+				}
+
+				if (candidate.removed) {
+
+					removedEntries.decrementAndGet();
+					continue;
+				}
+
+				if (candidate.referenced) {
+
+					// second chance
+					candidate.referenced = false;
+					clock.add(candidate);
+					continue;
+				}
+
+				if (map.remove(candidate.key, candidate)) {
+
+					candidate.removed = true;
+					size.decrementAndGet();
+
+					if (candidate.value instanceof Cachable) {
+
+						((Cachable)candidate.value).onRemoveFromCache();
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+
+/**
+ *
+ */
+public class ConcurrentFixedSizeCacheTest {
+
+	@org.junit.Test
+	public void testConcurrentFixedSizeCache() {
+
+		final ConcurrentFixedSizeCache<Long, Long> test = new ConcurrentFixedSizeCache<>(10);
+
+		for (int i=0; i<100; i++) {
+
+			final Long value = Long.valueOf(i);
+			test.put(value, value);
+		}
+
+		Assert.assertEquals("Invalid ConcurrentFixedSizeCache size", 10, test.size());
+
+		// none of the entries was read, so no reference bit is set and CLOCK evicts in insertion order
+		for (int i=0; i<90; i++) {
+
+			final Long value = Long.valueOf(i);
+			Assert.assertNull("Invalid ConcurrentFixedSizeCache contents", test.get(value));
+		}
+
+		// check that the most recently inserted entries are kept
+		for (int i=90; i<100; i++) {
+
+			final Long value = Long.valueOf(i);
+			Assert.assertEquals("Invalid ConcurrentFixedSizeCache contents", test.get(value), value);
+		}
+	}
+
+	@org.junit.Test
+	public void testSecondChance() {
+
+		final ConcurrentFixedSizeCache<Long, Long> test = new ConcurrentFixedSizeCache<>(10);
+
+		for (long i=0; i<10; i++) {
+			test.put(i, i);
+		}
+
+		// access the first entry so it survives the next eviction
+		Assert.assertEquals("Invalid ConcurrentFixedSizeCache contents", Long.valueOf(0L), test.get(0L));
+
+		test.put(10L, 10L);
+
+		Assert.assertEquals("Invalid ConcurrentFixedSizeCache size", 10, test.size());
+		Assert.assertNotNull("Recently used entry was evicted", test.get(0L));
+		Assert.assertNull("Unused entry was not evicted", test.get(1L));
+	}
+
+	@org.junit.Test
+	public void testRemovalCallback() {
+
+		final ConcurrentFixedSizeCache<Long, TestCachable> test = new ConcurrentFixedSizeCache<>(10);
+		final List<TestCachable> values                         = new ArrayList<>();
+
+		for (long i=0; i<20; i++) {
+
+			final TestCachable value = new TestCachable();
+
+			values.add(value);
+			test.put(i, value);
+		}
+
+		for (int i=0; i<10; i++) {
+			Assert.assertTrue("Evicted entry was not notified", values.get(i).removed);
+		}
+
+		for (int i=10; i<20; i++) {
+			Assert.assertFalse("Cached entry was notified", values.get(i).removed);
+		}
+
+		// explicit removal does not trigger the callback
+		test.remove(15L);
+
+		Assert.assertFalse("Removed entry was notified", values.get(15).removed);
+		Assert.assertEquals("Invalid ConcurrentFixedSizeCache size", 9, test.size());
+	}
+
+	@org.junit.Test
+	public void testConcurrentAccess() throws InterruptedException {
+
+		final ConcurrentFixedSizeCache<Long, Long> test = new ConcurrentFixedSizeCache<>(1000);
+		final AtomicInteger errors                      = new AtomicInteger();
+		final List<Thread> threads                      = new ArrayList<>();
+
+		for (int t=0; t<8; t++) {
+
+			final Thread thread = new Thread(() -> {
+
+				for (long i=0; i<100000; i++) {
+
+					final Long key   = i % 5000;
+					final Long value = test.putIfAbsent(key, key);
+
+					if (!key.equals(value)) {
+						errors.incrementAndGet();
+					}
+
+					if (i % 7 == 0) {
+						test.remove(key);
+					}
+				}
+			});
+
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		Assert.assertEquals("Invalid ConcurrentFixedSizeCache contents", 0, errors.get());
+		Assert.assertTrue("ConcurrentFixedSizeCache exceeds maximum size", test.size() <= 1000);
+	}
+
+	// ----- nested classes -----
+	private static class TestCachable implements Cachable {
+
+		private boolean removed = false;
+
+		@Override
+		public void onRemoveFromCache() {
+			removed = true;
+		}
+	}
+}
@@ -0,0 +1,570 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cloud.sync;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Durable, append-only log of the transactions that need to be replicated
+ * to synchronization slaves.
+ *
+ * Every committed transaction is appended as a single record with a
+ * strictly increasing sequence number. The log only stores the IDs of
+ * the modified entities and the names of the modified properties, the
+ * current state of an entity is read from the database when the record
+ * is shipped. Records are written to segment files which are removed as
+ * soon as all slaves have acknowledged them, or when the log exceeds its
+ * maximum size.
+ *
+ * Each record is stored as [length][crc][sequence][entries], so that a
+ * record which was only partially written when the instance went down
+ * can be detected and removed when the log is opened.
+ */
+public class ReplicationLog {
+
+	private static final Logger logger         = LoggerFactory.getLogger(ReplicationLog.class.getName());
+	private static final String SEGMENT_PREFIX = "replication-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final String ID_FILE        = "replication.id";
+	private static final int HEADER_SIZE       = 8;
+
+	private final TreeMap<Long, Segment> segments = new TreeMap<>();
+	private FileChannel channel                   = null;
+	private File directory                        = null;
+	private String logId                          = null;
+	private long maxSegmentSize                   = 0L;
+	private long maxSize                          = 0L;
+	private long lastSequence                     = 0L;
+	private boolean forceWrites                   = false;
+
+	public ReplicationLog(final File directory, final long maxSegmentSize, final long maxSize, final boolean forceWrites) throws IOException {
+
+		this.directory      = directory;
+		this.maxSegmentSize = maxSegmentSize;
+		this.maxSize        = maxSize;
+		this.forceWrites    = forceWrites;
+
+		open();
+	}
+
+	/**
+	 * Returns the ID of this log. A new ID is created whenever the log
+	 * is created from scratch, so that sequence numbers from an earlier
+	 * log are not mistaken for positions in this log.
+	 *
+	 * @return the ID of this log
+	 */
+	public String getLogId() {
+		return logId;
+	}
+
+	/**
+	 * Appends the given entries as a new record and returns its sequence
+	 * number. The record is written to the operating system immediately,
+	 * it is only forced to disk if forceWrites is set.
+	 *
+	 * @param entries
+	 * @return the sequence number of the new record
+	 * @throws IOException
+	 */
+	public synchronized long append(final List<Entry> entries) throws IOException {
+
+		if (channel == null) {
+			throw new IOException("Replication log is closed");
+		}
+
+		final long sequence   = lastSequence + 1;
+		final ByteBuffer data = serialize(sequence, entries);
+		Segment segment       = segments.lastEntry().getValue();
+
+		if (segment.size >= maxSegmentSize && segment.lastSequence >= segment.firstSequence) {
+			segment = roll(sequence);
+		}
+
+		while (data.hasRemaining()) {
+			channel.write(data);
+		}
+
+		if (forceWrites) {
+			channel.force(false);
+		}
+
+		segment.size         = channel.position();
+		segment.lastSequence = sequence;
+		lastSequence         = sequence;
+
+		return sequence;
+	}
+
+	/**
+	 * Reads the records following the given sequence number, until
+	 * the given number of entries is reached. The first record is
+	 * always returned, regardless of its size.
+	 *
+	 * @param afterSequence
+	 * @param maxEntries
+	 * @return the records
+	 * @throws IOException
+	 */
+	public List<Record> read(final long afterSequence, final int maxEntries) throws IOException {
+
+		final List<Record> records  = new ArrayList<>();
+		final List<Segment> visible = new ArrayList<>();
+		final List<Long> sizes      = new ArrayList<>();
+		int entryCount              = 0;
+
+		// capture the committed length of each segment, appends may
+		// continue while we read the part of the files before that
+		synchronized (this) {
+
+			final Long start = segments.floorKey(afterSequence + 1);
+
+			for (final Segment segment : segments.tailMap(start != null ? start : segments.firstKey()).values()) {
+
+				visible.add(segment);
+				sizes.add(segment.size);
+			}
+		}
+
+		for (int i=0; i<visible.size(); i++) {
+
+			final Segment segment = visible.get(i);
+			final long size       = sizes.get(i);
+			long position         = 0L;
+
+			// continue where the last read of this segment stopped, if possible
+			final long[] hint = segment.hint;
+			if (hint != null && hint[0] == afterSequence && hint[1] <= size) {
+				position = hint[1];
+			}
+
+			try (final InputStream in = Files.newInputStream(segment.file.toPath())) {
+
+				skipFully(in, position);
+
+				final DataInputStream dis = new DataInputStream(new BufferedInputStream(in));
+
+				while (position < size && entryCount < maxEntries) {
+
+					final Record record = readRecord(dis, size - position);
+					if (record == null) {
+						break;
+					}
+
+					position += HEADER_SIZE + record.length;
+
+					if (record.sequence > afterSequence) {
+
+						records.add(record);
+						entryCount += record.entries.size();
+
+						segment.hint = new long[] { record.sequence, position };
+					}
+				}
+			}
+
+			if (entryCount >= maxEntries) {
+				break;
+			}
+		}
+
+		return records;
+	}
+
+	/**
+	 * Removes all segments that only contain records up to the given
+	 * sequence number, i.e. records that were acknowledged by all slaves,
+	 * as well as the oldest segments if the log exceeds its maximum size.
+	 *
+	 * @param acknowledgedSequence
+	 */
+	public synchronized void truncate(final long acknowledgedSequence) {
+
+		long totalSize = 0L;
+
+		for (final Segment segment : segments.values()) {
+			totalSize += segment.size;
+		}
+
+		while (segments.size() > 1) {
+
+			final Segment oldest = segments.firstEntry().getValue();
+
+			if (oldest.lastSequence <= acknowledgedSequence) {
+
+				logger.debug("Removing acknowledged replication log segment {}", oldest.file.getName());
+
+			} else if (totalSize > maxSize) {
+
+				logger.warn("Replication log exceeds its maximum size, removing segment {}, slaves that have not received sequence number {} yet will be re-initialized.", oldest.file.getName(), oldest.lastSequence);
+
+			} else {
+
+				break;
+			}
+
+			segments.remove(oldest.firstSequence);
+			totalSize -= oldest.size;
+
+			if (!oldest.file.delete()) {
+				logger.warn("Unable to delete replication log segment {}", oldest.file.getAbsolutePath());
+			}
+		}
+	}
+
+	/**
+	 * Returns the sequence number of the first record that is still
+	 * retained in this log.
+	 *
+	 * @return the first sequence number
+	 */
+	public synchronized long getFirstSequence() {
+		return segments.firstKey();
+	}
+
+	public synchronized long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * Indicates whether a slave that has received all records up to the
+	 * given sequence number can be brought up to date from this log.
+	 *
+	 * @param sequence
+	 * @return whether the log can be replayed from the given position
+	 */
+	public synchronized boolean canResumeFrom(final long sequence) {
+		return sequence >= getFirstSequence() - 1 && sequence <= lastSequence;
+	}
+
+	public synchronized void close() {
+
+		try {
+
+			if (channel != null) {
+
+				channel.force(true);
+				channel.close();
+			}
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to close replication log", ioex);
+		}
+
+		channel = null;
+	}
+
+	// ----- private methods -----
+	private void open() throws IOException {
+
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Unable to create replication log directory " + directory.getAbsolutePath());
+		}
+
+		final File idFile = new File(directory, ID_FILE);
+		if (idFile.exists()) {
+
+			logId = new String(Files.readAllBytes(idFile.toPath()), StandardCharsets.UTF_8).trim();
+
+		} else {
+
+			logId = UUID.randomUUID().toString().replaceAll("[\\-]+", "");
+			Files.write(idFile.toPath(), logId.getBytes(StandardCharsets.UTF_8));
+		}
+
+		final File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+		if (files != null) {
+
+			for (final File file : files) {
+
+				final String name = file.getName();
+				final long first  = Long.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+
+				segments.put(first, new Segment(file, first));
+			}
+		}
+
+		if (segments.isEmpty()) {
+
+			roll(1L);
+
+		} else {
+
+			for (final Segment segment : segments.values()) {
+				recover(segment);
+			}
+
+			final Segment last = segments.lastEntry().getValue();
+
+			lastSequence = last.lastSequence;
+			channel      = FileChannel.open(last.file.toPath(), StandardOpenOption.WRITE);
+
+			// remove a partially written record at the end of the log
+			channel.truncate(last.size);
+			channel.position(last.size);
+		}
+
+		logger.info("Replication log {} opened, {} segment(s), sequence numbers {} to {}", logId, segments.size(), getFirstSequence(), lastSequence);
+	}
+
+	private Segment roll(final long firstSequence) throws IOException {
+
+		if (channel != null) {
+			channel.close();
+		}
+
+		final Segment segment = new Segment(new File(directory, SEGMENT_PREFIX + String.format("%020d", firstSequence) + SEGMENT_SUFFIX), firstSequence);
+
+		channel = FileChannel.open(segment.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		segments.put(firstSequence, segment);
+
+		return segment;
+	}
+
+	private void recover(final Segment segment) throws IOException {
+
+		final long length = segment.file.length();
+		long position     = 0L;
+
+		try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file)))) {
+
+			Record record = readRecord(dis, length);
+			while (record != null) {
+
+				position            += HEADER_SIZE + record.length;
+				segment.lastSequence = record.sequence;
+
+				record = readRecord(dis, length - position);
+			}
+		}
+
+		if (position < length) {
+			logger.warn("Replication log segment {} ends with an incomplete record, ignoring {} bytes", segment.file.getName(), length - position);
+		}
+
+		segment.size = position;
+	}
+
+	private Record readRecord(final DataInputStream dis, final long remaining) throws IOException {
+
+		if (remaining < HEADER_SIZE) {
+			return null;
+		}
+
+		try {
+
+			final int length = dis.readInt();
+			final int crc    = dis.readInt();
+
+			// a torn write can leave an arbitrary length in the header
+			if (length <= 0 || length > remaining - HEADER_SIZE) {
+				return null;
+			}
+
+			final byte[] data = new byte[length];
+			dis.readFully(data);
+
+			final CRC32 checksum = new CRC32();
+			checksum.update(data);
+
+			if ((int)checksum.getValue() != crc) {
+				return null;
+			}
+
+			final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+			final long sequence      = in.readLong();
+			final int count          = in.readInt();
+			final List<Entry> list   = new ArrayList<>(count);
+
+			for (int i=0; i<count; i++) {
+
+				final Set<String> keys = new LinkedHashSet<>();
+				final boolean node     = in.readBoolean();
+				final boolean deleted  = in.readBoolean();
+				final String uuid      = in.readUTF();
+				final int keyCount     = in.readInt();
+
+				for (int j=0; j<keyCount; j++) {
+					keys.add(in.readUTF());
+				}
+
+				list.add(new Entry(uuid, node, deleted, keys));
+			}
+
+			return new Record(sequence, length, list);
+
+		} catch (EOFException eof) {
+
+			// end of file or incomplete record
+			return null;
+		}
+	}
+
+	private ByteBuffer serialize(final long sequence, final List<Entry> entries) throws IOException {
+
+		final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		final DataOutputStream out      = new DataOutputStream(buf);
+
+		out.writeLong(sequence);
+		out.writeInt(entries.size());
+
+		for (final Entry entry : entries) {
+
+			out.writeBoolean(entry.node);
+			out.writeBoolean(entry.deleted);
+			out.writeUTF(entry.uuid);
+			out.writeInt(entry.keys.size());
+
+			for (final String key : entry.keys) {
+				out.writeUTF(key);
+			}
+		}
+
+		out.flush();
+
+		final byte[] data       = buf.toByteArray();
+		final CRC32 checksum    = new CRC32();
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + data.length);
+
+		checksum.update(data);
+
+		buffer.putInt(data.length);
+		buffer.putInt((int)checksum.getValue());
+		buffer.put(data);
+		buffer.flip();
+
+		return buffer;
+	}
+
+	private void skipFully(final InputStream in, final long count) throws IOException {
+
+		long remaining = count;
+
+		while (remaining > 0) {
+
+			final long skipped = in.skip(remaining);
+			if (skipped <= 0) {
+				throw new EOFException();
+			}
+
+			remaining -= skipped;
+		}
+	}
+
+	// ----- nested classes -----
+	/**
+	 * A modified entity, identified by its UUID, together with the names
+	 * of the properties that were modified.
+	 */
+	public static class Entry {
+
+		private Set<String> keys = null;
+		private String uuid      = null;
+		private boolean deleted  = false;
+		private boolean node     = false;
+
+		public Entry(final String uuid, final boolean node, final boolean deleted, final Set<String> keys) {
+
+			this.uuid    = uuid;
+			this.node    = node;
+			this.deleted = deleted;
+			this.keys    = keys;
+		}
+
+		public String getUuid() {
+			return uuid;
+		}
+
+		public boolean isNode() {
+			return node;
+		}
+
+		public boolean isDeleted() {
+			return deleted;
+		}
+
+		public Set<String> getPropertyKeys() {
+			return keys;
+		}
+	}
+
+	/**
+	 * The entries of a single transaction.
+	 */
+	public static class Record {
+
+		private List<Entry> entries = null;
+		private long sequence       = 0L;
+		private int length          = 0;
+
+		private Record(final long sequence, final int length, final List<Entry> entries) {
+
+			this.sequence = sequence;
+			this.length   = length;
+			this.entries  = entries;
+		}
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		public List<Entry> getEntries() {
+			return entries;
+		}
+	}
+
+	private static class Segment {
+
+		private volatile long[] hint = null;
+		private File file            = null;
+		private long firstSequence   = 0L;
+		private long lastSequence    = 0L;
+		private long size            = 0L;
+
+		Segment(final File file, final long firstSequence) {
+
+			this.file          = file;
+			this.firstSequence = firstSequence;
+			this.lastSequence  = firstSequence - 1;
+		}
+	}
+}
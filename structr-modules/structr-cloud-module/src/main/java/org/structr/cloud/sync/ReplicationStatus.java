@@ -38,28 +38,32 @@ public class ReplicationStatus extends Message<ReplicationStatus> {
 
 	private String masterId = null;
 	private String slaveId  = null;
+	private String logId    = null;
 	private String role     = null;
 	private long lastSync   = 0L;
+	private long sequence   = -1L;
 	private boolean update  = false;
 
 	public ReplicationStatus() {}
 
-	public ReplicationStatus(final String masterId) {
+	public ReplicationStatus(final String masterId, final String logId) {
 
-		// initialize this message to READ the lastSync property of the slave database
-		this(masterId, 0L, false);
+		// initialize this message to READ the lastSync and sequence properties of the slave database
+		this(masterId, logId, 0L, -1L, false);
 	}
 
-	public ReplicationStatus(final String masterId, final long lastSync) {
+	public ReplicationStatus(final String masterId, final String logId, final long lastSync, final long sequence) {
 
-		// initialize this message to WRITE the lastSync property of the slave database
-		this(masterId, lastSync, true);
+		// initialize this message to WRITE the lastSync and sequence properties of the slave database
+		this(masterId, logId, lastSync, sequence, true);
 	}
 
-	private ReplicationStatus(final String masterId, final long lastSync, final boolean update) {
+	private ReplicationStatus(final String masterId, final String logId, final long lastSync, final long sequence, final boolean update) {
 
 		this.masterId = masterId;
+		this.logId    = logId;
 		this.lastSync = lastSync;
+		this.sequence = sequence;
 		this.update   = update;
 	}
 
@@ -71,6 +75,17 @@ public class ReplicationStatus extends Message<ReplicationStatus> {
 		return lastSync;
 	}
 
+	/**
+	 * Returns the sequence number of the last record of the master's
+	 * replication log that was received by the slave, or -1 if the slave
+	 * has not received any records from the current log yet.
+	 *
+	 * @return the sequence number
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
 	public String getRole() {
 		return role;
 	}
@@ -87,12 +102,14 @@ public class ReplicationStatus extends Message<ReplicationStatus> {
 			// this is not an error, we want the sync time for the
 			// given MASTER, since a slave can have multiple masters
 			app.setGlobalSetting(masterId, lastSync);
+			app.setGlobalSetting(getSequenceKey(), sequence);
 
 		} else {
 
 			// this is not an error, we want the sync time for the
 			// given MASTER, since a slave can have multiple masters
 			this.lastSync = app.getGlobalSetting(masterId, 0L);
+			this.sequence = app.getGlobalSetting(getSequenceKey(), -1L);
 			this.role     = Settings.getOrCreateStringSetting("sync", "role").getValue("slave");
 		}
 
@@ -115,7 +132,9 @@ public class ReplicationStatus extends Message<ReplicationStatus> {
 		this.masterId = (String)SyncCommand.deserialize(inputStream);
 		this.slaveId  = (String)SyncCommand.deserialize(inputStream);
 		this.role     = (String)SyncCommand.deserialize(inputStream);
+		this.logId    = (String)SyncCommand.deserialize(inputStream);
 		this.lastSync = (Long)SyncCommand.deserialize(inputStream);
+		this.sequence = (Long)SyncCommand.deserialize(inputStream);
 		this.update   = (Boolean)SyncCommand.deserialize(inputStream);
 	}
 
@@ -125,7 +144,16 @@ public class ReplicationStatus extends Message<ReplicationStatus> {
 		SyncCommand.serialize(outputStream, masterId);
 		SyncCommand.serialize(outputStream, slaveId);
 		SyncCommand.serialize(outputStream, role);
+		SyncCommand.serialize(outputStream, logId);
 		SyncCommand.serialize(outputStream, lastSync);
+		SyncCommand.serialize(outputStream, sequence);
 		SyncCommand.serialize(outputStream, update);
 	}
+
+	// ----- private methods -----
+	private String getSequenceKey() {
+
+		// sequence numbers are only valid for a specific replication log of the master
+		return masterId + "." + logId + ".sequence";
+	}
 }
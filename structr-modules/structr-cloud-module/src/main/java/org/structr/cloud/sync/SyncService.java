@@ -18,14 +18,16 @@
  */
 package org.structr.cloud.sync;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.Set;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,22 +41,28 @@ import org.structr.cloud.CloudService;
 import org.structr.cloud.transmission.SingleTransmission;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
 import org.structr.core.StructrTransactionListener;
 import org.structr.core.TransactionSource;
-import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.ModificationEvent;
 import org.structr.core.graph.TransactionCommand;
 import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyKey;
 
 /**
+ * Replicates all local transactions to a set of synchronization slaves.
  *
- *
+ * Committed transactions are appended to a durable {@link ReplicationLog},
+ * from which they are shipped to each slave in batches. Every slave stores
+ * the sequence number of the last record it has received, so that a slave
+ * which was unreachable or restarted is brought up to date from the log,
+ * and only needs to be re-initialized completely if the log does not reach
+ * back far enough.
  */
 public class SyncService extends Thread  implements RunnableService, StructrTransactionListener {
 
-	private static final BlockingQueue<List<ModificationEvent>> syncQueue = new ArrayBlockingQueue<>(1000);
-	private static final Logger logger                                    = LoggerFactory.getLogger(CloudService.class.getName());
+	private static final Logger logger = LoggerFactory.getLogger(CloudService.class.getName());
 
 	public enum SyncRole {
 		master,
@@ -62,12 +70,17 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 	};
 
 	private final List<SyncHostInfo> syncHosts = new LinkedList<>();
-	private boolean running                    = false;
+	private final Object signal                = new Object();
+	private ReplicationLog replicationLog      = null;
+	private volatile boolean running           = false;
+	private volatile boolean resyncRequired    = false;
+	private boolean signalled                  = false;
 	private boolean active                     = false;
 	private String allowedMaster               = null;
 	private SyncRole role                      = null;
 	private int requiredSyncCount              = 0;
 	private int retryInterval                  = 60;
+	private int batchSize                      = 1000;
 
 	public SyncService() {
 
@@ -100,6 +113,16 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 			final String users   = Settings.getOrCreateStringSetting("sync.users").getValue();
 			final String pwds    = Settings.getOrCreateStringSetting("sync.passwords").getValue();
 			final String ports   = Settings.getOrCreateStringSetting("sync.ports").getValue();
+			final String logPath = Settings.getOrCreateStringSetting("sync", "log", "path").getValue("replication");
+			final int segmentMB  = Settings.getOrCreateIntegerSetting("sync", "log", "segmentsize").getValue(64);
+			final int maxMB      = Settings.getOrCreateIntegerSetting("sync", "log", "maxsize").getValue(1024);
+			final boolean force  = Settings.getOrCreateBooleanSetting("sync", "log", "fsync").getValue(false);
+
+			this.batchSize = Math.max(1, Settings.getOrCreateIntegerSetting("sync", "batch", "size").getValue(1000));
+
+			if (StringUtils.isNotBlank(retry)) {
+				this.retryInterval = Integer.valueOf(retry);
+			}
 
 			// check only if we are a replication master
 			if (SyncRole.master.equals(role)) {
@@ -159,6 +182,16 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 					logger.info("Adding slave host {}, user {}", new Object[] { syncHostInfo, port, user } );
 				}
 
+				try {
+
+					final File directory = new File(logPath).isAbsolute() ? new File(logPath) : new File(Settings.getBasePath(), logPath);
+
+					replicationLog = new ReplicationLog(directory, segmentMB * 1024L * 1024L, maxMB * 1024L * 1024L, force);
+
+				} catch (IOException ioex) {
+					throw new IllegalStateException("unable to open replication log: " + ioex.getMessage());
+				}
+
 				try {
 					// check and initialize sync hosts and policy
 					initializeSyncHosts(minimum);
@@ -168,10 +201,6 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 				}
 			}
 
-			if (StringUtils.isNotBlank(retry)) {
-				this.retryInterval = Integer.valueOf(retry);
-			}
-
 			logger.info("Retry interval is set to {} seconds", retryInterval);
 		}
 
@@ -183,7 +212,16 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 
 	@Override
 	public void shutdown() {
+
 		running = false;
+
+		synchronized (signal) {
+			signal.notifyAll();
+		}
+
+		if (replicationLog != null) {
+			replicationLog.close();
+		}
 	}
 
 	@Override
@@ -209,49 +247,25 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 
 			try {
 
-				// wait to be notified when new data is available
-				synchronized (syncQueue) {
-
-					while (syncQueue.isEmpty()) {
-						syncQueue.wait();
-					}
-				}
-
-				// load the head of the queue without removing it
-				// (will be removed later if sync was successful)
-				final List<ModificationEvent> transaction = syncQueue.peek();
-				if (transaction != null) {
-
-					// define success as "at least one sync process was successful"
-					final SyncListener successListener = new SyncListener(requiredSyncCount);
-
-					final SyncTransmission transmission = new SyncTransmission(transaction);
-
-					for (final SyncHostInfo info : syncHosts) {
+				long delay = 0L;
 
-						try {
-
-							CloudService.doRemote(SecurityContext.getSuperUserInstance(), transmission, info, successListener);
-
-						} catch (FrameworkException fex) {
-							logger.warn("Unable to synchronize with host {}: {}", new Object[] { info, fex.getMessage() } );
-						}
-					}
+				if (replicationLog != null) {
 
-					// remove sync changeset from queue when sync
-					// was successful (see above)
-					if (successListener.wasSuccessful()) {
+					delay = synchronizeHosts();
 
-						syncQueue.remove(transaction);
-
-					} else {
+					// remove everything that all slaves have received
+					replicationLog.truncate(getAcknowledgedSequence());
+				}
 
-						logger.warn("Unable to synchronize with required number of hosts, retrying in {} seconds..", retryInterval);
+				// wait to be notified when new data is available,
+				// or until the next retry is due
+				synchronized (signal) {
 
-						// sleep
-						try { Thread.sleep(retryInterval * 1000); } catch (Throwable t) {}
+					if (!signalled && running && delay >= 0L) {
+						signal.wait(delay);
 					}
 
+					signalled = false;
 				}
 
 			} catch (Throwable t) {
@@ -304,31 +318,51 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 		}
 
 		// only react if desired
-		if (active && running && !modificationEvents.isEmpty()) {
+		if (active && running && replicationLog != null && !modificationEvents.isEmpty()) {
 
-			try {
-				// store last sync timestamp for the given instance ID
-				final App app = StructrApp.getInstance();
-				app.setGlobalSetting(app.getInstanceId() + ".lastModified", System.currentTimeMillis());
+			final List<ReplicationLog.Entry> entries = new ArrayList<>(modificationEvents.size());
 
-			} catch (FrameworkException fex) {
+			for (final ModificationEvent event : modificationEvents) {
 
-				logger.error("Unable to store last modified date for current instance", fex);
-			}
+				if (event.isDeleted()) {
+
+					final String id = event.getRemovedProperties().get(GraphObject.id);
+					if (id != null) {
+
+						entries.add(new ReplicationLog.Entry(id, event.isNode(), true, new LinkedHashSet<>()));
+					}
 
+				} else {
+
+					final Set<String> propertyKeys = new LinkedHashSet<>();
+
+					// collect all possibly modified property keys
+					mapPropertyKeysToStrings(propertyKeys, event.getNewProperties().keySet());
+					mapPropertyKeysToStrings(propertyKeys, event.getModifiedProperties().keySet());
+					mapPropertyKeysToStrings(propertyKeys, event.getRemovedProperties().keySet());
+
+					entries.add(new ReplicationLog.Entry(event.getUuid(), event.isNode(), false, propertyKeys));
+				}
+			}
 
 			try {
 
-				// copy all modification events and return quickly
-				syncQueue.put(new ArrayList<>(modificationEvents));
+				replicationLog.append(entries);
 
-				// notify sync queue of new input
-				synchronized (syncQueue) { syncQueue.notify(); }
+			} catch (IOException ioex) {
 
-			} catch (InterruptedException iex) {
-				logger.warn("", iex);
+				logger.error("Unable to append transaction to replication log, all replication hosts will be re-initialized", ioex);
+
+				// the transaction is missing from the log, so no host can be brought up to date from it
+				resyncRequired = true;
 			}
 
+			// notify sync thread of new input
+			synchronized (signal) {
+
+				signalled = true;
+				signal.notifyAll();
+			}
 		}
 	}
 
@@ -346,7 +380,7 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 
 			try {
 
-				final SingleTransmission<ReplicationStatus> transmission = new SingleTransmission<>(new ReplicationStatus(instanceId));
+				final SingleTransmission<ReplicationStatus> transmission = new SingleTransmission<>(new ReplicationStatus(instanceId, replicationLog.getLogId()));
 				final ReplicationStatus status = CloudService.doRemote(SecurityContext.getSuperUserInstance(), transmission, host, new LoggingListener());
 				if (status != null) {
 
@@ -403,7 +437,7 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 		// prepare synchronization hosts
 		for (final SyncHostInfo host : syncHosts) {
 
-			// try to copy database contents to synchronization slave
+			// determine where to continue the replication for each slave
 			checkAndInitializeSyncHost(host);
 		}
 	}
@@ -413,80 +447,147 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 		final String masterId         = StructrApp.getInstance().getInstanceId();
 		final SimpleDateFormat df     = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
 		final long localSyncTimestamp = StructrApp.getInstance().getGlobalSetting(masterId + ".lastModified", 0L);
+		final long sequence           = host.getSequence();
+
+		if (sequence >= 0L && replicationLog.canResumeFrom(sequence)) {
+
+			logger.info("Replication host {} has received sequence number {}, {} transaction(s) will be replicated from the log",
+				new Object[] { host, sequence, replicationLog.getLastSequence() - sequence }
+			);
+
+		} else if (sequence < 0L && localSyncTimestamp != 0L && host.getLastSyncTimestamp() == localSyncTimestamp && replicationLog.getFirstSequence() == 1L) {
 
-		if (localSyncTimestamp == 0L) {
+			// slave was in sync before the replication log was introduced
+			logger.info("Replication host {} is in sync, last update was {}", new Object[] { host, df.format(localSyncTimestamp) } );
 
-			// no synchronization with this slave yet, clear and initialize slave database
-			synchronizeSlave(host);
+			host.setSequence(0L);
 
 		} else {
 
-			// there has been a synchronization in the past
-			if (host.getLastSyncTimestamp() != localSyncTimestamp) {
+			logger.info("Replication host {} is out of sync and will be re-initialized", host);
+
+			host.setSequence(-1L);
+		}
+	}
+
+	/**
+	 * Ships pending records to all hosts that are due, and returns the
+	 * time until the next retry, 0 if there is nothing left to do, or
+	 * -1 if there are more records to ship right away.
+	 */
+	private long synchronizeHosts() {
 
-				logger.info("Replication host {} is out of sync, last remote update was {} whereas last local update was {}",
-					new Object[] { host,  df.format(host.getLastSyncTimestamp()), df.format(localSyncTimestamp) }
-				);
+		final long now   = System.currentTimeMillis();
+		long nextAttempt = Long.MAX_VALUE;
+		boolean pending  = false;
 
-				// clear and re-initialize slave database..
-				synchronizeSlave(host);
+		if (resyncRequired) {
 
-			} else {
+			resyncRequired = false;
 
-				logger.info("Replication host {} is in sync, last update was {}", new Object[] { host, df.format(localSyncTimestamp) } );
+			for (final SyncHostInfo host : syncHosts) {
+				host.setSequence(-1L);
 			}
 		}
-	}
 
-	private void synchronizeSlave(final SyncHostInfo info) {
+		for (final SyncHostInfo host : syncHosts) {
 
-		logger.info("Establishing initial replication.");
+			if (host.getNextAttempt() > now) {
 
-		try (final Tx tx = StructrApp.getInstance().tx()) {
+				nextAttempt = Math.min(nextAttempt, host.getNextAttempt());
+				continue;
+			}
 
-			CloudService.doRemote(SecurityContext.getSuperUserInstance(), new UpdateTransmission(), info, new LoggingListener());
+			try {
 
-			tx.success();
+				if (host.getSequence() < 0L || !replicationLog.canResumeFrom(host.getSequence())) {
 
-		} catch (Throwable t) {
-			logger.warn("", t);
-		}
+					synchronizeSlave(host);
 
-		logger.info("Done.");
-	}
+				} else if (host.getSequence() < replicationLog.getLastSequence()) {
 
-	// ----- nested classes -----
-	private static class SyncListener implements CloudListener {
+					final List<ReplicationLog.Record> records = replicationLog.read(host.getSequence(), batchSize);
+					if (!records.isEmpty()) {
 
-		private int successCount         = 0;
-		private int requiredSuccessCount = 0;
+						final SyncTransmission transmission = new SyncTransmission(records, replicationLog.getLogId());
 
-		public SyncListener(final int requiredSuccessCount) {
-			this.requiredSuccessCount = requiredSuccessCount;
-		}
+						CloudService.doRemote(SecurityContext.getSuperUserInstance(), transmission, host, null);
 
-		@Override
-		public void transmissionStarted() {
+						host.setSequence(transmission.getSequence());
+					}
+				}
+
+				host.succeeded();
+
+				pending |= host.getSequence() < replicationLog.getLastSequence();
+
+			} catch (Throwable t) {
+
+				final long delay = host.failed(retryInterval * 1000L);
+
+				logger.warn("Unable to synchronize with host {}, retrying in {} ms: {}", new Object[] { host, delay, t.getMessage() } );
+
+				nextAttempt = Math.min(nextAttempt, host.getNextAttempt());
+			}
 		}
 
-		@Override
-		public void transmissionFinished() {
-			successCount++;
+		if (pending) {
+			return -1L;
 		}
 
-		@Override
-		public void transmissionAborted() {
+		return nextAttempt == Long.MAX_VALUE ? 0L : Math.max(1L, nextAttempt - System.currentTimeMillis());
+	}
+
+	private long getAcknowledgedSequence() {
+
+		long sequence = replicationLog.getLastSequence();
+
+		for (final SyncHostInfo host : syncHosts) {
+
+			// hosts that need to be re-initialized don't need the log
+			if (host.getSequence() >= 0L) {
+				sequence = Math.min(sequence, host.getSequence());
+			}
 		}
 
-		@Override
-		public void transmissionProgress(final String message) {
+		return sequence;
+	}
+
+	private void synchronizeSlave(final SyncHostInfo info) throws FrameworkException {
+
+		logger.info("Establishing initial replication with {}.", info);
+
+		// everything that is committed from now on will be shipped from the log
+		// afterwards, records that are contained in the full update as well are
+		// transmitted twice, which does no harm
+		final long sequence = replicationLog.getLastSequence();
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			CloudService.doRemote(SecurityContext.getSuperUserInstance(), new UpdateTransmission(), info, new LoggingListener());
+
+			tx.success();
 		}
 
-		public boolean wasSuccessful() {
-			return successCount >= requiredSuccessCount;
+		final SingleTransmission<ReplicationStatus> transmission = new SingleTransmission<>(
+			new ReplicationStatus(StructrApp.getInstance().getInstanceId(), replicationLog.getLogId(), System.currentTimeMillis(), sequence)
+		);
+
+		CloudService.doRemote(SecurityContext.getSuperUserInstance(), transmission, info, new LoggingListener());
+
+		info.setSequence(sequence);
+
+		logger.info("Done.");
+	}
+
+	private void mapPropertyKeysToStrings(final Set<String> propertyKeys, final Set<PropertyKey> source) {
+
+		for (final PropertyKey key : source) {
+			propertyKeys.add(key.dbName());
 		}
 	}
 
+	// ----- nested classes -----
 	private static class SyncHostInfo implements CloudHost {
 
 		private ReplicationStatus status = null;
@@ -494,6 +595,9 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 		private String host              = null;
 		private String user              = null;
 		private String pwd               = null;
+		private long nextAttempt         = 0L;
+		private long sequence            = -1L;
+		private int failures             = 0;
 		private int port                 = -1;
 
 		public SyncHostInfo(final String host, final String user, final String pwd, final String portSource) {
@@ -532,9 +636,44 @@ public class SyncService extends Thread  implements RunnableService, StructrTran
 		public void setReplicationStatus(final ReplicationStatus status) {
 
 			this.instanceId = status.getSlaveId();
+			this.sequence   = status.getSequence();
 			this.status     = status;
 		}
 
+		public long getSequence() {
+			return sequence;
+		}
+
+		public void setSequence(final long sequence) {
+			this.sequence = sequence;
+		}
+
+		public long getNextAttempt() {
+			return nextAttempt;
+		}
+
+		public void succeeded() {
+
+			this.failures    = 0;
+			this.nextAttempt = 0L;
+		}
+
+		/**
+		 * Records a failed attempt and schedules the next one, with an
+		 * exponentially increasing delay of at most maxDelay milliseconds.
+		 *
+		 * @param maxDelay
+		 * @return the delay until the next attempt
+		 */
+		public long failed(final long maxDelay) {
+
+			final long delay = Math.min(maxDelay, 1000L << Math.min(failures++, 20));
+
+			this.nextAttempt = System.currentTimeMillis() + delay;
+
+			return delay;
+		}
+
 		public long getLastSyncTimestamp() {
 			return status.getLastSync();
 		}
@@ -19,12 +19,12 @@
 package org.structr.cloud.sync;
 
 import java.io.IOException;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.structr.api.NotFoundException;
 import org.structr.cloud.CloudConnection;
 import org.structr.cloud.CloudService;
 import org.structr.cloud.CloudTransmission;
@@ -35,76 +35,87 @@ import org.structr.cloud.message.FileNodeEndChunk;
 import org.structr.cloud.message.NodeDataContainer;
 import org.structr.cloud.message.RelationshipDataContainer;
 import org.structr.common.error.FrameworkException;
-import org.structr.core.GraphObject;
+import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
-import org.structr.core.graph.ModificationEvent;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.RelationshipInterface;
 import org.structr.core.graph.Tx;
-import org.structr.core.property.PropertyKey;
 import org.structr.dynamic.File;
 
 /**
+ * Transmits a batch of records from the replication log to a slave.
  *
- *
+ * The records are coalesced so that every entity is transmitted only
+ * once, with its current state and the union of the modified properties,
+ * and the slave is informed about the sequence number of the last record
+ * in the batch at the end of the transmission.
  */
 public class SyncTransmission implements CloudTransmission {
 
-	private static final Logger logger = LoggerFactory.getLogger(SyncTransmission.class.getName());
-	private List<ModificationEvent> transaction = null;
+	private static final Logger logger               = LoggerFactory.getLogger(SyncTransmission.class.getName());
+	private Map<String, ReplicationLog.Entry> entries = null;
+	private String logId                              = null;
+	private long sequence                             = 0L;
+
+	public SyncTransmission(final List<ReplicationLog.Record> records, final String logId) {
 
-	public SyncTransmission(final List<ModificationEvent> transaction) {
+		this.entries  = coalesce(records);
+		this.logId    = logId;
+		this.sequence = records.isEmpty() ? 0L : records.get(records.size() - 1).getSequence();
+	}
 
-		this.transaction = transaction;
+	public long getSequence() {
+		return sequence;
 	}
 
 	@Override
 	public Boolean doRemote(final CloudConnection client) throws IOException, FrameworkException {
 
-		int count = 0;
+		final App app = StructrApp.getInstance();
+		int count     = 0;
 
-		try (final Tx tx = StructrApp.getInstance().tx()) {
+		try (final Tx tx = app.tx()) {
 
-			for (final ModificationEvent event : transaction) {
+			for (final ReplicationLog.Entry entry : entries.values()) {
 
-				final GraphObject graphObject  = event.getGraphObject();
+				if (entry.isDeleted()) {
 
-				if (event.isDeleted()) {
-
-					final String id = event.getRemovedProperties().get(GraphObject.id);
-					if (id != null) {
-
-						client.send(new Delete(id));
-					}
+					client.send(new Delete(entry.getUuid()));
 
 				} else {
 
-					try {
+					final Set<String> propertyKeys = entry.getPropertyKeys();
 
-						final Set<String> propertyKeys = new LinkedHashSet<>();
+					if (entry.isNode()) {
 
-						// collect all possibly modified property keys
-						mapPropertyKeysToStrings(propertyKeys, event.getNewProperties().keySet());
-						mapPropertyKeysToStrings(propertyKeys, event.getModifiedProperties().keySet());
-						mapPropertyKeysToStrings(propertyKeys, event.getRemovedProperties().keySet());
+						final NodeInterface node = app.getNodeById(entry.getUuid());
+						if (node != null) {
 
-						if (graphObject.isNode()) {
+							if (node instanceof File) {
 
-							if (graphObject instanceof File) {
-
-								sendFile(client, (File)graphObject, CloudService.CHUNK_SIZE);
+								sendFile(client, (File)node, CloudService.CHUNK_SIZE);
 
 							} else {
 
-								client.send(new NodeDataContainer(graphObject.getSyncNode(), count, propertyKeys));
+								client.send(new NodeDataContainer(node.getSyncNode(), count, propertyKeys));
 							}
 
 						} else {
 
-							client.send(new RelationshipDataContainer(graphObject.getSyncRelationship(), count, propertyKeys));
+							logger.info("Trying to synchronize deleted entity, ignoring");
 						}
 
-					} catch (NotFoundException nfex) {
+					} else {
+
+						final RelationshipInterface relationship = app.getRelationshipById(entry.getUuid());
+						if (relationship != null) {
+
+							client.send(new RelationshipDataContainer(relationship.getSyncRelationship(), count, propertyKeys));
 
-						logger.info("Trying to synchronize deleted entity, ignoring");
+						} else {
+
+							logger.info("Trying to synchronize deleted entity, ignoring");
+						}
 					}
 				}
 
@@ -114,10 +125,9 @@ public class SyncTransmission implements CloudTransmission {
 			tx.success();
 		}
 
-		// synchronize last sync timestamp with slave instance
+		// synchronize last sync timestamp and sequence number with slave instance
 		// (we're sending out own instance ID (master) for the slave to store)
-		final String masterId = StructrApp.getInstance().getInstanceId();
-		client.send(new ReplicationStatus(masterId, StructrApp.getInstance().getGlobalSetting(masterId + ".lastModified", 0L)));
+		client.send(new ReplicationStatus(app.getInstanceId(), logId, System.currentTimeMillis(), sequence));
 
 		// wait for end of transmission
 		client.waitForTransmission();
@@ -152,10 +162,32 @@ public class SyncTransmission implements CloudTransmission {
 	}
 
 	// ----- private methods -----
-	private void mapPropertyKeysToStrings(final Set<String> propertyKeys, final Set<PropertyKey> source) {
+	private Map<String, ReplicationLog.Entry> coalesce(final List<ReplicationLog.Record> records) {
 
-		for (final PropertyKey key : source) {
-			propertyKeys.add(key.dbName());
+		final Map<String, ReplicationLog.Entry> coalesced = new LinkedHashMap<>();
+
+		for (final ReplicationLog.Record record : records) {
+
+			for (final ReplicationLog.Entry entry : record.getEntries()) {
+
+				final String uuid                   = entry.getUuid();
+				final ReplicationLog.Entry existing = coalesced.get(uuid);
+
+				if (existing != null && !existing.isDeleted() && !entry.isDeleted()) {
+
+					// modified again, keep position of the first modification
+					existing.getPropertyKeys().addAll(entry.getPropertyKeys());
+
+				} else {
+
+					// deletions (and re-creations) must be transmitted after
+					// everything that was modified before
+					coalesced.remove(uuid);
+					coalesced.put(uuid, entry);
+				}
+			}
 		}
+
+		return coalesced;
 	}
 }
@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cloud.sync;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tests the recovery, truncation and segmentation of the replication log.
+ */
+public class ReplicationLogTest {
+
+	@Test
+	public void testTornWriteRecovery() {
+
+		final File directory = createDirectory();
+
+		try {
+
+			ReplicationLog log = new ReplicationLog(directory, 1024 * 1024, 10 * 1024 * 1024, false);
+
+			for (int i=0; i<3; i++) {
+				log.append(createEntries(i));
+			}
+
+			log.close();
+
+			// simulate an incomplete record with a corrupt length at the end of the log
+			try (final RandomAccessFile file = new RandomAccessFile(getSegments(directory).get(0), "rw")) {
+
+				file.seek(file.length());
+				file.writeInt(Integer.MAX_VALUE);
+				file.writeInt(0);
+				file.writeLong(4L);
+			}
+
+			log = new ReplicationLog(directory, 1024 * 1024, 10 * 1024 * 1024, false);
+
+			assertEquals("Incomplete record should be ignored", 3L, log.getLastSequence());
+			assertEquals("Invalid sequence number after recovery", 4L, log.append(createEntries(3)));
+
+			final List<ReplicationLog.Record> records = log.read(0L, 100);
+
+			assertEquals("Invalid number of records after recovery", 4, records.size());
+
+			for (int i=0; i<4; i++) {
+
+				assertEquals("Invalid sequence number", i + 1L, records.get(i).getSequence());
+				assertEquals("Invalid record content", "uuid" + i, records.get(i).getEntries().get(0).getUuid());
+			}
+
+			log.close();
+
+		} catch (IOException ioex) {
+
+			ioex.printStackTrace();
+			fail("Unexpected exception");
+
+		} finally {
+
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void testReadAcrossSegments() {
+
+		final File directory = createDirectory();
+
+		try {
+
+			final ReplicationLog log = new ReplicationLog(directory, 100, 10 * 1024 * 1024, false);
+
+			for (int i=0; i<20; i++) {
+				log.append(createEntries(i));
+			}
+
+			assertTrue("Log should consist of multiple segments", getSegments(directory).size() > 5);
+
+			final List<ReplicationLog.Record> all = log.read(0L, 100);
+
+			assertEquals("Invalid number of records", 20, all.size());
+
+			for (int i=0; i<20; i++) {
+				assertEquals("Invalid sequence number", i + 1L, all.get(i).getSequence());
+			}
+
+			// read limit and continuation at segment boundaries
+			long sequence = 5L;
+
+			while (sequence < 20L) {
+
+				final List<ReplicationLog.Record> records = log.read(sequence, 3);
+
+				assertEquals("Invalid number of records", Math.min(3L, 20L - sequence), records.size());
+				assertEquals("Invalid first record", sequence + 1L, records.get(0).getSequence());
+
+				sequence = records.get(records.size() - 1).getSequence();
+			}
+
+			assertTrue("Read after the last record should be empty", log.read(20L, 100).isEmpty());
+
+			log.close();
+
+		} catch (IOException ioex) {
+
+			ioex.printStackTrace();
+			fail("Unexpected exception");
+
+		} finally {
+
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void testTruncate() {
+
+		final File directory = createDirectory();
+
+		try {
+
+			final ReplicationLog log = new ReplicationLog(directory, 100, 1000, false);
+
+			for (int i=0; i<10; i++) {
+				log.append(createEntries(i));
+			}
+
+			final int segmentCount = getSegments(directory).size();
+
+			log.truncate(6L);
+
+			assertTrue("Acknowledged segments should be removed", getSegments(directory).size() < segmentCount);
+			assertTrue("Unacknowledged records must be retained", log.getFirstSequence() <= 7L);
+			assertTrue("Log should be resumable after the acknowledged sequence", log.canResumeFrom(6L));
+			assertFalse("Log should not be resumable from removed records", log.canResumeFrom(0L));
+			assertEquals("Invalid first record after truncation", 7L, log.read(6L, 100).get(0).getSequence());
+
+			// log exceeds its maximum size, oldest segments are removed even if unacknowledged
+			for (int i=10; i<100; i++) {
+				log.append(createEntries(i));
+			}
+
+			log.truncate(6L);
+
+			long size = 0L;
+
+			for (final File segment : getSegments(directory)) {
+				size += segment.length();
+			}
+
+			assertTrue("Log should not exceed its maximum size", size <= 1000L);
+			assertFalse("Log should not be resumable from removed records", log.canResumeFrom(6L));
+			assertTrue("Log should be resumable from the last record", log.canResumeFrom(100L));
+			assertEquals("Invalid last sequence", 100L, log.getLastSequence());
+
+			log.close();
+
+		} catch (IOException ioex) {
+
+			ioex.printStackTrace();
+			fail("Unexpected exception");
+
+		} finally {
+
+			delete(directory);
+		}
+	}
+
+	// ----- private methods -----
+	private List<ReplicationLog.Entry> createEntries(final int index) {
+		return Arrays.asList(new ReplicationLog.Entry("uuid" + index, true, false, new LinkedHashSet<>(Arrays.asList("name"))));
+	}
+
+	private List<File> getSegments(final File directory) {
+
+		final File[] files = directory.listFiles((dir, name) -> name.endsWith(".log"));
+
+		Arrays.sort(files);
+
+		return Arrays.asList(files);
+	}
+
+	private File createDirectory() {
+
+		try {
+
+			return Files.createTempDirectory("replication-log-test").toFile();
+
+		} catch (IOException ioex) {
+			throw new RuntimeException(ioex);
+		}
+	}
+
+	private void delete(final File directory) {
+
+		final File[] files = directory.listFiles();
+		if (files != null) {
+
+			for (final File file : files) {
+				file.delete();
+			}
+		}
+
+		directory.delete();
+	}
+}
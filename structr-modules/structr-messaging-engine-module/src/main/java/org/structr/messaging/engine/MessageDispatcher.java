@@ -0,0 +1,451 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.messaging.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+import org.structr.messaging.engine.entities.MessageSubscriber;
+
+/**
+ * Delivers the messages a client receives from its broker to the
+ * subscribers of the client.
+ *
+ * Messages are queued per topic and delivered in batches, so that many
+ * messages share a single transaction. Each topic is processed by at
+ * most <code>application.messaging.parallelism</code> workers at a time,
+ * the default of 1 preserves the order of the messages of a topic. When
+ * the queue of a topic is full, the receiving thread is blocked until
+ * there is room again, which slows down the consumption from the broker.
+ * Clients that acknowledge messages to the broker can wait until all
+ * received messages have been processed, see {@link #awaitDelivery()}.
+ */
+public class MessageDispatcher {
+
+	private static final Logger logger                               = LoggerFactory.getLogger(MessageDispatcher.class.getName());
+	private static final Map<String, MessageDispatcher> dispatchers  = new ConcurrentHashMap<>();
+	private static final AtomicInteger threadCount                   = new AtomicInteger();
+	private static final ExecutorService threadPool                  = Executors.newCachedThreadPool(r -> {
+
+		final Thread thread = new Thread(r, "MessageDispatcher" + threadCount.incrementAndGet());
+
+		thread.setDaemon(true);
+
+		return thread;
+	});
+
+	private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+	private final AtomicLong delivered      = new AtomicLong();
+	private final AtomicLong received       = new AtomicLong();
+	private final AtomicLong batches        = new AtomicLong();
+	private final AtomicLong dropped        = new AtomicLong();
+	private final AtomicLong failed         = new AtomicLong();
+	private final AtomicLong pending        = new AtomicLong();
+	private final AtomicLong lost           = new AtomicLong();
+	private final AtomicLong maxLatency     = new AtomicLong();
+	private final Throughput throughput     = new Throughput();
+	private final long startTime            = System.currentTimeMillis();
+	private volatile long brokerLag         = -1L;
+	private volatile boolean closed         = false;
+	private String clientId                 = null;
+
+	private MessageDispatcher(final String clientId) {
+		this.clientId = clientId;
+	}
+
+	public static MessageDispatcher getInstance(final String clientId) {
+		return dispatchers.computeIfAbsent(clientId, MessageDispatcher::new);
+	}
+
+	/**
+	 * Stops the dispatcher of the given client, messages that are still
+	 * queued are discarded.
+	 *
+	 * @param clientId
+	 */
+	public static void remove(final String clientId) {
+
+		final MessageDispatcher dispatcher = dispatchers.remove(clientId);
+		if (dispatcher != null) {
+
+			dispatcher.closed = true;
+
+			synchronized (dispatcher.pending) {
+				dispatcher.pending.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Queues the given message for delivery to the subscribers of the
+	 * given topic.
+	 *
+	 * @param topic
+	 * @param message
+	 */
+	public void dispatch(final String topic, final String message) {
+
+		received.incrementAndGet();
+		pending.incrementAndGet();
+
+		try {
+
+			topics.computeIfAbsent(topic, Topic::new).add(new Message(topic, message));
+
+		} catch (InterruptedException iex) {
+
+			dropped.incrementAndGet();
+			lost.incrementAndGet();
+			processed(1);
+
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits until all messages that were dispatched so far have been
+	 * processed, i.e. delivered or given up on after a failure.
+	 *
+	 * @return false if the dispatcher was stopped or the thread was
+	 * interrupted before all messages were processed, or if messages
+	 * were dropped without delivery since the last call
+	 */
+	public boolean awaitDelivery() {
+
+		synchronized (pending) {
+
+			while (pending.get() > 0 && !closed) {
+
+				try {
+
+					pending.wait(1000L);
+
+				} catch (InterruptedException iex) {
+
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+		}
+
+		return !closed && lost.getAndSet(0) == 0L;
+	}
+
+	/**
+	 * Sets the number of messages that are available at the broker but
+	 * were not received yet, if the client implementation knows it.
+	 *
+	 * @param lag
+	 */
+	public void setBrokerLag(final long lag) {
+		this.brokerLag = lag;
+	}
+
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+		final Map<String, Object> queued     = new LinkedHashMap<>();
+		final double seconds                 = Math.max(1.0, (System.currentTimeMillis() - startTime) / 1000.0);
+		long oldest                          = 0L;
+		long total                           = 0L;
+
+		for (final Topic topic : topics.values()) {
+
+			final int size = topic.queue.size();
+
+			queued.put(topic.name, size);
+			total  += size;
+			oldest  = Math.max(oldest, topic.getOldestAge());
+		}
+
+		statistics.put("received",          received.get());
+		statistics.put("delivered",         delivered.get());
+		statistics.put("failed",            failed.get());
+		statistics.put("dropped",           dropped.get());
+		statistics.put("batches",           batches.get());
+		statistics.put("queued",            total);
+		statistics.put("queuedPerTopic",    queued);
+		statistics.put("lag",               oldest);
+		statistics.put("maxLatency",        maxLatency.get());
+		statistics.put("brokerLag",         brokerLag);
+		statistics.put("throughput",        throughput.getRate());
+		statistics.put("averageThroughput", delivered.get() / seconds);
+
+		return statistics;
+	}
+
+	// ----- private methods -----
+	private void processed(final int count) {
+
+		synchronized (pending) {
+
+			pending.addAndGet(-count);
+			pending.notifyAll();
+		}
+	}
+
+	private void deliver(final String topic, final List<Message> batch) {
+
+		try {
+
+			deliverInTransaction(topic, batch);
+
+		} catch (FrameworkException | RuntimeException ex) {
+
+			if (batch.size() == 1) {
+
+				logger.warn("Could not deliver message on topic {}: {}", topic, ex.getMessage());
+				failed.incrementAndGet();
+
+			} else {
+
+				// isolate the message(s) that caused the transaction to fail
+				for (final Message message : batch) {
+
+					final List<Message> single = new ArrayList<>();
+
+					single.add(message);
+					deliver(topic, single);
+				}
+			}
+
+			return;
+		}
+
+		final long now = System.currentTimeMillis();
+
+		for (final Message message : batch) {
+			maxLatency.accumulateAndGet(now - message.time, Math::max);
+		}
+
+		throughput.add(batch.size());
+		delivered.addAndGet(batch.size());
+		batches.incrementAndGet();
+	}
+
+	private void deliverInTransaction(final String topic, final List<Message> batch) throws FrameworkException {
+
+		final App app = StructrApp.getInstance();
+
+		try (final Tx tx = app.tx()) {
+
+			final List<MessageSubscriber> subscribers = new ArrayList<>();
+
+			for (final String id : MessageRouter.getInstance().getSubscriberIds(clientId, topic)) {
+
+				final MessageSubscriber subscriber = app.get(MessageSubscriber.class, id);
+				if (subscriber != null) {
+
+					subscribers.add(subscriber);
+				}
+			}
+
+			for (final Message message : batch) {
+
+				for (final MessageSubscriber subscriber : subscribers) {
+
+					final Map<String, Object> params = new HashMap<>();
+
+					params.put("topic", message.topic);
+					params.put("message", message.message);
+
+					try {
+
+						subscriber.invokeMethod("onMessage", params, false);
+
+					} catch (FrameworkException fex) {
+
+						logger.warn("Could not invoke 'onMessage' method on MessageSubscriber: {}", fex.getMessage());
+						failed.incrementAndGet();
+					}
+				}
+			}
+
+			tx.success();
+		}
+	}
+
+	// ----- nested classes -----
+	private static class Message {
+
+		private String message = null;
+		private String topic   = null;
+		private long time      = 0L;
+
+		Message(final String topic, final String message) {
+
+			this.time    = System.currentTimeMillis();
+			this.message = message;
+			this.topic   = topic;
+		}
+	}
+
+	private class Topic {
+
+		private final BlockingQueue<Message> queue = new LinkedBlockingQueue<>(Math.max(1, Settings.MessagingQueueSize.getValue()));
+		private final AtomicInteger workers        = new AtomicInteger();
+		private String name                        = null;
+
+		Topic(final String name) {
+			this.name = name;
+		}
+
+		void add(final Message message) throws InterruptedException {
+
+			queue.put(message);
+			schedule();
+		}
+
+		long getOldestAge() {
+
+			final Message head = queue.peek();
+			if (head != null) {
+
+				return System.currentTimeMillis() - head.time;
+			}
+
+			return 0L;
+		}
+
+		private void schedule() {
+
+			final int parallelism = Math.max(1, Settings.MessagingParallelism.getValue());
+
+			while (!queue.isEmpty() && !closed) {
+
+				final int count = workers.get();
+				if (count >= parallelism) {
+					return;
+				}
+
+				if (workers.compareAndSet(count, count + 1)) {
+
+					threadPool.submit(this::drain);
+					return;
+				}
+			}
+		}
+
+		private void drain() {
+
+			final int batchSize = Math.max(1, Settings.MessagingBatchSize.getValue());
+
+			try {
+
+				while (!closed) {
+
+					final List<Message> batch = new ArrayList<>(batchSize);
+
+					queue.drainTo(batch, batchSize);
+
+					if (batch.isEmpty()) {
+						break;
+					}
+
+					boolean done = false;
+
+					try {
+
+						deliver(name, batch);
+						done = true;
+
+					} finally {
+
+						if (!done) {
+
+							dropped.addAndGet(batch.size());
+							lost.addAndGet(batch.size());
+						}
+
+						processed(batch.size());
+					}
+				}
+
+			} catch (Throwable t) {
+
+				logger.warn("Unexpected exception while delivering messages on topic {}: {}", name, t.getMessage());
+
+			} finally {
+
+				workers.decrementAndGet();
+
+				// a message might have arrived after the queue was drained
+				schedule();
+			}
+		}
+	}
+
+	/**
+	 * Number of delivered messages per second, averaged over the last
+	 * ten seconds.
+	 */
+	private static class Throughput {
+
+		private static final int SECONDS = 10;
+
+		private final long[] counts  = new long[SECONDS];
+		private final long[] seconds = new long[SECONDS];
+
+		synchronized void add(final int count) {
+
+			final long second = System.currentTimeMillis() / 1000L;
+			final int slot    = (int)(second % SECONDS);
+
+			if (seconds[slot] != second) {
+
+				seconds[slot] = second;
+				counts[slot]  = 0L;
+			}
+
+			counts[slot] += count;
+		}
+
+		synchronized double getRate() {
+
+			final long second = System.currentTimeMillis() / 1000L;
+			long total        = 0L;
+
+			for (int i=0; i<SECONDS; i++) {
+
+				// only complete seconds within the window
+				if (seconds[i] < second && seconds[i] >= second - SECONDS) {
+					total += counts[i];
+				}
+			}
+
+			return (double)total / SECONDS;
+		}
+	}
+}
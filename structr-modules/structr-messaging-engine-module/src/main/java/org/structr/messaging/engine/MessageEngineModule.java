@@ -20,6 +20,7 @@ package org.structr.messaging.engine;
 
 import org.structr.api.service.LicenseManager;
 import org.structr.core.entity.AbstractSchemaNode;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.module.StructrModule;
 import org.structr.schema.action.Actions;
 
@@ -29,6 +30,9 @@ public class MessageEngineModule implements StructrModule {
 
     @Override
     public void onLoad(LicenseManager licenseManager) {
+
+        // keep subscriber routes up to date
+        TransactionCommand.registerTransactionListener(MessageRouter.getInstance());
     }
 
     @Override
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.messaging.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.StructrTransactionListener;
+import org.structr.core.TransactionSource;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.ModificationEvent;
+import org.structr.messaging.engine.entities.MessageClient;
+import org.structr.messaging.engine.entities.MessageSubscriber;
+
+/**
+ * In-memory routing table that maps the topics of a message client to
+ * the IDs of its subscribers, so that incoming messages don't need a
+ * graph traversal each.
+ *
+ * The table is filled on demand and cleared after every transaction
+ * that modified a client, a subscriber or the relationship between
+ * them.
+ */
+public class MessageRouter implements StructrTransactionListener {
+
+	private static final MessageRouter instance                 = new MessageRouter();
+	private static final String WILDCARD                        = "*";
+	private final Map<String, Map<String, List<String>>> routes = new ConcurrentHashMap<>();
+	private final AtomicLong generation                         = new AtomicLong();
+
+	private MessageRouter() {}
+
+	public static MessageRouter getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the IDs of the subscribers of the given client that are
+	 * interested in the given topic. Must be called in a transaction.
+	 *
+	 * @param clientId
+	 * @param topic
+	 * @return the subscriber IDs
+	 * @throws FrameworkException
+	 */
+	public List<String> getSubscriberIds(final String clientId, final String topic) throws FrameworkException {
+
+		Map<String, List<String>> table = routes.get(clientId);
+		if (table == null) {
+
+			final long currentGeneration = generation.get();
+
+			table = load(clientId);
+
+			// don't store routes that were loaded while the graph was modified
+			if (currentGeneration == generation.get()) {
+				routes.put(clientId, table);
+			}
+		}
+
+		final List<String> exact    = table.get(topic);
+		final List<String> wildcard = table.get(WILDCARD);
+
+		if (exact == null) {
+			return wildcard != null ? wildcard : Collections.emptyList();
+		}
+
+		if (wildcard == null || WILDCARD.equals(topic)) {
+			return exact;
+		}
+
+		final List<String> result = new ArrayList<>(exact);
+
+		result.addAll(wildcard);
+
+		return result;
+	}
+
+	public void invalidate() {
+
+		generation.incrementAndGet();
+		routes.clear();
+	}
+
+	public int getSize() {
+		return routes.size();
+	}
+
+	// ----- interface StructrTransactionListener -----
+	@Override
+	public void beforeCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents, final TransactionSource source) throws FrameworkException {
+	}
+
+	@Override
+	public void afterCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents, final TransactionSource source) {
+
+		for (final ModificationEvent event : modificationEvents) {
+
+			final GraphObject obj = event.getGraphObject();
+
+			if (obj instanceof MessageClient || obj instanceof MessageSubscriber || (!event.isNode() && event.getRelationshipType() != null && "HAS_SUBSCRIBER".equals(event.getRelationshipType().name()))) {
+
+				invalidate();
+				return;
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private Map<String, List<String>> load(final String clientId) throws FrameworkException {
+
+		final Map<String, List<String>> table = new HashMap<>();
+		final MessageClient client            = StructrApp.getInstance().get(MessageClient.class, clientId);
+
+		if (client != null) {
+
+			final List<MessageSubscriber> subscribers = client.getSubscribers();
+			if (subscribers != null) {
+
+				for (final MessageSubscriber subscriber : subscribers) {
+
+					final String topic = subscriber.getTopic();
+					if (topic != null) {
+
+						table.computeIfAbsent(topic, k -> new ArrayList<>()).add(subscriber.getUuid());
+					}
+				}
+			}
+		}
+
+		return table;
+	}
+}
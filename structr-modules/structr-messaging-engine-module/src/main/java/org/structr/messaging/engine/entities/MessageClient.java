@@ -20,11 +20,14 @@ package org.structr.messaging.engine.entities;
 
 import org.structr.common.PropertyView;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObjectMap;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.Relation;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
+import org.structr.core.property.GenericProperty;
+import org.structr.messaging.engine.MessageDispatcher;
 import org.structr.rest.RestMethodResult;
 import org.structr.schema.SchemaService;
 import org.structr.schema.json.JsonObjectType;
@@ -76,6 +79,11 @@ public interface MessageClient extends NodeInterface {
 					.addException(FrameworkException.class.getName())
 					.setDoExport(true);
 
+			type.addMethod("getMessagingStatistics")
+					.setReturnType(GraphObjectMap.class.getName())
+					.setSource("return " + MessageClient.class.getName() + ".getMessagingStatistics(this);")
+					.setDoExport(true);
+
 
 
         }
@@ -111,6 +119,30 @@ public interface MessageClient extends NodeInterface {
         return new RestMethodResult(200);
     }
 
+    static GraphObjectMap getMessagingStatistics(MessageClient thisClient) {
+
+        final Map<String, Object> statistics = MessageDispatcher.getInstance(thisClient.getUuid()).getStatistics();
+        final GraphObjectMap result          = new GraphObjectMap();
+
+        for (final Map.Entry<String, Object> entry : statistics.entrySet()) {
+
+            Object value = entry.getValue();
+
+            if (value instanceof Map) {
+
+                final GraphObjectMap nested = new GraphObjectMap();
+
+                ((Map<String, Object>)value).forEach((k, v) -> nested.put(new GenericProperty(k), v));
+
+                value = nested;
+            }
+
+            result.put(new GenericProperty(entry.getKey()), value);
+        }
+
+        return result;
+    }
+
     static RestMethodResult subscribeTopic(MessageClient client, final String topic) throws FrameworkException {
 
         return new RestMethodResult(200);
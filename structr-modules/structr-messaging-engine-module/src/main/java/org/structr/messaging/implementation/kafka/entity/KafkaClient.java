@@ -26,6 +26,7 @@ import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.NotInTransactionException;
@@ -39,6 +40,7 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.graph.ModificationQueue;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyMap;
+import org.structr.messaging.engine.MessageDispatcher;
 import org.structr.messaging.engine.entities.MessageClient;
 import org.structr.messaging.engine.entities.MessageSubscriber;
 import org.structr.rest.RestMethodResult;
@@ -140,6 +142,7 @@ public interface KafkaClient extends MessageClient {
 
 	static void onDeletion(final KafkaClient thisClient, final SecurityContext securityContext, final ErrorBuffer errorBuffer, final PropertyMap properties) throws FrameworkException {
 		close(thisClient);
+		MessageDispatcher.remove(properties.get(id));
 	}
 
 
@@ -243,8 +246,8 @@ public interface KafkaClient extends MessageClient {
 			props.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
 		} else if(clazz == KafkaConsumer.class) {
 			props.put("group.id", "structr");
-			props.put("enable.auto.commit", "true");
-			props.put("auto.commit.interval.ms", "1000");
+			// offsets are committed after the messages have been delivered
+			props.put("enable.auto.commit", "false");
 			props.put("session.timeout.ms", "30000");
 			props.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
 			props.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
@@ -276,16 +279,16 @@ public interface KafkaClient extends MessageClient {
 		}
 	}
 
-	static void forwardReceivedMessage(KafkaClient thisClient, String topic, String message) throws FrameworkException {
-		MessageClient.sendMessage(thisClient, topic, message);
-	}
-
 	class ConsumerWorker implements Runnable {
+		private static final long LAG_INTERVAL = 10000L;
 		private KafkaClient client;
+		private MessageDispatcher dispatcher;
+		private long lastLagUpdate = 0L;
 		private final Logger logger = LoggerFactory.getLogger(ConsumerWorker.class.getName());
 
 		public ConsumerWorker(KafkaClient client) {
 			this.client = client;
+			this.dispatcher = MessageDispatcher.getInstance(client.getUuid());
 			logger.info("Started ConsumerWorker for id: " + client.getProperty(id) + (client.getProperty(name) != null ? " name:" + client.getProperty(name) : ""));
 		}
 
@@ -318,15 +321,30 @@ public interface KafkaClient extends MessageClient {
 						} else {
 
 							if (getConsumer(client).subscription().size() > 0) {
-								final ConsumerRecords<String, String> records = getConsumer(client).poll(1000);
+								final Consumer<String, String> consumer       = getConsumer(client);
+								final ConsumerRecords<String, String> records = consumer.poll(1000);
+
+								// delivered in batches, blocks polling when the queue is full
+								records.forEach(record -> dispatcher.dispatch(record.topic(), record.value()));
+
+								// at-least-once: commit the offsets only after the records have been delivered
+								if (!records.isEmpty()) {
 
-								records.forEach(record -> {
-									try {
-										forwardReceivedMessage(client, record.topic(), record.value());
-									} catch (FrameworkException e) {
-										logger.error("Could not process records in ConsumerWorker: " + e.getMessage());
+									if (dispatcher.awaitDelivery()) {
+
+										try {
+											consumer.commitSync();
+										} catch (KafkaException ex) {
+											logger.warn("Could not commit offsets in ConsumerWorker: " + ex.getMessage());
+										}
+
+									} else {
+
+										rewind(consumer, records);
 									}
-								});
+								}
+
+								updateLag(consumer);
 
 							} else {
 								try {
@@ -352,6 +370,48 @@ public interface KafkaClient extends MessageClient {
 			}
 		}
 
+		/**
+		 * Moves the consumer back to the first of the given records, so
+		 * that records which were dropped are received again.
+		 */
+		private void rewind(final Consumer<String, String> consumer, final ConsumerRecords<String, String> records) {
+
+			try {
+
+				for (final TopicPartition partition : records.partitions()) {
+					consumer.seek(partition, records.records(partition).get(0).offset());
+				}
+
+			} catch (KafkaException ex) {
+				logger.warn("Could not rewind consumer in ConsumerWorker: " + ex.getMessage());
+			}
+		}
+
+		private void updateLag(final Consumer<String, String> consumer) {
+
+			final long now = System.currentTimeMillis();
+			if (now - lastLagUpdate < LAG_INTERVAL) {
+				return;
+			}
+
+			lastLagUpdate = now;
+
+			try {
+
+				final Set<TopicPartition> partitions = consumer.assignment();
+				long lag                             = 0L;
+
+				for (final Map.Entry<TopicPartition, Long> entry : consumer.endOffsets(partitions).entrySet()) {
+					lag += Math.max(0L, entry.getValue() - consumer.position(entry.getKey()));
+				}
+
+				dispatcher.setBrokerLag(lag);
+
+			} catch (KafkaException ex) {
+				logger.debug("Could not determine consumer lag: " + ex.getMessage());
+			}
+		}
+
 	}
 
 
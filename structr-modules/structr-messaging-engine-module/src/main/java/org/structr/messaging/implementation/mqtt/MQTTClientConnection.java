@@ -28,18 +28,21 @@ import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.common.error.FrameworkException;
+import org.structr.messaging.engine.MessageDispatcher;
 
 public class MQTTClientConnection implements MqttCallback {
 	private MemoryPersistence persistence = new MemoryPersistence();
 	private MqttConnectOptions connOpts;
 	private MqttClient client;
 	private MQTTInfo info;
+	private String clientId;
 
 	private static final Logger	logger = LoggerFactory.getLogger(MQTTClientConnection.class.getName());
 
 	public MQTTClientConnection(MQTTInfo info) throws MqttException{
 
 		this.info = info;
+		this.clientId = info.getUuid();
 		String broker = info.getProtocol() + info.getUrl() + ":" + info.getPort();
 		client = new MqttClient(broker, info.getUuid(), persistence);
 		client.setCallback(this);
@@ -136,8 +139,8 @@ public class MQTTClientConnection implements MqttCallback {
 	@Override
 	public void messageArrived(String topic, MqttMessage msg) throws Exception {
 
-		Thread workerThread = new Thread(new CallbackWorker(info, topic, msg.toString()));
-		workerThread.start();
+		// delivered in batches, blocks the MQTT client when the queue is full
+		MessageDispatcher.getInstance(clientId).dispatch(topic, msg.toString());
 	}
 
 	@Override
@@ -165,28 +168,4 @@ public class MQTTClientConnection implements MqttCallback {
 	public void deliveryComplete(IMqttDeliveryToken token) {
 	}
 
-	private class CallbackWorker implements Runnable {
-		private final MQTTInfo info;
-		private final String topic;
-		private final String message;
-
-		public CallbackWorker(MQTTInfo info, String topic, String message){
-			this.info = info;
-			this.topic = topic;
-			this.message = message;
-		}
-
-		@Override
-		public void run() {
-
-			try {
-				info.messageCallback(topic, message);
-			} catch (FrameworkException e) {
-				logger.error("Error during MQTT message callback: " + e.getMessage());
-			}
-
-		}
-
-	}
-
 }
@@ -18,8 +18,6 @@
  */
 package org.structr.messaging.implementation.mqtt;
 
-import org.structr.common.error.FrameworkException;
-
 public interface MQTTInfo {
 
 	public String getProtocol();
@@ -30,6 +28,5 @@ public interface MQTTInfo {
 
 	public String[] getTopics();
 
-	public void messageCallback(String topic, String message) throws FrameworkException;
 	public void connectionStatusCallback(boolean connected);
 }
\ No newline at end of file
@@ -29,6 +29,7 @@ import org.structr.core.graph.ModificationQueue;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
+import org.structr.messaging.engine.MessageDispatcher;
 import org.structr.messaging.engine.entities.MessageClient;
 import org.structr.messaging.engine.entities.MessageSubscriber;
 import org.structr.messaging.implementation.mqtt.MQTTClientConnection;
@@ -75,7 +76,6 @@ public interface MQTTClient extends MessageClient, MQTTInfo {
 			type.overrideMethod("onModification", true, MQTTClient.class.getName() + ".onModification(this, arg0, arg1, arg2);");
 			type.overrideMethod("onDeletion",     true, MQTTClient.class.getName() + ".onDeletion(this, arg0, arg1, arg2);");
 
-			type.overrideMethod("messageCallback",          false, MessageClient.class.getName() + ".sendMessage(this,arg0,arg1);");
 			type.overrideMethod("connectionStatusCallback", false, MQTTClient.class.getName() + ".connectionStatusCallback(this, arg0);");
 			type.overrideMethod("getTopics",                false, "return " + MQTTClient.class.getName() + ".getTopics(this);");
 
@@ -161,6 +161,8 @@ public interface MQTTClient extends MessageClient, MQTTInfo {
 
 				connection.disconnect();
 			}
+
+			MessageDispatcher.remove(uuid);
 		}
 
 	}
@@ -26,6 +26,7 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
 import org.structr.core.script.Scripting;
+import org.structr.messaging.engine.MessageDispatcher;
 import org.structr.messaging.engine.entities.MessageClient;
 import org.structr.messaging.engine.entities.MessageSubscriber;
 import org.structr.schema.action.ActionContext;
@@ -33,8 +34,10 @@ import org.structr.schema.action.Actions;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class SimpleMessagingTest extends StructrMessagingEngineModuleTest {
@@ -65,4 +68,60 @@ public class SimpleMessagingTest extends StructrMessagingEngineModuleTest {
 
 	}
 
+	@Test
+	public void testBatchedDispatch() {
+
+		String clientId = null;
+		String subId    = null;
+
+		try(final Tx tx = app.tx()) {
+
+			MessageClient client = app.create(MessageClient.class, "client");
+			MessageSubscriber sub = app.create(MessageSubscriber.class, "sub");
+
+			List<MessageSubscriber> subList = new ArrayList<>();
+			subList.add(sub);
+
+			client.setProperty(StructrApp.key(MessageClient.class, "subscribers"), subList);
+			sub.setProperty(StructrApp.key(MessageSubscriber.class, "topic"), "test");
+			sub.setProperty(StructrApp.key(MessageSubscriber.class, "callback"), "set(this, 'name', retrieve('message'))");
+
+			clientId = client.getUuid();
+			subId    = sub.getUuid();
+
+			tx.success();
+		} catch (FrameworkException ex) {
+			fail("Exception during test: " + ex.getMessage());
+		}
+
+		final MessageDispatcher dispatcher = MessageDispatcher.getInstance(clientId);
+
+		for (int i=0; i<500; i++) {
+			dispatcher.dispatch("test", "message" + i);
+		}
+
+		// messages on other topics are not delivered to the subscriber
+		dispatcher.dispatch("other", "ignored");
+
+		// returns when all messages have been processed, like before an offset commit
+		assertTrue(dispatcher.awaitDelivery());
+
+		final Map<String, Object> statistics = dispatcher.getStatistics();
+
+		assertEquals(501L, statistics.get("delivered"));
+		assertEquals(0L, statistics.get("failed"));
+		assertTrue((Long)statistics.get("batches") < 501L);
+
+		try(final Tx tx = app.tx()) {
+
+			assertEquals("message499", app.get(MessageSubscriber.class, subId).getName());
+
+			tx.success();
+		} catch (FrameworkException ex) {
+			fail("Exception during test: " + ex.getMessage());
+		}
+
+		MessageDispatcher.remove(clientId);
+	}
+
 }
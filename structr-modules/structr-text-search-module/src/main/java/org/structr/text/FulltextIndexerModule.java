@@ -18,27 +18,49 @@
  */
 package org.structr.text;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.structr.api.service.LicenseManager;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.fulltext.FulltextIndexer;
 import org.structr.common.fulltext.Indexable;
 import org.structr.core.GraphObjectMap;
+import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractSchemaNode;
+import org.structr.core.function.Functions;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.property.GenericProperty;
 import org.structr.module.StructrModule;
 import org.structr.schema.action.Actions;
+import org.structr.text.index.InvertedIndex;
+import org.structr.text.index.InvertedIndex.SearchHit;
 
 /**
  *
  */
 public class FulltextIndexerModule implements FulltextIndexer, StructrModule {
 
+	private static final Logger logger         = LoggerFactory.getLogger(FulltextIndexerModule.class.getName());
+	private static final Pattern QUERY_PATTERN = Pattern.compile("\"([^\"]*)\"|(\\S+)");
+
 	@Override
 	public void onLoad(final LicenseManager licenseManager) {
+
+		// extend set of builtin functions
+		Functions.put(true, LicenseManager.Community, "fulltext_search", new FulltextSearchFunction());
 	}
 
 	@Override
@@ -46,6 +68,131 @@ public class FulltextIndexerModule implements FulltextIndexer, StructrModule {
 		StructrApp.getInstance(node.getSecurityContext()).processTasks(new FulltextIndexingTask(node.getUuid()));
 	}
 
+	@Override
+	public void removeFromFulltextIndex(final Indexable node) throws FrameworkException {
+
+		final String uuid = node.getUuid();
+
+		// the index is not transactional, so the document is only removed if the deletion is committed
+		TransactionCommand.afterCommit(() -> {
+
+			try {
+
+				InvertedIndex.getInstance().remove(uuid);
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to remove {} from fulltext index: {}", uuid, ioex.getMessage());
+			}
+		});
+	}
+
+	/**
+	 * Searches the fulltext index. Words in double quotes are matched as
+	 * a phrase, all other words are matched individually, and results
+	 * are ranked by their BM25 score.
+	 *
+	 * @param query
+	 * @param maxResults
+	 * @return a map of UUIDs to scores, in result order
+	 * @throws FrameworkException
+	 */
+	@Override
+	public Map<String, Double> search(final String query, final int maxResults) throws FrameworkException {
+
+		final Map<String, Double> result = new LinkedHashMap<>();
+
+		if (StringUtils.isNotBlank(query)) {
+
+			try {
+
+				for (final SearchHit hit : InvertedIndex.getInstance().search(parseQuery(query), FulltextIndexingAgent::isStopWord, maxResults)) {
+					result.put(hit.getUuid(), hit.getScore());
+				}
+
+			} catch (IOException ioex) {
+
+				throw new FrameworkException(500, "Unable to search fulltext index: " + ioex.getMessage());
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Searches the fulltext index like {@link #search(String, int)}, but
+	 * only returns objects of the given type. The index does not know the
+	 * type of its documents, so more hits are requested until enough of
+	 * them have the given type or the index has no more hits.
+	 *
+	 * @param query
+	 * @param type
+	 * @param maxResults
+	 * @return a map of UUIDs to scores, in result order
+	 * @throws FrameworkException
+	 */
+	@Override
+	public Map<String, Double> search(final String query, final Class type, final int maxResults) throws FrameworkException {
+
+		if (type == null) {
+			return search(query, maxResults);
+		}
+
+		final Map<String, Double> result   = new LinkedHashMap<>();
+		final Map<String, Boolean> matches = new HashMap<>();
+		final App app                      = StructrApp.getInstance();
+
+		if (StringUtils.isNotBlank(query) && maxResults > 0) {
+
+			try {
+
+				final List<List<String>> clauses = parseQuery(query);
+				int limit                        = maxResults;
+
+				while (true) {
+
+					final List<SearchHit> hits = InvertedIndex.getInstance().search(clauses, FulltextIndexingAgent::isStopWord, limit);
+
+					result.clear();
+
+					for (final SearchHit hit : hits) {
+
+						final String uuid = hit.getUuid();
+						Boolean match     = matches.get(uuid);
+
+						if (match == null) {
+
+							match = type.isInstance(app.getNodeById(uuid));
+							matches.put(uuid, match);
+						}
+
+						if (match) {
+
+							result.put(uuid, hit.getScore());
+
+							if (result.size() >= maxResults) {
+								break;
+							}
+						}
+					}
+
+					// enough hits of the given type, or no more hits in the index
+					if (result.size() >= maxResults || hits.size() < limit || limit > Integer.MAX_VALUE / 4) {
+						break;
+					}
+
+					limit *= 4;
+				}
+
+			} catch (IOException ioex) {
+
+				throw new FrameworkException(500, "Unable to search fulltext index: " + ioex.getMessage());
+			}
+		}
+
+		return result;
+	}
+
 	@Override
 	public GraphObjectMap getContextObject(final String searchTerm, final String text, final int contextLength) {
 
@@ -224,6 +371,53 @@ public class FulltextIndexerModule implements FulltextIndexer, StructrModule {
 	}
 
 	//~--- private methods --------------------------------------------------------
+	private static List<List<String>> parseQuery(final String query) throws IOException {
+
+		final List<List<String>> clauses = new ArrayList<>();
+		final Matcher matcher            = QUERY_PATTERN.matcher(query);
+
+		while (matcher.find()) {
+
+			final String phrase = matcher.group(1);
+			if (phrase != null) {
+
+				clauses.add(tokenize(phrase));
+
+			} else {
+
+				for (final String word : tokenize(matcher.group(2))) {
+
+					clauses.add(Collections.singletonList(word));
+				}
+			}
+		}
+
+		return clauses;
+	}
+
+	/**
+	 * Splits the given text into words in the same way documents are
+	 * split for indexing. Stop words are kept, they are indexed as well
+	 * and only treated differently when the results are scored.
+	 */
+	private static List<String> tokenize(final String text) throws IOException {
+
+		final FulltextTokenizer tokenizer = new FulltextTokenizer("query");
+		final List<String> words          = new ArrayList<>();
+
+		tokenizer.write(text);
+		tokenizer.flush();
+
+		for (final String word : tokenizer.getWords()) {
+
+			final String stripped = StringUtils.strip(word, "\"");
+
+			words.add(stripped);
+		}
+
+		return words;
+	}
+
 	private static int flushWordBuffer(final StringBuilder lineBuffer, final StringBuilder wordBuffer, final boolean prepend) {
 
 		int wordCount = 0;
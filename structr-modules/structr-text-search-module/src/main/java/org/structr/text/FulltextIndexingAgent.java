@@ -28,6 +28,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -57,6 +58,7 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.entity.Person;
 import org.structr.core.entity.Principal;
 import org.structr.core.graph.Tx;
+import org.structr.text.index.InvertedIndex;
 import org.structr.web.entity.File;
 
 /**
@@ -131,6 +133,26 @@ public class FulltextIndexingAgent extends Agent<String> {
 		return FulltextIndexingTask.class;
 	}
 
+	/**
+	 * Indicates whether the given word is a stop word in any of the
+	 * supported languages. Used to weight query terms, stop words are
+	 * indexed regardless of the document language.
+	 *
+	 * @param word
+	 * @return whether the word is a stop word
+	 */
+	static boolean isStopWord(final String word) {
+
+		for (final Set<String> stopWords : languageStopwordMap.values()) {
+
+			if (stopWords.contains(word)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	// ----- private methods -----
 	private boolean doIndexing(final Indexable indexable) {
 
@@ -211,10 +233,12 @@ public class FulltextIndexingAgent extends Agent<String> {
 								}
 							}
 
-							// index document excluding stop words
+							// index document including stop words, so that queries match regardless of the
+							// document language, but exclude them from the top words
 							final Set<String> stopWords             = languageStopwordMap.get(tokenizer.getLanguage());
 							final Iterator<String> wordIterator     = tokenizer.getWords().iterator();
 							final Map<String, Integer> indexedWords = new LinkedHashMap<>();
+							final List<String> documentWords        = new ArrayList<>();
 
 							while (wordIterator.hasNext()) {
 
@@ -224,6 +248,17 @@ public class FulltextIndexingAgent extends Agent<String> {
 
 									add(indexedWords, word);
 								}
+
+								documentWords.add(word);
+							}
+
+							try {
+
+								InvertedIndex.getInstance().add(indexable.getUuid(), documentWords);
+
+							} catch (IOException ioex) {
+
+								logger.warn("Unable to add {} to fulltext index: {}", fileName, ioex.getMessage());
 							}
 
 							final String[] topWords = getFrequencySortedTopWords(indexedWords, maxTopWords);
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.structr.api.config.Settings;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.app.App;
+import org.structr.core.app.Query;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeInterface;
+import org.structr.schema.action.ActionContext;
+import org.structr.schema.action.Function;
+
+/**
+ *
+ */
+public class FulltextSearchFunction extends Function<Object, Object> {
+
+	public static final String ERROR_MESSAGE_FULLTEXT_SEARCH    = "Usage: ${fulltext_search(query[, maxResults])}. Example: ${fulltext_search('\"annual report\" revenue', 10)}";
+	public static final String ERROR_MESSAGE_FULLTEXT_SEARCH_JS = "Usage: ${{Structr.fulltextSearch(query[, maxResults])}}. Example: ${{Structr.fulltextSearch('\"annual report\" revenue', 10)}}";
+
+	@Override
+	public String getName() {
+		return "fulltext_search()";
+	}
+
+	@Override
+	public Object apply(final ActionContext ctx, final Object caller, final Object[] sources) throws FrameworkException {
+
+		if (arrayHasMinLengthAndMaxLengthAndAllElementsNotNull(sources, 1, 2)) {
+
+			final Integer limit              = sources.length > 1 ? parseInt(sources[1]) : null;
+			final App app                    = StructrApp.getInstance(ctx.getSecurityContext());
+			final Map<String, Double> scores = app.getFulltextIndexer().search(sources[0].toString(), limit != null ? limit : Settings.IndexingMaxResults.getValue());
+
+			if (scores.isEmpty()) {
+				return Collections.emptyList();
+			}
+
+			final Query<NodeInterface> query = app.nodeQuery(NodeInterface.class).and();
+
+			for (final String uuid : scores.keySet()) {
+				query.or(GraphObject.id, uuid);
+			}
+
+			// visibility is checked by the query, order is defined by the score
+			final List<NodeInterface> result = query.parent().disableSorting().getAsList();
+
+			result.sort((a, b) -> Double.compare(scores.get(b.getUuid()), scores.get(a.getUuid())));
+
+			return result;
+
+		} else {
+
+			logParameterError(caller, sources, ctx.isJavaScriptContext());
+
+			return usage(ctx.isJavaScriptContext());
+		}
+	}
+
+	@Override
+	public String usage(final boolean inJavaScriptContext) {
+		return (inJavaScriptContext ? ERROR_MESSAGE_FULLTEXT_SEARCH_JS : ERROR_MESSAGE_FULLTEXT_SEARCH);
+	}
+
+	@Override
+	public String shortDescription() {
+		return "Returns the files that match the given fulltext query, ordered by relevance";
+	}
+}
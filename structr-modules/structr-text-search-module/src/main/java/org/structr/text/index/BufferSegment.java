@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory segment that collects new documents until it is written
+ * to disk.
+ */
+class BufferSegment implements SegmentReader {
+
+	private final Map<String, Postings> terms = new HashMap<>();
+	private final List<String> uuids          = new ArrayList<>();
+	private final BitSet deletes              = new BitSet();
+	private int[] lengths                     = new int[1024];
+
+	/**
+	 * Adds a document with the given words. Null elements in the
+	 * list of words are skipped, but occupy a position (i.e. for stop
+	 * words), so that phrase queries cannot match across them.
+	 *
+	 * @param uuid
+	 * @param words
+	 * @return the document number
+	 */
+	int add(final String uuid, final List<String> words) {
+
+		final Map<String, List<Integer>> termPositions = new LinkedHashMap<>();
+		final int doc                                  = uuids.size();
+		int position                                   = 0;
+		int length                                     = 0;
+
+		for (final String word : words) {
+
+			if (word != null) {
+
+				termPositions.computeIfAbsent(word, k -> new ArrayList<>()).add(position);
+				length++;
+			}
+
+			position++;
+		}
+
+		for (final Map.Entry<String, List<Integer>> entry : termPositions.entrySet()) {
+
+			final List<Integer> list = entry.getValue();
+			final int[] positions    = new int[list.size()];
+
+			for (int i=0; i<positions.length; i++) {
+				positions[i] = list.get(i);
+			}
+
+			terms.computeIfAbsent(entry.getKey(), k -> new Postings()).add(doc, positions);
+		}
+
+		if (doc == lengths.length) {
+			lengths = Arrays.copyOf(lengths, doc * 2);
+		}
+
+		lengths[doc] = length;
+		uuids.add(uuid);
+
+		return doc;
+	}
+
+	/**
+	 * Writes the contents of this buffer to the given writer, keeping
+	 * the document numbers.
+	 *
+	 * @param writer
+	 * @throws IOException
+	 */
+	void writeTo(final SegmentWriter writer) throws IOException {
+
+		final int count = uuids.size();
+
+		for (int i=0; i<count; i++) {
+			writer.addDocument(uuids.get(i), lengths[i]);
+		}
+
+		for (final Map.Entry<String, Postings> entry : new TreeMap<>(terms).entrySet()) {
+
+			final Postings postings = entry.getValue();
+			final int size          = postings.size();
+
+			writer.startTerm(entry.getKey());
+
+			for (int i=0; i<size; i++) {
+				writer.addPosting(postings.getDoc(i), postings.getPositions(i));
+			}
+
+			writer.finishTerm();
+		}
+
+		writer.setDeletes(deletes);
+	}
+
+	// ----- interface SegmentReader -----
+	@Override
+	public int getDocumentCount() {
+		return uuids.size();
+	}
+
+	@Override
+	public String getUuid(final int doc) {
+		return uuids.get(doc);
+	}
+
+	@Override
+	public int getLength(final int doc) {
+		return lengths[doc];
+	}
+
+	@Override
+	public boolean isDeleted(final int doc) {
+		return deletes.get(doc);
+	}
+
+	@Override
+	public void delete(final int doc) {
+		deletes.set(doc);
+	}
+
+	@Override
+	public Postings getPostings(final String term) {
+		return terms.get(term);
+	}
+}
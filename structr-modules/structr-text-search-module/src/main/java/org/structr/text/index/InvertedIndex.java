@@ -0,0 +1,874 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.index;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+
+/**
+ * Embedded inverted index with BM25-ranked retrieval.
+ *
+ * New documents are collected in an in-memory buffer segment which is
+ * written to an immutable on-disk segment when it is full or after a
+ * short delay. Updating a document marks the old version as deleted
+ * and adds the new one. Deletions are written after the same delay,
+ * even if no documents were added. A background thread merges the smallest
+ * segments when there are too many of them, dropping deleted documents
+ * in the process, so that the number of segments a query has to visit
+ * stays small. The list of live segments is stored in a manifest file
+ * that is replaced atomically.
+ */
+public class InvertedIndex {
+
+	private static final Logger logger                = LoggerFactory.getLogger(InvertedIndex.class.getName());
+	private static final InvertedIndex instance       = new InvertedIndex();
+	private static final String MANIFEST_FILE         = "segments";
+	private static final int MAX_BUFFERED_DOCUMENTS   = 10000;
+	private static final long MAX_BUFFER_AGE          = 1000L;
+	private static final int MERGE_FACTOR             = 8;
+	private static final double K1                    = 1.2;
+	private static final double B                     = 0.75;
+
+	private final Map<String, DocumentRef> documents = new HashMap<>();
+	private final List<Segment> segments             = new ArrayList<>();
+	private BufferSegment buffer                     = new BufferSegment();
+	private Thread mergeThread                       = null;
+	private File directory                           = null;
+	private String path                              = null;
+	private long totalLength                         = 0L;
+	private long pendingSince                        = 0L;
+	private int nextSegment                          = 1;
+	private boolean shutdownHookRegistered           = false;
+
+	private InvertedIndex() {}
+
+	public static InvertedIndex getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Adds the document with the given UUID, replacing a previous
+	 * version. Null elements in the list of words occupy a position
+	 * but are not indexed (i.e. stop words).
+	 *
+	 * @param uuid
+	 * @param words
+	 * @throws IOException
+	 */
+	public synchronized void add(final String uuid, final List<String> words) throws IOException {
+
+		open();
+		removeDocument(uuid);
+
+		final int doc = buffer.add(uuid, words);
+
+		documents.put(uuid, new DocumentRef(buffer, doc));
+		totalLength += buffer.getLength(doc);
+
+		markPending();
+
+		if (buffer.getDocumentCount() >= MAX_BUFFERED_DOCUMENTS) {
+			flush();
+		}
+	}
+
+	public synchronized void remove(final String uuid) throws IOException {
+
+		open();
+
+		// deletions are only written on flush, so they need to be scheduled as well
+		if (removeDocument(uuid)) {
+			markPending();
+		}
+	}
+
+	/**
+	 * Returns the UUIDs of the best matching documents for the given
+	 * query, ordered by descending BM25 score. Each clause of the query
+	 * is either a single term or a phrase, in which case null elements
+	 * stand for a single arbitrary word. A document matches if it
+	 * matches at least one clause.
+	 *
+	 * @param clauses
+	 * @param maxResults
+	 * @return the search hits
+	 * @throws IOException
+	 */
+	public List<SearchHit> search(final List<List<String>> clauses, final int maxResults) throws IOException {
+		return search(clauses, term -> false, maxResults);
+	}
+
+	/**
+	 * Returns the UUIDs of the best matching documents for the given
+	 * query, like {@link #search(List, int)}. Stop words are matched like
+	 * other terms, but do not contribute to the score of a phrase, and
+	 * clauses that consist of stop words only do not add documents to the
+	 * result unless the query has no other clauses.
+	 *
+	 * @param clauses
+	 * @param stopWords
+	 * @param maxResults
+	 * @return the search hits
+	 * @throws IOException
+	 */
+	public synchronized List<SearchHit> search(final List<List<String>> clauses, final Predicate<String> stopWords, final int maxResults) throws IOException {
+
+		open();
+
+		final List<SearchHit> result = new ArrayList<>();
+		final int documentCount      = documents.size();
+
+		if (documentCount == 0 || maxResults <= 0) {
+			return result;
+		}
+
+		final List<SegmentReader> readers = new ArrayList<>(segments);
+		final Map<String, Double> scores  = new HashMap<>();
+		final double averageLength        = Math.max(1.0, (double)totalLength / documentCount);
+
+		readers.add(buffer);
+
+		// clauses that consist of stop words only are evaluated last
+		final List<List<String>> orderedClauses = new ArrayList<>();
+		final List<List<String>> weakClauses    = new ArrayList<>();
+
+		for (final List<String> clause : clauses) {
+
+			if (clause.stream().allMatch(term -> term == null || stopWords.test(term))) {
+
+				weakClauses.add(clause);
+
+			} else {
+
+				orderedClauses.add(clause);
+			}
+		}
+
+		final boolean onlyWeakClauses = orderedClauses.isEmpty();
+
+		orderedClauses.addAll(weakClauses);
+
+		for (final List<String> clause : orderedClauses) {
+
+			final List<String> terms = new ArrayList<>();
+			final List<Integer> offs = new ArrayList<>();
+
+			for (int i=0; i<clause.size(); i++) {
+
+				final String term = clause.get(i);
+				if (term != null) {
+
+					terms.add(term);
+					offs.add(i);
+				}
+			}
+
+			if (terms.isEmpty()) {
+				continue;
+			}
+
+			final boolean weak = weakClauses.contains(clause);
+
+			final int termCount           = terms.size();
+			final Postings[][] postings   = new Postings[readers.size()][termCount];
+			final int[] offsets           = new int[termCount];
+			double idf                    = 0.0;
+			boolean missing               = false;
+
+			for (int t=0; t<termCount && !missing; t++) {
+
+				final String term = terms.get(t);
+				int docFrequency  = 0;
+
+				offsets[t] = offs.get(t) - offs.get(0);
+
+				for (int r=0; r<readers.size(); r++) {
+
+					final SegmentReader reader = readers.get(r);
+					final Postings list        = reader.getPostings(term);
+
+					if (list != null) {
+
+						for (int i=0; i<list.size(); i++) {
+
+							if (!reader.isDeleted(list.getDoc(i))) {
+								docFrequency++;
+							}
+						}
+					}
+
+					postings[r][t] = list;
+				}
+
+				if (docFrequency == 0) {
+
+					missing = true;
+
+				} else if (weak || !stopWords.test(term)) {
+
+					idf += Math.log(1.0 + (documentCount - docFrequency + 0.5) / (docFrequency + 0.5));
+				}
+			}
+
+			// a clause with an unknown term cannot match anything
+			if (missing) {
+				continue;
+			}
+
+			for (int r=0; r<readers.size(); r++) {
+
+				final SegmentReader reader = readers.get(r);
+				final Postings first       = postings[r][0];
+
+				if (first == null) {
+					continue;
+				}
+
+				for (int i=0; i<first.size(); i++) {
+
+					final int doc = first.getDoc(i);
+					if (reader.isDeleted(doc)) {
+						continue;
+					}
+
+					// stop words alone do not make a document match
+					if (weak && !onlyWeakClauses && !scores.containsKey(reader.getUuid(doc))) {
+						continue;
+					}
+
+					final int frequency = termCount == 1 ? first.getFrequency(i) : getPhraseFrequency(postings[r], offsets, i);
+					if (frequency > 0) {
+
+						final double norm  = K1 * (1.0 - B + B * reader.getLength(doc) / averageLength);
+						final double score = idf * (frequency * (K1 + 1.0)) / (frequency + norm);
+
+						scores.merge(reader.getUuid(doc), score, Double::sum);
+					}
+				}
+			}
+		}
+
+		final PriorityQueue<SearchHit> queue = new PriorityQueue<>(Comparator.comparingDouble(SearchHit::getScore));
+
+		for (final Map.Entry<String, Double> entry : scores.entrySet()) {
+
+			final double score = entry.getValue();
+
+			if (queue.size() < maxResults) {
+
+				queue.add(new SearchHit(entry.getKey(), score));
+
+			} else if (score > queue.peek().getScore()) {
+
+				queue.poll();
+				queue.add(new SearchHit(entry.getKey(), score));
+			}
+		}
+
+		result.addAll(queue);
+		result.sort(Collections.reverseOrder(Comparator.comparingDouble(SearchHit::getScore)));
+
+		return result;
+	}
+
+	/**
+	 * Writes buffered documents and pending deletions to disk.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+
+		if (path == null) {
+			return;
+		}
+
+		if (buffer.getDocumentCount() > 0) {
+
+			final String name             = nextSegmentName();
+			final SegmentWriter writer    = new SegmentWriter(new File(directory, name));
+
+			buffer.writeTo(writer);
+
+			final Segment segment = writer.finish(name);
+			final int count       = segment.getDocumentCount();
+
+			for (int doc=0; doc<count; doc++) {
+
+				if (!segment.isDeleted(doc)) {
+					documents.put(segment.getUuid(doc), new DocumentRef(segment, doc));
+				}
+			}
+
+			segments.add(segment);
+			buffer = new BufferSegment();
+		}
+
+		for (final Segment segment : segments) {
+			segment.commit();
+		}
+
+		writeManifest();
+
+		pendingSince = 0L;
+	}
+
+	public synchronized int getDocumentCount() throws IOException {
+
+		open();
+
+		return documents.size();
+	}
+
+	public synchronized int getSegmentCount() throws IOException {
+
+		open();
+
+		return segments.size();
+	}
+
+	public synchronized void close() {
+
+		if (path == null) {
+			return;
+		}
+
+		try {
+
+			flush();
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to flush fulltext index: {}", ioex.getMessage());
+		}
+
+		for (final Segment segment : segments) {
+			segment.close();
+		}
+
+		segments.clear();
+		documents.clear();
+
+		buffer      = new BufferSegment();
+		mergeThread = null;
+		directory    = null;
+		path         = null;
+		totalLength  = 0L;
+		pendingSince = 0L;
+
+		notifyAll();
+	}
+
+	// ----- private methods -----
+	private void open() throws IOException {
+
+		final String currentPath = Settings.getFullSettingPath(Settings.IndexingPath);
+
+		if (currentPath.equals(path)) {
+			return;
+		}
+
+		// base path changed (or first use)
+		close();
+
+		directory   = new File(currentPath);
+		nextSegment = 1;
+
+		directory.mkdirs();
+
+		final Set<String> names = readManifest();
+
+		try {
+
+			loadSegments(names);
+
+		} catch (IOException ioex) {
+
+			for (final Segment segment : segments) {
+				segment.close();
+			}
+
+			segments.clear();
+			documents.clear();
+
+			totalLength = 0L;
+
+			throw ioex;
+		}
+
+		// remove segments of interrupted flushes and merges
+		final File[] files = directory.listFiles();
+		if (files != null) {
+
+			for (final File file : files) {
+
+				if (file.isDirectory() && !names.contains(file.getName())) {
+
+					FileUtils.deleteQuietly(file);
+				}
+			}
+		}
+
+		path = currentPath;
+
+		mergeThread = new Thread(this::runMergeThread, "FulltextIndexMerger");
+		mergeThread.setDaemon(true);
+		mergeThread.start();
+
+		if (!shutdownHookRegistered) {
+
+			Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+			shutdownHookRegistered = true;
+		}
+
+		logger.info("Fulltext index opened at {}, {} documents in {} segments", path, documents.size(), segments.size());
+	}
+
+	private void loadSegments(final Set<String> names) throws IOException {
+
+		for (final String name : names) {
+
+			final Segment segment = new Segment(name, new File(directory, name));
+			final int count       = segment.getDocumentCount();
+
+			for (int doc=0; doc<count; doc++) {
+
+				if (!segment.isDeleted(doc)) {
+
+					// deletions that were not written before a crash: the newer version wins
+					final DocumentRef previous = documents.put(segment.getUuid(doc), new DocumentRef(segment, doc));
+					if (previous != null) {
+
+						previous.reader.delete(previous.doc);
+						totalLength -= previous.reader.getLength(previous.doc);
+					}
+
+					totalLength += segment.getLength(doc);
+				}
+			}
+
+			segments.add(segment);
+			nextSegment = Math.max(nextSegment, getSegmentNumber(name) + 1);
+		}
+	}
+
+	private boolean removeDocument(final String uuid) {
+
+		final DocumentRef ref = documents.remove(uuid);
+		if (ref != null) {
+
+			ref.reader.delete(ref.doc);
+			totalLength -= ref.reader.getLength(ref.doc);
+
+			return true;
+		}
+
+		return false;
+	}
+
+	private void markPending() {
+
+		if (pendingSince == 0L) {
+			pendingSince = System.currentTimeMillis();
+		}
+	}
+
+	private void runMergeThread() {
+
+		final Thread thread = Thread.currentThread();
+
+		while (true) {
+
+			try {
+
+				synchronized (this) {
+
+					wait(MAX_BUFFER_AGE);
+
+					if (mergeThread != thread) {
+						return;
+					}
+
+					// buffered documents and deletions
+					if (pendingSince > 0L && System.currentTimeMillis() - pendingSince >= MAX_BUFFER_AGE) {
+						flush();
+					}
+				}
+
+				while (merge(thread));
+
+			} catch (InterruptedException iex) {
+
+				return;
+
+			} catch (Throwable t) {
+
+				logger.warn("Error in fulltext index maintenance: {}", t.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Merges the smallest segments into a new one if there are too many
+	 * segments. The new segment is written without holding the lock, so
+	 * documents deleted in the meantime are re-applied before it replaces
+	 * the source segments.
+	 */
+	private boolean merge(final Thread thread) throws IOException {
+
+		final List<Segment> sources   = new ArrayList<>();
+		final List<BitSet> snapshots  = new ArrayList<>();
+		final File target;
+
+		synchronized (this) {
+
+			if (mergeThread != thread || segments.size() <= MERGE_FACTOR) {
+				return false;
+			}
+
+			final List<Segment> candidates = new ArrayList<>(segments);
+
+			candidates.sort(Comparator.comparingInt(Segment::getDocumentCount));
+
+			sources.addAll(candidates.subList(0, MERGE_FACTOR));
+
+			// keep the relative order of the segments
+			sources.sort(Comparator.comparingInt(segments::indexOf));
+
+			for (final Segment segment : sources) {
+				snapshots.add(segment.getDeletes());
+			}
+
+			target = new File(directory, nextSegmentName());
+		}
+
+		final String name     = target.getName();
+		final int[][] docMap  = new int[sources.size()][];
+		final Segment merged;
+
+		try (final SegmentWriter writer = new SegmentWriter(target)) {
+
+			for (int s=0; s<sources.size(); s++) {
+
+				final Segment source = sources.get(s);
+				final BitSet deleted = snapshots.get(s);
+				final int count      = source.getDocumentCount();
+
+				docMap[s] = new int[count];
+
+				for (int doc=0; doc<count; doc++) {
+
+					docMap[s][doc] = deleted.get(doc) ? -1 : writer.addDocument(source.getUuid(doc), source.getLength(doc));
+				}
+			}
+
+			final PriorityQueue<TermCursor> queue = new PriorityQueue<>();
+
+			for (int s=0; s<sources.size(); s++) {
+
+				if (sources.get(s).getTermCount() > 0) {
+					queue.add(new TermCursor(sources.get(s), s));
+				}
+			}
+
+			while (!queue.isEmpty()) {
+
+				final String term = queue.peek().getTerm();
+
+				writer.startTerm(term);
+
+				while (!queue.isEmpty() && term.equals(queue.peek().getTerm())) {
+
+					final TermCursor cursor = queue.poll();
+					final Postings postings = cursor.segment.getPostings(cursor.index);
+					final int[] map         = docMap[cursor.source];
+
+					for (int i=0; i<postings.size(); i++) {
+
+						final int doc = map[postings.getDoc(i)];
+						if (doc >= 0) {
+
+							writer.addPosting(doc, postings.getPositions(i));
+						}
+					}
+
+					if (++cursor.index < cursor.segment.getTermCount()) {
+						queue.add(cursor);
+					}
+				}
+
+				writer.finishTerm();
+			}
+
+			merged = writer.finish(name);
+
+		} catch (IOException ioex) {
+
+			FileUtils.deleteQuietly(target);
+			throw ioex;
+		}
+
+		synchronized (this) {
+
+			if (mergeThread != thread) {
+
+				// index was closed or re-opened in the meantime
+				merged.close();
+				FileUtils.deleteQuietly(target);
+
+				return false;
+			}
+
+			for (int s=0; s<sources.size(); s++) {
+
+				final Segment source = sources.get(s);
+				final int count      = source.getDocumentCount();
+
+				for (int doc=0; doc<count; doc++) {
+
+					final int newDoc = docMap[s][doc];
+					if (newDoc >= 0) {
+
+						if (source.isDeleted(doc)) {
+
+							merged.delete(newDoc);
+
+						} else {
+
+							documents.put(source.getUuid(doc), new DocumentRef(merged, newDoc));
+						}
+					}
+				}
+			}
+
+			segments.add(segments.indexOf(sources.get(0)), merged);
+			segments.removeAll(sources);
+
+			merged.commit();
+			writeManifest();
+
+			for (final Segment source : sources) {
+
+				source.close();
+				FileUtils.deleteQuietly(source.getDirectory());
+			}
+		}
+
+		return true;
+	}
+
+	private static int getPhraseFrequency(final Postings[] postings, final int[] offsets, final int firstIndex) {
+
+		final int doc              = postings[0].getDoc(firstIndex);
+		final int[][] positions    = new int[postings.length][];
+
+		for (int t=1; t<postings.length; t++) {
+
+			final int index = findDoc(postings[t], doc);
+			if (index < 0) {
+				return 0;
+			}
+
+			positions[t] = postings[t].getPositions(index);
+		}
+
+		int frequency = 0;
+
+		for (final int start : postings[0].getPositions(firstIndex)) {
+
+			boolean match = true;
+
+			for (int t=1; t<postings.length && match; t++) {
+				match = Arrays.binarySearch(positions[t], start + offsets[t]) >= 0;
+			}
+
+			if (match) {
+				frequency++;
+			}
+		}
+
+		return frequency;
+	}
+
+	private static int findDoc(final Postings postings, final int doc) {
+
+		if (postings == null) {
+			return -1;
+		}
+
+		int low  = 0;
+		int high = postings.size() - 1;
+
+		while (low <= high) {
+
+			final int mid   = (low + high) >>> 1;
+			final int value = postings.getDoc(mid);
+
+			if (value < doc) {
+
+				low = mid + 1;
+
+			} else if (value > doc) {
+
+				high = mid - 1;
+
+			} else {
+
+				return mid;
+			}
+		}
+
+		return -1;
+	}
+
+	private String nextSegmentName() {
+		return String.format("segment%08d", nextSegment++);
+	}
+
+	private int getSegmentNumber(final String name) {
+
+		try {
+
+			return Integer.parseInt(name.substring("segment".length()));
+
+		} catch (NumberFormatException | IndexOutOfBoundsException ex) {
+			return 0;
+		}
+	}
+
+	private Set<String> readManifest() throws IOException {
+
+		final Set<String> names = new LinkedHashSet<>();
+		final File file         = new File(directory, MANIFEST_FILE);
+
+		if (file.exists()) {
+
+			try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+				final int count = in.readInt();
+
+				for (int i=0; i<count; i++) {
+					names.add(in.readUTF());
+				}
+			}
+		}
+
+		return names;
+	}
+
+	private void writeManifest() throws IOException {
+
+		final File tmpFile = new File(directory, MANIFEST_FILE + ".tmp");
+
+		try (final DataOutputStream out = new DataOutputStream(new FileOutputStream(tmpFile))) {
+
+			out.writeInt(segments.size());
+
+			for (final Segment segment : segments) {
+				out.writeUTF(segment.getName());
+			}
+		}
+
+		Files.move(tmpFile.toPath(), new File(directory, MANIFEST_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	// ----- nested classes -----
+	public static class SearchHit {
+
+		private String uuid  = null;
+		private double score = 0.0;
+
+		SearchHit(final String uuid, final double score) {
+
+			this.uuid  = uuid;
+			this.score = score;
+		}
+
+		public String getUuid() {
+			return uuid;
+		}
+
+		public double getScore() {
+			return score;
+		}
+	}
+
+	private static class DocumentRef {
+
+		private SegmentReader reader = null;
+		private int doc              = 0;
+
+		DocumentRef(final SegmentReader reader, final int doc) {
+
+			this.reader = reader;
+			this.doc    = doc;
+		}
+	}
+
+	private static class TermCursor implements Comparable<TermCursor> {
+
+		private Segment segment = null;
+		private int source      = 0;
+		private int index       = 0;
+
+		TermCursor(final Segment segment, final int source) {
+
+			this.segment = segment;
+			this.source  = source;
+		}
+
+		String getTerm() {
+			return segment.getTerm(index);
+		}
+
+		@Override
+		public int compareTo(final TermCursor other) {
+
+			final int result = getTerm().compareTo(other.getTerm());
+			if (result == 0) {
+
+				// postings of earlier segments first, to keep document numbers ascending
+				return Integer.compare(source, other.source);
+			}
+
+			return result;
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.index;
+
+import java.util.Arrays;
+
+/**
+ * The postings list of a single term in a single segment, i.e. the
+ * documents that contain the term, in ascending order, together with
+ * the positions of the term in each document.
+ */
+class Postings {
+
+	private int[][] positions = new int[4][];
+	private int[] docs        = new int[4];
+	private int size          = 0;
+
+	void add(final int doc, final int[] docPositions) {
+
+		if (size == docs.length) {
+
+			docs      = Arrays.copyOf(docs, size * 2);
+			positions = Arrays.copyOf(positions, size * 2);
+		}
+
+		docs[size]      = doc;
+		positions[size] = docPositions;
+
+		size++;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int getDoc(final int index) {
+		return docs[index];
+	}
+
+	int getFrequency(final int index) {
+		return positions[index].length;
+	}
+
+	int[] getPositions(final int index) {
+		return positions[index];
+	}
+
+	static Postings decode(final byte[] data, final int count) {
+
+		final Postings postings = new Postings();
+		final int[] offset      = new int[1];
+		int doc                 = 0;
+
+		postings.docs      = new int[count];
+		postings.positions = new int[count][];
+
+		for (int i=0; i<count; i++) {
+
+			doc += readVInt(data, offset);
+
+			final int frequency      = readVInt(data, offset);
+			final int[] docPositions = new int[frequency];
+			int position             = 0;
+
+			for (int j=0; j<frequency; j++) {
+
+				position       += readVInt(data, offset);
+				docPositions[j] = position;
+			}
+
+			postings.docs[i]      = doc;
+			postings.positions[i] = docPositions;
+		}
+
+		postings.size = count;
+
+		return postings;
+	}
+
+	// ----- private methods -----
+	private static int readVInt(final byte[] data, final int[] offset) {
+
+		int value = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+
+			b      = data[offset[0]++];
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+
+		} while ((b & 0x80) != 0);
+
+		return value;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * Growable byte buffer with variable-length integer encoding.
+	 */
+	static class ByteArray {
+
+		private byte[] data = new byte[1024];
+		private int length  = 0;
+
+		void writeVInt(int value) {
+
+			ensureCapacity(5);
+
+			while ((value & ~0x7f) != 0) {
+
+				data[length++] = (byte)((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+
+			data[length++] = (byte)value;
+		}
+
+		byte[] getData() {
+			return data;
+		}
+
+		int length() {
+			return length;
+		}
+
+		void clear() {
+			length = 0;
+		}
+
+		// ----- private methods -----
+		private void ensureCapacity(final int additional) {
+
+			if (length + additional > data.length) {
+				data = Arrays.copyOf(data, Math.max(data.length * 2, length + additional));
+			}
+		}
+	}
+}
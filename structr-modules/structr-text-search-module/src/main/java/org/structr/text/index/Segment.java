@@ -0,0 +1,224 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.index;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Immutable on-disk index segment. The document table and the term
+ * dictionary are held in memory, postings are read from disk on demand.
+ * Only the set of deleted documents can change after a segment has
+ * been written.
+ */
+class Segment implements SegmentReader {
+
+	static final String DOCUMENTS_FILE = "documents";
+	static final String POSTINGS_FILE  = "postings";
+	static final String DELETES_FILE   = "deletes";
+	static final String TERMS_FILE     = "terms";
+
+	private BitSet deletes          = null;
+	private FileChannel postings    = null;
+	private File directory          = null;
+	private String name             = null;
+	private String[] uuids          = null;
+	private int[] lengths           = null;
+	private String[] terms          = null;
+	private int[] docFrequencies    = null;
+	private long[] offsets          = null;
+	private int[] sizes             = null;
+	private boolean deletesModified = false;
+
+	Segment(final String name, final File directory) throws IOException {
+
+		this.directory = directory;
+		this.name      = name;
+
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(directory, DOCUMENTS_FILE))))) {
+
+			final int count = in.readInt();
+
+			uuids   = new String[count];
+			lengths = new int[count];
+
+			for (int i=0; i<count; i++) {
+
+				uuids[i]   = in.readUTF();
+				lengths[i] = in.readInt();
+			}
+		}
+
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(directory, TERMS_FILE))))) {
+
+			final int count = in.readInt();
+
+			terms          = new String[count];
+			docFrequencies = new int[count];
+			offsets        = new long[count];
+			sizes          = new int[count];
+
+			for (int i=0; i<count; i++) {
+
+				terms[i]          = in.readUTF();
+				docFrequencies[i] = in.readInt();
+				offsets[i]        = in.readLong();
+				sizes[i]          = in.readInt();
+			}
+		}
+
+		final File deletesFile = new File(directory, DELETES_FILE);
+		if (deletesFile.exists()) {
+
+			deletes = BitSet.valueOf(Files.readAllBytes(deletesFile.toPath()));
+
+		} else {
+
+			deletes = new BitSet();
+		}
+
+		postings = FileChannel.open(new File(directory, POSTINGS_FILE).toPath(), StandardOpenOption.READ);
+	}
+
+	String getName() {
+		return name;
+	}
+
+	File getDirectory() {
+		return directory;
+	}
+
+	int getTermCount() {
+		return terms.length;
+	}
+
+	String getTerm(final int index) {
+		return terms[index];
+	}
+
+	Postings getPostings(final int index) throws IOException {
+
+		final ByteBuffer buffer = ByteBuffer.allocate(sizes[index]);
+		long position           = offsets[index];
+
+		while (buffer.hasRemaining()) {
+
+			final int read = postings.read(buffer, position);
+			if (read < 0) {
+
+				throw new IOException("Unexpected end of postings file in segment " + name);
+			}
+
+			position += read;
+		}
+
+		return Postings.decode(buffer.array(), docFrequencies[index]);
+	}
+
+	BitSet getDeletes() {
+		return (BitSet)deletes.clone();
+	}
+
+	/**
+	 * Writes the set of deleted documents if it was modified since the
+	 * last call.
+	 *
+	 * @throws IOException
+	 */
+	void commit() throws IOException {
+
+		if (deletesModified) {
+
+			writeDeletes(directory, deletes);
+			deletesModified = false;
+		}
+	}
+
+	void close() {
+
+		try {
+
+			postings.close();
+
+		} catch (IOException ignore) {}
+	}
+
+	static void writeDeletes(final File directory, final BitSet deletes) throws IOException {
+
+		final File tmpFile = new File(directory, DELETES_FILE + ".tmp");
+
+		try (final DataOutputStream out = new DataOutputStream(new FileOutputStream(tmpFile))) {
+			out.write(deletes.toByteArray());
+		}
+
+		Files.move(tmpFile.toPath(), new File(directory, DELETES_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	// ----- interface SegmentReader -----
+	@Override
+	public int getDocumentCount() {
+		return uuids.length;
+	}
+
+	@Override
+	public String getUuid(final int doc) {
+		return uuids[doc];
+	}
+
+	@Override
+	public int getLength(final int doc) {
+		return lengths[doc];
+	}
+
+	@Override
+	public boolean isDeleted(final int doc) {
+		return deletes.get(doc);
+	}
+
+	@Override
+	public void delete(final int doc) {
+
+		deletes.set(doc);
+		deletesModified = true;
+	}
+
+	@Override
+	public Postings getPostings(final String term) throws IOException {
+
+		final int index = Arrays.binarySearch(terms, term);
+		if (index >= 0) {
+
+			return getPostings(index);
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.index;
+
+import java.io.IOException;
+
+/**
+ * Read access to the documents and postings of an index segment.
+ * Documents are identified by their number within the segment.
+ */
+interface SegmentReader {
+
+	int getDocumentCount();
+	String getUuid(final int doc);
+	int getLength(final int doc);
+
+	boolean isDeleted(final int doc);
+	void delete(final int doc);
+
+	/**
+	 * Returns the postings of the given term, or null if the term does
+	 * not occur in this segment. Deleted documents are included.
+	 *
+	 * @param term
+	 * @return the postings or null
+	 * @throws IOException
+	 */
+	Postings getPostings(final String term) throws IOException;
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.index;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Writes a new segment. Documents must be added first, then the terms
+ * must be added in ascending order, each with its postings in ascending
+ * document order.
+ */
+class SegmentWriter implements Closeable {
+
+	private final Postings.ByteArray buffer = new Postings.ByteArray();
+	private final List<String> terms        = new ArrayList<>();
+	private final List<String> uuids        = new ArrayList<>();
+	private BitSet deletes                  = new BitSet();
+	private int[] docFrequencies            = new int[1024];
+	private long[] offsets                  = new long[1024];
+	private int[] sizes                     = new int[1024];
+	private int[] lengths                   = new int[1024];
+	private DataOutputStream postings       = null;
+	private File directory                  = null;
+	private String term                     = null;
+	private long offset                     = 0L;
+	private int docFrequency                = 0;
+	private int lastDoc                     = 0;
+
+	SegmentWriter(final File directory) throws IOException {
+
+		this.directory = directory;
+
+		directory.mkdirs();
+
+		this.postings = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, Segment.POSTINGS_FILE)), 65536));
+	}
+
+	int addDocument(final String uuid, final int length) {
+
+		final int doc = uuids.size();
+
+		if (doc == lengths.length) {
+			lengths = Arrays.copyOf(lengths, doc * 2);
+		}
+
+		lengths[doc] = length;
+		uuids.add(uuid);
+
+		return doc;
+	}
+
+	void startTerm(final String term) {
+
+		this.term         = term;
+		this.docFrequency = 0;
+		this.lastDoc      = 0;
+
+		buffer.clear();
+	}
+
+	void addPosting(final int doc, final int[] positions) {
+
+		int lastPosition = 0;
+
+		buffer.writeVInt(doc - lastDoc);
+		buffer.writeVInt(positions.length);
+
+		for (final int position : positions) {
+
+			buffer.writeVInt(position - lastPosition);
+			lastPosition = position;
+		}
+
+		lastDoc = doc;
+		docFrequency++;
+	}
+
+	void finishTerm() throws IOException {
+
+		// terms whose documents were all removed in a merge are dropped
+		if (docFrequency > 0) {
+
+			final int index = terms.size();
+
+			if (index == offsets.length) {
+
+				docFrequencies = Arrays.copyOf(docFrequencies, index * 2);
+				offsets        = Arrays.copyOf(offsets, index * 2);
+				sizes          = Arrays.copyOf(sizes, index * 2);
+			}
+
+			postings.write(buffer.getData(), 0, buffer.length());
+
+			docFrequencies[index] = docFrequency;
+			offsets[index]        = offset;
+			sizes[index]          = buffer.length();
+
+			offset += buffer.length();
+
+			terms.add(term);
+		}
+
+		term = null;
+	}
+
+	void setDeletes(final BitSet deletes) {
+		this.deletes = (BitSet)deletes.clone();
+	}
+
+	/**
+	 * Writes the remaining segment files and opens the new segment.
+	 *
+	 * @param name
+	 * @return the new segment
+	 * @throws IOException
+	 */
+	Segment finish(final String name) throws IOException {
+
+		close();
+
+		try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, Segment.DOCUMENTS_FILE))))) {
+
+			out.writeInt(uuids.size());
+
+			for (int i=0; i<uuids.size(); i++) {
+
+				out.writeUTF(uuids.get(i));
+				out.writeInt(lengths[i]);
+			}
+		}
+
+		try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, Segment.TERMS_FILE))))) {
+
+			out.writeInt(terms.size());
+
+			for (int i=0; i<terms.size(); i++) {
+
+				out.writeUTF(terms.get(i));
+				out.writeInt(docFrequencies[i]);
+				out.writeLong(offsets[i]);
+				out.writeInt(sizes[i]);
+			}
+		}
+
+		Segment.writeDeletes(directory, deletes);
+
+		return new Segment(name, directory);
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		if (postings != null) {
+
+			postings.close();
+			postings = null;
+		}
+	}
+}
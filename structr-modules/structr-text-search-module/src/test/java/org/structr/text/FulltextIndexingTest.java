@@ -18,14 +18,17 @@
  */
 package org.structr.text;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.junit.Assert;
 import static org.junit.Assert.fail;
 import org.junit.Test;
 import org.structr.common.error.FrameworkException;
+import org.structr.common.fulltext.FulltextIndexer;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.Tx;
 import org.structr.web.common.FileHelper;
@@ -149,6 +152,47 @@ public class FulltextIndexingTest extends TextSearchModuleTest {
 
 	}
 
+	@Test
+	public void testFulltextSearch() {
+
+		String file1 = null;
+		String file2 = null;
+
+		try (final Tx tx = app.tx()) {
+
+			file1 = FileHelper.createFile(securityContext, new ByteArrayInputStream("The quick brown fox jumps over the lazy dog.".getBytes("utf-8")), "text/plain", File.class, "fox1.txt").getUuid();
+			file2 = FileHelper.createFile(securityContext, new ByteArrayInputStream("A brown dog and a quick fox, the fox is brown.".getBytes("utf-8")), "text/plain", File.class, "fox2.txt").getUuid();
+
+			tx.success();
+
+		} catch (FrameworkException|IOException fex) {
+			fail("Unexpected exception.");
+		}
+
+		delay();
+
+		try (final Tx tx = app.tx()) {
+
+			final FulltextIndexer indexer = app.getFulltextIndexer();
+
+			Assert.assertEquals("Invalid fulltext search result", Arrays.asList(file2, file1), new ArrayList<>(indexer.search("fox", 10).keySet()));
+			Assert.assertEquals("Invalid phrase search result",   Arrays.asList(file1),        new ArrayList<>(indexer.search("\"quick brown fox\"", 10).keySet()));
+			Assert.assertTrue("Unknown term should not match", indexer.search("elephant", 10).isEmpty());
+			Assert.assertEquals("Invalid phrase search result with stop words", Arrays.asList(file1), new ArrayList<>(indexer.search("\"jumps over the lazy dog\"", 10).keySet()));
+			Assert.assertEquals("Stop words should be searchable", 2, indexer.search("the", 10).size());
+			Assert.assertTrue("Stop words alone should not make a document match", indexer.search("the elephant", 10).isEmpty());
+
+			app.delete(app.get(File.class, file1));
+
+			Assert.assertEquals("Deleted file should not be found", Arrays.asList(file2), new ArrayList<>(indexer.search("fox", 10).keySet()));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception.");
+		}
+	}
+
 	// ----- private methods -----
 	private void testFile() {
 
@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.index;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import org.apache.commons.io.FileUtils;
+import org.structr.api.config.Settings;
+import org.structr.text.index.InvertedIndex.SearchHit;
+
+/**
+ * Indexes a synthetic corpus of 100k documents with a Zipf-distributed
+ * vocabulary and measures indexing throughput, re-opening and query
+ * latency for single-term, multi-term and phrase queries.
+ *
+ * Run with: java org.structr.text.index.InvertedIndexBenchmark [documents]
+ */
+public class InvertedIndexBenchmark {
+
+	private static final int VOCABULARY_SIZE = 50000;
+	private static final int QUERY_COUNT     = 1000;
+
+	public static void main(final String[] args) throws Exception {
+
+		final int documentCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		final File basePath     = Files.createTempDirectory("structr-fulltext-benchmark").toFile();
+		final Random random     = new Random(42L);
+		final String[] words    = new String[VOCABULARY_SIZE];
+		final double[] weights  = new double[VOCABULARY_SIZE];
+		final List<String> uuids = new ArrayList<>();
+		double sum              = 0.0;
+
+		for (int i=0; i<VOCABULARY_SIZE; i++) {
+
+			words[i]   = "w" + Integer.toString(i, 36);
+			sum       += 1.0 / (i + 1);
+			weights[i] = sum;
+		}
+
+		Settings.BasePath.setValue(basePath.getAbsolutePath());
+
+		try {
+
+			final InvertedIndex index = InvertedIndex.getInstance();
+			long totalWords           = 0L;
+			long start                = System.nanoTime();
+
+			for (int i=0; i<documentCount; i++) {
+
+				final int length        = 50 + random.nextInt(450);
+				final List<String> text = new ArrayList<>(length);
+				final String uuid       = UUID.randomUUID().toString().replace("-", "");
+
+				for (int j=0; j<length; j++) {
+					text.add(words[sample(weights, random)]);
+				}
+
+				index.add(uuid, text);
+				uuids.add(uuid);
+
+				totalWords += length;
+			}
+
+			index.flush();
+
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			System.out.println(String.format("Indexed %d documents (%d words) in %.1f s, %.0f documents/s, %d segments", documentCount, totalWords, seconds, documentCount / seconds, index.getSegmentCount()));
+
+			// update 10% of the documents
+			start = System.nanoTime();
+
+			for (int i=0; i<documentCount / 10; i++) {
+
+				final List<String> text = new ArrayList<>();
+
+				for (int j=0; j<100; j++) {
+					text.add(words[sample(weights, random)]);
+				}
+
+				index.add(uuids.get(random.nextInt(uuids.size())), text);
+			}
+
+			index.flush();
+
+			seconds = (System.nanoTime() - start) / 1e9;
+
+			System.out.println(String.format("Updated %d documents in %.1f s", documentCount / 10, seconds));
+
+			// give the background thread time to merge segments
+			for (int i=0; i<60 && index.getSegmentCount() > 8; i++) {
+				Thread.sleep(1000);
+			}
+
+			System.out.println(String.format("%d documents in %d segments after merging", index.getDocumentCount(), index.getSegmentCount()));
+
+			// re-open from disk
+			index.close();
+
+			start = System.nanoTime();
+
+			System.out.println(String.format("Re-opened index with %d documents in %.1f ms", index.getDocumentCount(), (System.nanoTime() - start) / 1e6));
+
+			measure(index, "single term (frequent)", () -> Collections.singletonList(Collections.singletonList(words[random.nextInt(100)])));
+			measure(index, "single term (rare)",     () -> Collections.singletonList(Collections.singletonList(words[1000 + random.nextInt(VOCABULARY_SIZE - 1000)])));
+			measure(index, "three terms",            () -> Arrays.asList(Collections.singletonList(words[sample(weights, random)]), Collections.singletonList(words[sample(weights, random)]), Collections.singletonList(words[sample(weights, random)])));
+			measure(index, "two-word phrase",        () -> Collections.singletonList(Arrays.asList(words[random.nextInt(20)], words[random.nextInt(20)])));
+
+			index.close();
+
+		} finally {
+
+			FileUtils.deleteQuietly(basePath);
+		}
+	}
+
+	// ----- private methods -----
+	private static void measure(final InvertedIndex index, final String name, final QueryGenerator generator) throws Exception {
+
+		final long[] times = new long[QUERY_COUNT];
+		long hits          = 0L;
+
+		for (int i=0; i<QUERY_COUNT; i++) {
+
+			final List<List<String>> query = generator.next();
+			final long start               = System.nanoTime();
+			final List<SearchHit> result   = index.search(query, 10);
+
+			times[i] = System.nanoTime() - start;
+			hits    += result.size();
+		}
+
+		Arrays.sort(times);
+
+		System.out.println(String.format("%-24s p50 %7.2f ms, p99 %7.2f ms, %.1f hits/query", name, times[QUERY_COUNT / 2] / 1e6, times[QUERY_COUNT * 99 / 100] / 1e6, (double)hits / QUERY_COUNT));
+	}
+
+	private static int sample(final double[] weights, final Random random) {
+
+		final double value = random.nextDouble() * weights[weights.length - 1];
+		final int index    = Arrays.binarySearch(weights, value);
+
+		return index >= 0 ? index : -index - 1;
+	}
+
+	private interface QueryGenerator {
+
+		List<List<String>> next();
+	}
+}
@@ -27,6 +27,8 @@ import java.io.Writer;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -36,6 +38,7 @@ import org.neo4j.driver.v1.AuthTokens;
 import org.neo4j.driver.v1.Config;
 import org.neo4j.driver.v1.Driver;
 import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
 import org.neo4j.driver.v1.Session;
 import org.neo4j.driver.v1.exceptions.ClientException;
 import org.neo4j.driver.v1.exceptions.ServiceUnavailableException;
@@ -53,6 +56,7 @@ import org.structr.api.NotInTransactionException;
 import org.structr.api.QueryResult;
 import org.structr.api.Transaction;
 import org.structr.api.config.Settings;
+import org.structr.api.graph.Direction;
 import org.structr.api.graph.GraphProperties;
 import org.structr.api.graph.Label;
 import org.structr.api.graph.Node;
@@ -246,6 +250,94 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 		return NodeWrapper.newInstance(this, getCurrentTransaction().getNode(buf.toString(), map));
 	}
 
+	@Override
+	public List<Node> createNodes(final Set<String> labels, final List<Map<String, Object>> properties) {
+
+		final StringBuilder buf       = new StringBuilder("UNWIND {nodes} AS properties CREATE (n");
+		final Map<String, Object> map = new HashMap<>();
+		final List<Node> nodes        = new LinkedList<>();
+
+		if (properties.isEmpty()) {
+			return nodes;
+		}
+
+		if (tenantId != null) {
+
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		for (final String label : labels) {
+
+			buf.append(":");
+			buf.append(label);
+		}
+
+		buf.append(") SET n = properties RETURN n");
+
+		// make properties available to Cypher statement
+		map.put("nodes", properties);
+
+		for (final org.neo4j.driver.v1.types.Node node : getCurrentTransaction().getNodes(buf.toString(), map)) {
+			nodes.add(NodeWrapper.newInstance(this, node));
+		}
+
+		return nodes;
+	}
+
+	@Override
+	public List<Relationship> createRelationships(final RelationshipType relationshipType, final List<Map<String, Object>> relationships) {
+
+		final SessionTransaction tx     = getCurrentTransaction();
+		final StringBuilder buf         = new StringBuilder("UNWIND {rels} AS rel MATCH (n");
+		final Map<String, Object> map   = new HashMap<>();
+		final List<Relationship> result = new LinkedList<>();
+
+		if (relationships.isEmpty()) {
+			return result;
+		}
+
+		if (tenantId != null) {
+
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		buf.append("), (m");
+
+		if (tenantId != null) {
+
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		buf.append(") WHERE ID(n) = rel.start AND ID(m) = rel.end MERGE (n)-[r:");
+		buf.append(relationshipType.name());
+		buf.append("]->(m) SET r += rel.properties RETURN r");
+
+		// make properties available to Cypher statement
+		map.put("rels", relationships);
+
+		for (final org.neo4j.driver.v1.types.Relationship relationship : tx.getRelationships(buf.toString(), map)) {
+			result.add(RelationshipWrapper.newInstance(this, relationship));
+		}
+
+		// clear relationship caches of all affected nodes
+		for (final Map<String, Object> relationship : relationships) {
+
+			final NodeWrapper startNode = NodeWrapper.newInstance(this, (Long)relationship.get("start"));
+			final NodeWrapper endNode   = NodeWrapper.newInstance(this, (Long)relationship.get("end"));
+
+			tx.modified(startNode);
+			tx.modified(endNode);
+
+			startNode.clearCaches();
+			endNode.clearCaches();
+		}
+
+		return result;
+	}
+
 	@Override
 	public Node getNodeById(final long id) {
 		return NodeWrapper.newInstance(this, id);
@@ -402,6 +494,199 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 		return QueryUtils.map(new RelationshipRelationshipMapper(this), new RelationshipResultStream(this, new SimpleCypherQuery(buf.toString())));
 	}
 
+	@Override
+	public long getMaxNodeId() {
+
+		final StringBuilder buf = new StringBuilder();
+
+		buf.append("MATCH (n");
+
+		if (tenantId != null) {
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		buf.append(") RETURN coalesce(max(id(n)), -1)");
+
+		return getCurrentTransaction().getLong(buf.toString());
+	}
+
+	@Override
+	public long getMaxRelationshipId() {
+
+		final StringBuilder buf = new StringBuilder();
+
+		buf.append("MATCH (");
+
+		if (tenantId != null) {
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		buf.append(")-[r]->(");
+
+		if (tenantId != null) {
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		buf.append(") RETURN coalesce(max(id(r)), -1)");
+
+		return getCurrentTransaction().getLong(buf.toString());
+	}
+
+	@Override
+	public QueryResult<Node> getNodesInRange(final long fromId, final long toId, final String label, final String type) {
+
+		final StringBuilder buf       = new StringBuilder();
+		final Map<String, Object> map = new HashMap<>();
+
+		buf.append("MATCH (n");
+
+		if (tenantId != null) {
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		if (label != null) {
+			buf.append(":");
+			buf.append(label);
+		}
+
+		// IN range() allows the planner to use an ID seek instead of a scan
+		buf.append(") WHERE id(n) IN range({fromId}, {toId})");
+
+		if (type != null) {
+
+			buf.append(" AND n.type = {type}");
+			map.put("type", type);
+		}
+
+		buf.append(" RETURN n");
+
+		map.put("fromId", fromId);
+		map.put("toId",   toId - 1);
+
+		return QueryUtils.map(new NodeNodeMapper(this), getCurrentTransaction().getNodes(buf.toString(), map));
+	}
+
+	@Override
+	public QueryResult<Relationship> getRelationshipsInRange(final long fromId, final long toId, final String type) {
+
+		final StringBuilder buf       = new StringBuilder();
+		final Map<String, Object> map = new HashMap<>();
+
+		buf.append("MATCH (");
+
+		if (tenantId != null) {
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		buf.append(")-[r");
+
+		if (type != null) {
+			buf.append(":");
+			buf.append(type);
+		}
+
+		buf.append("]->(");
+
+		if (tenantId != null) {
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		// IN range() allows the planner to use an ID seek instead of a scan
+		buf.append(") WHERE id(r) IN range({fromId}, {toId}) RETURN r");
+
+		map.put("fromId", fromId);
+		map.put("toId",   toId - 1);
+
+		return QueryUtils.map(new RelationshipRelationshipMapper(this), getCurrentTransaction().getRelationships(buf.toString(), map));
+	}
+
+	@Override
+	public void prefetchRelationships(final Set<Long> nodeIds, final Direction direction, final RelationshipType relationshipType) {
+
+		final Map<Long, List<Relationship>> relationships = new HashMap<>();
+		final Map<Long, NodeWrapper> nodes                = new HashMap<>();
+
+		for (final Long id : nodeIds) {
+
+			final NodeWrapper node = NodeWrapper.newInstance(this, id);
+
+			// only fetch what's not already cached
+			if (!node.hasCachedRelationships(direction, relationshipType)) {
+
+				relationships.put(id, new LinkedList<>());
+				nodes.put(id, node);
+			}
+		}
+
+		if (nodes.isEmpty()) {
+			return;
+		}
+
+		final SessionTransaction tx   = getCurrentTransaction();
+		final Map<String, Object> map = new HashMap<>();
+		final StringBuilder buf       = new StringBuilder();
+
+		map.put("ids", nodes.keySet());
+
+		buf.append("UNWIND {ids} AS id MATCH (n");
+
+		if (tenantId != null) {
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		switch (direction) {
+
+			case OUTGOING:
+				buf.append(")-[r:");
+				buf.append(relationshipType.name());
+				buf.append("]->(m");
+				break;
+
+			case INCOMING:
+				buf.append(")<-[r:");
+				buf.append(relationshipType.name());
+				buf.append("]-(m");
+				break;
+
+			default:
+				buf.append(")-[r:");
+				buf.append(relationshipType.name());
+				buf.append("]-(m");
+				break;
+		}
+
+		if (tenantId != null) {
+			buf.append(":");
+			buf.append(tenantId);
+		}
+
+		buf.append(") WHERE ID(n) = id RETURN DISTINCT id, r, m");
+
+		for (final Record record : tx.getRecords(buf.toString(), map)) {
+
+			final List<Relationship> list = relationships.get(record.get(0).asLong());
+			if (list != null) {
+
+				// store other node in the node cache as well, it will be needed to resolve the relationship
+				NodeWrapper.newInstance(this, record.get(2).asNode());
+
+				list.add(RelationshipWrapper.newInstance(this, record.get(1).asRelationship()));
+			}
+		}
+
+		for (final Map.Entry<Long, NodeWrapper> entry : nodes.entrySet()) {
+
+			entry.getValue().cacheRelationships(direction, relationshipType, relationships.get(entry.getKey()));
+		}
+	}
+
 	@Override
 	public GraphProperties getGlobalProperties() {
 		return this;
@@ -19,10 +19,15 @@
 package org.structr.bolt;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang.StringUtils;
 import org.neo4j.driver.v1.Record;
 import org.neo4j.driver.v1.Session;
@@ -57,12 +62,14 @@ import org.structr.bolt.wrapper.StatementResultWrapper;
  */
 public class SessionTransaction implements org.structr.api.Transaction {
 
-	private final Set<EntityWrapper> modifiedEntities = new HashSet<>();
-	private BoltDatabaseService db                    = null;
-	private Session session                           = null;
-	private Transaction tx                            = null;
-	private boolean closed                            = false;
-	private boolean success                           = false;
+	private static final AtomicLong queryCount                            = new AtomicLong();
+	private final Map<EntityWrapper, Map<String, Object>> writeBuffer     = new LinkedHashMap<>();
+	private final Set<EntityWrapper> modifiedEntities                     = new HashSet<>();
+	private BoltDatabaseService db                                        = null;
+	private Session session                                               = null;
+	private Transaction tx                                                = null;
+	private boolean closed                                                = false;
+	private boolean success                                               = false;
 
 	public SessionTransaction(final BoltDatabaseService db, final Session session) {
 
@@ -73,12 +80,18 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	@Override
 	public void failure() {
+
+		writeBuffer.clear();
 		tx.failure();
 	}
 
 	@Override
 	public void success() {
 
+		// buffered values are normally written by an explicit flush() before,
+		// this is a no-op in that case
+		flush();
+
 		tx.success();
 
 		// transaction must be marked successfull explicitely
@@ -88,6 +101,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 	@Override
 	public void close() {
 
+		writeBuffer.clear();
+
 		if (!success) {
 
 			// We need to invalidate all existing references because we cannot
@@ -164,6 +179,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public boolean getBoolean(final String statement, final Map<String, Object> map) {
 
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -204,6 +221,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public long getLong(final String statement, final Map<String, Object> map) {
 
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -224,6 +243,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public Object getObject(final String statement, final Map<String, Object> map) {
 
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -250,6 +271,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public Entity getEntity(final String statement, final Map<String, Object> map) {
 
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -270,6 +293,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public Node getNode(final String statement, final Map<String, Object> map) {
 
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -290,6 +315,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public Relationship getRelationship(final String statement, final Map<String, Object> map) {
 
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -310,6 +337,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public QueryResult<Node> getNodes(final String statement, final Map<String, Object> map) {
 
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -330,6 +359,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public QueryResult<Relationship> getRelationships(final String statement, final Map<String, Object> map) {
 
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -348,8 +379,32 @@ public class SessionTransaction implements org.structr.api.Transaction {
 		}
 	}
 
+	public QueryResult<Record> getRecords(final String statement, final Map<String, Object> map) {
+
+		flush();
+
+		final long t0 = System.currentTimeMillis();
+
+		try {
+
+			return new StatementIterable(tx.run(statement, map));
+
+		} catch (TransientException tex) {
+			closed = true;
+			throw new RetryException(tex);
+		} catch (NoSuchRecordException nex) {
+			throw new NotFoundException(nex);
+		} catch (ServiceUnavailableException ex) {
+			throw new NetworkException(ex.getMessage(), ex);
+		} finally {
+			logQuery(statement, map, t0);
+		}
+	}
+
 	public QueryResult<Long> getIds(final String statement, final Map<String, Object> map) {
 
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -370,6 +425,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public QueryResult<String> getStrings(final String statement, final Map<String, Object> map) {
 
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -405,6 +462,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public NativeResult run(final String statement, final Map<String, Object> map) {
 
+		flush();
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -429,6 +488,92 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public void set(final String statement, final Map<String, Object> map) {
 
+		// keep the order of writes
+		flush();
+
+		write(statement, map);
+	}
+
+	/**
+	 * Records a property value to be written to the given entity. All
+	 * buffered values are written in a single statement before the next
+	 * statement is executed in this transaction, and before commit.
+	 *
+	 * @param wrapper
+	 * @param key
+	 * @param value the value, or null to remove the property
+	 */
+	public void setProperty(final EntityWrapper wrapper, final String key, final Object value) {
+
+		writeBuffer.computeIfAbsent(wrapper, k -> new HashMap<>()).put(key, value);
+	}
+
+	/**
+	 * Writes all buffered property values to the database, using one
+	 * statement for all nodes and one for all relationships.
+	 */
+	@Override
+	public void flush() {
+
+		if (writeBuffer.isEmpty()) {
+			return;
+		}
+
+		final Map<String, List<Map<String, Object>>> batches = new LinkedHashMap<>();
+		final int entityCount                                = writeBuffer.size();
+		int writeCount                                       = 0;
+
+		for (final Map.Entry<EntityWrapper, Map<String, Object>> entry : writeBuffer.entrySet()) {
+
+			final Map<String, Object> row = new HashMap<>();
+			final EntityWrapper wrapper   = entry.getKey();
+
+			row.put("id",         wrapper.getId());
+			row.put("properties", entry.getValue());
+
+			batches.computeIfAbsent(wrapper.getQueryPrefix(), k -> new LinkedList<>()).add(row);
+
+			writeCount += entry.getValue().size();
+		}
+
+		// clear buffer first so that nothing is written twice in case of an error
+		writeBuffer.clear();
+
+		for (final Map.Entry<String, List<Map<String, Object>>> batch : batches.entrySet()) {
+
+			final List<Map<String, Object>> rows = batch.getValue();
+			final String prefix                  = batch.getKey();
+
+			if (rows.size() == 1) {
+
+				write(prefix + " WHERE ID(n) = {id} SET n += {properties}", rows.get(0));
+
+			} else {
+
+				final Map<String, Object> map = new HashMap<>();
+
+				map.put("entities", rows);
+
+				write("UNWIND {entities} AS e " + prefix + " WHERE ID(n) = e.id SET n += e.properties", map);
+			}
+		}
+
+		if (db.logQueries()) {
+			System.out.println("      Write buffer: " + writeCount + " property writes on " + entityCount + " entities in " + batches.size() + " statement(s)");
+		}
+	}
+
+	/**
+	 * Returns the number of statements that were executed since startup.
+	 *
+	 * @return the number of statements
+	 */
+	public static long getQueryCount() {
+		return queryCount.get();
+	}
+
+	private void write(final String statement, final Map<String, Object> map) {
+
 		final long t0 = System.currentTimeMillis();
 
 		try {
@@ -457,6 +602,8 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public void logQuery(final String statement, final Map<String, Object> map, final long t0) {
 
+		queryCount.incrementAndGet();
+
 		if (db.logQueries()) {
 
 			final long time  = System.currentTimeMillis() - t0;
@@ -35,7 +35,9 @@ import org.structr.api.search.ArrayQuery;
 import org.structr.api.search.EmptyQuery;
 import org.structr.api.search.ExactQuery;
 import org.structr.api.search.FulltextQuery;
+import org.structr.api.search.GraphQuery;
 import org.structr.api.search.GroupQuery;
+import org.structr.api.search.IdQuery;
 import org.structr.api.search.NotEmptyQuery;
 import org.structr.api.search.QueryPredicate;
 import org.structr.api.search.RangeQuery;
@@ -57,7 +59,9 @@ import org.structr.bolt.index.converter.ShortTypeConverter;
 import org.structr.bolt.index.converter.StringTypeConverter;
 import org.structr.bolt.index.factory.ArrayQueryFactory;
 import org.structr.bolt.index.factory.EmptyQueryFactory;
+import org.structr.bolt.index.factory.GraphQueryFactory;
 import org.structr.bolt.index.factory.GroupQueryFactory;
+import org.structr.bolt.index.factory.IdQueryFactory;
 import org.structr.bolt.index.factory.KeywordQueryFactory;
 import org.structr.bolt.index.factory.NotEmptyQueryFactory;
 import org.structr.bolt.index.factory.QueryFactory;
@@ -95,6 +99,8 @@ public abstract class AbstractCypherIndex<T extends PropertyContainer> implement
 		FACTORIES.put(TypeQuery.class,         new TypeQueryFactory());
 		FACTORIES.put(UuidQuery.class,         new UuidQueryFactory());
 		FACTORIES.put(RelationshipQuery.class, new RelationshipQueryFactory());
+		FACTORIES.put(GraphQuery.class,        new GraphQueryFactory());
+		FACTORIES.put(IdQuery.class,           new IdQueryFactory());
 
 		CONVERTERS.put(Boolean.class, new BooleanTypeConverter());
 		CONVERTERS.put(String.class,  new StringTypeConverter());
@@ -18,12 +18,14 @@
  */
 package org.structr.bolt.index;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import org.structr.api.graph.Direction;
 import org.structr.api.search.SortType;
 
 /**
@@ -301,6 +303,75 @@ public class AdvancedCypherQuery implements PageableQuery {
 		}
 	}
 
+	public void addEmptyParameter(final String key, final boolean isString) {
+
+		// blank values can be stored as null, as empty strings or as empty arrays
+		buffer.append("(n.`");
+		buffer.append(key);
+		buffer.append("` IS NULL OR n.`");
+		buffer.append(key);
+
+		if (isString) {
+
+			buffer.append("` =~ '\\\\s*')");
+
+		} else {
+
+			buffer.append("` = [])");
+		}
+	}
+
+	public void addIdParameter(final Collection<Long> ids) {
+
+		final String paramKey = "param" + count++;
+
+		buffer.append("ID(n) IN {");
+		buffer.append(paramKey);
+		buffer.append("}");
+
+		parameters.put(paramKey, ids);
+	}
+
+	public void addGraphParameter(final String relationshipType, final Direction direction, final String otherLabel, final boolean exists) {
+
+		if (!exists) {
+			buffer.append("NOT ");
+		}
+
+		buffer.append("(n)");
+
+		if (Direction.INCOMING.equals(direction)) {
+			buffer.append("<");
+		}
+
+		buffer.append("-[:");
+		buffer.append(relationshipType);
+		buffer.append("]-");
+
+		if (Direction.OUTGOING.equals(direction)) {
+			buffer.append(">");
+		}
+
+		buffer.append("(");
+
+		if (otherLabel != null) {
+			buffer.append(":");
+			buffer.append(otherLabel);
+		}
+
+		buffer.append(")");
+	}
+
+	public void addVisibilityParameter(final String key) {
+
+		// relationship queries only, both start and end node must have the given flag
+		buffer.append("(startNode(n).`");
+		buffer.append(key);
+		buffer.append("` = true AND endNode(n).`");
+		buffer.append(key);
+		buffer.append("` = true)");
+	}
+
 	public void addParameters(final String key, final String operator1, final Object value1, final String operator2, final Object value2) {
 
 		final String paramKey1 = "param" + count++;
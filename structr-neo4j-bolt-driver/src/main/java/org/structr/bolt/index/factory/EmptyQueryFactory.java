@@ -28,8 +28,8 @@ public class EmptyQueryFactory extends AbstractQueryFactory {
 
 		checkOccur(query, predicate.getOccurrence(), isFirst);
 
-		// not empty query is simple
-		query.addSimpleParameter(predicate.getName(), "is", null);
+		// blank values are null, whitespace-only strings or empty arrays
+		query.addEmptyParameter(predicate.getName(), String.class.equals(predicate.getType()));
 
 		return true;
 	}
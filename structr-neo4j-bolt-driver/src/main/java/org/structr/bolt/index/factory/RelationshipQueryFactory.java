@@ -25,6 +25,12 @@ public class RelationshipQueryFactory extends AbstractQueryFactory {
 
 	@Override
 	public boolean createQuery(final QueryFactory parent, final QueryPredicate predicate, final AdvancedCypherQuery query, final boolean isFirst) {
+
+		checkOccur(query, predicate.getOccurrence(), isFirst);
+
+		// relationships are only visible if both start and end node are visible
+		query.addVisibilityParameter(predicate.getName());
+
 		return true;
 	}
 }
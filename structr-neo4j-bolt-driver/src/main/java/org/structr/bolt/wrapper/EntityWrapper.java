@@ -52,7 +52,7 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 		this.db   = db;
 	}
 
-	protected abstract String getQueryPrefix();
+	public abstract String getQueryPrefix();
 	public abstract void clearCaches();
 	public abstract void onClose();
 
@@ -129,14 +129,8 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 		// only update values if actually different from what is stored
 		if (differentValue(key, value)) {
 
-			final Map<String, Object> map = new HashMap<>();
-			final String query            = getQueryPrefix() + " WHERE ID(n) = {id} SET n.`" + key + "` = {value}";
-
-			map.put("id", id);
-			map.put("value", value);
-
-			// update entity handle
-			tx.set(query, map);
+			// value is written to the database in a batch with other values
+			tx.setProperty(this, key, value);
 
 			// update data
 			update(key, value);
@@ -151,16 +145,11 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 		assertNotStale();
 
-		final Map<String, Object> map = new HashMap<>();
-		final SessionTransaction tx   = db.getCurrentTransaction();
-		final String query            = getQueryPrefix() + " WHERE ID(n) = {id} SET n += {properties}";
-
-		// overwrite a potential "id" property
-		map.put("id", id);
-		map.put("properties", values);
+		final SessionTransaction tx = db.getCurrentTransaction();
 
-		// execute query
-		tx.set(query, map);
+		for (final Entry<String, Object> entry : values.entrySet()) {
+			tx.setProperty(this, entry.getKey(), entry.getValue());
+		}
 
 		// update data
 		update(values);
@@ -173,14 +162,10 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 		assertNotStale();
 
-		final SessionTransaction tx   = db.getCurrentTransaction();
-		final Map<String, Object> map = new HashMap<>();
-		final String query            = getQueryPrefix() + " WHERE ID(n) = {id} SET n.`" + key + "` = Null";
-
-		map.put("id", id);
+		final SessionTransaction tx = db.getCurrentTransaction();
 
-		// execute query
-		tx.set(query, map);
+		// setting a property to null removes it
+		tx.setProperty(this, key, null);
 
 		// remove key from data
 		data.remove(key);
@@ -31,7 +31,7 @@ import org.structr.api.graph.Label;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
 import org.structr.api.graph.RelationshipType;
-import org.structr.api.util.FixedSizeCache;
+import org.structr.api.util.ConcurrentFixedSizeCache;
 import org.structr.api.util.Iterables;
 import org.structr.bolt.BoltDatabaseService;
 import org.structr.bolt.SessionTransaction;
@@ -43,7 +43,7 @@ import org.structr.bolt.mapper.RelationshipRelationshipMapper;
 public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> implements Node {
 
 	private final Map<String, Map<String, List<Relationship>>> relationshipCache = new HashMap<>();
-	private static FixedSizeCache<Long, NodeWrapper> nodeCache                   = null;
+	private static ConcurrentFixedSizeCache<Long, NodeWrapper> nodeCache         = null;
 	private boolean dontUseCache                                                 = false;
 
 	private NodeWrapper(final BoltDatabaseService db, final org.neo4j.driver.v1.types.Node node) {
@@ -51,11 +51,11 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 	}
 
 	public static void initialize(final int cacheSize) {
-		nodeCache = new FixedSizeCache<>(cacheSize);
+		nodeCache = new ConcurrentFixedSizeCache<>(cacheSize);
 	}
 
 	@Override
-	protected String getQueryPrefix() {
+	public String getQueryPrefix() {
 
 		final String tenantIdentifier = db.getTenantIdentifier();
 		if (tenantIdentifier != null) {
@@ -332,6 +332,30 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		return list;
 	}
 
+	/**
+	 * Indicates whether the relationships with the given direction and
+	 * type are already present in the relationship cache of this node.
+	 *
+	 * @param direction
+	 * @param relationshipType
+	 * @return whether the relationships are cached
+	 */
+	public boolean hasCachedRelationships(final Direction direction, final RelationshipType relationshipType) {
+		return !dontUseCache && getList(direction, relationshipType) != null;
+	}
+
+	/**
+	 * Stores relationships that were loaded in a batch for multiple nodes
+	 * in the relationship cache of this node.
+	 *
+	 * @param direction
+	 * @param relationshipType
+	 * @param relationships
+	 */
+	public void cacheRelationships(final Direction direction, final RelationshipType relationshipType, final Iterable<Relationship> relationships) {
+		setList(direction, relationshipType, toList(relationships));
+	}
+
 	/**
 	 * Evaluate a custom query and return result as a boolean value
 	 *
@@ -366,38 +390,32 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 	// ----- public static methods -----
 	public static NodeWrapper newInstance(final BoltDatabaseService db, final org.neo4j.driver.v1.types.Node node) {
 
-		synchronized (nodeCache) {
-
-			NodeWrapper wrapper = nodeCache.get(node.id());
-			if (wrapper == null) {
-
-				wrapper = new NodeWrapper(db, node);
-				nodeCache.put(node.id(), wrapper);
-			}
+		final NodeWrapper wrapper = nodeCache.get(node.id());
+		if (wrapper != null) {
 
 			return wrapper;
 		}
+
+		// another thread may have created a wrapper in the meantime, use the one in the cache
+		return nodeCache.putIfAbsent(node.id(), new NodeWrapper(db, node));
 	}
 
 	public static NodeWrapper newInstance(final BoltDatabaseService db, final long id) {
 
-		synchronized (nodeCache) {
-
-			NodeWrapper wrapper = nodeCache.get(id);
-			if (wrapper == null) {
+		final NodeWrapper wrapper = nodeCache.get(id);
+		if (wrapper != null) {
 
-				final SessionTransaction tx   = db.getCurrentTransaction();
-				final Map<String, Object> map = new HashMap<>();
-				final String tenantIdentifier = db.getTenantIdentifier();
+			return wrapper;
+		}
 
-				map.put("id", id);
+		final SessionTransaction tx   = db.getCurrentTransaction();
+		final Map<String, Object> map = new HashMap<>();
+		final String tenantIdentifier = db.getTenantIdentifier();
 
-				wrapper = new NodeWrapper(db, tx.getNode("MATCH (n" + (tenantIdentifier != null ? ":" + tenantIdentifier : "") + ") WHERE ID(n) = {id} RETURN n", map));
-				nodeCache.put(id, wrapper);
-			}
+		map.put("id", id);
 
-			return wrapper;
-		}
+		// another thread may have created a wrapper in the meantime, use the one in the cache
+		return nodeCache.putIfAbsent(id, new NodeWrapper(db, tx.getNode("MATCH (n" + (tenantIdentifier != null ? ":" + tenantIdentifier : "") + ") WHERE ID(n) = {id} RETURN n", map)));
 	}
 
 	// ----- private methods -----
@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.net;
+
+import java.security.KeyPair;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.structr.net.common.KeyHelper;
+import org.structr.net.peer.Peer;
+import org.structr.net.peer.Transport;
+import org.structr.net.repository.DefaultRepository;
+
+/**
+ * Starts a number of peers on the local machine, creates objects in the
+ * repository of the first peer and measures the number of messages per
+ * second and the time it takes until all peers have received all objects.
+ */
+public class Benchmark {
+
+	public static void main(final String[] args) throws InterruptedException {
+
+		final List<Peer> peers = new LinkedList<>();
+		final KeyPair keyPair  = KeyHelper.getOrCreateKeyPair("RSA", 2048);
+		long timeout           = 600000L;
+		int peerCount          = 3;
+		int objectCount        = 100000;
+
+		for (int i=0 ;i<args.length; i++) {
+
+			switch (args[i]) {
+
+				case "-n":
+					peerCount = Integer.parseInt(args[i+1]);
+					break;
+
+				case "-o":
+					objectCount = Integer.parseInt(args[i+1]);
+					break;
+
+				case "-t":
+					timeout = Long.parseLong(args[i+1]) * 1000L;
+					break;
+
+				case "-h":
+					printHelp();
+					System.exit(0);
+					break;
+			}
+		}
+
+		if (peerCount < 2 || peerCount > 10) {
+
+			System.out.println("Number of peers must be between 2 and 10.");
+			System.exit(1);
+		}
+
+		for (int i=0; i<peerCount; i++) {
+
+			final DefaultRepository repository = new DefaultRepository(newUuid());
+			final Peer peer                    = new Peer(keyPair, repository, "127.0.0.1", "127.0.0.1");
+
+			repository.setPeer(peer);
+
+			peer.initializeServer();
+			peer.start();
+
+			peers.add(peer);
+		}
+
+		final Peer first = peers.get(0);
+
+		System.out.println("Waiting for " + peerCount + " peers to discover each other..");
+
+		while (first.getPeers().size() < peerCount - 1) {
+			Thread.sleep(100L);
+		}
+
+		final DefaultRepository repository = (DefaultRepository)first.getRepository();
+		final long t0                      = System.currentTimeMillis();
+
+		System.out.println("Creating " + objectCount + " objects..");
+
+		for (int i=0; i<objectCount; i++) {
+
+			final Map<String, Object> data = new HashMap<>();
+
+			data.put("name",  "object" + i);
+			data.put("index", i);
+
+			repository.create(newUuid(), "BenchmarkObject", first.getUuid(), first.getUuid(), first.getPseudoTemporalEnvironment().next(), data);
+		}
+
+		final long t1         = System.currentTimeMillis();
+		final long[] finished = new long[peerCount];
+		int remaining         = peerCount;
+
+		System.out.println("Created " + objectCount + " objects in " + (t1 - t0) + " ms, waiting for convergence..");
+
+		while (remaining > 0 && System.currentTimeMillis() < t0 + timeout) {
+
+			Thread.sleep(250L);
+
+			for (int i=0; i<peerCount; i++) {
+
+				if (finished[i] == 0L && peers.get(i).getRepository().getObjects().size() >= objectCount) {
+
+					finished[i] = System.currentTimeMillis();
+					remaining--;
+				}
+			}
+		}
+
+		final long t2          = System.currentTimeMillis();
+		long messages          = 0L;
+		long datagrams         = 0L;
+
+		for (int i=0; i<peerCount; i++) {
+
+			final Peer peer           = peers.get(i);
+			final Transport transport = peer.getTransport();
+
+			messages  += transport.getMessagesReceived();
+			datagrams += transport.getDatagramsReceived();
+
+			if (finished[i] > 0L) {
+
+				System.out.println("Peer " + (i+1) + ": converged after " + (finished[i] - t0) + " ms");
+
+			} else {
+
+				System.out.println("Peer " + (i+1) + ": " + peer.getRepository().getObjects().size() + " of " + objectCount + " objects after " + (t2 - t0) + " ms");
+			}
+		}
+
+		System.out.println(messages + " messages in " + datagrams + " datagrams received, " + (messages * 1000L / Math.max(1L, t2 - t0)) + " messages/s");
+
+		for (final Peer peer : peers) {
+			peer.stop();
+		}
+	}
+
+	private static void printHelp() {
+
+		System.out.println("structr-net benchmark command line options");
+		System.out.println(" -h             - show this help message ");
+		System.out.println(" -n <count>     - number of peers (default 3)");
+		System.out.println(" -o <count>     - number of objects (default 100000)");
+		System.out.println(" -t <seconds>   - timeout (default 600)");
+	}
+
+	private static String newUuid() {
+		return UUID.randomUUID().toString().replaceAll("\\-", "");
+	}
+}
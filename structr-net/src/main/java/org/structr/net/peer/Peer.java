@@ -19,9 +19,6 @@
 package org.structr.net.peer;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.InetAddress;
 import java.nio.charset.Charset;
 import java.security.KeyPair;
 import java.security.MessageDigest;
@@ -37,12 +34,13 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.net.PeerListener;
@@ -66,8 +64,9 @@ import org.structr.net.repository.RepositoryObject;
 
 /**
  * The main class of this peer-to-peer implementation. This class will
- * start three individual threads. Two that handle inbound and outbound
- * traffic and another one that acts on the protocol messages it receives.
+ * start two individual threads. One that handles inbound and outbound
+ * traffic (see {@link Transport}) and another one that acts on the
+ * protocol messages it receives.
  */
 public final class Peer implements Runnable, Clock, InternalChangeListener {
 
@@ -75,8 +74,8 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 
 	private static final Logger logger = LoggerFactory.getLogger(Peer.class.getName());
 
-	private final Queue<Envelope> outputQueue         = new ConcurrentLinkedQueue<>();
-	private final Queue<Envelope> inputQueue          = new ConcurrentLinkedQueue<>();
+	private final BlockingQueue<Envelope> inputQueue  = new LinkedBlockingQueue<>();
+	private final Transport transport                 = new Transport(this);
 	private final ExecutorService executorService     = Executors.newCachedThreadPool();
 	private final Map<String, PeerInfo> peers         = new ConcurrentHashMap<>();
 	private final Map<String, Callback> callbacks     = new ConcurrentHashMap<>();
@@ -91,12 +90,9 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 	private boolean initialized                       = false;
 	private String initialPeer                        = null;
 	private String bindAddress                        = null;
-	private DatagramSocket serverSocket               = null;
-	private long timeOffset                           = 0L;
+	private volatile long timeOffset                  = 0L;
 	private int localPort                             = START_PORT;
-	private int sent                                  = 0;
-	private int received                              = 0;
-	private boolean running                           = true;
+	private volatile boolean running                  = true;
 	private boolean verbose                           = false;
 	private int discoveryInterval                     = 1000;
 	private int discoveryIntervalStep                 = 1000;
@@ -128,7 +124,6 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 	@Override
 	public void run() {
 
-		long currentTime   = 0L;
 		long lastCleanup   = 0L;
 		long lastDiscovery = 0L;
 
@@ -136,41 +131,11 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 		while (running) {
 
 			try {
-				currentTime = System.currentTimeMillis();
 
-				// work on input queue, but interrupt for other tasks
-				while (!inputQueue.isEmpty() && currentTime < lastDiscovery + discoveryInterval && currentTime < lastCleanup + discoveryIntervalStep) {
-
-					currentTime = System.currentTimeMillis();
-
-					final Envelope envelope = inputQueue.poll();
-					if (envelope != null) {
-
-						final AbstractMessage message = envelope.getMessage();
-
-						// notify listeners
-						onMessage(message);
-
-						// re-broadcast to other peers
-						final String ackKey = message.getId() + "-ack";
-
-						// re-broadcast message if UUID was not seen before
-						// (this causes the "wave" effect so that all peers
-						// see the message, even if not connected directly)
-						if (getData(ackKey) == null) {
-
-							// process message
-							message.onMessage(this, envelope.getPeer());
-
-							// send message to other peers
-							broadcast(message);
-							setData(ackKey, true);
-						}
-					}
-				}
+				final long currentTime = System.currentTimeMillis();
 
 				// send discovery request
-				if (currentTime > lastDiscovery + discoveryInterval) {
+				if (currentTime >= lastDiscovery + discoveryInterval) {
 
 					lastDiscovery = currentTime;
 
@@ -185,7 +150,7 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 				}
 
 				// remove peers that have not (re)acted for some time
-				if (currentTime > lastCleanup + discoveryIntervalStep) {
+				if (currentTime >= lastCleanup + discoveryIntervalStep) {
 
 					lastCleanup = currentTime;
 
@@ -203,7 +168,38 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 					}
 				}
 
-				Thread.sleep(10L);
+				// wait for messages until the next periodic task is due
+				final long nextTask     = Math.min(lastDiscovery + discoveryInterval, lastCleanup + discoveryIntervalStep);
+				final Envelope envelope = inputQueue.poll(Math.max(1L, nextTask - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+
+				if (envelope != null) {
+
+					final AbstractMessage message = envelope.getMessage();
+
+					// notify listeners
+					onMessage(message);
+
+					// re-broadcast to other peers
+					final String ackKey = message.getId() + "-ack";
+
+					// re-broadcast message if UUID was not seen before
+					// (this causes the "wave" effect so that all peers
+					// see the message, even if not connected directly)
+					if (getData(ackKey) == null) {
+
+						// process message
+						message.onMessage(this, envelope.getPeer());
+
+						// send message to other peers
+						broadcast(message);
+						setData(ackKey, true);
+					}
+				}
+
+			} catch (InterruptedException iex) {
+
+				// peer was stopped
+				break;
 
 			} catch (Throwable t) {
 				logger.warn("", t);
@@ -222,8 +218,7 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 
 		try {
 
-			executorService.submit(new InputHandler());
-			executorService.submit(new OutputHandler());
+			executorService.submit(transport);
 			executorService.submit(this);
 
 		} catch (RejectedExecutionException rex) {
@@ -241,7 +236,7 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 
 			try {
 
-				serverSocket = new DatagramSocket(localPort, InetAddress.getByName(bindAddress));
+				transport.bind(bindAddress, localPort);
 				success = true;
 
 			} catch (IOException ioex) {
@@ -268,7 +263,8 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 
 		running = false;
 
-		serverSocket.close();
+		transport.close();
+		executorService.shutdownNow();
 	}
 
 	public String getUuid() {
@@ -296,7 +292,7 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 	}
 
 	public void send(final PeerInfo recipient, final AbstractMessage message) {
-		outputQueue.add(new Envelope(recipient, message));
+		transport.send(new Envelope(recipient, message));
 	}
 
 	public void onPeerDiscovery(final PeerInfo newPeer, final byte[] hash) {
@@ -354,10 +350,11 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 	public synchronized void printInfo() {
 
 		System.out.println("#########################################");
-		System.out.println("Peer " + serverSocket.getLocalAddress() + ":" + localPort);
+		System.out.println("Peer " + transport.getLocalAddress());
 		System.out.println("UUID: " + getUuid());
 		System.out.println("Time offset: " + timeOffset);
-		System.out.println(received + " messages received, " + sent + " messages sent");
+		System.out.println(transport.getMessagesReceived() + " messages received, " + transport.getMessagesSent() + " messages sent");
+		System.out.println(transport.getDatagramsReceived() + " datagrams received, " + transport.getDatagramsSent() + " datagrams sent");
 		System.out.println(peers.size() + " peers");
 
 		for (final PeerInfo info : peers.values()) {
@@ -370,8 +367,6 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 			((DefaultRepositoryObject)obj).printHistory();
 		}
 
-		System.out.println(outputQueue);
-
 		System.out.flush();
 	}
 
@@ -539,6 +534,10 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 		return keyPair.getPublic();
 	}
 
+	public Transport getTransport() {
+		return transport;
+	}
+
 	// ---- interface Clock -----
 	@Override
 	public long getTime() {
@@ -567,6 +566,29 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 		}
 	}
 
+	// ----- package-private methods -----
+	/**
+	 * Called by the transport for each message that was received.
+	 */
+	void receive(final Envelope envelope) {
+
+		final AbstractMessage msg  = envelope.getMessage();
+		final long senderTimestamp = msg.getSenderTimestamp();
+		final long current         = System.currentTimeMillis();
+		final long delta           = senderTimestamp - current;
+
+		// adjust time offset to be in sync with other peers,
+		// the group's value will be the maximum of all peers
+		if (delta > timeOffset) {
+			timeOffset = delta;
+		}
+
+		// update last seen time
+		updatePeer(envelope.getPeer().getUuid(), (current + timeOffset) - senderTimestamp);
+
+		inputQueue.add(envelope);
+	}
+
 	// ----- private methods -----
 	private synchronized boolean addPeer(final PeerInfo peer) {
 
@@ -642,88 +664,6 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 	}
 
 	// ----- nested classes -----
-	private class InputHandler implements Runnable {
-
-		private final byte[] buffer = new byte[2048];
-
-		@Override
-		public void run() {
-
-			while (running) {
-
-				try {
-
-					final DatagramPacket packet = new DatagramPacket(buffer, 2048);
-
-					serverSocket.receive(packet);
-
-					final Envelope envelope = AbstractMessage.receive(Peer.this, packet);
-					if (envelope != null) {
-
-						final AbstractMessage msg  = envelope.getMessage();
-						final long senderTimestamp = msg.getSenderTimestamp();
-						final long current         = System.currentTimeMillis();
-						final long delta           = senderTimestamp - current;
-
-						// adjust time offset to be in sync with other peers,
-						// the group's value will be the maximum of all peers
-						if (delta > timeOffset) {
-							timeOffset = delta;
-						}
-
-						// update last seen time
-						updatePeer(envelope.getPeer().getUuid(), (current + timeOffset) - senderTimestamp);
-
-						inputQueue.add(envelope);
-
-						received++;
-
-					}
-
-				} catch (Throwable t) {
-					logger.warn("", t);
-				}
-			}
-		}
-	}
-
-	private class OutputHandler implements Runnable {
-
-		@Override
-		public void run() {
-
-			while (running) {
-
-				try {
-
-					while (!outputQueue.isEmpty()) {
-
-						final Envelope envelope = outputQueue.poll();
-						if (envelope != null) {
-
-							final AbstractMessage message = envelope.getMessage();
-							final PeerInfo recipient      = envelope.getPeer();
-
-							message.setSenderTimestamp(System.currentTimeMillis() + timeOffset);
-							message.onSend(Peer.this);
-
-							serverSocket.send(AbstractMessage.forSending(Peer.this.getUuid(), recipient, message));
-
-							sent++;
-						}
-					}
-
-					Thread.sleep(10L);
-
-				} catch (IOException ignore1) {
-				} catch (InterruptedException ignore2) {
-				} catch (Throwable t) {
-					logger.warn("", t);
-				}
-			}
-		}
-	}
-
 	private class UuidComparator implements Comparator<RepositoryObject> {
 
 		@Override
@@ -0,0 +1,650 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.net.peer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.net.protocol.AbstractMessage;
+import org.structr.net.protocol.Envelope;
+
+/**
+ * The network transport of a peer. A single thread waits for inbound
+ * datagrams and outbound messages on a selector, packs all pending
+ * messages for the same destination into as few datagrams as possible
+ * and encrypts them with AES/GCM.
+ *
+ * Each peer creates a symmetric session key for every destination and
+ * sends it once, encrypted with the RSA key of the recipient. Peers that
+ * receive a datagram with an unknown session key ask the sender for it,
+ * so lost key packets and peers that join later are handled as well.
+ */
+public class Transport implements Runnable {
+
+	private static final Logger logger = LoggerFactory.getLogger(Transport.class.getName());
+
+	private static final byte VERSION               = 1;
+	private static final byte FRAME_KEY             = 1;
+	private static final byte FRAME_KEY_REQUEST     = 2;
+	private static final byte FRAME_DATA            = 3;
+	private static final int HEADER_SIZE            = 22;		// version, type, sender, key ID
+	private static final int IV_LENGTH              = 12;
+	private static final int TAG_LENGTH             = 16;
+	private static final int MAX_DATAGRAM_SIZE      = 65507;
+	private static final int MAX_BATCH_SIZE         = 16384;	// uncompressed
+	private static final int MAX_MESSAGE_SIZE       = 60000;	// uncompressed, leaves room for headers and compression overhead
+	private static final int MAX_FRAMES_PER_KEY     = 1 << 24;
+	private static final int MAX_INBOUND_KEYS       = 4096;
+	private static final int MAX_READS_PER_ROUND    = 1024;
+	private static final int MAX_WRITES_PER_ROUND   = 4096;
+	private static final int MAX_PENDING_FRAMES     = 16384;
+	private static final int MAX_KEY_REQUESTS       = 4096;
+	private static final long KEY_REQUEST_INTERVAL  = 1000L;
+
+	private final Map<SocketAddress, OutboundSession> outboundSessions = new HashMap<>();
+	private final Map<Integer, OutboundSession> outboundSessionIds     = new HashMap<>();
+	private final Map<String, SecretKey> inboundKeys                   = new LinkedHashMap<String, SecretKey>(16, 0.75f, true) {
+
+		@Override
+		protected boolean removeEldestEntry(final Entry<String, SecretKey> eldest) {
+			return size() > MAX_INBOUND_KEYS;
+		}
+	};
+
+	private final Map<String, Long> keyRequests                        = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+
+		@Override
+		protected boolean removeEldestEntry(final Entry<String, Long> eldest) {
+			return size() > MAX_KEY_REQUESTS;
+		}
+	};
+
+	// key requests are not authenticated, limit the replies per address so they can not be used for amplification
+	private final Map<SocketAddress, Long> keyReplies                  = new LinkedHashMap<SocketAddress, Long>(16, 0.75f, true) {
+
+		@Override
+		protected boolean removeEldestEntry(final Entry<SocketAddress, Long> eldest) {
+			return size() > MAX_KEY_REQUESTS;
+		}
+	};
+
+	private final Queue<Envelope> outputQueue                          = new ConcurrentLinkedQueue<>();
+	private final Queue<Frame> pendingFrames                           = new LinkedList<>();
+	private final ByteBuffer receiveBuffer                             = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+	private final ByteArrayOutputStream messageBuffer                  = new ByteArrayOutputStream();
+	private final DataOutputStream messageOutput                       = new DataOutputStream(messageBuffer);
+	private final AtomicBoolean wakeupPending                          = new AtomicBoolean();
+	private final AtomicLong datagramsReceived                         = new AtomicLong();
+	private final AtomicLong datagramsSent                             = new AtomicLong();
+	private final AtomicLong messagesReceived                          = new AtomicLong();
+	private final AtomicLong messagesSent                              = new AtomicLong();
+	private final SecureRandom random                                  = new SecureRandom();
+	private Peer peer                                                  = null;
+	private byte[] localId                                             = null;
+	private DatagramChannel channel                                    = null;
+	private Selector selector                                          = null;
+	private SelectionKey selectionKey                                  = null;
+	private KeyGenerator keyGenerator                                  = null;
+	private Cipher sessionCipher                                       = null;
+	private Cipher keyCipher                                           = null;
+	private volatile boolean running                                   = true;
+
+	public Transport(final Peer peer) {
+		this.peer = peer;
+	}
+
+	/**
+	 * Binds this transport to the given address and port.
+	 *
+	 * @param bindAddress
+	 * @param port
+	 * @throws IOException if the address is not available
+	 */
+	public void bind(final String bindAddress, final int port) throws IOException {
+
+		try {
+
+			keyGenerator  = KeyGenerator.getInstance("AES");
+			sessionCipher = Cipher.getInstance("AES/GCM/NoPadding");
+			keyCipher     = Cipher.getInstance("RSA/ECB/PKCS1Padding");
+
+			keyGenerator.init(128, random);
+
+		} catch (GeneralSecurityException gex) {
+			throw new IOException("Required encryption algorithms are not available", gex);
+		}
+
+		final DatagramChannel newChannel = DatagramChannel.open();
+
+		try {
+
+			newChannel.setOption(StandardSocketOptions.SO_BROADCAST, true);
+			newChannel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+			newChannel.bind(new InetSocketAddress(InetAddress.getByName(bindAddress), port));
+			newChannel.configureBlocking(false);
+
+		} catch (IOException ioex) {
+
+			newChannel.close();
+			throw ioex;
+		}
+
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		AbstractMessage.serializeUUID(new DataOutputStream(bos), peer.getUuid());
+
+		this.localId      = bos.toByteArray();
+		this.channel      = newChannel;
+		this.selector     = Selector.open();
+		this.selectionKey = channel.register(selector, SelectionKey.OP_READ);
+	}
+
+	public void close() {
+
+		running = false;
+
+		try {
+
+			if (selector != null) {
+				selector.close();
+			}
+
+			if (channel != null) {
+				channel.close();
+			}
+
+		} catch (IOException ioex) {
+			logger.warn("", ioex);
+		}
+	}
+
+	public void send(final Envelope envelope) {
+
+		outputQueue.add(envelope);
+
+		// only wake up the selector once for all messages that are sent in the meantime
+		if (wakeupPending.compareAndSet(false, true)) {
+			selector.wakeup();
+		}
+	}
+
+	public SocketAddress getLocalAddress() {
+
+		try {
+
+			return channel.getLocalAddress();
+
+		} catch (IOException ioex) {
+			logger.warn("", ioex);
+		}
+
+		return null;
+	}
+
+	public long getDatagramsReceived() {
+		return datagramsReceived.get();
+	}
+
+	public long getDatagramsSent() {
+		return datagramsSent.get();
+	}
+
+	public long getMessagesReceived() {
+		return messagesReceived.get();
+	}
+
+	public long getMessagesSent() {
+		return messagesSent.get();
+	}
+
+	// ----- interface Runnable -----
+	@Override
+	public void run() {
+
+		while (running) {
+
+			try {
+
+				// don't block while there are messages left from the last round,
+				// unless the pending frames must be sent first
+				if (outputQueue.isEmpty() || pendingFrames.size() >= MAX_PENDING_FRAMES) {
+
+					selector.select();
+
+				} else {
+
+					selector.selectNow();
+				}
+
+				wakeupPending.set(false);
+
+				if (selectionKey.isReadable()) {
+					receive();
+				}
+
+				selector.selectedKeys().clear();
+
+				if (!outputQueue.isEmpty() && pendingFrames.size() < MAX_PENDING_FRAMES) {
+					createFrames();
+				}
+
+				flush();
+
+			} catch (ClosedSelectorException | ClosedChannelException cex) {
+
+				// transport was closed
+				break;
+
+			} catch (Throwable t) {
+				logger.warn("", t);
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private void receive() throws IOException {
+
+		for (int i=0; i<MAX_READS_PER_ROUND; i++) {
+
+			receiveBuffer.clear();
+
+			final SocketAddress source = channel.receive(receiveBuffer);
+			if (source == null) {
+				break;
+			}
+
+			receiveBuffer.flip();
+			datagramsReceived.incrementAndGet();
+
+			try {
+
+				onFrame((InetSocketAddress)source, receiveBuffer);
+
+			} catch (Throwable t) {
+				logger.debug("Unable to process datagram from {}: {}", source, t.getMessage());
+			}
+		}
+	}
+
+	private void onFrame(final InetSocketAddress source, final ByteBuffer buffer) throws IOException, GeneralSecurityException {
+
+		if (buffer.remaining() < HEADER_SIZE || buffer.get() != VERSION) {
+			return;
+		}
+
+		final byte type         = buffer.get();
+		final byte[] sender     = new byte[16];
+
+		buffer.get(sender);
+
+		final String senderId   = AbstractMessage.deserializeUUID(new DataInputStream(new ByteArrayInputStream(sender)));
+		final int keyId         = buffer.getInt();
+		final String sessionId  = senderId + ":" + keyId;
+
+		switch (type) {
+
+			case FRAME_KEY:
+				if (!inboundKeys.containsKey(sessionId)) {
+
+					final byte[] wrappedKey = new byte[buffer.getInt()];
+					buffer.get(wrappedKey);
+
+					keyCipher.init(Cipher.DECRYPT_MODE, peer.getPrivateKey());
+					inboundKeys.put(sessionId, new SecretKeySpec(keyCipher.doFinal(wrappedKey), "AES"));
+				}
+				break;
+
+			case FRAME_KEY_REQUEST:
+				final OutboundSession session = outboundSessionIds.get(keyId);
+				if (session != null && source.equals(session.address)) {
+
+					sendKey(source, session);
+				}
+				break;
+
+			case FRAME_DATA:
+				final SecretKey key = inboundKeys.get(sessionId);
+				if (key != null) {
+
+					onData(source, senderId, key, buffer);
+
+				} else {
+
+					requestKey(source, sessionId, keyId);
+				}
+				break;
+		}
+	}
+
+	private void onData(final InetSocketAddress source, final String senderId, final SecretKey key, final ByteBuffer buffer) throws IOException, GeneralSecurityException {
+
+		final byte[] data = buffer.array();
+		final int offset  = buffer.position() + IV_LENGTH;
+
+		sessionCipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, data, buffer.position(), IV_LENGTH));
+		sessionCipher.updateAAD(data, 0, HEADER_SIZE);
+
+		final byte[] compressed   = sessionCipher.doFinal(data, offset, buffer.limit() - offset);
+		final DataInputStream dis = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(compressed)));
+		final PeerInfo sender     = new PeerInfo(peer.getPublicKey(), senderId, source.getAddress().getHostAddress(), source.getPort());
+		final int count           = dis.readInt();
+
+		for (int i=0; i<count; i++) {
+
+			final AbstractMessage message = AbstractMessage.read(dis);
+			if (message != null) {
+
+				messagesReceived.incrementAndGet();
+				peer.receive(new Envelope(sender, message));
+			}
+		}
+	}
+
+	private void sendKey(final InetSocketAddress source, final OutboundSession session) {
+
+		final long now  = System.currentTimeMillis();
+		final Long last = keyReplies.get(source);
+
+		if ((last == null || now > last + KEY_REQUEST_INTERVAL) && pendingFrames.size() < MAX_PENDING_FRAMES) {
+
+			keyReplies.put(source, now);
+
+			pendingFrames.add(createKeyFrame(source, session));
+		}
+	}
+
+	private void requestKey(final InetSocketAddress source, final String sessionId, final int keyId) {
+
+		final long now  = System.currentTimeMillis();
+		final Long last = keyRequests.get(sessionId);
+
+		if ((last == null || now > last + KEY_REQUEST_INTERVAL) && pendingFrames.size() < MAX_PENDING_FRAMES) {
+
+			keyRequests.put(sessionId, now);
+
+			final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+
+			writeHeader(buffer, FRAME_KEY_REQUEST, keyId);
+			buffer.flip();
+
+			pendingFrames.add(new Frame(source, buffer));
+		}
+	}
+
+	private void createFrames() throws IOException, GeneralSecurityException {
+
+		final Map<SocketAddress, Batch> batches = new LinkedHashMap<>();
+		Envelope envelope                       = null;
+		int count                               = 0;
+
+		// limit the number of messages per round so that datagrams are sent while messages are still being added
+		while (count++ < MAX_WRITES_PER_ROUND && pendingFrames.size() < MAX_PENDING_FRAMES && (envelope = outputQueue.poll()) != null) {
+
+			final AbstractMessage message = envelope.getMessage();
+			final PeerInfo recipient      = envelope.getPeer();
+			final SocketAddress address   = new InetSocketAddress(recipient.getAddress(), recipient.getPort());
+			Batch batch                   = batches.get(address);
+
+			if (batch == null) {
+
+				batch = new Batch(recipient);
+				batches.put(address, batch);
+			}
+
+			message.setSenderTimestamp(peer.getCoordinatedTime());
+			message.onSend(peer);
+
+			messageBuffer.reset();
+			AbstractMessage.write(messageOutput, message);
+
+			// a message must fit into a single datagram, it can not be fragmented
+			if (messageBuffer.size() > MAX_MESSAGE_SIZE) {
+
+				logger.warn("Unable to send {} to {}, message size of {} bytes exceeds the maximum of {} bytes", message.getClass().getSimpleName(), recipient.getUuid(), messageBuffer.size(), MAX_MESSAGE_SIZE);
+				continue;
+			}
+
+			if (batch.count > 0 && batch.size() + messageBuffer.size() > MAX_BATCH_SIZE) {
+
+				pendingFrames.add(createDataFrame(address, batch));
+				batch.reset();
+			}
+
+			batch.add(messageBuffer);
+			messagesSent.incrementAndGet();
+		}
+
+		for (final Entry<SocketAddress, Batch> entry : batches.entrySet()) {
+
+			final Batch batch = entry.getValue();
+			if (batch.count > 0) {
+
+				pendingFrames.add(createDataFrame(entry.getKey(), batch));
+			}
+		}
+	}
+
+	private Frame createDataFrame(final SocketAddress address, final Batch batch) throws IOException, GeneralSecurityException {
+
+		OutboundSession session = outboundSessions.get(address);
+		if (session == null || session.frames >= MAX_FRAMES_PER_KEY) {
+
+			if (session != null) {
+				outboundSessionIds.remove(session.id);
+			}
+
+			session = createSession(address, batch.recipient.getPublicKey());
+
+			outboundSessions.put(address, session);
+			outboundSessionIds.put(session.id, session);
+
+			// key must arrive before the data
+			pendingFrames.add(createKeyFrame(address, session));
+		}
+
+		session.frames++;
+
+		final byte[] compressed = batch.toByteArray();
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + IV_LENGTH + compressed.length + TAG_LENGTH);
+		final byte[] iv         = new byte[IV_LENGTH];
+
+		random.nextBytes(iv);
+
+		writeHeader(buffer, FRAME_DATA, session.id);
+		buffer.put(iv);
+
+		sessionCipher.init(Cipher.ENCRYPT_MODE, session.key, new GCMParameterSpec(TAG_LENGTH * 8, iv));
+		sessionCipher.updateAAD(buffer.array(), 0, HEADER_SIZE);
+
+		final int length = sessionCipher.doFinal(compressed, 0, compressed.length, buffer.array(), HEADER_SIZE + IV_LENGTH);
+
+		buffer.position(0);
+		buffer.limit(HEADER_SIZE + IV_LENGTH + length);
+
+		return new Frame(address, buffer);
+	}
+
+	private Frame createKeyFrame(final SocketAddress address, final OutboundSession session) {
+
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 4 + session.wrappedKey.length);
+
+		writeHeader(buffer, FRAME_KEY, session.id);
+		buffer.putInt(session.wrappedKey.length);
+		buffer.put(session.wrappedKey);
+		buffer.flip();
+
+		return new Frame(address, buffer);
+	}
+
+	private OutboundSession createSession(final SocketAddress address, final PublicKey recipientKey) throws GeneralSecurityException {
+
+		final SecretKey key = keyGenerator.generateKey();
+		int id              = random.nextInt();
+
+		while (id == 0 || outboundSessionIds.containsKey(id)) {
+			id = random.nextInt();
+		}
+
+		keyCipher.init(Cipher.ENCRYPT_MODE, recipientKey != null ? recipientKey : peer.getPublicKey());
+
+		return new OutboundSession(address, id, key, keyCipher.doFinal(key.getEncoded()));
+	}
+
+	private void writeHeader(final ByteBuffer buffer, final byte type, final int keyId) {
+
+		buffer.put(VERSION);
+		buffer.put(type);
+		buffer.put(localId);
+		buffer.putInt(keyId);
+	}
+
+	private void flush() throws IOException {
+
+		while (!pendingFrames.isEmpty()) {
+
+			final Frame frame = pendingFrames.peek();
+
+			try {
+
+				if (channel.send(frame.buffer, frame.address) == 0) {
+
+					// socket buffer is full, continue when the channel is writable again
+					selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+					return;
+				}
+
+				datagramsSent.incrementAndGet();
+
+			} catch (ClosedChannelException cex) {
+
+				throw cex;
+
+			} catch (IOException ioex) {
+
+				logger.debug("Unable to send datagram to {}: {}", frame.address, ioex.getMessage());
+			}
+
+			pendingFrames.poll();
+		}
+
+		selectionKey.interestOps(SelectionKey.OP_READ);
+	}
+
+	// ----- nested classes -----
+	private static class Frame {
+
+		private SocketAddress address = null;
+		private ByteBuffer buffer     = null;
+
+		Frame(final SocketAddress address, final ByteBuffer buffer) {
+
+			this.address = address;
+			this.buffer  = buffer;
+		}
+	}
+
+	private static class OutboundSession {
+
+		private SocketAddress address = null;
+		private byte[] wrappedKey     = null;
+		private SecretKey key         = null;
+		private int frames            = 0;
+		private int id                = 0;
+
+		OutboundSession(final SocketAddress address, final int id, final SecretKey key, final byte[] wrappedKey) {
+
+			this.address    = address;
+			this.wrappedKey = wrappedKey;
+			this.key        = key;
+			this.id         = id;
+		}
+	}
+
+	private static class Batch {
+
+		private final ByteArrayOutputStream messages = new ByteArrayOutputStream();
+		private PeerInfo recipient                   = null;
+		private int count                            = 0;
+
+		Batch(final PeerInfo recipient) {
+			this.recipient = recipient;
+		}
+
+		void add(final ByteArrayOutputStream message) throws IOException {
+
+			message.writeTo(messages);
+			count++;
+		}
+
+		int size() {
+			return messages.size();
+		}
+
+		void reset() {
+
+			messages.reset();
+			count = 0;
+		}
+
+		byte[] toByteArray() throws IOException {
+
+			final ByteArrayOutputStream bos = new ByteArrayOutputStream(messages.size() / 2 + 16);
+
+			try (final DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bos))) {
+
+				out.writeInt(count);
+				messages.writeTo(out);
+			}
+
+			return bos.toByteArray();
+		}
+	}
+}
@@ -23,25 +23,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.security.PrivateKey;
-import java.security.PublicKey;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
-import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
-import javax.crypto.CipherOutputStream;
-import javax.crypto.NoSuchPaddingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.net.peer.Peer;
@@ -89,6 +75,7 @@ public abstract class AbstractMessage {
 
 	}
 
+	private byte[] content  = null;
 	private String uuid     = null;
 	private int command     = 0;
 	private long timestamp  = 0;
@@ -134,97 +121,57 @@ public abstract class AbstractMessage {
 		this.timestamp = senderTimestamp;
 	}
 
-	public static Envelope receive(final Peer peer, final DatagramPacket packet) throws IOException, InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException {
+	/**
+	 * Writes the given message to the given stream. The serialized content
+	 * of a message is cached, so that a message that is sent to several
+	 * peers (or received and re-broadcast) is serialized only once.
+	 *
+	 * @param dos
+	 * @param message
+	 * @throws IOException
+	 */
+	public static void write(final DataOutputStream dos, final AbstractMessage message) throws IOException {
 
-		final PrivateKey privateKey = peer.getPrivateKey();
-		if (privateKey != null) {
+		final byte[] content = message.getContent();
 
-			final Cipher cipher = AbstractMessage.getCipher();
-			cipher.init(Cipher.DECRYPT_MODE, peer.getPrivateKey());
-
-			final byte[] data = decryptBlocks(packet.getData(), cipher, 256, 245);
-
-			if (data.length == 0) {
-
-				System.out.println("Decryption failed");
-
-			} else {
+		dos.writeInt(message.getCommand());		// Command
+		serializeUUID(dos, message.getId());		// UUID
+		dos.writeLong(message.getSenderTimestamp());	// timestamp
+		dos.writeInt(content.length);
+		dos.write(content);
+	}
 
-				final DataInputStream dis = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(data), 1024));
-				//final DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
-				final int command         = dis.readInt();
-				final String messageId    = deserializeUUID(dis);
-				final String peerId       = deserializeUUID(dis);
-				final long timestamp      = dis.readLong();
-				AbstractMessage msg       = null;
+	public static AbstractMessage read(final DataInputStream dis) throws IOException {
 
-				final Class<? extends AbstractMessage> type = CommandMap.get(command);
-				if (type != null) {
+		final int command      = dis.readInt();
+		final String messageId = deserializeUUID(dis);
+		final long timestamp   = dis.readLong();
+		final byte[] content   = new byte[dis.readInt()];
 
-					try {
+		dis.readFully(content);
 
-						msg = type.newInstance();
+		final Class<? extends AbstractMessage> type = CommandMap.get(command);
+		if (type != null) {
 
-						msg.setSenderTimestamp(timestamp);
-						msg.setId(messageId);
+			try {
 
-						msg.deserialize(dis);
+				final AbstractMessage msg = type.newInstance();
 
-						// create envelope
-						return new Envelope(new PeerInfo(peer.getPublicKey(), peerId, packet.getAddress().getHostAddress(), packet.getPort()), msg);
+				msg.setSenderTimestamp(timestamp);
+				msg.setId(messageId);
 
-					} catch (Throwable t) {
-						logger.warn("", t);
-					}
+				msg.deserialize(new DataInputStream(new ByteArrayInputStream(content)));
+				msg.content = content;
 
-				} else {
+				return msg;
 
-					System.out.println("Unknown command " + command);
-				}
+			} catch (InstantiationException | IllegalAccessException ex) {
+				logger.warn("", ex);
 			}
 
 		} else {
 
-			System.out.println("Unable to decrypt packet, aborting");
-		}
-
-		return null;
-	}
-
-	public static DatagramPacket forSending(final String peerId, final PeerInfo recipient, final AbstractMessage message) throws UnknownHostException, IOException, InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException {
-
-		final ByteArrayOutputStream finalBuffer = new ByteArrayOutputStream();
-		final GZIPOutputStream zos              = new GZIPOutputStream(finalBuffer, 1024);
-		final DataOutputStream dos              = new DataOutputStream(zos);
-
-		dos.writeInt(message.getCommand());		// Command
-		serializeUUID(dos, message.getId());		// UUID
-		serializeUUID(dos, peerId);			// peer UUID
-		dos.writeLong(message.getSenderTimestamp());	// timestamp
-
-		// let message do the rest
-		message.serialize(dos);
-
-		// flush and close
-		dos.flush();
-		dos.close();
-
-		final PublicKey publicKey = recipient.getPublicKey();
-		if (publicKey != null) {
-
-			// encrypt with the public key of the recipient
-			final Cipher cipher = getCipher();
-			cipher.init(Cipher.ENCRYPT_MODE, publicKey);
-
-			final byte[] data    = encryptBlocks(finalBuffer.toByteArray(), cipher, 245);
-			final String address = recipient.getAddress();
-			final int port       = recipient.getPort();
-
-			return new DatagramPacket(data, data.length, InetAddress.getByName(address), port);
-
-		} else {
-
-			System.out.println("Unable to encrypt packet, aborting.");
+			System.out.println("Unknown command " + command);
 		}
 
 		return null;
@@ -355,8 +302,20 @@ public abstract class AbstractMessage {
 		return list;
 	}
 
-	private static Cipher getCipher() throws NoSuchAlgorithmException, NoSuchPaddingException {
-		return Cipher.getInstance("RSA/ECB/PKCS1Padding");
+	private byte[] getContent() throws IOException {
+
+		if (content == null) {
+
+			final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			final DataOutputStream dos      = new DataOutputStream(bos);
+
+			serialize(dos);
+			dos.flush();
+
+			content = bos.toByteArray();
+		}
+
+		return content;
 	}
 
 	private static UUID toUUID(final String id) {
@@ -370,61 +329,4 @@ public abstract class AbstractMessage {
 
 		return UUID.fromString(buf.toString());
 	}
-
-	private static byte[] encryptBlocks(final byte[] data, final Cipher cipher, final int dataSize) throws IOException {
-
-		final ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length);
-		final int count                 = (data.length / dataSize) + 1;
-		int remaining                   = data.length;
-
-		for (int i=0; i<count; i++) {
-
-			final int offset = i*dataSize;
-			final int length = Math.min(dataSize, remaining);
-
-			final CipherOutputStream cos = new CipherOutputStream(bos, cipher);
-
-			cos.write(data, offset, length);
-			cos.flush();
-			cos.close();
-
-			remaining -= length;
-		}
-
-		return bos.toByteArray();
-	}
-
-	private static byte[] decryptBlocks(final byte[] data, final Cipher cipher, final int blockSize, final int dataSize) throws IOException {
-
-		final ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length);
-		final int count                 = (data.length / dataSize);
-		final byte[] buffer             = new byte[dataSize];
-		int remaining                   = data.length;
-
-		for (int i=0; i<count; i++) {
-
-			final int offset = i*blockSize;
-			final int length = Math.min(blockSize, remaining);
-
-			final byte[] range             = Arrays.copyOfRange(data, offset, offset + length);
-			final ByteArrayInputStream bis = new ByteArrayInputStream(range);
-			final CipherInputStream cis    = new CipherInputStream(bis, cipher);
-
-			try {
-				// clear buffer
-				Arrays.fill(buffer, 0, dataSize, (byte)0);
-
-				// copy data
-				cis.read(buffer, 0, dataSize);
-				bos.write(buffer);
-
-				remaining -= Math.min(blockSize, remaining);
-
-			} catch (IOException ignore) {
-				break;
-			}
-		}
-
-		return bos.toByteArray();
-	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,1097 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.logging;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+
+/**
+ * Time-partitioned storage for log events.
+ *
+ * Events are stored in one directory per day (UTC), with one file per
+ * column (timestamp, action, subject, object and message). Action, subject
+ * and object are replaced by IDs from a per-partition dictionary, messages
+ * are stored in a separate file and only read for matching events. For
+ * each partition, the number of events per action and subject is
+ * pre-aggregated in buckets of one minute, one hour and one day, so that
+ * event counts can be answered without reading the events themselves.
+ * The rollups are saved when the partition is closed, so that only the
+ * events appended afterwards have to be counted again on load. Queries
+ * that depend on the message (filters, patterns) have to scan the events.
+ * Range queries only read the partitions that overlap the given time range,
+ * only the partition that is currently appended to keeps its files open,
+ * and only the most recently used partitions are kept in memory.
+ */
+public class LogEventStore {
+
+	private static final Logger logger          = LoggerFactory.getLogger(LogEventStore.class.getName());
+	private static final LogEventStore instance = new LogEventStore();
+
+	public static final long MINUTE             = TimeUnit.MINUTES.toMillis(1);
+	public static final long HOUR               = TimeUnit.HOURS.toMillis(1);
+	public static final long DAY                = TimeUnit.DAYS.toMillis(1);
+
+	private static final long[] RESOLUTIONS     = { MINUTE, HOUR, DAY };
+	private static final String DICTIONARY      = "strings.dict";
+	private static final String MESSAGES        = "message.dat";
+	private static final String ROLLUPS         = "rollups.dat";
+	private static final String[] COLUMNS       = { "timestamp.col", "action.col", "subject.col", "object.col", "message.col" };
+	private static final int[] WIDTHS           = { 8, 4, 4, 4, 8 };
+	private static final int ROLLUP_FORMAT      = 1;
+	private static final int MAX_LOADED         = 8;
+	private static final int NULL_ID            = -1;
+	private static final int UNKNOWN_ID         = -2;
+	private static final long NULL_OFFSET       = -1L;
+
+	private final TreeMap<Long, Partition> partitions   = new TreeMap<>();
+	private final Map<Long, Partition> loadedPartitions = new LinkedHashMap<>(16, 0.75f, true);
+	private final SimpleDateFormat partitionFormat      = new SimpleDateFormat("yyyyMMdd");
+	private Partition current                           = null;
+	private String path                                 = null;
+
+	public interface RollupVisitor {
+
+		void visit(final long bucket, final String action, final String subject, final int count);
+	}
+
+	private LogEventStore() {
+		partitionFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+	}
+
+	public static LogEventStore getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the coarsest rollup resolution that can be used to count
+	 * events in intervals of the given length, starting at the given
+	 * (aligned) timestamp.
+	 *
+	 * @param interval
+	 * @param alignedTimestamp
+	 * @return the resolution
+	 */
+	public static long getResolution(final long interval, final long alignedTimestamp) {
+
+		for (int i=RESOLUTIONS.length-1; i>0; i--) {
+
+			final long resolution = RESOLUTIONS[i];
+
+			if (interval % resolution == 0 && Math.floorMod(alignedTimestamp, resolution) == 0) {
+				return resolution;
+			}
+		}
+
+		return MINUTE;
+	}
+
+	public void add(final Event event) throws IOException {
+		add(Collections.singletonList(event));
+	}
+
+	/**
+	 * Stores the given events. If an exception is thrown, some of the
+	 * events may have been stored nevertheless.
+	 *
+	 * @param events
+	 * @throws IOException
+	 */
+	public synchronized void add(final List<Event> events) throws IOException {
+
+		open();
+
+		try {
+
+			final TreeMap<Long, List<Event>> days = new TreeMap<>();
+
+			for (final Event event : events) {
+
+				days.computeIfAbsent(floor(event.getTimestamp(), DAY), k -> new ArrayList<>()).add(event);
+			}
+
+			for (final Map.Entry<Long, List<Event>> entry : days.entrySet()) {
+
+				final long day      = entry.getKey();
+				Partition partition = partitions.get(day);
+
+				if (partition == null) {
+
+					partition = new Partition(day, new File(path, partitionFormat.format(day)));
+					partitions.put(day, partition);
+				}
+
+				// only the partition that is appended to keeps its files open
+				if (partition != current) {
+
+					if (current != null) {
+						current.closeWriters();
+					}
+
+					use(partition);
+
+					partition.openWriters();
+					current = partition;
+				}
+
+				for (final Event event : entry.getValue()) {
+					partition.add(event);
+				}
+
+				partition.flush();
+			}
+
+		} catch (IOException ioex) {
+
+			// in-memory state may differ from the files now, re-read the partition on next access
+			if (current != null) {
+
+				current.closeWriters();
+				current.reset();
+
+				loadedPartitions.remove(current.day);
+				current = null;
+			}
+
+			throw ioex;
+		}
+	}
+
+	/**
+	 * Returns all events in the given time range that match the given
+	 * action, subject and object. Null values match everything.
+	 *
+	 * @param from
+	 * @param to
+	 * @param action
+	 * @param subject
+	 * @param object
+	 * @return the matching events
+	 */
+	public synchronized List<Event> query(final Long from, final Long to, final String action, final String subject, final String object) {
+
+		final List<Event> result = new ArrayList<>();
+
+		try {
+
+			open();
+
+			for (final Partition partition : getPartitions(from, to)) {
+
+				use(partition);
+				partition.scan(from, to, action, subject, object, result);
+			}
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to read log events: {}", ioex.getMessage());
+		}
+
+		return result;
+	}
+
+	/**
+	 * Calls the given visitor for the pre-aggregated event counts in the
+	 * given time range that match the given action and subject. Counts are
+	 * reported for buckets of the given resolution if possible, buckets at
+	 * the boundaries of the time range are split into smaller buckets, so
+	 * the range is applied with a precision of one minute.
+	 *
+	 * @param from
+	 * @param to
+	 * @param resolution
+	 * @param action
+	 * @param subject
+	 * @param visitor
+	 */
+	public synchronized void visit(final Long from, final Long to, final long resolution, final String action, final String subject, final RollupVisitor visitor) {
+
+		int level = 0;
+
+		while (level < RESOLUTIONS.length - 1 && RESOLUTIONS[level] < resolution) {
+			level++;
+		}
+
+		try {
+
+			open();
+
+			for (final Partition partition : getPartitions(from, to)) {
+
+				use(partition);
+				partition.visit(from, to, level, action, subject, visitor);
+			}
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to read log events: {}", ioex.getMessage());
+		}
+	}
+
+	public synchronized long getFirstTimestamp() {
+
+		try {
+
+			open();
+
+			// partitions are sorted by day, so the first non-empty partition contains the first event
+			for (final Partition partition : partitions.values()) {
+
+				use(partition);
+
+				if (partition.rows > 0) {
+					return partition.firstTimestamp;
+				}
+			}
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to read log events: {}", ioex.getMessage());
+		}
+
+		return Long.MAX_VALUE;
+	}
+
+	public synchronized long getLastTimestamp() {
+
+		try {
+
+			open();
+
+			for (final Partition partition : partitions.descendingMap().values()) {
+
+				use(partition);
+
+				if (partition.rows > 0) {
+					return partition.lastTimestamp;
+				}
+			}
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to read log events: {}", ioex.getMessage());
+		}
+
+		return 0L;
+	}
+
+	public synchronized void close() {
+
+		if (current != null) {
+
+			current.closeWriters();
+			current = null;
+		}
+
+		partitions.clear();
+		loadedPartitions.clear();
+		path = null;
+	}
+
+	/**
+	 * Returns the number of partitions that are currently held in memory.
+	 *
+	 * @return the number of loaded partitions
+	 */
+	synchronized int getLoadedPartitionCount() {
+		return loadedPartitions.size();
+	}
+
+	// ----- private methods -----
+	private void open() throws IOException {
+
+		final String currentPath = Settings.getFullSettingPath(Settings.LogEventsPath);
+
+		if (currentPath.equals(path)) {
+			return;
+		}
+
+		// base path changed (or first use)
+		close();
+
+		final File directory = new File(currentPath);
+
+		directory.mkdirs();
+
+		path = currentPath;
+
+		final File[] files = directory.listFiles();
+		if (files != null) {
+
+			for (final File file : files) {
+
+				if (file.isDirectory()) {
+
+					try {
+
+						final long day = partitionFormat.parse(file.getName()).getTime();
+
+						partitions.put(day, new Partition(day, file));
+
+					} catch (ParseException ignore) {}
+				}
+			}
+		}
+	}
+
+	private List<Partition> getPartitions(final Long from, final Long to) {
+
+		final long start = from != null ? floor(from, DAY) : Long.MIN_VALUE;
+		final long end   = to != null ? to : Long.MAX_VALUE;
+
+		if (start > end) {
+			return Collections.emptyList();
+		}
+
+		return new ArrayList<>(partitions.subMap(start, true, end, true).values());
+	}
+
+	/**
+	 * Loads the given partition and releases the least recently used
+	 * partitions, except the one that is currently appended to.
+	 */
+	private void use(final Partition partition) throws IOException {
+
+		partition.load();
+
+		loadedPartitions.put(partition.day, partition);
+
+		final Iterator<Partition> iterator = loadedPartitions.values().iterator();
+
+		while (loadedPartitions.size() > MAX_LOADED && iterator.hasNext()) {
+
+			final Partition eldest = iterator.next();
+
+			if (eldest != partition && eldest != current) {
+
+				eldest.reset();
+				iterator.remove();
+			}
+		}
+	}
+
+	private static long floor(final long timestamp, final long resolution) {
+		return timestamp - Math.floorMod(timestamp, resolution);
+	}
+
+	// ----- nested classes -----
+	/**
+	 * A single log event.
+	 */
+	public static class Event {
+
+		private String subject = null;
+		private String object  = null;
+		private String action  = null;
+		private String message = null;
+		private long timestamp = 0L;
+
+		public Event(final long timestamp, final String action, final String subject, final String object, final String message) {
+
+			this.timestamp = timestamp;
+			this.action    = action;
+			this.subject   = subject;
+			this.object    = object;
+			this.message   = message;
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public String getAction() {
+			return action;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		public String getSubjectId() {
+			return subject;
+		}
+
+		public String getObjectId() {
+			return object;
+		}
+	}
+
+	/**
+	 * The events of a single day.
+	 */
+	private static class Partition {
+
+		private final Map<String, Integer> ids       = new HashMap<>();
+		private final List<String> strings           = new ArrayList<>();
+		private final Rollup[] rollups               = new Rollup[RESOLUTIONS.length];
+		private final DataOutputStream[] columns     = new DataOutputStream[COLUMNS.length];
+		private DataOutputStream dictionary          = null;
+		private DataOutputStream messages            = null;
+		private File directory                       = null;
+		private long day                             = 0L;
+		private long firstTimestamp                  = Long.MAX_VALUE;
+		private long lastTimestamp                   = 0L;
+		private long messageLength                   = 0L;
+		private boolean loaded                       = false;
+		private int savedRows                        = 0;
+		private int rows                             = 0;
+
+		Partition(final long day, final File directory) {
+
+			this.directory = directory;
+			this.day       = day;
+
+			clearRollups();
+		}
+
+		/**
+		 * Reads the dictionary and the rollups of this partition. Rows
+		 * that were appended after the rollups were saved are counted
+		 * again, incomplete rows are removed.
+		 */
+		void load() throws IOException {
+
+			if (loaded) {
+				return;
+			}
+
+			directory.mkdirs();
+
+			final long dictionaryLength = loadDictionary();
+			final File messageFile      = new File(directory, MESSAGES);
+
+			// number of complete rows, an interrupted write can leave columns of different length
+			long count = Long.MAX_VALUE;
+
+			for (int i=0; i<COLUMNS.length; i++) {
+				count = Math.min(count, new File(directory, COLUMNS[i]).length() / WIDTHS[i]);
+			}
+
+			if (!loadRollups(count, messageFile.length())) {
+
+				clearRollups();
+
+				firstTimestamp = Long.MAX_VALUE;
+				lastTimestamp  = 0L;
+				messageLength  = 0L;
+				rows           = 0;
+			}
+
+			savedRows = rows;
+
+			if (rows < count) {
+
+				final DataInputStream[] inputs = openColumns(rows);
+
+				try (final RandomAccessFile messageInput = new RandomAccessFile(messageFile, "r")) {
+
+					while (rows < count) {
+
+						final long timestamp = inputs[0].readLong();
+						final int action     = inputs[1].readInt();
+						final int subject    = inputs[2].readInt();
+						final int object     = inputs[3].readInt();
+						final long message   = inputs[4].readLong();
+
+						if (action >= strings.size() || subject >= strings.size() || object >= strings.size()) {
+							break;
+						}
+
+						// messages are appended in the order of the rows
+						if (message >= 0L) {
+
+							if (message != messageLength || message + 4 > messageInput.length()) {
+								break;
+							}
+
+							messageInput.seek(message);
+
+							final long end = message + 4 + messageInput.readInt();
+
+							if (end > messageInput.length()) {
+								break;
+							}
+
+							messageLength = end;
+						}
+
+						count(timestamp, action, subject);
+
+						rows++;
+					}
+
+				} finally {
+
+					closeColumns(inputs);
+				}
+			}
+
+			truncate(new File(directory, DICTIONARY), dictionaryLength);
+			truncate(messageFile, messageLength);
+
+			for (int i=0; i<COLUMNS.length; i++) {
+				truncate(new File(directory, COLUMNS[i]), rows * (long)WIDTHS[i]);
+			}
+
+			loaded = true;
+
+			if (rows != savedRows) {
+				saveRollups();
+			}
+		}
+
+		/**
+		 * Releases the memory of this partition, it is loaded again on
+		 * the next access.
+		 */
+		void reset() {
+
+			ids.clear();
+			strings.clear();
+
+			clearRollups();
+
+			firstTimestamp = Long.MAX_VALUE;
+			lastTimestamp  = 0L;
+			messageLength  = 0L;
+			loaded         = false;
+			savedRows      = 0;
+			rows           = 0;
+		}
+
+		void openWriters() throws IOException {
+
+			load();
+
+			if (dictionary == null) {
+
+				dictionary = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, DICTIONARY), true)));
+				messages   = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, MESSAGES), true)));
+
+				for (int i=0; i<COLUMNS.length; i++) {
+					columns[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, COLUMNS[i]), true)));
+				}
+			}
+		}
+
+		void closeWriters() {
+
+			if (dictionary != null) {
+
+				try {
+
+					// strings first, so that the columns never refer to missing strings
+					dictionary.close();
+					messages.close();
+
+					for (final DataOutputStream column : columns) {
+						column.close();
+					}
+
+					if (rows != savedRows) {
+						saveRollups();
+					}
+
+				} catch (IOException ioex) {
+					logger.warn("Unable to close log event partition {}: {}", directory.getName(), ioex.getMessage());
+				}
+
+				dictionary = null;
+				messages   = null;
+
+				Arrays.fill(columns, null);
+			}
+		}
+
+		void add(final Event event) throws IOException {
+
+			final long timestamp = event.getTimestamp();
+			final int action     = getOrCreateId(event.getAction());
+			final int subject    = getOrCreateId(event.getSubjectId());
+			final int object     = getOrCreateId(event.getObjectId());
+			final long message   = writeMessage(event.getMessage());
+
+			columns[0].writeLong(timestamp);
+			columns[1].writeInt(action);
+			columns[2].writeInt(subject);
+			columns[3].writeInt(object);
+			columns[4].writeLong(message);
+
+			count(timestamp, action, subject);
+
+			rows++;
+		}
+
+		void flush() throws IOException {
+
+			if (dictionary != null) {
+
+				// strings first, so that the columns never refer to missing strings
+				dictionary.flush();
+				messages.flush();
+
+				for (final DataOutputStream column : columns) {
+					column.flush();
+				}
+			}
+		}
+
+		void scan(final Long from, final Long to, final String action, final String subject, final String object, final List<Event> result) throws IOException {
+
+			final int actionId  = getId(action);
+			final int subjectId = getId(subject);
+			final int objectId  = getId(object);
+
+			if (actionId == UNKNOWN_ID || subjectId == UNKNOWN_ID || objectId == UNKNOWN_ID) {
+				return;
+			}
+
+			flush();
+
+			final DataInputStream[] inputs = openColumns(0);
+
+			try (final RandomAccessFile messageInput = new RandomAccessFile(new File(directory, MESSAGES), "r")) {
+
+				for (int row=0; row<rows; row++) {
+
+					final long timestamp   = inputs[0].readLong();
+					final int eventAction  = inputs[1].readInt();
+					final int eventSubject = inputs[2].readInt();
+					final int eventObject  = inputs[3].readInt();
+					final long message     = inputs[4].readLong();
+
+					if ((from == null || timestamp >= from) && (to == null || timestamp <= to) && matches(actionId, eventAction) && matches(subjectId, eventSubject) && matches(objectId, eventObject)) {
+
+						// messages are only read for matching events
+						result.add(new Event(timestamp, getString(eventAction), getString(eventSubject), getString(eventObject), readMessage(messageInput, message)));
+					}
+				}
+
+			} finally {
+
+				closeColumns(inputs);
+			}
+		}
+
+		void visit(final Long from, final Long to, final int level, final String action, final String subject, final RollupVisitor visitor) {
+
+			final int actionId  = getId(action);
+			final int subjectId = getId(subject);
+
+			if (actionId == UNKNOWN_ID || subjectId == UNKNOWN_ID) {
+				return;
+			}
+
+			// limit range to this partition
+			final long start = from != null ? Math.max(from, day) : day;
+			final long end   = to != null ? Math.min(to, day + DAY - 1) : day + DAY - 1;
+
+			if (start <= end) {
+				visit(start, end, level, actionId, subjectId, visitor);
+			}
+		}
+
+		// ----- private methods -----
+		private void visit(final long from, final long to, final int level, final int actionId, final int subjectId, final RollupVisitor visitor) {
+
+			final Rollup rollup = rollups[level];
+
+			for (final Map.Entry<Long, Map<Cell, int[]>> bucket : rollup.buckets.subMap(floor(from, rollup.resolution), true, to, true).entrySet()) {
+
+				final long start = bucket.getKey();
+				final long end   = start + rollup.resolution - 1;
+
+				if (level > 0 && (start < from || end > to)) {
+
+					// bucket is only partially covered by the range, use smaller buckets
+					visit(Math.max(from, start), Math.min(to, end), level - 1, actionId, subjectId, visitor);
+
+				} else {
+
+					for (final Map.Entry<Cell, int[]> entry : bucket.getValue().entrySet()) {
+
+						final Cell cell = entry.getKey();
+
+						if (matches(actionId, cell.action) && matches(subjectId, cell.subject)) {
+
+							visitor.visit(start, getString(cell.action), getString(cell.subject), entry.getValue()[0]);
+						}
+					}
+				}
+			}
+		}
+
+		private void count(final long timestamp, final int action, final int subject) {
+
+			firstTimestamp = Math.min(firstTimestamp, timestamp);
+			lastTimestamp  = Math.max(lastTimestamp, timestamp);
+
+			final Cell cell = new Cell(action, subject);
+
+			for (final Rollup rollup : rollups) {
+				rollup.add(timestamp, cell, 1);
+			}
+		}
+
+		private void clearRollups() {
+
+			for (int i=0; i<RESOLUTIONS.length; i++) {
+				rollups[i] = new Rollup(RESOLUTIONS[i]);
+			}
+		}
+
+		private long loadDictionary() throws IOException {
+
+			final File dictionaryFile = new File(directory, DICTIONARY);
+			long dictionaryLength     = 0L;
+
+			if (dictionaryFile.exists()) {
+
+				try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(dictionaryFile)))) {
+
+					while (true) {
+
+						final byte[] data;
+
+						try {
+
+							data = new byte[dis.readInt()];
+							dis.readFully(data);
+
+						} catch (EOFException eof) {
+							break;
+						}
+
+						final String value = new String(data, StandardCharsets.UTF_8);
+
+						ids.put(value, strings.size());
+						strings.add(value);
+
+						dictionaryLength += 4 + data.length;
+					}
+				}
+			}
+
+			return dictionaryLength;
+		}
+
+		/**
+		 * Reads the saved rollups, returns false if they are missing or
+		 * do not match the files of this partition.
+		 */
+		private boolean loadRollups(final long count, final long messageFileLength) {
+
+			final File rollupFile = new File(directory, ROLLUPS);
+
+			if (!rollupFile.exists()) {
+				return false;
+			}
+
+			try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(rollupFile)))) {
+
+				if (dis.readInt() != ROLLUP_FORMAT) {
+					return false;
+				}
+
+				rows           = dis.readInt();
+				messageLength  = dis.readLong();
+				firstTimestamp = dis.readLong();
+				lastTimestamp  = dis.readLong();
+
+				if (rows > count || messageLength > messageFileLength) {
+					return false;
+				}
+
+				for (final Rollup rollup : rollups) {
+
+					final int buckets = dis.readInt();
+
+					for (int i=0; i<buckets; i++) {
+
+						final long bucket = dis.readLong();
+						final int cells   = dis.readInt();
+
+						for (int j=0; j<cells; j++) {
+
+							final int action  = dis.readInt();
+							final int subject = dis.readInt();
+							final int number  = dis.readInt();
+
+							if (action >= strings.size() || subject >= strings.size()) {
+								return false;
+							}
+
+							rollup.add(bucket, new Cell(action, subject), number);
+						}
+					}
+				}
+
+				return true;
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to read rollups of log event partition {}, counting events again: {}", directory.getName(), ioex.getMessage());
+			}
+
+			return false;
+		}
+
+		private void saveRollups() {
+
+			final File rollupFile = new File(directory, ROLLUPS);
+			final File tmpFile    = new File(directory, ROLLUPS + ".tmp");
+
+			try {
+
+				try (final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+
+					dos.writeInt(ROLLUP_FORMAT);
+					dos.writeInt(rows);
+					dos.writeLong(messageLength);
+					dos.writeLong(firstTimestamp);
+					dos.writeLong(lastTimestamp);
+
+					for (final Rollup rollup : rollups) {
+
+						dos.writeInt(rollup.buckets.size());
+
+						for (final Map.Entry<Long, Map<Cell, int[]>> bucket : rollup.buckets.entrySet()) {
+
+							dos.writeLong(bucket.getKey());
+							dos.writeInt(bucket.getValue().size());
+
+							for (final Map.Entry<Cell, int[]> entry : bucket.getValue().entrySet()) {
+
+								dos.writeInt(entry.getKey().action);
+								dos.writeInt(entry.getKey().subject);
+								dos.writeInt(entry.getValue()[0]);
+							}
+						}
+					}
+				}
+
+				Files.move(tmpFile.toPath(), rollupFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+				savedRows = rows;
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to save rollups of log event partition {}: {}", directory.getName(), ioex.getMessage());
+			}
+		}
+
+		private int getId(final String value) {
+
+			if (value == null) {
+				return NULL_ID;
+			}
+
+			final Integer id = ids.get(value);
+			if (id != null) {
+
+				return id;
+			}
+
+			return UNKNOWN_ID;
+		}
+
+		private int getOrCreateId(final String value) throws IOException {
+
+			int id = getId(value);
+
+			if (id == UNKNOWN_ID) {
+
+				final byte[] data = value.getBytes(StandardCharsets.UTF_8);
+
+				dictionary.writeInt(data.length);
+				dictionary.write(data);
+
+				id = strings.size();
+
+				ids.put(value, id);
+				strings.add(value);
+			}
+
+			return id;
+		}
+
+		private long writeMessage(final String message) throws IOException {
+
+			if (message == null) {
+				return NULL_OFFSET;
+			}
+
+			final byte[] data   = message.getBytes(StandardCharsets.UTF_8);
+			final long position = messageLength;
+
+			messages.writeInt(data.length);
+			messages.write(data);
+
+			messageLength += 4 + data.length;
+
+			return position;
+		}
+
+		private String readMessage(final RandomAccessFile input, final long position) throws IOException {
+
+			if (position < 0L) {
+				return null;
+			}
+
+			input.seek(position);
+
+			final byte[] data = new byte[input.readInt()];
+
+			input.readFully(data);
+
+			return new String(data, StandardCharsets.UTF_8);
+		}
+
+		private String getString(final int id) {
+			return id >= 0 ? strings.get(id) : null;
+		}
+
+		private boolean matches(final int filterId, final int id) {
+			return filterId == NULL_ID || filterId == id;
+		}
+
+		private DataInputStream[] openColumns(final int firstRow) throws IOException {
+
+			final DataInputStream[] inputs = new DataInputStream[COLUMNS.length];
+
+			for (int i=0; i<COLUMNS.length; i++) {
+
+				final File file = new File(directory, COLUMNS[i]);
+
+				file.createNewFile();
+
+				inputs[i] = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+				long remaining = firstRow * (long)WIDTHS[i];
+
+				while (remaining > 0) {
+
+					final long skipped = inputs[i].skip(remaining);
+					if (skipped <= 0) {
+
+						closeColumns(inputs);
+						throw new EOFException();
+					}
+
+					remaining -= skipped;
+				}
+			}
+
+			// messages are read separately
+			new File(directory, MESSAGES).createNewFile();
+
+			return inputs;
+		}
+
+		private void closeColumns(final DataInputStream[] inputs) {
+
+			for (final DataInputStream input : inputs) {
+
+				try { input.close(); } catch (IOException ignore) {}
+			}
+		}
+
+		private void truncate(final File file, final long length) throws IOException {
+
+			if (file.exists() && file.length() > length) {
+
+				logger.warn("Truncating {} in log event partition {} to {} bytes", file.getName(), directory.getName(), length);
+
+				try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+					raf.setLength(length);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Event counts per action and subject in buckets of a fixed size.
+	 */
+	private static class Rollup {
+
+		private final TreeMap<Long, Map<Cell, int[]>> buckets = new TreeMap<>();
+		private long resolution                               = 0L;
+
+		Rollup(final long resolution) {
+			this.resolution = resolution;
+		}
+
+		void add(final long timestamp, final Cell cell, final int count) {
+
+			buckets.computeIfAbsent(floor(timestamp, resolution), k -> new HashMap<>()).computeIfAbsent(cell, k -> new int[1])[0] += count;
+		}
+	}
+
+	private static class Cell {
+
+		private int action  = 0;
+		private int subject = 0;
+
+		Cell(final int action, final int subject) {
+
+			this.action  = action;
+			this.subject = subject;
+		}
+
+		@Override
+		public int hashCode() {
+			return action * 31 + subject;
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+
+			if (other instanceof Cell) {
+
+				final Cell cell = (Cell)other;
+
+				return action == cell.action && subject == cell.subject;
+			}
+
+			return false;
+		}
+	}
+}
@@ -18,14 +18,16 @@
  */
 package org.structr.rest.resource;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -58,16 +60,18 @@ import org.structr.core.GraphObjectMap;
 import org.structr.core.Result;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.GenericProperty;
 import org.structr.core.property.ISO8601DateProperty;
 import org.structr.core.property.IntProperty;
 import org.structr.core.property.Property;
 import org.structr.core.property.PropertyKey;
-import org.structr.core.property.PropertyMap;
 import org.structr.core.property.StringProperty;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalMethodException;
+import org.structr.rest.logging.LogEventStore;
+import org.structr.rest.logging.LogEventStore.Event;
 import org.structr.rest.logging.entity.LogEvent;
 
 /**
@@ -78,6 +82,7 @@ import org.structr.rest.logging.entity.LogEvent;
 public class LogResource extends Resource {
 
 	private static final Logger logger                          = LoggerFactory.getLogger(LogResource.class.getName());
+	private static final LogEventStore store                    = LogEventStore.getInstance();
 	private static final Pattern RangeQueryPattern              = Pattern.compile("\\[(.+) TO (.+)\\]");
 
 	private static final String SUBJECTS                        = "/s/";
@@ -151,50 +156,42 @@ public class LogResource extends Resource {
 
 			if (StringUtils.isNotEmpty(subjectId) && StringUtils.isNotEmpty(objectId)) {
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.and(LogEvent.subjectProperty, subjectId)
-					.and(LogEvent.objectProperty, objectId)
-					.and(LogEvent.actionProperty, logState.logAction)
-					.andRange(LogEvent.timestampProperty, new Date(logState.beginTimestamp()), new Date(logState.endTimestamp()))
-					.getAsList()
-				);
+				processData(logState, store.query(logState.rangeStart(), logState.rangeEnd(), logState.logAction, subjectId, objectId));
 
 			} else if (StringUtils.isNotEmpty(subjectId) && StringUtils.isEmpty(objectId)) {
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.and(LogEvent.subjectProperty, subjectId)
-					.and(LogEvent.actionProperty, logState.logAction)
-					.andRange(LogEvent.timestampProperty, new Date(logState.beginTimestamp()), new Date(logState.endTimestamp()))
-					.getAsList()
-				);
+				if (logState.useRollups()) {
+
+					processRollups(logState, subjectId);
+
+				} else {
+
+					processData(logState, store.query(logState.rangeStart(), logState.rangeEnd(), logState.logAction, subjectId, null));
+				}
 
 			} else if (StringUtils.isEmpty(subjectId) && StringUtils.isNotEmpty(objectId)) {
 
 				logState.inverse(true);
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.and(LogEvent.objectProperty, objectId)
-					.and(LogEvent.actionProperty, logState.logAction)
-					.andRange(LogEvent.timestampProperty, new Date(logState.beginTimestamp()), new Date(logState.endTimestamp()))
-					.getAsList()
-				);
+				processData(logState, store.query(logState.rangeStart(), logState.rangeEnd(), logState.logAction, null, objectId));
 
 			} else if (logState.doActionQuery()) {
 
-				processData(logState);
+				if (logState.useRollups()) {
+
+					processRollups(logState, null);
+
+				} else {
+
+					processData(logState);
+				}
 
 			} else {
 
 				// create overview of existing logs
 				logState.overview(true);
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.getAsList()
-				);
+				processOverview(logState);
 			}
 
 			if (logState.overview()) {
@@ -209,12 +206,12 @@ public class LogResource extends Resource {
 			} else if (logState.doHistogram()) {
 
 				// aggregate results
-				return histogram(logState);
+				return histogram(logState, logState.rollups() != null ? logState.rollups() : toHistogramCountMap(logState));
 
 			} else if (logState.doAggregate()) {
 
 				// aggregate results
-				return aggregate(logState);
+				return aggregate(logState, logState.rollups() != null ? logState.rollups() : toAggregatedCountMap(logState));
 
 			} else {
 
@@ -240,13 +237,8 @@ public class LogResource extends Resource {
 
 				final String filesPath = Settings.FilesPath.getValue();
 
-				try (final Context context  = new Context(1000)) {
-
-					collectFilesAndStore(context, new File(filesPath + SUBJECTS).toPath(), 0);
-
-				} catch (FrameworkException fex) {
-					logger.warn("", fex);
-				}
+				collectFilesAndStore(new File(filesPath + SUBJECTS).toPath(), 0);
+				migrateLogEvents();
 
 				return new RestMethodResult(200);
 			}
@@ -258,24 +250,26 @@ public class LogResource extends Resource {
 
 			if (subjectId != null && objectId != null && action != null) {
 
-				final App app  = StructrApp.getInstance(securityContext);
-				LogEvent event = null;
+				final GraphObjectMap event = new GraphObjectMap();
+				final Date timestamp       = new Date();
 
-				try (final Tx tx = app.tx()) {
+				// the store is not transactional, so a rolled back request must not log anything
+				TransactionCommand.afterCommit(() -> {
 
-					final PropertyMap properties = new PropertyMap();
-					properties.put(LogEvent.timestampProperty,           new Date());
-					properties.put(LogEvent.actionProperty,              action);
-					properties.put(LogEvent.subjectProperty,             subjectId);
-					properties.put(LogEvent.objectProperty,              objectId);
-					properties.put(LogEvent.messageProperty,             message);
-					properties.put(LogEvent.visibleToPublicUsers,        true);
-					properties.put(LogEvent.visibleToAuthenticatedUsers, true);
+					try {
 
-					event = app.create(LogEvent.class, properties);
+						store.add(new Event(timestamp.getTime(), action, subjectId, objectId, message));
 
-					tx.success();
-				}
+					} catch (IOException ioex) {
+						logger.warn("Unable to store log event: {}", ioex.getMessage());
+					}
+				});
+
+				event.put(timestampProperty, timestamp);
+				event.put(actionProperty,    action);
+				event.put(subjectProperty,   subjectId);
+				event.put(objectProperty,    objectId);
+				event.put(messageProperty,   message);
 
 				final RestMethodResult result = new RestMethodResult(201);
 				result.addContent(event);
@@ -337,7 +331,7 @@ public class LogResource extends Resource {
 	}
 
 	// ----- private methods -----
-	private void collectFilesAndStore(final Context context, final Path dir, final int level) throws FrameworkException {
+	private void collectFilesAndStore(final Path dir, final int level) {
 
 		if (level == 1) {
 			logger.info("Path {}", dir);
@@ -349,14 +343,11 @@ public class LogResource extends Resource {
 
 				if (Files.isDirectory(p)) {
 
-					collectFilesAndStore(context, p, level+1);
+					collectFilesAndStore(p, level+1);
 
 				} else {
 
-					context.update(storeLogEntry(p));
-
-					// update object count and commit
-					context.commit(true);
+					storeLogEntry(p);
 				}
 
 				Files.delete(p);
@@ -368,17 +359,58 @@ public class LogResource extends Resource {
 		}
 	}
 
+	/**
+	 * Moves log events that were stored as nodes into the log event store.
+	 */
+	private void migrateLogEvents() throws FrameworkException {
+
+		final App app = StructrApp.getInstance(securityContext);
+		int total     = 0;
+
+		while (true) {
+
+			try (final Tx tx = app.tx()) {
+
+				final List<LogEvent> nodes = app.nodeQuery(LogEvent.class).pageSize(1000).page(1).getAsList();
+				final List<Event> events   = new ArrayList<>();
+
+				if (nodes.isEmpty()) {
+					break;
+				}
+
+				for (final LogEvent node : nodes) {
+
+					events.add(new Event(node.getTimestamp(), node.getAction(), node.getSubjectId(), node.getObjectId(), node.getMessage()));
+					app.delete(node);
+				}
+
+				// store first, a failed commit leads to duplicates instead of lost events
+				store.add(events);
+
+				tx.success();
+
+				total += nodes.size();
+
+			} catch (IOException ioex) {
+
+				// nodes are kept, the transaction is rolled back
+				throw new FrameworkException(500, "Unable to store log events: " + ioex.getMessage());
+			}
+		}
+
+		if (total > 0) {
+			logger.info("Moved {} log event nodes to the log event store", total);
+		}
+	}
+
 	private void processData(final LogState state) throws FrameworkException {
 
 		if (state.doCorrelate()) {
 
 			// get the basic correlation set (pds_click in the test case)
-			final List<LogEvent> correlationResult = StructrApp.getInstance(securityContext)
-				.nodeQuery(LogEvent.class)
-				.and(LogEvent.actionProperty, state.correlationAction)
-				.getAsList();
+			final List<Event> correlationResult = store.query(null, null, state.correlationAction, null, null);
 
-			for (final LogEvent entry : correlationResult) {
+			for (final Event entry : correlationResult) {
 
 				final String pathSubjectId = state.inverse() ? entry.getObjectId() : entry.getSubjectId();
 				final String pathObjectId  = state.inverse() ? entry.getSubjectId() : entry.getObjectId();
@@ -402,23 +434,12 @@ public class LogResource extends Resource {
 
 		logger.debug("No. of correlations: {}", state.getCorrelations().entrySet().size());
 
-		final List<LogEvent> result = StructrApp.getInstance(securityContext).nodeQuery(LogEvent.class)
-			.and(LogEvent.actionProperty, state.logAction)
-			.andRange(LogEvent.timestampProperty, new Date(state.beginTimestamp()), new Date(state.endTimestamp()))
-			.getAsList();
-
-		processData(state, result);
+		processData(state, store.query(state.rangeStart(), state.rangeEnd(), state.logAction, null, null));
 	}
 
-	private void processData(final LogState state, final Iterable<LogEvent> result) throws FrameworkException {
+	private void processData(final LogState state, final Iterable<Event> result) throws FrameworkException {
 
-		int count = 0;
-
-		for (final LogEvent event : result) {
-
-			if ((++count % 100000) == 0) {
-				System.out.println(count);
-			}
+		for (final Event event : result) {
 
 			final String pathSubjectId = state.inverse() ? event.getObjectId() : event.getSubjectId();
 			final String pathObjectId  = state.inverse() ? event.getSubjectId() : event.getObjectId();
@@ -466,44 +487,94 @@ public class LogResource extends Resource {
 		}
 	}
 
-	private int storeLogEntry(final Path path) throws IOException, FrameworkException {
+	private void processOverview(final LogState state) {
+
+		store.visit(null, null, LogEventStore.DAY, null, null, (bucket, action, subject, count) -> {
+
+			state.countAction(action != null ? action : "null", count);
+		});
+
+		state.beginTimestamp(store.getFirstTimestamp());
+		state.endTimestamp(store.getLastTimestamp());
+	}
+
+	private void processRollups(final LogState state, final String subjectId) {
+
+		final TreeMap<Long, Map<String, Object>> countMap = new TreeMap<>();
+		final String dateFormat                           = state.aggregate();
+		final long resolution                             = LogEventStore.getResolution(findInterval(dateFormat), alignDateOnFormat(dateFormat, System.currentTimeMillis()));
+
+		store.visit(state.rangeStart(), state.rangeEnd(), resolution, state.logAction, subjectId, (bucket, action, subject, count) -> {
+
+			// determine first and last bucket
+			if (bucket <= state.beginTimestamp()) {
+				state.beginTimestamp(bucket);
+			}
+
+			if (bucket >= state.endTimestamp()) {
+				state.endTimestamp(bucket);
+			}
+
+			increment(countMap.computeIfAbsent(bucket, k -> new LinkedHashMap<>()), totalProperty.jsonName(), count);
+		});
+
+		state.rollups(countMap);
+	}
+
+	private void increment(final Map<String, Object> obj, final String key, final int value) {
+
+		final Integer count = (Integer) obj.get(key);
+		if (count == null) {
+
+			obj.put(key, value);
+
+		} else {
+
+			obj.put(key, count + value);
+		}
+	}
+
+	private int storeLogEntry(final Path path) throws IOException {
 
-		final App app          = StructrApp.getInstance(securityContext);
 		final String fileName  = path.getFileName().toString();
 		int count              = 0;
 
 		if (fileName.length() == 64) {
 
-			final String subjectId = fileName.substring(0, 32);
-			final String objectId  = fileName.substring(32, 64);
+			final String subjectId   = fileName.substring(0, 32);
+			final String objectId    = fileName.substring(32, 64);
+			final List<Event> events = new ArrayList<>();
+
+			try (final BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
 
-			for (final String line : Files.readAllLines(path, Charset.forName("utf-8"))) {
+				String line = null;
 
-				final int pos1               = line.indexOf(",", 14);
+				while ((line = reader.readLine()) != null) {
 
-				final String part0           = line.substring(0, 13);
-				final String part1           = line.substring(14, pos1);
-				final String part2           = line.substring(pos1 + 1);
+					final int pos1       = line.indexOf(",", 14);
 
-				final long timestamp         = Long.valueOf(part0);
-				final String action          = part1;
-				final String message         = part2;
+					final String part0   = line.substring(0, 13);
+					final String part1   = line.substring(14, pos1);
+					final String part2   = line.substring(pos1 + 1);
 
-				final PropertyMap properties = new PropertyMap();
+					final long timestamp = Long.valueOf(part0);
+					final String action  = part1;
+					final String message = part2;
 
-				properties.put(LogEvent.messageProperty,             message);
-				properties.put(LogEvent.actionProperty,              action);
-				properties.put(LogEvent.subjectProperty,             subjectId);
-				properties.put(LogEvent.objectProperty,              objectId);
-				properties.put(LogEvent.timestampProperty,           new Date(timestamp));
-				properties.put(LogEvent.visibleToPublicUsers,        true);
-				properties.put(LogEvent.visibleToAuthenticatedUsers, true);
+					events.add(new Event(timestamp, action, subjectId, objectId, message));
 
-				app.create(LogEvent.class, properties);
+					if (events.size() >= 10000) {
 
-				count++;
+						store.add(events);
+						events.clear();
+					}
+
+					count++;
+				}
 			}
 
+			store.add(events);
+
 		} else {
 
 			System.out.println("Skipping entry " + fileName);
@@ -528,7 +599,7 @@ public class LogResource extends Resource {
 		return buf.toString();
 	}
 
-	private Result aggregate(final LogState state) throws FrameworkException {
+	private Result aggregate(final LogState state, final TreeMap<Long, Map<String, Object>> countMap) throws FrameworkException {
 
 		// sort entries before aggregation
 		state.sortEntries();
@@ -538,7 +609,6 @@ public class LogResource extends Resource {
 		final GraphObjectMap result                       = new GraphObjectMap();
 		final long interval                               = findInterval(state.aggregate());
 		final long start                                  = alignDateOnFormat(state.aggregate(), startTimestamp);
-		final TreeMap<Long, Map<String, Object>> countMap = toAggregatedCountMap(state);
 		final Set<String> countProperties                 = getCountProperties(countMap);
 
 		for (long current = start; current <= endTimestamp; current += interval) {
@@ -579,7 +649,7 @@ public class LogResource extends Resource {
 		return new Result(result, false);
 	}
 
-	private Result histogram(final LogState state) throws FrameworkException {
+	private Result histogram(final LogState state, final TreeMap<Long, Map<String, Object>> countMap) throws FrameworkException {
 
 		// sort entries before creating the histogram
 		state.sortEntries();
@@ -590,7 +660,6 @@ public class LogResource extends Resource {
 		final GraphObjectMap result = new GraphObjectMap();
 		final long interval = findInterval(dateFormat);
 		final long start = alignDateOnFormat(dateFormat, startTimestamp);
-		final TreeMap<Long, Map<String, Object>> countMap = toHistogramCountMap(state);
 		final Set<String> countProperties = getCountProperties(countMap);
 
 		for (long current = start; current <= endTimestamp; current += interval) {
@@ -727,8 +796,7 @@ public class LogResource extends Resource {
 
 	private TreeMap<Long, Map<String, Object>> toHistogramCountMap(final LogState state) throws FrameworkException {
 
-		final Pattern pattern = Pattern.compile(state.histogram());
-		final Matcher matcher = pattern.matcher("");
+		final Matcher matcher = state.histogramPattern().matcher("");
 		final TreeMap<Long, Map<String, Object>> countMap = new TreeMap<>();
 
 		for (final Map<String, Object> entry : state.entries()) {
@@ -777,9 +845,9 @@ public class LogResource extends Resource {
 
 		int multiplier = 1;
 
-		if (state.multiplier != null) {
+		if (state.multiplierPattern != null) {
 
-			final Matcher matcher = Pattern.compile(state.multiplier).matcher(message);
+			final Matcher matcher = state.multiplierPattern.matcher(message);
 
 			if (matcher.matches()) {
 
@@ -842,22 +910,24 @@ public class LogResource extends Resource {
 
 		private final Map<String, Pattern> aggregationPatterns       = new HashMap<>();
 		private final List<Map<String, Object>> entries              = new LinkedList<>();
-		private final Map<String, LinkedList<LogEvent>> correlations = new ConcurrentHashMap<>();
+		private final Map<String, LinkedList<Event>> correlations    = new ConcurrentHashMap<>();
 		private final Map<String, Integer> actions                   = new HashMap<>();
 		private long beginTimestamp                                  = Long.MAX_VALUE;
 		private long endTimestamp                                    = 0L;
 		private String logAction                                     = null;
 		private String aggregate                                     = null;
 		private String histogram                                     = null;
-		private String multiplier                                    = null;
+		private Pattern multiplierPattern                            = null;
+		private Pattern histogramPattern                             = null;
 		private String correlate                                     = null;
 		private String correlationAction                             = null;
 		private String correlationOp                                 = null;
 		private Pattern correlationPattern                           = null;
-		private String[] filters                                     = null;
+		private Pattern[] filters                                    = null;
 		private boolean inverse                                      = false;
 		private boolean overview                                     = false;
 		private Range range                                          = null;
+		private TreeMap<Long, Map<String, Object>> rollups           = null;
 		private int actionCount                                      = 0;
 		private boolean doCorrelate                                  = false;
 
@@ -869,10 +939,19 @@ public class LogResource extends Resource {
 			this.aggregate  = request.getParameter("aggregate");
 			this.histogram  = request.getParameter("histogram");
 			this.correlate  = request.getParameter("correlate");
-			this.multiplier = request.getParameter("multiplier");
 			this.filters    = getFilterPatterns(request);
 			this.range      = getRange(request);
 
+			// compile patterns once per request
+			final String multiplier = request.getParameter("multiplier");
+			if (multiplier != null) {
+				multiplierPattern = Pattern.compile(multiplier);
+			}
+
+			if (StringUtils.isNotBlank(histogram)) {
+				histogramPattern = Pattern.compile(histogram);
+			}
+
 			if (StringUtils.isNotBlank(correlate)) {
 
 				final String[] parts = correlate.split(CORRELATION_SEPARATOR);
@@ -902,11 +981,11 @@ public class LogResource extends Resource {
 			entries.add(entry);
 		}
 
-		public void addCorrelationEntry(final String key, final LogEvent event) {
+		public void addCorrelationEntry(final String key, final Event event) {
 
 			logger.debug("No. of correllation entry lists: {}, adding action: {} {}", new Object[]{correlations.keySet().size(), key, event.getMessage()});
 
-			LinkedList<LogEvent> existingEventList = correlations.get(key);
+			LinkedList<Event> existingEventList = correlations.get(key);
 
 			if (existingEventList == null) {
 				existingEventList = new LinkedList<>();
@@ -917,7 +996,7 @@ public class LogResource extends Resource {
 			correlations.put(key, existingEventList);
 		}
 
-		public Map<String, LinkedList<LogEvent>> getCorrelations() {
+		public Map<String, LinkedList<Event>> getCorrelations() {
 			return correlations;
 		}
 
@@ -930,18 +1009,22 @@ public class LogResource extends Resource {
 		}
 
 		public void countAction(final String action) {
+			countAction(action, 1);
+		}
+
+		public void countAction(final String action, final int count) {
 
 			Integer actionCount = actions.get(action);
 			if (actionCount == null) {
 
-				actions.put(action, 1);
+				actions.put(action, count);
 
 			} else {
 
-				actions.put(action, actionCount + 1);
+				actions.put(action, actionCount + count);
 			}
 
-			this.actionCount++;
+			this.actionCount += count;
 		}
 
 		public int actionCount() {
@@ -1000,6 +1083,26 @@ public class LogResource extends Resource {
 			return histogram;
 		}
 
+		public Pattern histogramPattern() {
+			return histogramPattern;
+		}
+
+		public Long rangeStart() {
+			return range != null ? range.start : null;
+		}
+
+		public Long rangeEnd() {
+			return range != null ? range.end : null;
+		}
+
+		public void rollups(final TreeMap<Long, Map<String, Object>> rollups) {
+			this.rollups = rollups;
+		}
+
+		public TreeMap<Long, Map<String, Object>> rollups() {
+			return rollups;
+		}
+
 		public String aggregate() {
 			return aggregate;
 		}
@@ -1012,9 +1115,9 @@ public class LogResource extends Resource {
 
 			boolean passes = true;
 
-			for (final String filter : filters) {
+			for (final Pattern filter : filters) {
 
-				passes &= Pattern.compile(filter).matcher(message).matches();
+				passes &= filter.matcher(message).matches();
 
 			}
 
@@ -1029,7 +1132,7 @@ public class LogResource extends Resource {
 				return true;
 			}
 
-			LinkedList<LogEvent> correlationEntries;
+			LinkedList<Event> correlationEntries;
 
 			if (correlationOp != null && correlationPattern != null) {
 
@@ -1051,7 +1154,7 @@ public class LogResource extends Resource {
 
 							if (correlationEntries != null) {
 
-								for (LogEvent correlationEntry : correlationEntries) {
+								for (Event correlationEntry : correlationEntries) {
 
 									if (correlationEntry.getSubjectId().equals(pathSubjectId)) {
 
@@ -1071,7 +1174,7 @@ public class LogResource extends Resource {
 
 							if (correlationEntries != null) {
 
-								for (LogEvent correlationEntry : correlationEntries) {
+								for (Event correlationEntry : correlationEntries) {
 
 									if (correlationEntry.getObjectId().equals(pathObjectId)) {
 
@@ -1136,6 +1239,15 @@ public class LogResource extends Resource {
 			return StringUtils.isNotBlank(logAction);
 		}
 
+		/**
+		 * The log event store only pre-aggregates event counts per action
+		 * and subject, so aggregations can use them only if no message
+		 * filters or patterns are involved. Everything else scans the events.
+		 */
+		public boolean useRollups() throws FrameworkException {
+			return doAggregate() && !doHistogram() && !doCorrelate() && filters == null && aggregationPatterns.isEmpty();
+		}
+
 		public boolean includeFile(final File file) {
 			return range == null || range.contains(file.lastModified());
 		}
@@ -1195,11 +1307,19 @@ public class LogResource extends Resource {
 			return patterns;
 		}
 
-		private String[] getFilterPatterns(final HttpServletRequest request) {
+		private Pattern[] getFilterPatterns(final HttpServletRequest request) {
 
 			final String filterString = request.getParameter("filters");
 			if (StringUtils.isNotBlank(filterString)) {
-				return filterString.split(CORRELATION_SEPARATOR);
+
+				final String[] parts     = filterString.split(CORRELATION_SEPARATOR);
+				final Pattern[] patterns = new Pattern[parts.length];
+
+				for (int i=0; i<parts.length; i++) {
+					patterns[i] = Pattern.compile(parts[i]);
+				}
+
+				return patterns;
 			}
 
 			return null;
@@ -1241,53 +1361,4 @@ public class LogResource extends Resource {
 			return timestamp1.compareTo(timestamp2);
 		}
 	}
-
-	private static class Context implements AutoCloseable {
-
-		private final App app   = StructrApp.getInstance();
-		private Tx tx           = null;
-		private int total       = 0;
-		private int count       = 0;
-		private int commitCount = 0;
-
-		public Context(final int commitCount) throws FrameworkException {
-
-			this.commitCount = commitCount;
-			this.tx          = app.tx(false, false, false);
-		}
-
-		public void commit(final boolean intermediate) throws FrameworkException {
-
-			if (count > commitCount) {
-
-				logger.info("Committing transaction after {} objects..", total);
-
-				tx.success();
-				tx.close();
-
-				if (intermediate) {
-
-					tx = app.tx(false, false, false);
-				}
-
-				count = 0;
-			}
-		}
-
-		public int getTotal() {
-			return total;
-		}
-
-		public void update(final int count) {
-			this.count += count;
-			this.total += count;
-		}
-
-		@Override
-		public void close() throws FrameworkException {
-
-			tx.success();
-			tx.close();
-		}
-	}
 }
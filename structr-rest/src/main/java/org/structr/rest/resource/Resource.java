@@ -28,6 +28,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.CaseHelper;
 import org.structr.common.GraphObjectComparator;
 import org.structr.common.Permission;
@@ -234,6 +235,44 @@ public abstract class Resource {
 		}
 	}
 
+	/**
+	 * Restricts the given query to the best matches of the fulltext query
+	 * in the request, if any. At most IndexingMaxResults objects of the
+	 * given type are considered, so other search attributes of the query
+	 * are applied to these objects only.
+	 *
+	 * @param request
+	 * @param type
+	 * @param query
+	 * @return the fulltext scores of the matching objects, in descending order, or null
+	 * @throws FrameworkException
+	 */
+	protected Map<String, Double> extractFulltextSearch(final HttpServletRequest request, final Class type, final Query query) throws FrameworkException {
+
+		if (request != null) {
+
+			final String fulltext = request.getParameter(JsonRestServlet.REQUEST_PARAMETER_FULLTEXT_SEARCH);
+			if (StringUtils.isNotBlank(fulltext)) {
+
+				final Map<String, Double> scores = StructrApp.getInstance(securityContext).getFulltextIndexer().search(fulltext, type, Settings.IndexingMaxResults.getValue());
+				if (!scores.isEmpty()) {
+
+					query.and();
+
+					for (final String uuid : scores.keySet()) {
+						query.or(GraphObject.id, uuid);
+					}
+
+					query.parent();
+				}
+
+				return scores;
+			}
+		}
+
+		return null;
+	}
+
 	protected void extractDistanceSearch(final HttpServletRequest request, final Query query) {
 
 		if (request != null) {
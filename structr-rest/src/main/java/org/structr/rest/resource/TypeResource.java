@@ -132,6 +132,26 @@ public class TypeResource extends SortableResource {
 
 			collectSearchAttributes(query);
 
+			final Map<String, Double> fulltextScores = extractFulltextSearch(request, entityClass, query);
+			if (fulltextScores != null && fulltextScores.isEmpty()) {
+
+				return new Result(Collections.emptyList(), 0, isCollectionResource(), isPrimitiveArray());
+			}
+
+			// fulltext matches are ordered by relevance unless a sort key is given
+			if (fulltextScores != null && sortKey == null && virtualType == null) {
+
+				final List<GraphObject> results = query
+					.includeDeletedAndHidden(includeDeletedAndHidden)
+					.publicOnly(publicOnly)
+					.disableSorting()
+					.getAsList();
+
+				results.sort((a, b) -> Double.compare(fulltextScores.get(b.getUuid()), fulltextScores.get(a.getUuid())));
+
+				return PagingHelper.subResult(new Result(results, results.size(), isCollectionResource(), isPrimitiveArray()), pageSize, page);
+			}
+
 			// default sort key & order
 			if (actualSortKey == null) {
 
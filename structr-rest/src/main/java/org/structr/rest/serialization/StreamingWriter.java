@@ -22,9 +22,11 @@ import java.io.IOException;
 import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -33,6 +35,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.NotFoundException;
 import org.structr.api.config.Settings;
 import org.structr.common.PropertyView;
 import org.structr.common.QueryRange;
@@ -45,6 +48,7 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.converter.PropertyConverter;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.function.Functions;
+import org.structr.core.graph.Factory;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 
@@ -67,7 +71,7 @@ public abstract class StreamingWriter {
 
 	private final Map<String, Serializer> serializerCache = new LinkedHashMap<>();
 	private final Map<String, Serializer> serializers     = new LinkedHashMap<>();
-	private final Serializer<GraphObject> root            = new RootSerializer();
+	private final RootSerializer root                     = new RootSerializer();
 	private final Set<String> nonSerializerClasses        = new LinkedHashSet<>();
 	private final Set<Integer> visitedObjects             = ConcurrentHashMap.newKeySet();
 	private final DecimalFormat decimalFormat             = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
@@ -255,6 +259,9 @@ public abstract class StreamingWriter {
 
 					writer.name(resultKeyName).beginArray();
 
+					// load related objects of the whole result page at once
+					root.prefetch(results, localPropertyView, 0);
+
 					// serialize list of results
 					for (GraphObject graphObject : results) {
 
@@ -522,6 +529,49 @@ public abstract class StreamingWriter {
 				visitedObjects.remove(hashCode);
 			}
 		}
+
+		/**
+		 * Loads the relationships of all relation properties that will be
+		 * serialized for the given objects in one batch per property.
+		 *
+		 * @param objects
+		 * @param localPropertyView
+		 * @param depth
+		 */
+		public void prefetch(final Iterable<? extends GraphObject> objects, final String localPropertyView, final int depth) {
+
+			// nested objects in the Ui view are rendered as (id, type, name) only
+			if (depth > outputNestingDepth || (compactNestedProperties && depth > 0 && PropertyView.Ui.equals(localPropertyView))) {
+				return;
+			}
+
+			final Set<PropertyKey> keys = new LinkedHashSet<>();
+			final Set<Class> types      = new LinkedHashSet<>();
+
+			for (final GraphObject obj : objects) {
+
+				if (obj != null && types.add(obj.getClass())) {
+
+					final Iterable<PropertyKey> objectKeys = obj.getPropertyKeys(localPropertyView);
+					if (objectKeys != null) {
+
+						for (final PropertyKey key : objectKeys) {
+							keys.add(key);
+						}
+					}
+				}
+			}
+
+			try {
+
+				Factory.prefetchRelationships(objects, keys);
+
+			} catch (NotFoundException nfex) {
+
+				// a node was deleted concurrently, relationships will be loaded on demand
+				logger.debug("Unable to prefetch relationships for view {}: {}", localPropertyView, nfex.getMessage());
+			}
+		}
 	}
 
 	public class IterableSerializer extends Serializer<Iterable> {
@@ -534,6 +584,20 @@ public abstract class StreamingWriter {
 			// prevent endless recursion by pruning at depth n
 			if (depth <= outputNestingDepth) {
 
+				if (value instanceof Collection) {
+
+					final List<GraphObject> graphObjects = new LinkedList<>();
+
+					for (final Object o : value) {
+
+						if (o instanceof GraphObject) {
+							graphObjects.add((GraphObject)o);
+						}
+					}
+
+					root.prefetch(graphObjects, localPropertyView, depth);
+				}
+
 				for (Object o : value) {
 
 					serializeRoot(writer, o, localPropertyView, depth);
@@ -71,6 +71,7 @@ import org.structr.api.service.RunnableService;
 import org.structr.api.service.StructrServices;
 import org.structr.core.Services;
 import org.structr.rest.ResourceProvider;
+import org.structr.rest.logging.LogEventStore;
 import org.tuckey.web.filters.urlrewrite.UrlRewriteFilter;
 
 /**
@@ -480,6 +481,9 @@ public class HttpService implements RunnableService {
 			}
 		}
 
+		// no more requests can log events now
+		LogEventStore.getInstance().close();
+
 		// send lifecycle event that the server has been stopped
 		sendLifecycleEvent(LifecycleEvent.Stopped);
 	}
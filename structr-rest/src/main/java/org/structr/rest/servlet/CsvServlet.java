@@ -35,16 +35,26 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.RetryException;
+import org.structr.api.config.Settings;
 import org.structr.common.PagingHelper;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -93,6 +103,10 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 	public static final char DEFAULT_FIELD_SEPARATOR_COLLECTION_CONTENTS = ',';
 	public static final char DEFAULT_QUOTE_CHARACTER_COLLECTION_CONTENTS = '"';
 
+	private static final List<JsonInput> END_OF_INPUT    = new ArrayList<>();
+	private static final AtomicInteger writerThreadCount = new AtomicInteger();
+	private static final int MAX_RETRIES                 = 5;
+
 
 	private static final String REMOVE_LINE_BREAK_PARAM = "nolinebreaks";
 	private static final String WRITE_BOM = "bom";
@@ -290,6 +304,7 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 		final int periodicCommitInterval          = (periodicCommitIntervalHeader == null) ? DEFAULT_PERIODIC_COMMIT_INTERVAL : Integer.parseInt(periodicCommitIntervalHeader);
 		final String rangeHeader                  = request.getHeader(DEFAULT_RANGE_HEADER_NAME);
 		final List<RestMethodResult> results      = new LinkedList<>();
+		long importedCount                        = -1L;
 
 		final Authenticator authenticator;
 		final Resource resource;
@@ -350,42 +365,7 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 
 						if (doPeriodicCommit) {
 
-							final List<JsonInput> list = new ArrayList<>();
-							csv.iterator().forEachRemaining(list::add);
-							final List<List<JsonInput>> chunkedCsv = ListUtils.partition(list, periodicCommitInterval);
-
-							final int totalChunkNo = chunkedCsv.size();
-							int currentChunkNo = 0;
-
-							for (final List<JsonInput> currentChunk : chunkedCsv) {
-
-								try (final Tx tx = app.tx()) {
-
-									currentChunkNo++;
-
-									for (final JsonInput propertySet : currentChunk) {
-
-										handleCsvPropertySet(results, resource, propertySet);
-
-									}
-
-									tx.success();
-
-									logger.info("CSV: Finished importing chunk " + currentChunkNo + " / " + totalChunkNo);
-
-									final Map<String, Object> chunkMsgData = new LinkedHashMap();
-									chunkMsgData.put("type",           "CSV_IMPORT_STATUS");
-									chunkMsgData.put("subtype",        "CHUNK");
-									chunkMsgData.put("currentChunkNo", currentChunkNo);
-									chunkMsgData.put("totalChunkNo",   totalChunkNo);
-									chunkMsgData.put("username",       username);
-									TransactionCommand.simpleBroadcastGenericMessage(chunkMsgData);
-
-								} catch (RetryException ddex) {
-									retry = true;
-								}
-
-							}
+							importedCount = importChunks(request, csv, periodicCommitInterval, username);
 
 						} else {
 
@@ -393,7 +373,7 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 
 								for (final JsonInput propertySet : csv) {
 
-									handleCsvPropertySet(results, resource, propertySet);
+									results.add(handleCsvPropertySet(resource, propertySet));
 								}
 
 								tx.success();
@@ -413,7 +393,7 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 
 							for (final JsonInput propertySet : csv) {
 
-								handleCsvPropertySet(results, resource, propertySet);
+								results.add(handleCsvPropertySet(resource, propertySet));
 							}
 
 						} catch (RetryException ddex) {
@@ -441,7 +421,12 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 				// isolate write output
 				try (final Tx tx = app.tx()) {
 
-					if (!results.isEmpty()) {
+					if (importedCount >= 0L) {
+
+						// the created objects of a chunked import are not kept in memory
+						new RestMethodResult(HttpServletResponse.SC_CREATED, "Imported " + importedCount + " objects").commitResponse(gson.get(), response);
+
+					} else if (!results.isEmpty()) {
 
 						final RestMethodResult result = results.get(0);
 						final int resultCount         = results.size();
@@ -547,11 +532,192 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 		return "csv";
 	}
 
-	private void handleCsvPropertySet (final List<RestMethodResult> results, final Resource resource, final JsonInput propertySet) throws FrameworkException {
+	/**
+	 * Imports the given CSV data in chunks of the given size, using a parse
+	 * stage on the calling thread (which owns the request reader) and one
+	 * or more writer threads that commit each chunk in its own transaction.
+	 *
+	 * The parsed chunks are handed over through a bounded queue so that the
+	 * parse stage blocks when the writers can not keep up, i.e. only a few
+	 * chunks of the input are held in memory at any time. Only the number
+	 * of imported rows is kept, not the created objects. Each writer uses
+	 * its own copy of the security context and the resource.
+	 *
+	 * @return the number of imported rows
+	 */
+	private long importChunks(final HttpServletRequest request, final Iterable<JsonInput> csv, final int chunkSize, final String username) throws FrameworkException {
+
+		final int writerCount                      = Math.max(1, Settings.CsvImportWriters.getValue());
+		final BlockingQueue<List<JsonInput>> queue = new ArrayBlockingQueue<>(Math.max(1, Settings.CsvImportQueueSize.getValue()));
+		final AtomicReference<Throwable> failure   = new AtomicReference<>();
+		final ExecutorService writers              = Executors.newFixedThreadPool(writerCount, new CsvWriterThreadFactory());
+		final List<Future<?>> futures              = new LinkedList<>();
+		final AtomicInteger chunkCount             = new AtomicInteger();
+		final AtomicLong rowCount                  = new AtomicLong();
+		final long startTime                       = System.currentTimeMillis();
+
+		for (int i=0; i<writerCount; i++) {
+
+			final SecurityContext writerContext = securityContext.fork();
+			final App writerApp                 = StructrApp.getInstance(writerContext);
+			final Resource writerResource;
+
+			try (final Tx tx = writerApp.tx()) {
+
+				writerResource = ResourceHelper.applyViewTransformation(request, writerContext, ResourceHelper.optimizeNestedResourceChain(writerContext, request, resourceMap, propertyView), propertyView);
+				tx.success();
+			}
+
+			futures.add(writers.submit(() -> {
+
+				while (true) {
+
+					final List<JsonInput> chunk = queue.take();
+					if (chunk == END_OF_INPUT) {
+						break;
+					}
+
+					// keep draining the queue after an error so the parse stage can not block forever
+					if (failure.get() != null) {
+						continue;
+					}
+
+					try {
+
+						writeChunk(writerApp, writerResource, chunk);
+						chunkFinished(chunkCount.incrementAndGet(), rowCount.addAndGet(chunk.size()), startTime, username);
+
+					} catch (Throwable t) {
+
+						failure.compareAndSet(null, t);
+					}
+				}
+
+				return null;
+			}));
+		}
 
 		try {
 
-			results.add(resource.doPost(convertPropertySetToMap(propertySet)));
+			List<JsonInput> chunk = new ArrayList<>(chunkSize);
+
+			for (final JsonInput propertySet : csv) {
+
+				if (failure.get() != null) {
+					break;
+				}
+
+				// lines that could not be parsed are reported by the iterator
+				if (propertySet != null) {
+					chunk.add(propertySet);
+				}
+
+				if (chunk.size() >= chunkSize) {
+
+					queue.put(chunk);
+					chunk = new ArrayList<>(chunkSize);
+				}
+			}
+
+			if (!chunk.isEmpty() && failure.get() == null) {
+				queue.put(chunk);
+			}
+
+			// one end marker for each writer
+			for (int i=0; i<writerCount; i++) {
+				queue.put(END_OF_INPUT);
+			}
+
+			for (final Future<?> future : futures) {
+				future.get();
+			}
+
+		} catch (InterruptedException | ExecutionException ex) {
+
+			failure.compareAndSet(null, ex);
+
+		} finally {
+
+			writers.shutdownNow();
+		}
+
+		final Throwable t = failure.get();
+		if (t instanceof FrameworkException) {
+
+			throw (FrameworkException)t;
+
+		} else if (t instanceof RuntimeException) {
+
+			throw (RuntimeException)t;
+
+		} else if (t != null) {
+
+			throw new FrameworkException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, t.getMessage());
+		}
+
+		return rowCount.get();
+	}
+
+	private void writeChunk(final App app, final Resource resource, final List<JsonInput> chunk) throws FrameworkException {
+
+		int retries = 0;
+
+		while (true) {
+
+			try (final Tx tx = app.tx()) {
+
+				for (final JsonInput propertySet : chunk) {
+
+					handleCsvPropertySet(resource, propertySet);
+				}
+
+				tx.success();
+
+				return;
+
+			} catch (RetryException rex) {
+
+				if (++retries > MAX_RETRIES) {
+					throw rex;
+				}
+
+				logger.info("CSV: Deadlock while importing chunk, retrying ({} / {})", retries, MAX_RETRIES);
+
+				try {
+
+					Thread.sleep(100 * retries);
+
+				} catch (InterruptedException iex) {
+					throw rex;
+				}
+
+			}
+		}
+	}
+
+	private void chunkFinished(final int chunkNo, final long rows, final long startTime, final String username) {
+
+		final DecimalFormat decimalFormat = new DecimalFormat("0.00", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+		final long duration               = Math.max(1, System.currentTimeMillis() - startTime);
+		final String rowsPerSecond        = decimalFormat.format(rows / (duration / 1000.0));
+
+		logger.info("CSV: Finished importing chunk {} (Rows overall: {} - Rows/s: {})", chunkNo, rows, rowsPerSecond);
+
+		final Map<String, Object> chunkMsgData = new LinkedHashMap();
+		chunkMsgData.put("type",           "CSV_IMPORT_STATUS");
+		chunkMsgData.put("subtype",        "CHUNK");
+		chunkMsgData.put("currentChunkNo", chunkNo);
+		chunkMsgData.put("rowsImported",   rows);
+		chunkMsgData.put("rowsPerSecond",  rowsPerSecond);
+		chunkMsgData.put("username",       username);
+		TransactionCommand.simpleBroadcastGenericMessage(chunkMsgData);
+	}
+
+	private RestMethodResult handleCsvPropertySet (final Resource resource, final JsonInput propertySet) throws FrameworkException {
+
+		try {
+
+			return resource.doPost(convertPropertySetToMap(propertySet));
 
 		} catch (FrameworkException fxe) {
 
@@ -722,4 +888,17 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 
 	}
 
+	private static class CsvWriterThreadFactory implements ThreadFactory {
+
+		@Override
+		public Thread newThread(final Runnable r) {
+
+			final Thread thread = new Thread(r, "CsvImportWriter" + writerThreadCount.incrementAndGet());
+
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+
 }
@@ -21,9 +21,12 @@ package org.structr.rest.servlet;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -36,7 +39,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.RetryException;
@@ -59,6 +61,7 @@ import org.structr.core.graph.NodeFactory;
 import org.structr.core.graph.Tx;
 import org.structr.core.graph.search.SearchCommand;
 import org.structr.core.property.PropertyKey;
+import org.structr.core.rest.StreamingJsonInput;
 import org.structr.rest.ResourceProvider;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.resource.Resource;
@@ -81,17 +84,24 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 	public static final int DEFAULT_VALUE_PAGE_SIZE                     = 20;
 	public static final String DEFAULT_VALUE_SORT_ORDER                 = "asc";
 	public static final String REQUEST_PARAMETER_LOOSE_SEARCH           = "loose";
+	public static final String REQUEST_PARAMETER_FULLTEXT_SEARCH        = "_fulltext";
 	public static final String REQUEST_PARAMETER_PAGE_NUMBER            = "page";
 	public static final String REQUEST_PARAMETER_PAGE_SIZE              = "pageSize";
 	public static final String REQUEST_PARAMETER_SORT_KEY               = "sort";
 	public static final String REQUEST_PARAMETER_SORT_ORDER             = "order";
 	public static final String REQUEST_PARAMTER_OUTPUT_DEPTH            = "outputNestingDepth";
+	public static final String STREAMING_INPUT_HEADER_NAME              = "X-JSON-Streaming-Input";
+	public static final String PERIODIC_COMMIT_HEADER_NAME              = "X-JSON-Periodic-Commit";
+	public static final String PERIODIC_COMMIT_INTERVAL_HEADER_NAME     = "X-JSON-Periodic-Commit-Interval";
+	public static final int DEFAULT_PERIODIC_COMMIT_INTERVAL            = 1000;
 	public static final Set<String> commonRequestParameters             = new LinkedHashSet<>();
 	private static final Logger logger                                  = LoggerFactory.getLogger(JsonRestServlet.class.getName());
+	private static final int MAX_RETRIES                                = 5;
 
 	static {
 
 		commonRequestParameters.add(REQUEST_PARAMETER_LOOSE_SEARCH);
+		commonRequestParameters.add(REQUEST_PARAMETER_FULLTEXT_SEARCH);
 		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_NUMBER);
 		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_SIZE);
 		commonRequestParameters.add(REQUEST_PARAMETER_SORT_KEY);
@@ -389,7 +399,14 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 	@Override
 	protected void doPost(final HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 
-		final List<RestMethodResult> results = new LinkedList<>();
+		final String periodicCommitHeader         = request.getHeader(PERIODIC_COMMIT_HEADER_NAME);
+		final boolean periodicCommit              = (periodicCommitHeader == null) ? false : Boolean.parseBoolean(periodicCommitHeader);
+		final String periodicCommitIntervalHeader = request.getHeader(PERIODIC_COMMIT_INTERVAL_HEADER_NAME);
+		final int periodicCommitInterval          = (periodicCommitIntervalHeader == null) ? DEFAULT_PERIODIC_COMMIT_INTERVAL : Integer.parseInt(periodicCommitIntervalHeader);
+		final String streamingInputHeader         = request.getHeader(STREAMING_INPUT_HEADER_NAME);
+		final boolean streamingInput              = periodicCommit || (streamingInputHeader == null ? false : Boolean.parseBoolean(streamingInputHeader));
+		final List<RestMethodResult> results      = new LinkedList<>();
+		long createdCount                         = -1L;
 		final SecurityContext securityContext;
 		final Authenticator authenticator;
 		final Resource resource;
@@ -404,7 +421,7 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 			response.setContentType("application/json; charset=utf-8");
 
 			// get reader before initalizing security context
-			final String input = IOUtils.toString(request.getReader());
+			final Reader input = request.getReader();
 
 			// isolate request authentication in a transaction
 			try (final Tx tx = StructrApp.getInstance().tx()) {
@@ -413,8 +430,7 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 				tx.success();
 			}
 
-			final App app              = StructrApp.getInstance(securityContext);
-			final IJsonInput jsonInput = cleanAndParseJsonString(app, input);
+			final App app = StructrApp.getInstance(securityContext);
 
 			if (securityContext != null) {
 
@@ -426,39 +442,54 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 					tx.success();
 				}
 
-				// isolate doPost
-				boolean retry = true;
-				while (retry) {
+				if (streamingInput && periodicCommit && resource.createPostTransaction()) {
 
-					if (resource.createPostTransaction()) {
+					// objects are created and committed in chunks while the input is being read
+					createdCount = doPostChunked(app, resource, new StreamingJsonInput(input), Math.max(1, periodicCommitInterval));
 
-						try (final Tx tx = app.tx()) {
+				} else if (streamingInput) {
 
-							for (JsonInput propertySet : jsonInput.getJsonInputs()) {
+					// objects are created while the input is being read
+					doPostStreaming(app, resource, new StreamingJsonInput(input), periodicCommit, results);
 
-								results.add(resource.doPost(convertPropertySetToMap(propertySet)));
-							}
+				} else {
 
-							tx.success();
-							retry = false;
+					final IJsonInput jsonInput = cleanAndParseJsonInput(input);
 
-						} catch (RetryException ddex) {
-							retry = true;
-						}
+					// isolate doPost
+					boolean retry = true;
+					while (retry) {
+
+						if (resource.createPostTransaction()) {
 
-					} else {
+							try (final Tx tx = app.tx()) {
 
-						try {
+								for (JsonInput propertySet : jsonInput.getJsonInputs()) {
+
+									results.add(resource.doPost(convertPropertySetToMap(propertySet)));
+								}
 
-							for (JsonInput propertySet : jsonInput.getJsonInputs()) {
+								tx.success();
+								retry = false;
 
-								results.add(resource.doPost(convertPropertySetToMap(propertySet)));
+							} catch (RetryException ddex) {
+								retry = true;
 							}
 
-							retry = false;
+						} else {
 
-						} catch (RetryException ddex) {
-							retry = true;
+							try {
+
+								for (JsonInput propertySet : jsonInput.getJsonInputs()) {
+
+									results.add(resource.doPost(convertPropertySetToMap(propertySet)));
+								}
+
+								retry = false;
+
+							} catch (RetryException ddex) {
+								retry = true;
+							}
 						}
 					}
 				}
@@ -469,7 +500,12 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 				// isolate write output
 				try (final Tx tx = app.tx()) {
 
-					if (!results.isEmpty()) {
+					if (createdCount >= 0L) {
+
+						// the created objects of a chunked POST are not kept in memory
+						new RestMethodResult(HttpServletResponse.SC_CREATED, "Created " + createdCount + " objects").commitResponse(gson.get(), response);
+
+					} else if (!results.isEmpty()) {
 
 						final RestMethodResult result = results.get(0);
 						final int resultCount         = results.size();
@@ -591,7 +627,7 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 			response.setContentType("application/json; charset=utf-8");
 
 			// get reader before initalizing security context
-			final String input = IOUtils.toString(request.getReader());
+			final Reader input = request.getReader();
 
 			// isolate request authentication in a transaction
 			try (final Tx tx = StructrApp.getInstance().tx()) {
@@ -601,7 +637,7 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 			}
 
 			final App app              = StructrApp.getInstance(securityContext);
-			final IJsonInput jsonInput = cleanAndParseJsonString(app, input);
+			final IJsonInput jsonInput = cleanAndParseJsonInput(input);
 
 			if (securityContext != null) {
 
@@ -714,38 +750,127 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 
 	// <editor-fold defaultstate="collapsed" desc="private methods">
 
-	private IJsonInput cleanAndParseJsonString(final App app, final String input) throws FrameworkException {
+	private IJsonInput cleanAndParseJsonInput(final Reader input) throws FrameworkException {
 
-		IJsonInput jsonInput = null;
+		final IJsonInput jsonInput = new JsonSingleInput();
 
-		// isolate input parsing (will include read and write operations)
-		try (final Tx tx = app.tx()) {
+		try {
 
-			jsonInput   = gson.get().fromJson(input, IJsonInput.class);
-			tx.success();
+			final StreamingJsonInput iterator = new StreamingJsonInput(input);
+
+			while (iterator.hasNext()) {
+
+				jsonInput.add(iterator.next());
+			}
 
 		} catch (JsonSyntaxException jsx) {
 			logger.warn("", jsx);
 			throw new FrameworkException(400, jsx.getMessage());
 		}
 
-		if (jsonInput == null) {
+		return jsonInput;
+	}
 
-			if (StringUtils.isBlank(input)) {
+	/**
+	 * Creates one object for each property set in the given input while it
+	 * is being read. All objects are created in a single transaction which
+	 * can not be retried since the input is consumed.
+	 */
+	private void doPostStreaming(final App app, final Resource resource, final Iterator<JsonInput> input, final boolean periodicCommit, final List<RestMethodResult> results) throws FrameworkException {
 
-				try (final Tx tx = app.tx()) {
-					jsonInput   = gson.get().fromJson("{}", IJsonInput.class);
-					tx.success();
+		if (!resource.createPostTransaction()) {
+
+			if (periodicCommit) {
+				logger.warn("Resource auto-creates POST transaction - can not commit periodically!");
+			}
+
+			while (input.hasNext()) {
+
+				results.add(resource.doPost(convertPropertySetToMap(input.next())));
+			}
+
+		} else {
+
+			try (final Tx tx = app.tx()) {
+
+				while (input.hasNext()) {
+
+					results.add(resource.doPost(convertPropertySetToMap(input.next())));
 				}
 
-			} else {
-				//throw new JsonParseException("Invalid or empty JSON string, must at least contain {} to be valid!");
-				jsonInput = new JsonSingleInput();
+				tx.success();
+
+			} catch (RetryException ddex) {
+				throw new FrameworkException(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Deadlock detected while processing streamed input, please retry.");
 			}
 		}
+	}
 
-		return jsonInput;
+	/**
+	 * Creates one object for each property set in the given input while it
+	 * is being read, and commits every chunk of the given size in its own
+	 * transaction. Only the number of created objects is kept.
+	 *
+	 * @return the number of created objects
+	 */
+	private long doPostChunked(final App app, final Resource resource, final Iterator<JsonInput> input, final int commitInterval) throws FrameworkException {
+
+		final List<JsonInput> chunk = new ArrayList<>();
+		long count                  = 0L;
+		int chunkNo                 = 0;
+
+		while (input.hasNext()) {
+
+			chunk.clear();
+
+			while (input.hasNext() && chunk.size() < commitInterval) {
+				chunk.add(input.next());
+			}
+
+			doPostChunk(app, resource, chunk, count);
+
+			count += chunk.size();
+
+			logger.debug("POST: Committed chunk {} ({} objects)", ++chunkNo, chunk.size());
+		}
+
+		return count;
+	}
+
+	private void doPostChunk(final App app, final Resource resource, final List<JsonInput> chunk, final long createdCount) throws FrameworkException {
+
+		int retries = 0;
+
+		while (true) {
 
+			try (final Tx tx = app.tx()) {
+
+				for (final JsonInput propertySet : chunk) {
+
+					resource.doPost(convertPropertySetToMap(propertySet));
+				}
+
+				tx.success();
+
+				return;
+
+			} catch (RetryException ddex) {
+
+				if (++retries > MAX_RETRIES) {
+					throw new FrameworkException(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Deadlock detected while processing streamed input after " + createdCount + " objects were created, please retry.");
+				}
+
+				logger.info("POST: Deadlock while committing chunk, retrying ({} / {})", retries, MAX_RETRIES);
+
+				try {
+
+					Thread.sleep(100 * retries);
+
+				} catch (InterruptedException iex) {
+					throw new FrameworkException(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Interrupted while processing streamed input after " + createdCount + " objects were created.");
+				}
+			}
+		}
 	}
 
 	private Map<String, Object> convertPropertySetToMap(JsonInput propertySet) {
@@ -30,6 +30,7 @@ import static org.junit.Assert.fail;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.graph.Tx;
 import org.structr.rest.entity.TestOne;
@@ -534,6 +535,55 @@ public class CsvTest extends StructrCsvTest {
 
 	}
 
+	/**
+	 * Test CSV import with
+	 *
+	 *  - Periodic commit enabled
+	 *  - periodic commit interval 1
+	 *  - multiple writer threads
+	 *
+	 * Tests that each writer thread imports its chunks with its own security context, and that
+	 * the response only contains the number of imported objects.
+	 */
+	@Test
+	public void test08CsvImportWithPeriodicCommitAndMultipleWriters() {
+
+		final int writers = Settings.CsvImportWriters.getValue();
+
+		Settings.CsvImportWriters.setValue(3);
+
+		try {
+
+			final Object response = RestAssured.given().contentType("text/csv; charset=UTF-8")
+					.header(CsvServlet.DEFAULT_PERIODIC_COMMIT_HEADER_NAME, true)
+					.header(CsvServlet.DEFAULT_PERIODIC_COMMIT_INTERVAL_HEADER_NAME, 1)
+					.body(testOneCSVWithDefaultCharacters5EntriesNoError).expect().statusCode(201).when().post("http://" + host + ":" + httpPort + csvUrl + testOneResource);
+
+			assertTrue(((RestAssuredResponseImpl) response).asString().contains("Imported 5 objects"));
+
+		} finally {
+
+			Settings.CsvImportWriters.setValue(writers);
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final List<TestOne> result = app.nodeQuery(TestOne.class).sort(TestOne.name).getAsList();
+
+			assertEquals(5, result.size());
+
+			for (int i=0; i<5; i++) {
+				assertEquals("TestOne-" + (i + 1), result.get(i).getName());
+			}
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+			fail();
+		}
+
+	}
+
 	/**
 	 * Test CSV import with quote character = '
 	 */
@@ -0,0 +1,286 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import org.structr.api.config.Settings;
+import org.structr.rest.logging.LogEventStore.Event;
+
+/**
+ * Tests partition pruning, pre-aggregation and recovery of the log event store.
+ */
+public class LogEventStoreTest {
+
+	private static final long START       = 1514764800000L;	// 2018-01-01T00:00:00Z
+	private final LogEventStore store     = LogEventStore.getInstance();
+	private String previousBasePath       = null;
+	private String previousLogEventsPath  = null;
+	private File directory                = null;
+
+	@Before
+	public void setup() throws IOException {
+
+		directory             = Files.createTempDirectory("log-event-store-test").toFile();
+		previousBasePath      = Settings.BasePath.getValue();
+		previousLogEventsPath = Settings.LogEventsPath.getValue();
+
+		Settings.BasePath.setValue(directory.getAbsolutePath());
+		Settings.LogEventsPath.setValue("logevents");
+
+		store.close();
+	}
+
+	@After
+	public void cleanup() {
+
+		store.close();
+
+		Settings.BasePath.setValue(previousBasePath);
+		Settings.LogEventsPath.setValue(previousLogEventsPath);
+
+		delete(directory);
+	}
+
+	@Test
+	public void testPartitionPruning() throws IOException {
+
+		for (int day=0; day<3; day++) {
+
+			for (int i=0; i<10; i++) {
+
+				store.add(new Event(START + day * LogEventStore.DAY + i * LogEventStore.HOUR, "action" + day, "subject", "object", "message" + i));
+			}
+		}
+
+		store.close();
+
+		// append an incomplete row to the first partition, it is truncated when (and only when) the partition is read
+		final File firstColumn = new File(directory, "logevents/20180101/timestamp.col");
+		final long length      = firstColumn.length();
+
+		try (final RandomAccessFile file = new RandomAccessFile(firstColumn, "rw")) {
+
+			file.seek(length);
+			file.writeInt(0);
+		}
+
+		final List<Event> secondDay = store.query(START + LogEventStore.DAY, START + 2 * LogEventStore.DAY - 1, null, null, null);
+
+		assertEquals("Invalid number of events in range", 10, secondDay.size());
+
+		for (final Event event : secondDay) {
+			assertEquals("Event from wrong partition in result", "action1", event.getAction());
+		}
+
+		assertEquals("Partition outside of the queried range should not be read", length + 4, firstColumn.length());
+
+		assertEquals("Invalid number of events in range", 10, store.query(START, START + LogEventStore.DAY - 1, null, null, null).size());
+		assertEquals("Partition should be truncated after it was read", length, firstColumn.length());
+
+		assertEquals("Invalid number of events", 30, store.query(null, null, null, null, null).size());
+		assertEquals("Invalid number of events for action", 10, store.query(null, null, "action2", null, null).size());
+		assertEquals("Invalid number of events for unknown action", 0, store.query(null, null, "unknown", null, null).size());
+	}
+
+	@Test
+	public void testRollupCountsMatchScan() throws IOException {
+
+		final Random random = new Random(42L);
+
+		for (int i=0; i<2000; i++) {
+
+			final long timestamp = START + (long)(random.nextDouble() * 2 * LogEventStore.DAY);
+
+			store.add(new Event(timestamp, "action" + random.nextInt(3), "subject" + random.nextInt(5), "object", "message" + random.nextInt(100)));
+		}
+
+		// ranges that are not aligned to hours or days
+		final long from = START + 7 * LogEventStore.HOUR + 13 * LogEventStore.MINUTE;
+		final long to   = START + LogEventStore.DAY + 17 * LogEventStore.HOUR + 42 * LogEventStore.MINUTE - 1;
+
+		for (final long resolution : new long[] { LogEventStore.MINUTE, LogEventStore.HOUR, LogEventStore.DAY }) {
+
+			final Map<String, Integer> rollupCounts = new HashMap<>();
+
+			store.visit(from, to, resolution, null, "subject1", (bucket, action, subject, count) -> {
+
+				assertEquals("Rollup contains wrong subject", "subject1", subject);
+
+				rollupCounts.merge(action, count, Integer::sum);
+			});
+
+			for (int i=0; i<3; i++) {
+
+				final String action = "action" + i;
+				final int scanCount = store.query(from, to, action, "subject1", null).size();
+
+				assertEquals("Rollup count differs from scan for resolution " + resolution, scanCount, (int)rollupCounts.getOrDefault(action, 0));
+			}
+		}
+
+		// rollups must be rebuilt correctly after a restart
+		store.close();
+
+		final int[] total = new int[1];
+
+		store.visit(null, null, LogEventStore.DAY, null, null, (bucket, action, subject, count) -> total[0] += count);
+
+		assertEquals("Invalid total count after restart", 2000, total[0]);
+	}
+
+	@Test
+	public void testTornWriteRecovery() throws IOException {
+
+		for (int i=0; i<5; i++) {
+			store.add(new Event(START + i * LogEventStore.MINUTE, "action", "subject" + i, "object" + i, "message" + i));
+		}
+
+		store.close();
+
+		final File partition = new File(directory, "logevents/20180101");
+
+		// simulate an interrupted write: a partial dictionary entry and a row that is missing some of its columns
+		try (final RandomAccessFile file = new RandomAccessFile(new File(partition, "strings.dict"), "rw")) {
+
+			file.seek(file.length());
+			file.writeInt(100);
+			file.write(new byte[] { 1, 2, 3 });
+		}
+
+		try (final RandomAccessFile file = new RandomAccessFile(new File(partition, "timestamp.col"), "rw")) {
+
+			file.seek(file.length());
+			file.writeLong(START + 5 * LogEventStore.MINUTE);
+		}
+
+		try (final RandomAccessFile file = new RandomAccessFile(new File(partition, "action.col"), "rw")) {
+
+			file.seek(file.length());
+			file.writeInt(0);
+		}
+
+		assertEquals("Incomplete row should be ignored", 5, store.query(null, null, null, null, null).size());
+
+		store.add(new Event(START + 6 * LogEventStore.MINUTE, "action", "subject6", null, "message6"));
+
+		final List<Event> events = store.query(null, null, null, null, null);
+
+		assertEquals("Invalid number of events after recovery", 6, events.size());
+
+		for (int i=0; i<5; i++) {
+
+			assertEquals("Invalid subject after recovery", "subject" + i, events.get(i).getSubjectId());
+			assertEquals("Invalid message after recovery", "message" + i, events.get(i).getMessage());
+		}
+
+		final Event last = events.get(5);
+
+		assertEquals("Invalid timestamp after recovery", START + 6 * LogEventStore.MINUTE, last.getTimestamp());
+		assertEquals("Invalid subject after recovery", "subject6", last.getSubjectId());
+		assertEquals("Invalid message after recovery", "message6", last.getMessage());
+		assertNull("Invalid object after recovery", last.getObjectId());
+	}
+
+	@Test
+	public void testSavedRollups() throws IOException {
+
+		for (int i=0; i<100; i++) {
+			store.add(new Event(START + i * LogEventStore.MINUTE, "action", "subject" + (i % 3), "object", "message" + i));
+		}
+
+		store.close();
+
+		final File rollups = new File(directory, "logevents/20180101/rollups.dat");
+		final byte[] saved = Files.readAllBytes(rollups.toPath());
+
+		for (int i=100; i<150; i++) {
+			store.add(new Event(START + i * LogEventStore.MINUTE, "action", "subject" + (i % 3), "object", "message" + i));
+		}
+
+		store.close();
+
+		// simulate a crash after the events were appended, before the rollups were saved
+		Files.write(rollups.toPath(), saved);
+
+		assertEquals("Events appended after the rollups were saved should be counted again", 150, count(null));
+		assertEquals("Invalid count for subject", 50, count("subject1"));
+		assertEquals("Invalid message", "message149", store.query(START + 149 * LogEventStore.MINUTE, null, null, null, null).get(0).getMessage());
+
+		store.close();
+
+		// missing rollups are rebuilt from the events
+		rollups.delete();
+
+		assertEquals("Invalid count without saved rollups", 150, count(null));
+		assertTrue("Rollups should be saved after they were rebuilt", rollups.exists());
+	}
+
+	@Test
+	public void testPartitionEviction() throws IOException {
+
+		for (int day=0; day<20; day++) {
+			store.add(new Event(START + day * LogEventStore.DAY, "action", "subject", "object", "message" + day));
+		}
+
+		store.close();
+
+		assertEquals("Invalid number of events", 20, store.query(null, null, null, null, null).size());
+		assertEquals("Invalid total count", 20, count(null));
+		assertTrue("Too many partitions in memory", store.getLoadedPartitionCount() <= 8);
+
+		assertEquals("Invalid first timestamp", START, store.getFirstTimestamp());
+		assertEquals("Invalid last timestamp", START + 19 * LogEventStore.DAY, store.getLastTimestamp());
+	}
+
+	// ----- private methods -----
+	private int count(final String subject) {
+
+		final int[] total = new int[1];
+
+		store.visit(null, null, LogEventStore.DAY, null, subject, (bucket, action, eventSubject, count) -> total[0] += count);
+
+		return total[0];
+	}
+
+	private void delete(final File file) {
+
+		final File[] files = file.listFiles();
+		if (files != null) {
+
+			for (final File child : files) {
+				delete(child);
+			}
+		}
+
+		file.delete();
+	}
+}
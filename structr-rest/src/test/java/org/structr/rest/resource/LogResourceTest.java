@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.resource;
+
+import com.jayway.restassured.RestAssured;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.structr.rest.common.StructrRestTest;
+
+/**
+ * Tests aggregation and histogram queries on the log resource.
+ */
+public class LogResourceTest extends StructrRestTest {
+
+	@Test
+	public void testAggregateAndHistogram() {
+
+		for (int i=0; i<6; i++) {
+
+			RestAssured
+				.given()
+					.contentType("application/json; charset=UTF-8")
+					.body(" { 'subject': 'subject" + (i % 2) + "', 'object': 'object', 'action': 'test', 'message': '" + (i < 4 ? "download" : "upload") + " " + i + "' } ")
+				.expect()
+					.statusCode(201)
+				.when()
+					.post("/log");
+		}
+
+		// event from another action must not be counted
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.body(" { 'subject': 'subject0', 'object': 'object', 'action': 'other', 'message': 'download 6' } ")
+			.expect()
+				.statusCode(201)
+			.when()
+				.post("/log");
+
+		// totals only, answered from the pre-aggregated counts
+		final Map<String, Map<String, Integer>> totals = RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.param("action", "test")
+				.param("aggregate", "yyyyMMddHHmm")
+			.expect()
+				.statusCode(200)
+			.when()
+				.get("/log")
+			.jsonPath().getMap("result");
+
+		assertEquals("Invalid total count", 6, sum(totals, "total"));
+
+		// the same totals for a single subject
+		final Map<String, Map<String, Integer>> subjectTotals = RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.param("subject", "subject0")
+				.param("action", "test")
+				.param("aggregate", "yyyyMMddHHmm")
+			.expect()
+				.statusCode(200)
+			.when()
+				.get("/log")
+			.jsonPath().getMap("result");
+
+		assertEquals("Invalid total count for subject", 3, sum(subjectTotals, "total"));
+
+		// aggregation patterns need the messages
+		final Map<String, Map<String, Integer>> aggregated = RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.param("action", "test")
+				.param("aggregate", "yyyyMMddHHmm")
+				.param("downloads", "download .*")
+			.expect()
+				.statusCode(200)
+			.when()
+				.get("/log")
+			.jsonPath().getMap("result");
+
+		assertEquals("Invalid total count", 6, sum(aggregated, "total"));
+		assertEquals("Invalid aggregated count", 4, sum(aggregated, "downloads"));
+
+		final Map<String, Map<String, Integer>> histogram = RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.param("action", "test")
+				.param("aggregate", "yyyyMMddHHmm")
+				.param("histogram", "(download|upload) .*")
+			.expect()
+				.statusCode(200)
+			.when()
+				.get("/log")
+			.jsonPath().getMap("result");
+
+		assertEquals("Invalid total count", 6, sum(histogram, "total"));
+		assertEquals("Invalid histogram count", 4, sum(histogram, "download"));
+		assertEquals("Invalid histogram count", 2, sum(histogram, "upload"));
+	}
+
+	// ----- private methods -----
+	private int sum(final Map<String, Map<String, Integer>> result, final String key) {
+
+		int sum = 0;
+
+		for (final Map<String, Integer> interval : result.values()) {
+
+			final Integer value = interval.get(key);
+			if (value != null) {
+
+				sum += value;
+			}
+		}
+
+		return sum;
+	}
+}
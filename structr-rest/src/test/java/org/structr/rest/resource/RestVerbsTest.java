@@ -107,6 +107,55 @@ public class RestVerbsTest extends StructrRestTest {
 		expectNotOk(200).body("result_count", Matchers.equalTo(70)).when().get("/TestOne");
 	}
 
+	@Test
+	public void test05POSTWithPeriodicCommit() {
+
+		final StringBuilder buf = new StringBuilder("[");
+
+		for (int i=0; i<25; i++) {
+
+			if (i > 0) {
+				buf.append(",");
+			}
+
+			buf.append(" { 'name' : 'node").append(StringUtils.leftPad(Integer.toString(i), 3, "0")).append("' } ");
+		}
+
+		buf.append("]");
+
+		// 25 objects in chunks of 10, only the number of objects is returned
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.header("X-JSON-Periodic-Commit", "true")
+				.header("X-JSON-Periodic-Commit-Interval", "10")
+				.body(buf.toString())
+			.expect()
+				.statusCode(201)
+				.body("message", Matchers.equalTo("Created 25 objects"))
+			.when()
+				.post("/TestOne");
+
+		expectOk(200)
+			.body("result_count",   Matchers.equalTo(25))
+			.body("result",         Matchers.hasSize(5))
+			.body("result[0].name", Matchers.equalTo("node020"))
+			.when().get("/TestOne?sort=name&pageSize=5&page=5");
+
+		// invalid input is rejected before anything is created
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.header("X-JSON-Streaming-Input", "true")
+				.body(" [ 1, 2, 3 ] ")
+			.expect()
+				.statusCode(400)
+			.when()
+				.post("/TestOne");
+
+		expectOk(200).body("result_count", Matchers.equalTo(25)).when().get("/TestOne");
+	}
+
 	// ----- private methods -----
 	private ResponseSpecification expectOk(final int statusCode) {
 
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.entity.dom.DOMNode;
+
+/**
+ * Renders the children of a DOM element, rendering the subtrees of all
+ * children that are marked with <code>renderIndependently</code> in
+ * parallel.
+ *
+ * Each independent subtree is rendered into a separate buffer, using a
+ * copy of the render context and the security context (including its
+ * context store) and its own transaction which is never committed, and the results are appended to the output in the original
+ * order of the children.
+ */
+public class ParallelRenderer {
+
+	private static final Logger logger                 = LoggerFactory.getLogger(ParallelRenderer.class.getName());
+	private static final AtomicInteger threadCount     = new AtomicInteger();
+	private static final ExecutorService threadPool    = Executors.newFixedThreadPool(Math.max(1, Settings.HtmlRenderingThreads.getValue()), r -> {
+
+		final Thread thread = new Thread(r, "RenderWorker" + threadCount.incrementAndGet());
+
+		thread.setDaemon(true);
+
+		return thread;
+	});
+
+	public static void renderChildren(final List<DOMNode> children, final RenderContext renderContext, final int depth) throws FrameworkException {
+
+		final Map<DOMNode, Future<String>> futures = submitIndependentChildren(children, renderContext, depth);
+		final AsyncBuffer out                      = renderContext.getBuffer();
+
+		for (final DOMNode child : children) {
+
+			final Future<String> future = futures.get(child);
+			if (future != null) {
+
+				try {
+
+					out.append(future.get());
+
+				} catch (InterruptedException | ExecutionException ex) {
+
+					final Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+
+					out.append("Error while rendering node ").append(child.getUuid()).append(": ").append(cause.getMessage());
+
+					logger.warn("", cause);
+				}
+
+			} else {
+
+				child.render(renderContext, depth);
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private static Map<DOMNode, Future<String>> submitIndependentChildren(final List<DOMNode> children, final RenderContext renderContext, final int depth) {
+
+		final Map<DOMNode, Future<String>> futures = new HashMap<>();
+		final SecurityContext securityContext      = renderContext.getSecurityContext();
+
+		// no nested forking (would risk starvation of the thread pool), and
+		// edit modes other than NONE are rendered on a single thread
+		if (children.size() < 2 || renderContext.isForked() || !EditMode.NONE.equals(renderContext.getEditMode(securityContext.getUser(false)))) {
+			return futures;
+		}
+
+		for (final DOMNode child : children) {
+
+			if (child.renderIndependently()) {
+
+				final SecurityContext forkedSecurityContext = securityContext.fork();
+				final StringRenderBuffer buffer             = new StringRenderBuffer();
+				final RenderContext forkedContext           = new RenderContext(renderContext);
+
+				// the context store is not thread-safe, each fork gets its own copy
+				forkedContext.setSecurityContext(forkedSecurityContext);
+				forkedContext.setBuffer(buffer);
+				forkedContext.setForked(true);
+
+				futures.put(child, threadPool.submit(() -> {
+
+					// read-only transaction, changes are rolled back
+					try (final Tx tx = StructrApp.getInstance(forkedSecurityContext).tx(false, false, false)) {
+
+						child.render(forkedContext, depth);
+					}
+
+					return buffer.getBuffer().toString();
+				}));
+			}
+		}
+
+		return futures;
+	}
+}
@@ -18,6 +18,7 @@
  */
 package org.structr.web.common;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Stack;
@@ -65,6 +66,7 @@ public class RenderContext extends ActionContext {
 	private Result result                              = null;
 	private boolean anyChildNodeCreatesNewLine         = false;
 	private boolean indentHtml                         = true;
+	private boolean forked                             = false;
 
 	public enum EditMode {
 
@@ -104,6 +106,7 @@ public class RenderContext extends ActionContext {
 		this.anyChildNodeCreatesNewLine = other.anyChildNodeCreatesNewLine;
 		this.locale = other.locale;
 		this.indentHtml = other.indentHtml;
+		this.forked = other.forked;
 
 	}
 
@@ -298,6 +301,20 @@ public class RenderContext extends ActionContext {
 		return buffer;
 	}
 
+	/**
+	 * Marks this render context as being used to render an independent
+	 * subtree on a separate thread, which prevents further forking.
+	 *
+	 * @param forked
+	 */
+	public void setForked(final boolean forked) {
+		this.forked = forked;
+	}
+
+	public boolean isForked() {
+		return forked;
+	}
+
 	public void setInBody(final boolean inBody) {
 		this.inBody = inBody;
 	}
@@ -324,6 +341,10 @@ public class RenderContext extends ActionContext {
 
 	}
 
+	public Map<String, GraphObject> getDataObjects() {
+		return Collections.unmodifiableMap(dataObjects);
+	}
+
 	public void clearDataObject(String key) {
 		dataObjects.remove(key);
 		setDataObject(null);
@@ -0,0 +1,217 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.lang3.StringUtils;
+import org.structr.api.config.Settings;
+import org.structr.api.util.ConcurrentFixedSizeCache;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.StructrTransactionListener;
+import org.structr.core.TransactionSource;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.ModificationEvent;
+import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.entity.dom.DOMNode;
+import org.structr.web.entity.dom.Page;
+
+/**
+ * Server-side cache for the rendered output of pages and DOM subtrees
+ * that are marked with <code>cacheRenderedOutput</code>.
+ *
+ * Entries are keyed by node, page version, locale, user, the data
+ * objects in scope and the values of the request parameters listed
+ * in <code>cacheKeyParameters</code>. The whole cache is invalidated
+ * after each transaction that modified the database, since there is
+ * no way to tell which data the rendered output depends on.
+ */
+public class RenderedFragmentCache implements StructrTransactionListener {
+
+	private static final ConcurrentFixedSizeCache<String, String> cache = new ConcurrentFixedSizeCache<>(Math.max(1, Settings.HtmlFragmentCacheSize.getValue()));
+	private static final RenderedFragmentCache instance                 = new RenderedFragmentCache();
+	private static final AtomicLong generation                          = new AtomicLong();
+	private static final AtomicLong misses                              = new AtomicLong();
+	private static final AtomicLong hits                                = new AtomicLong();
+
+	public interface Renderer {
+
+		void render() throws FrameworkException;
+	}
+
+	private RenderedFragmentCache() {}
+
+	public static RenderedFragmentCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Appends the cached output of the given node to the buffer of the
+	 * given render context, or calls the given renderer and caches its
+	 * output if possible.
+	 *
+	 * @param node
+	 * @param renderContext
+	 * @param renderer
+	 * @throws FrameworkException
+	 */
+	public static void render(final DOMNode node, final RenderContext renderContext, final Renderer renderer) throws FrameworkException {
+
+		final SecurityContext securityContext = renderContext.getSecurityContext();
+
+		if (!node.cacheRenderedOutput() || !EditMode.NONE.equals(renderContext.getEditMode(securityContext.getUser(false)))) {
+
+			renderer.render();
+			return;
+		}
+
+		final String cacheKey = cacheKey(node, renderContext);
+		final AsyncBuffer out = renderContext.getBuffer();
+		final String cached   = cache.get(cacheKey);
+
+		if (cached != null) {
+
+			hits.incrementAndGet();
+			out.append(cached);
+
+			return;
+		}
+
+		misses.incrementAndGet();
+
+		final StringRenderBuffer buffer = new StringRenderBuffer();
+		final long renderGeneration     = generation.get();
+
+		renderContext.setBuffer(buffer);
+
+		try {
+
+			renderer.render();
+
+		} finally {
+
+			renderContext.setBuffer(out);
+		}
+
+		final String output = buffer.getBuffer().toString();
+
+		// don't store output that was rendered from data modified in the meantime
+		if (renderGeneration == generation.get()) {
+			cache.put(cacheKey, output);
+		}
+
+		out.append(output);
+	}
+
+	public static void invalidate() {
+
+		generation.incrementAndGet();
+		cache.clear();
+	}
+
+	public static int getSize() {
+		return cache.size();
+	}
+
+	public static long getHitCount() {
+		return hits.get();
+	}
+
+	public static long getMissCount() {
+		return misses.get();
+	}
+
+	// ----- interface StructrTransactionListener -----
+	@Override
+	public void beforeCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents, final TransactionSource source) throws FrameworkException {
+	}
+
+	@Override
+	public void afterCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents, final TransactionSource source) {
+
+		if (!modificationEvents.isEmpty() && !cache.isEmpty()) {
+			invalidate();
+		}
+	}
+
+	// ----- private methods -----
+	private static String cacheKey(final DOMNode node, final RenderContext renderContext) {
+
+		final SecurityContext securityContext = renderContext.getSecurityContext();
+		final HttpServletRequest request      = renderContext.getRequest();
+		final Principal user                  = securityContext.getUser(false);
+		final Page page                       = node instanceof Page ? (Page)node : node.getOwnerDocumentAsSuperUser();
+		final StringBuilder buf               = new StringBuilder(node.getUuid());
+
+		buf.append(";");
+		buf.append(page != null ? page.getVersion() : 0);
+		buf.append(";");
+		buf.append(renderContext.getLocale());
+		buf.append(";");
+		buf.append(user != null ? user.getUuid() : "anonymous");
+		buf.append(";");
+
+		final GraphObject details = renderContext.getDetailsDataObject();
+		if (details != null) {
+
+			buf.append(details.getUuid());
+		}
+
+		buf.append(";");
+
+		final GraphObject current = renderContext.getDataObject();
+		if (current != null) {
+
+			buf.append(current.getUuid());
+		}
+
+		for (final Map.Entry<String, GraphObject> entry : renderContext.getDataObjects().entrySet()) {
+
+			final GraphObject value = entry.getValue();
+
+			buf.append(";");
+			buf.append(entry.getKey());
+			buf.append("=");
+			buf.append(value != null ? value.getUuid() : null);
+		}
+
+		final String parameterNames = node.getCacheKeyParameters();
+		if (request != null && StringUtils.isNotBlank(parameterNames)) {
+
+			for (final String name : parameterNames.split("[, ]+")) {
+
+				final String[] values = request.getParameterValues(name);
+
+				buf.append(";");
+				buf.append(name);
+				buf.append("=");
+
+				if (values != null) {
+					buf.append(StringUtils.join(values, ","));
+				}
+			}
+		}
+
+		return buf.toString();
+	}
+}
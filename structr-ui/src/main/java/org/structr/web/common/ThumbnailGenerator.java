@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.PropertyView;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.StructrTransactionListener;
+import org.structr.core.TransactionSource;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.ModificationEvent;
+import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.property.PropertyMap;
+import org.structr.web.entity.Image;
+import org.structr.web.property.ThumbnailProperty;
+
+/**
+ * Creates thumbnails of images in the background, using a bounded pool
+ * of worker threads.
+ *
+ * Each thumbnail (image, width, height, crop) is queued at most once at
+ * a time. Thumbnails for all {@link ThumbnailProperty} keys of an image
+ * type are queued eagerly when an image is created or its content
+ * changes, other thumbnails are queued when they are first requested.
+ */
+public class ThumbnailGenerator implements StructrTransactionListener {
+
+	private static final Logger logger                     = LoggerFactory.getLogger(ThumbnailGenerator.class.getName());
+	private static final ThreadLocal<Boolean> isWorker     = ThreadLocal.withInitial(() -> false);
+	private static final Map<String, Long> pending         = new ConcurrentHashMap<>();
+	private static final ThumbnailGenerator instance       = new ThumbnailGenerator();
+	private static final AtomicInteger threadCount         = new AtomicInteger();
+	private static final AtomicLong completed              = new AtomicLong();
+	private static final AtomicLong rejected               = new AtomicLong();
+	private static final AtomicLong failed                 = new AtomicLong();
+	private static final AtomicLong totalLatency           = new AtomicLong();
+	private static final AtomicLong maxLatency             = new AtomicLong();
+	private static final ThreadPoolExecutor threadPool     = new ThreadPoolExecutor(
+		Math.max(1, Settings.ThumbnailThreads.getValue()),
+		Math.max(1, Settings.ThumbnailThreads.getValue()),
+		0L,
+		TimeUnit.MILLISECONDS,
+		new ArrayBlockingQueue<>(Math.max(1, Settings.ThumbnailQueueSize.getValue())),
+		r -> {
+
+			final Thread thread = new Thread(() -> {
+
+				isWorker.set(true);
+				r.run();
+
+			}, "ThumbnailWorker" + threadCount.incrementAndGet());
+
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	);
+
+	private ThumbnailGenerator() {}
+
+	public static ThumbnailGenerator getInstance() {
+		return instance;
+	}
+
+	public static boolean isEnabled() {
+		return Settings.ThumbnailsAsync.getValue();
+	}
+
+	/**
+	 * Queues the creation of a thumbnail of the given size, unless the
+	 * same thumbnail is already queued or being created.
+	 *
+	 * @param image
+	 * @param width
+	 * @param height
+	 * @param crop
+	 */
+	public static void enqueue(final Image image, final int width, final int height, final boolean crop) {
+
+		final String uuid = image.getUuid();
+		final String key  = uuid + ":" + width + "x" + height + ":" + crop;
+
+		if (pending.putIfAbsent(key, System.currentTimeMillis()) == null) {
+
+			try {
+
+				threadPool.execute(() -> createThumbnail(key, uuid, width, height, crop));
+
+			} catch (RejectedExecutionException rex) {
+
+				// queue is full, thumbnail will be requested again later
+				pending.remove(key);
+				rejected.incrementAndGet();
+			}
+		}
+	}
+
+	public static boolean isPending(final Image image, final int width, final int height, final boolean crop) {
+		return pending.containsKey(image.getUuid() + ":" + width + "x" + height + ":" + crop);
+	}
+
+	public static int getQueueSize() {
+		return pending.size();
+	}
+
+	public static long getCompletedCount() {
+		return completed.get();
+	}
+
+	public static long getRejectedCount() {
+		return rejected.get();
+	}
+
+	public static long getFailedCount() {
+		return failed.get();
+	}
+
+	public static long getAverageLatency() {
+
+		final long count = completed.get();
+
+		return count > 0 ? totalLatency.get() / count : 0L;
+	}
+
+	public static long getMaxLatency() {
+		return maxLatency.get();
+	}
+
+	/**
+	 * Returns the queue depth, worker and latency metrics of the
+	 * thumbnail service, see the <code>thumbnail_statistics()</code>
+	 * function.
+	 *
+	 * @return the statistics
+	 */
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+
+		statistics.put("queueSize",      getQueueSize());
+		statistics.put("activeWorkers",  threadPool.getActiveCount());
+		statistics.put("completed",      getCompletedCount());
+		statistics.put("rejected",       getRejectedCount());
+		statistics.put("failed",         getFailedCount());
+		statistics.put("averageLatency", getAverageLatency());
+		statistics.put("maxLatency",     getMaxLatency());
+
+		return statistics;
+	}
+
+	// ----- interface StructrTransactionListener -----
+	@Override
+	public void beforeCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents, final TransactionSource source) throws FrameworkException {
+	}
+
+	@Override
+	public void afterCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents, final TransactionSource source) {
+
+		// thumbnail creation itself modifies the original image
+		if (!isEnabled() || isWorker.get()) {
+			return;
+		}
+
+		for (final ModificationEvent event : modificationEvents) {
+
+			if (event.isNode() && !event.isDeleted() && (event.isCreated() || isContentModified(event))) {
+
+				final GraphObject obj = event.getGraphObject();
+				if (obj instanceof Image && !((Image)obj).isThumbnail()) {
+
+					final Image image = (Image)obj;
+
+					for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(image.getClass(), PropertyView.All)) {
+
+						if (key instanceof ThumbnailProperty) {
+
+							final ThumbnailProperty thumbnailProperty = (ThumbnailProperty)key;
+
+							enqueue(image, thumbnailProperty.getWidth(), thumbnailProperty.getHeight(), thumbnailProperty.getCrop());
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private static boolean isContentModified(final ModificationEvent event) {
+
+		final PropertyMap modifiedProperties = event.getModifiedProperties();
+		if (modifiedProperties != null) {
+
+			for (final PropertyKey key : modifiedProperties.keySet()) {
+
+				final String name = key.jsonName();
+				if ("checksum".equals(name) || "version".equals(name)) {
+
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private static void createThumbnail(final String key, final String uuid, final int width, final int height, final boolean crop) {
+
+		final App app   = StructrApp.getInstance();
+		boolean success = false;
+
+		try {
+
+			try (final Tx tx = app.tx()) {
+
+				final Image image = app.get(Image.class, uuid);
+				if (image != null) {
+
+					Image.getScaledImage(image, width, height, crop);
+				}
+
+				tx.success();
+			}
+
+			// the transaction was committed successfully
+			success = true;
+
+		} catch (Throwable t) {
+
+			logger.warn("Unable to create thumbnail for image {}: {}", uuid, t.getMessage());
+
+		} finally {
+
+			final Long queued = pending.remove(key);
+
+			if (success) {
+
+				if (queued != null) {
+
+					final long latency = System.currentTimeMillis() - queued;
+
+					totalLatency.addAndGet(latency);
+					maxLatency.accumulateAndGet(latency, Math::max);
+				}
+
+				completed.incrementAndGet();
+
+			} else {
+
+				failed.incrementAndGet();
+			}
+		}
+	}
+}
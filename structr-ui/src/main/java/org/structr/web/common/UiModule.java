@@ -22,6 +22,7 @@ import java.util.Set;
 import org.structr.api.service.LicenseManager;
 import org.structr.core.entity.AbstractSchemaNode;
 import org.structr.core.function.Functions;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.module.StructrModule;
 import org.structr.schema.action.Actions;
 import org.structr.web.function.AddHeaderFunction;
@@ -51,6 +52,7 @@ import org.structr.web.function.SetDetailsObjectFunction;
 import org.structr.web.function.SetResponseHeaderFunction;
 import org.structr.web.function.SetSessionAttributeFunction;
 import org.structr.web.function.StripHtmlFunction;
+import org.structr.web.function.ThumbnailStatisticsFunction;
 import org.structr.web.function.ToGraphObjectFunction;
 import org.structr.web.function.ToJsonFunction;
 import org.structr.web.function.UnescapeHtmlFunction;
@@ -76,6 +78,7 @@ public class UiModule implements StructrModule {
 		Functions.put(true, LicenseManager.Community, "include",                  new IncludeFunction());
 		Functions.put(true, LicenseManager.Community, "render",                   new RenderFunction());
 		Functions.put(true, LicenseManager.Community, "set_details_object",       new SetDetailsObjectFunction());
+		Functions.put(true, LicenseManager.Community, "thumbnail_statistics",     new ThumbnailStatisticsFunction());
 
 		// Basic Edition and up
 		Functions.put(basicEdition, LicenseManager.Basic, "send_html_mail",           new SendHtmlMailFunction());
@@ -103,6 +106,12 @@ public class UiModule implements StructrModule {
 		Functions.put(enterpriseEdition, LicenseManager.Enterprise, "parse",                    new ParseFunction());
 		Functions.put(enterpriseEdition, LicenseManager.Enterprise, "create_archive",           new CreateArchiveFunction());
 		Functions.put(enterpriseEdition, LicenseManager.Enterprise, "schedule",                 new ScheduleFunction());
+
+		// invalidate rendered output on modifications
+		TransactionCommand.registerTransactionListener(RenderedFragmentCache.getInstance());
+
+		// create thumbnails of new images in the background
+		TransactionCommand.registerTransactionListener(ThumbnailGenerator.getInstance());
 	}
 
 	@Override
@@ -58,6 +58,7 @@ import org.structr.core.entity.Relation.Cardinality;
 import org.structr.core.function.Functions;
 import org.structr.core.graph.ModificationEvent;
 import org.structr.core.graph.ModificationQueue;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.scheduler.JobQueueManager;
@@ -301,18 +302,31 @@ public interface File extends AbstractFile, Indexable, Linkable, JavaScriptSourc
 		// only delete mounted files
 		if (!thisFile.isExternal()) {
 
-			java.io.File toDelete = thisFile.getFileOnDisk(false);
+			final java.io.File toDelete = thisFile.getFileOnDisk(false);
 
-			try {
+			// keep the content until the deletion is committed, a rollback would lose it otherwise
+			TransactionCommand.afterCommit(() -> {
 
-				if (toDelete.exists() && toDelete.isFile()) {
+				try {
+
+					if (toDelete.exists() && toDelete.isFile()) {
+
+						toDelete.delete();
+					}
 
-					toDelete.delete();
+				} catch (Throwable t) {
+					logger.debug("Exception while trying to delete file {}: {}", toDelete.getPath(), t.getMessage());
 				}
+			});
+		}
 
-			} catch (Throwable t) {
-				logger.debug("Exception while trying to delete file {}: {}", toDelete.getPath(), t.getMessage());
-			}
+		try {
+
+			StructrApp.getInstance(thisFile.getSecurityContext()).getFulltextIndexer().removeFromFulltextIndex(thisFile);
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("Unable to remove {} from fulltext index: {}", thisFile.getUuid(), fex.getMessage());
 		}
 	}
 
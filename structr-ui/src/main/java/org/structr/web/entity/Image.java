@@ -45,6 +45,7 @@ import org.structr.schema.json.JsonSchema.Cascade;
 import org.structr.web.common.FileHelper;
 import org.structr.web.common.ImageHelper;
 import org.structr.web.common.ImageHelper.Thumbnail;
+import org.structr.web.common.ThumbnailGenerator;
 import org.structr.web.property.ImageDataProperty;
 import org.structr.web.property.ThumbnailProperty;
 
@@ -377,8 +378,7 @@ public interface Image extends File {
 
 				if (w != null && h != null) {
 
-					// orginal image is equal or smaller than requested size
-					if (((w == maxWidth) && (h <= maxHeight)) || ((w <= maxWidth) && (h == maxHeight)) || ((origWidth <= w) && (origHeight <= h))) {
+					if (isMatchingThumbnail(origWidth, origHeight, w, h, maxWidth, maxHeight)) {
 
 						thumbnail = (Image)r.getTargetNode();
 
@@ -492,6 +492,71 @@ public interface Image extends File {
 		return thumbnail;
 	}
 
+	/**
+	 * Get (down-)scaled image of this image without creating it on the
+	 * calling thread.
+	 *
+	 * If no up-to-date scaled image of the requested size exists, its
+	 * creation is queued in the background, and an outdated scaled image
+	 * (or null) is returned until it is available.
+	 *
+	 * @param maxWidth
+	 * @param maxHeight
+	 * @param cropToFit
+	 *
+	 * @return scaled image, an outdated scaled image or null
+	 */
+	public static Image getScaledImageAsync(final Image thisImage, final int maxWidth, final int maxHeight, final boolean cropToFit) {
+
+		final Class<Relation> thumbnailRel              = StructrApp.getConfiguration().getRelationshipEntityClass("ImageTHUMBNAILImage");
+		final Iterable<Relation> thumbnailRelationships = thisImage.getOutgoingRelationships(thumbnailRel);
+		final Integer origWidth                         = thisImage.getWidth();
+		final Integer origHeight                        = thisImage.getHeight();
+		final Long checksum                             = thisImage.getChecksum();
+		Image outdatedThumbnail                         = null;
+
+		// Return self if SVG image
+		final String _contentType = thisImage.getContentType();
+		if (_contentType != null && (_contentType.startsWith("image/svg") || (_contentType.startsWith("image/") && _contentType.endsWith("icon")))) {
+
+			return thisImage;
+		}
+
+		if (origWidth != null && origHeight != null && thumbnailRelationships != null) {
+
+			for (final Relation r : thumbnailRelationships) {
+
+				final Integer w = r.getProperty(StructrApp.key(Image.class, "width"));
+				final Integer h = r.getProperty(StructrApp.key(Image.class, "height"));
+
+				if (w != null && h != null && isMatchingThumbnail(origWidth, origHeight, w, h, maxWidth, maxHeight)) {
+
+					final Long storedChecksum = r.getProperty(StructrApp.key(Image.class, "checksum"));
+
+					if (checksum != null && checksum != 0 && checksum.equals(storedChecksum)) {
+
+						return (Image)r.getTargetNode();
+					}
+
+					outdatedThumbnail = (Image)r.getTargetNode();
+				}
+			}
+		}
+
+		ThumbnailGenerator.enqueue(thisImage, maxWidth, maxHeight, cropToFit);
+
+		return outdatedThumbnail;
+	}
+
+	/**
+	 * Returns true if a thumbnail of the given size can be used for the
+	 * requested size, i.e. if it fits exactly in one dimension, or if
+	 * the original image is equal or smaller than the requested size.
+	 */
+	public static boolean isMatchingThumbnail(final int origWidth, final int origHeight, final int width, final int height, final int maxWidth, final int maxHeight) {
+		return ((width == maxWidth) && (height <= maxHeight)) || ((width <= maxWidth) && (height == maxHeight)) || ((origWidth <= width) && (origHeight <= height));
+	}
+
 	/**
 	 * Return true if this image is a thumbnail image.
 	 *
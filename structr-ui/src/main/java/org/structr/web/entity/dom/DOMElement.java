@@ -43,6 +43,7 @@ import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonSchema;
 import org.structr.web.common.AsyncBuffer;
 import org.structr.web.common.HtmlProperty;
+import org.structr.web.common.ParallelRenderer;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
 import static org.structr.web.entity.dom.DOMNode.escapeForHtmlAttributes;
@@ -248,6 +249,9 @@ public interface DOMElement extends DOMNode, Element, NamedNodeMap, NonIndexed {
 		type.addViewProperty(PropertyView.Ui, "syncedNodesIds");
 		type.addViewProperty(PropertyView.Ui, "data-structr-id");
 		type.addViewProperty(PropertyView.Ui, "renderDetails");
+		type.addViewProperty(PropertyView.Ui, "renderIndependently");
+		type.addViewProperty(PropertyView.Ui, "cacheRenderedOutput");
+		type.addViewProperty(PropertyView.Ui, "cacheKeyParameters");
 		type.addViewProperty(PropertyView.Ui, "children");
 		type.addViewProperty(PropertyView.Ui, "childrenIds");
 		type.addViewProperty(PropertyView.Ui, "showForLocales");
@@ -410,6 +414,8 @@ public interface DOMElement extends DOMNode, Element, NamedNodeMap, NonIndexed {
 						Scripting.evaluate(renderContext, thisElement, "${" + _sharedComponentConfiguration + "}", "shared component configuration");
 					}
 
+					final List<DOMNode> children = new ArrayList<>();
+
 					for (final RelationshipInterface rel : rels) {
 
 						final DOMNode subNode = (DOMNode) rel.getTargetNode();
@@ -418,10 +424,11 @@ public interface DOMElement extends DOMNode, Element, NamedNodeMap, NonIndexed {
 							anyChildNodeCreatesNewLine = (anyChildNodeCreatesNewLine || !(subNode.avoidWhitespace()));
 						}
 
-						subNode.render(renderContext, depth + 1);
-
+						children.add(subNode);
 					}
 
+					ParallelRenderer.renderChildren(children, renderContext, depth + 1);
+
 				}
 
 			} catch (Throwable t) {
@@ -67,6 +67,7 @@ import org.structr.web.common.AsyncBuffer;
 import org.structr.web.common.GraphDataSource;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.common.RenderedFragmentCache;
 import org.structr.web.common.StringRenderBuffer;
 import org.structr.web.datasource.CypherGraphDataSource;
 import org.structr.web.datasource.FunctionDataSource;
@@ -119,6 +120,9 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 		type.addBooleanProperty("hideOnIndex").setCategory(QUERY_CATEGORY);
 		type.addBooleanProperty("hideOnDetail").setCategory(QUERY_CATEGORY);
 		type.addBooleanProperty("dontCache").setDefaultValue("false");
+		type.addBooleanProperty("cacheRenderedOutput").setDefaultValue("false").setCategory(PAGE_CATEGORY).setHint("If set, the rendered output of this element is cached on the server until the next modification of the database. Use only for elements whose output depends on the current user, locale, data objects and the request parameters listed in cacheKeyParameters only.");
+		type.addStringProperty("cacheKeyParameters").setCategory(PAGE_CATEGORY).setHint("Comma-separated list of request parameters whose values are part of the cache key for the rendered output of this element.");
+		type.addBooleanProperty("renderIndependently").setDefaultValue("false").setCategory(PAGE_CATEGORY).setHint("If set, this element is rendered in parallel with its siblings, in a separate read-only transaction. Use only for elements that do not depend on or modify data of the surrounding page.");
 		type.addBooleanProperty("isDOMNode").setReadOnly(true).addTransformer(ConstantBooleanTrue.class.getName()).setCategory(PAGE_CATEGORY);
 
 		type.addIntegerProperty("domSortPosition").setCategory(PAGE_CATEGORY);
@@ -130,6 +134,7 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 		type.addPropertyGetter("dataKey", String.class);
 		type.addPropertyGetter("showConditions", String.class);
 		type.addPropertyGetter("hideConditions", String.class);
+		type.addPropertyGetter("cacheKeyParameters", String.class);
 
 		type.addPropertyGetter("parent", DOMNode.class);
 		type.addPropertyGetter("children", List.class);
@@ -170,6 +175,8 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 
 		type.overrideMethod("inTrash",                     false, "return getParent() == null && getOwnerDocumentAsSuperUser() == null;");
 		type.overrideMethod("dontCache",                   false, "return getProperty(dontCacheProperty);");
+		type.overrideMethod("cacheRenderedOutput",         false, "return getProperty(cacheRenderedOutputProperty);");
+		type.overrideMethod("renderIndependently",         false, "return getProperty(renderIndependentlyProperty);");
 		type.overrideMethod("renderDetails",               false, "return getProperty(renderDetailsProperty);");
 		type.overrideMethod("hideOnIndex",                 false, "return getProperty(hideOnIndexProperty);");
 		type.overrideMethod("hideOnDetail",                false, "return getProperty(hideOnDetailProperty);");
@@ -312,6 +319,8 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 	boolean avoidWhitespace();
 	boolean inTrash();
 	boolean dontCache();
+	boolean renderIndependently();
+	boolean cacheRenderedOutput();
 	boolean hideOnIndex();
 	boolean hideOnDetail();
 	boolean renderDetails();
@@ -324,6 +333,7 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 	String getIdHashOrProperty();
 	String getShowConditions();
 	String getHideConditions();
+	String getCacheKeyParameters();
 	String getContent(final RenderContext.EditMode editMode) throws FrameworkException;
 	String getDataHash();
 	String getDataKey();
@@ -1431,7 +1441,15 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 			return;
 		}
 
-		final EditMode editMode = renderContext.getEditMode(securityContext.getUser(false));
+		RenderedFragmentCache.render(thisNode, renderContext, () -> DOMNode.renderUncached(thisNode, renderContext, depth));
+	}
+
+	static void renderUncached(final DOMNode thisNode, final RenderContext renderContext, final int depth) throws FrameworkException {
+
+		final SecurityContext securityContext = renderContext.getSecurityContext();
+		final GraphObject details             = renderContext.getDetailsDataObject();
+		final boolean detailMode              = details != null;
+		final EditMode editMode               = renderContext.getEditMode(securityContext.getUser(false));
 
 		if (EditMode.RAW.equals(editMode) || EditMode.WIDGET.equals(editMode) || EditMode.DEPLOYMENT.equals(editMode)) {
 
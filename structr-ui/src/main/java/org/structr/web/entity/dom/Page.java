@@ -44,6 +44,7 @@ import org.structr.schema.json.JsonMethod;
 import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonSchema;
 import org.structr.web.common.RenderContext;
+import org.structr.web.common.RenderedFragmentCache;
 import org.structr.web.common.StringRenderBuffer;
 import org.structr.web.entity.Linkable;
 import org.structr.web.entity.Site;
@@ -395,6 +396,11 @@ public interface Page extends DOMNode, Linkable, Document, DOMImplementation {
 
 		renderContext.setPage(thisPage);
 
+		RenderedFragmentCache.render(thisPage, renderContext, () -> Page.renderChildren(thisPage, renderContext, depth));
+	}
+
+	static void renderChildren(final Page thisPage, final RenderContext renderContext, final int depth) throws FrameworkException {
+
 		// Skip DOCTYPE node
 		DOMNode subNode = (DOMNode) thisPage.getFirstChild().getNextSibling();
 
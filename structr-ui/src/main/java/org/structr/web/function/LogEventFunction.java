@@ -18,18 +18,26 @@
  */
 package org.structr.web.function;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.Map;
 import org.structr.common.error.FrameworkException;
-import org.structr.core.app.StructrApp;
-import org.structr.core.graph.NodeAttribute;
-import org.structr.core.property.PropertyMap;
+import org.structr.core.GraphObjectMap;
+import org.structr.core.graph.TransactionCommand;
+import org.structr.rest.logging.LogEventStore;
+import org.structr.rest.logging.LogEventStore.Event;
 import org.structr.rest.logging.entity.LogEvent;
 import org.structr.schema.action.ActionContext;
 import org.structr.web.entity.dom.DOMNode;
 
 /**
+ * Logs an event to the log event store once the current transaction has
+ * been committed.
  *
+ * Note: log events are no longer nodes, so this function returns a map
+ * with the properties of the event instead of a LogEvent node. Scripts
+ * that used the id of the returned object or modified it afterwards need
+ * to be adapted.
  */
 public class LogEventFunction extends UiFunction {
 
@@ -46,29 +54,23 @@ public class LogEventFunction extends UiFunction {
 
 		if (arrayHasMinLengthAndMaxLengthAndAllElementsNotNull(sources, 2, 4)) {
 
-			final String action = sources[0].toString();
+			final String action  = sources[0].toString();
 			final String message = sources[1].toString();
-
-			final LogEvent logEvent = StructrApp.getInstance().create(LogEvent.class,
-				new NodeAttribute(LogEvent.actionProperty, action),
-				new NodeAttribute(LogEvent.messageProperty, message),
-				new NodeAttribute(LogEvent.timestampProperty, new Date())
-			);
+			String subject       = null;
+			String object        = null;
 
 			switch (sources.length) {
 
 				case 4:
-					final String object = sources[3].toString();
-					logEvent.setProperties(logEvent.getSecurityContext(), new PropertyMap(LogEvent.objectProperty, object));
+					object = sources[3].toString();
 					// no break, next case should be included
 
 				case 3:
-					final String subject = sources[2].toString();
-					logEvent.setProperties(logEvent.getSecurityContext(), new PropertyMap(LogEvent.subjectProperty, subject));
+					subject = sources[2].toString();
 					break;
 			}
 
-			return logEvent;
+			return logEvent(action, message, subject, object);
 
 		} else if (sources.length == 1 && sources[0] instanceof Map) {
 
@@ -80,13 +82,7 @@ public class LogEventFunction extends UiFunction {
 			final String subject = DOMNode.objectToString(map.get("subject"));
 			final String object  = DOMNode.objectToString(map.get("object"));
 
-			return StructrApp.getInstance().create(LogEvent.class,
-				new NodeAttribute(LogEvent.actionProperty, action),
-				new NodeAttribute(LogEvent.messageProperty, message),
-				new NodeAttribute(LogEvent.timestampProperty, new Date()),
-				new NodeAttribute(LogEvent.subjectProperty, subject),
-				new NodeAttribute(LogEvent.objectProperty, object)
-			);
+			return logEvent(action, message, subject, object);
 
 		} else {
 
@@ -104,6 +100,33 @@ public class LogEventFunction extends UiFunction {
 
 	@Override
 	public String shortDescription() {
-		return "Logs an event to the Structr log";
+		return "Logs an event to the Structr log and returns it as a map";
+	}
+
+	// ----- private methods -----
+	private GraphObjectMap logEvent(final String action, final String message, final String subject, final String object) {
+
+		final GraphObjectMap event = new GraphObjectMap();
+		final Date timestamp       = new Date();
+
+		// the store is not transactional, so a rolled back action must not log anything
+		TransactionCommand.afterCommit(() -> {
+
+			try {
+
+				LogEventStore.getInstance().add(new Event(timestamp.getTime(), action, subject, object, message));
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to store log event: {}", ioex.getMessage());
+			}
+		});
+
+		event.put(LogEvent.actionProperty,    action);
+		event.put(LogEvent.messageProperty,   message);
+		event.put(LogEvent.timestampProperty, timestamp);
+		event.put(LogEvent.subjectProperty,   subject);
+		event.put(LogEvent.objectProperty,    object);
+
+		return event;
 	}
 }
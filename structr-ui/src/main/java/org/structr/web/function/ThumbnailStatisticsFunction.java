@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.function;
+
+import java.util.Map;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObjectMap;
+import org.structr.core.property.GenericProperty;
+import org.structr.schema.action.ActionContext;
+import org.structr.web.common.ThumbnailGenerator;
+
+/**
+ * Returns the metrics of the background thumbnail service.
+ */
+public class ThumbnailStatisticsFunction extends UiFunction {
+
+	public static final String ERROR_MESSAGE_THUMBNAIL_STATISTICS    = "Usage: ${thumbnail_statistics()}";
+	public static final String ERROR_MESSAGE_THUMBNAIL_STATISTICS_JS = "Usage: ${{Structr.thumbnailStatistics()}}";
+
+	@Override
+	public String getName() {
+		return "thumbnail_statistics()";
+	}
+
+	@Override
+	public Object apply(final ActionContext ctx, final Object caller, final Object[] sources) throws FrameworkException {
+
+		final GraphObjectMap result = new GraphObjectMap();
+
+		for (final Map.Entry<String, Object> entry : ThumbnailGenerator.getStatistics().entrySet()) {
+			result.put(new GenericProperty(entry.getKey()), entry.getValue());
+		}
+
+		return result;
+	}
+
+	@Override
+	public String usage(boolean inJavaScriptContext) {
+		return (inJavaScriptContext ? ERROR_MESSAGE_THUMBNAIL_STATISTICS_JS : ERROR_MESSAGE_THUMBNAIL_STATISTICS);
+	}
+
+	@Override
+	public String shortDescription() {
+		return "Returns the queue size, the number of completed, rejected and failed thumbnails and the average and maximum latency of the thumbnail service";
+	}
+}
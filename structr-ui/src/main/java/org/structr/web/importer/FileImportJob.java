@@ -115,6 +115,8 @@ abstract class FileImportJob extends ScheduledJob {
 
 		processedChunks                   = currentChunkNo;
 
+		setProcessedObjects(overallCount);
+
 		final long duration               = System.currentTimeMillis() - chunkStartTime;
 		final DecimalFormat decimalFormat = new DecimalFormat("0.00", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
 		final String formattedDuration    = decimalFormat.format((duration / 1000.0)) + "s";
@@ -138,6 +140,8 @@ abstract class FileImportJob extends ScheduledJob {
 		final String formattedDuration    = decimalFormat.format((duration / 1000.0)) + "s";
 		final String objectsPerSecond     = decimalFormat.format(objectCount / (duration / 1000.0));
 
+		setProcessedObjects(objectCount);
+
 		logger.info("{}: Finished importing file '{}' (Objects overall: {} - Time: {} - Objects/s: {})", getJobType(), filePath, objectCount, formattedDuration, objectsPerSecond);
 
 		final Map<String, Object> data = getStatusData(JobStatusMessageSubtype.END);
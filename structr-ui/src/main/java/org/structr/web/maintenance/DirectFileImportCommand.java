@@ -18,21 +18,36 @@
  */
 package org.structr.web.maintenance;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryIteratorException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import net.openhft.hashing.LongHashFunction;
 import org.apache.commons.lang3.EnumUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.config.Settings;
@@ -40,6 +55,7 @@ import org.structr.common.PathHelper;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.fulltext.FulltextIndexer;
+import org.structr.core.GraphObject;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
@@ -57,11 +73,20 @@ import org.structr.web.entity.File;
 import org.structr.web.entity.Image;
 
 /**
+ * Imports files and folders from the server's filesystem.
  *
+ * The import runs as a pipeline: the calling thread walks the source
+ * tree, a pool of worker threads copies the files into the files
+ * directory and computes their metadata, and a single writer thread
+ * creates the corresponding nodes in batches of <code>batchSize</code>
+ * per transaction. Imported files are recorded in a journal in the data
+ * exchange directory, so that an interrupted import can be resumed by
+ * running the command again with the same parameters.
  */
 public class DirectFileImportCommand extends NodeServiceCommand implements MaintenanceCommand {
 
 	private static final Logger logger = LoggerFactory.getLogger(DirectFileImportCommand.class.getName());
+	private static final Entry END     = new Entry(null, null);
 
 	static {
 
@@ -71,10 +96,27 @@ public class DirectFileImportCommand extends NodeServiceCommand implements Maint
 	private enum Mode     { COPY, MOVE }
 	private enum Existing { SKIP, OVERWRITE, RENAME }
 
-	private FulltextIndexer indexer = null;
-	private Integer folderCount     = 0;
-	private Integer fileCount       = 0;
-	private Integer stepCounter     = 0;
+	private final Map<String, String> folderCache = new HashMap<>();
+	private final Set<String> createdFolders      = new HashSet<>();
+	private final Set<Long> journaled             = new HashSet<>();
+	private final AtomicInteger folderCount       = new AtomicInteger();
+	private final AtomicInteger fileCount         = new AtomicInteger();
+	private final AtomicInteger skipCount         = new AtomicInteger();
+	private final AtomicInteger failCount         = new AtomicInteger();
+	private final AtomicLong byteCount            = new AtomicLong();
+	private BlockingQueue<Entry> queue            = null;
+	private FulltextIndexer indexer               = null;
+	private BufferedWriter journal                = null;
+	private SecurityContext ctx                   = null;
+	private Existing existing                     = null;
+	private Path journalPath                      = null;
+	private Mode mode                             = null;
+	private boolean doIndex                       = false;
+	private long startTime                        = 0L;
+	private long lastReport                       = 0L;
+	private volatile boolean aborted              = false;
+	private int stepCounter                       = 0;
+	private int batchSize                         = 0;
 
 	@Override
 	public void execute(final Map<String, Object> attributes) throws FrameworkException {
@@ -84,7 +126,10 @@ public class DirectFileImportCommand extends NodeServiceCommand implements Maint
 		final String sourcePath     = getParameterValueAsString(attributes, "source", null);
 		final String modeString     = getParameterValueAsString(attributes, "mode", Mode.COPY.name()).toUpperCase();
 		final String existingString = getParameterValueAsString(attributes, "existing", Existing.SKIP.name()).toUpperCase();
-		final boolean doIndex       = Boolean.parseBoolean(getParameterValueAsString(attributes, "index", Boolean.TRUE.toString()));
+		final int threads           = Math.max(1, NumberUtils.toInt(getParameterValueAsString(attributes, "threads", null), Runtime.getRuntime().availableProcessors()));
+
+		doIndex   = Boolean.parseBoolean(getParameterValueAsString(attributes, "index", Boolean.TRUE.toString()));
+		batchSize = Math.max(1, NumberUtils.toInt(getParameterValueAsString(attributes, "batchSize", null), 100));
 
 		if (StringUtils.isBlank(sourcePath)) {
 			throw new FrameworkException(422, "Please provide 'source' attribute for deployment source directory path.");
@@ -99,8 +144,8 @@ public class DirectFileImportCommand extends NodeServiceCommand implements Maint
 		}
 
 		// use actual enums
-		final Existing existing = Existing.valueOf(existingString);
-		final Mode mode         = Mode.valueOf(modeString);
+		existing = Existing.valueOf(existingString);
+		mode     = Mode.valueOf(modeString);
 
 		final List<Path> paths = new ArrayList<>();
 
@@ -153,10 +198,12 @@ public class DirectFileImportCommand extends NodeServiceCommand implements Maint
 
 		}
 
-		final SecurityContext ctx = SecurityContext.getSuperUserInstance();
-		final App app             = StructrApp.getInstance(ctx);
-		String targetPath         = getParameterValueAsString(attributes, "target", "/");
-		Folder targetFolder       = null;
+		ctx = SecurityContext.getSuperUserInstance();
+
+		final App app       = StructrApp.getInstance(ctx);
+		String targetPath   = getParameterValueAsString(attributes, "target", "/");
+		String targetBase   = "";
+		Folder targetFolder = null;
 
 		ctx.setDoTransactionNotifications(false);
 
@@ -170,185 +217,604 @@ public class DirectFileImportCommand extends NodeServiceCommand implements Maint
 					throw new FrameworkException(422, "Target path " + targetPath + " does not exist.");
 				}
 
+				targetBase = PathHelper.PATH_SEP + PathHelper.clean(targetPath);
+
+				folderCache.put(targetBase, targetFolder.getUuid());
+
 				tx.success();
 			}
 		}
 
+		openJournal(sourcePath, targetPath);
+
 		String msg = "Starting direct file import from source directory " + sourcePath + " into target path " + targetPath;
 		logger.info(msg);
 		publishProgressMessage(msg);
 
-		paths.forEach((path) -> {
+		final AtomicInteger threadCount  = new AtomicInteger();
+		final ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(threads * 16), r -> {
+
+			final Thread thread = new Thread(r, "DirectFileImportWorker" + threadCount.incrementAndGet());
+
+			thread.setDaemon(true);
+
+			return thread;
+
+		}, new ThreadPoolExecutor.CallerRunsPolicy());
+
+		final Thread writer = new Thread(this::write, "DirectFileImportWriter");
+
+		queue      = new LinkedBlockingQueue<>(Math.max(1000, batchSize * 2));
+		startTime  = System.currentTimeMillis();
+		lastReport = startTime;
+		aborted    = false;
+
+		writer.start();
+
+		try {
+
+			for (final Path path : paths) {
+
+				try {
+
+					walk(path, targetBase, workers);
+
+				} catch (final IOException ex) {
+					logger.debug("Mode: " + modeString + ", path: " + sourcePath, ex);
+				}
+			}
+
+		} finally {
+
+			workers.shutdown();
 
 			try {
 
-				final String newTargetPath;
+				workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
 
-				// If path is a directory, create it and use it as the new target folder
-				if (Files.isDirectory(path)) {
+				enqueue(END);
+				writer.join();
 
-					Path parentPath = path.getParent();
-					if (parentPath == null) {
-						parentPath = path;
-					}
+			} catch (IOException ioex) {
 
-					createFileOrFolder(ctx, app, parentPath, path, Files.readAttributes(path, BasicFileAttributes.class), sourcePath, targetPath, mode, existing, doIndex);
+				// writer has stopped, nothing to wait for
 
-					newTargetPath = targetPath + PathHelper.PATH_SEP + PathHelper.clean(path.getFileName().toString());
+			} catch (InterruptedException iex) {
 
-				} else {
+				writer.interrupt();
+				Thread.currentThread().interrupt();
+			}
+
+			if (aborted) {
+
+				// discard files that were staged after the writer stopped
+				discardQueuedEntries();
+			}
+
+			closeJournal();
+		}
+
+		if (aborted) {
+
+			msg = "Direct file import from source directory " + sourcePath + " was aborted because of an unexpected error. " + getStatus();
+
+			logger.error(msg);
+
+			publishWarnigMessage("Direct file import aborted", msg);
+
+			return;
+		}
+
+		msg = "Finished direct file import from source directory " + sourcePath + ". " + getStatus();
+
+		if (failCount.get() > 0) {
+			msg += " Run the import again with the same parameters to retry the failed files.";
+		}
+
+		logger.info(msg);
+
+		publishProgressMessage(msg);
+	}
 
-					newTargetPath = targetPath;
+	private void walk(final Path root, final String targetPath, final ExecutorService workers) throws IOException {
+
+		// a source directory is imported as a folder in the target path,
+		// so all paths are resolved relative to its parent
+		final Path base = root.getParent() != null ? root.getParent() : root;
+
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+
+				if (!dir.equals(base)) {
+
+					enqueue(new Entry(dir, getFolderPath(targetPath, base, dir)));
 				}
 
-				Files.walkFileTree(path, new FileVisitor<Path>() {
+				return FileVisitResult.CONTINUE;
+			}
 
-					@Override
-					public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
-						return FileVisitResult.CONTINUE;
-					}
+			@Override
+			public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
 
-					@Override
-					public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
-						return createFileOrFolder(ctx, app, path, file, attrs, sourcePath, newTargetPath, mode, existing, doIndex);
-					}
+				if (aborted) {
+					return FileVisitResult.TERMINATE;
+				}
 
-					@Override
-					public FileVisitResult visitFileFailed(final Path file, final IOException exc) throws IOException {
-						return FileVisitResult.CONTINUE;
-					}
+				if (attrs.isRegularFile()) {
+
+					if (journaled.contains(hash(file))) {
+
+						skipCount.incrementAndGet();
+
+					} else {
+
+						final String folderPath = getFolderPath(targetPath, base, file.getParent());
 
-					@Override
-					public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
-						return FileVisitResult.CONTINUE;
+						workers.submit(() -> stage(file, folderPath));
 					}
-				});
+				}
+
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(final Path file, final IOException exc) throws IOException {
 
-			} catch (final IOException ex) {
-				logger.debug("Mode: " + modeString + ", path: " + sourcePath, ex);
+				logger.warn("Unable to read {}: {}", file, exc.getMessage());
+				failCount.incrementAndGet();
+
+				return FileVisitResult.CONTINUE;
 			}
 		});
+	}
 
-		msg = "Finished direct file import from source directory " + sourcePath + ". Imported " + folderCount + " folders and " + fileCount + " files.";
-		logger.info(msg);
+	/**
+	 * Copies the given file into the files directory and computes its
+	 * metadata. Runs on the worker threads.
+	 */
+	private void stage(final Path file, final String folderPath) {
 
-		publishProgressMessage(msg);
+		final String uuid  = NodeServiceCommand.getNextUuid();
+		final Entry entry  = new Entry(file, folderPath);
+
+		entry.staged = Paths.get(Settings.FilesPath.getValue(), AbstractFile.getDirectoryPath(uuid), uuid).toAbsolutePath().normalize();
+		entry.name   = file.getFileName().toString();
+		entry.uuid   = uuid;
+
+		try {
+
+			Files.createDirectories(entry.staged.getParent());
+
+			// source files of a MOVE import are removed after the transaction
+			// is committed, so an interrupted import never loses a file
+			Files.copy(file, entry.staged);
+
+			final java.io.File staged = entry.staged.toFile();
+
+			entry.contentType  = FileHelper.getContentMimeType(staged, entry.name);
+			entry.checksum     = FileHelper.getChecksum(staged);
+			entry.lastModified = staged.lastModified();
+			entry.size         = staged.length();
+
+			enqueue(entry);
+
+		} catch (final IOException ioex) {
+
+			logger.warn("Unable to import {}: {}", file, ioex.getMessage());
+
+			failCount.incrementAndGet();
+			delete(entry.staged);
+		}
 	}
 
-	private FileVisitResult createFileOrFolder(final SecurityContext ctx, final App app, final Path path, final Path file, final BasicFileAttributes attrs,
-			final String sourcePath, final String targetPath, final Mode mode, final Existing existing, final boolean doIndex) {
+	private void enqueue(final Entry entry) throws IOException {
 
-		ctx.setDoTransactionNotifications(false);
+		try {
 
-		final String name = file.getFileName().toString();
+			// do not block forever on a full queue if the writer has stopped
+			while (!queue.offer(entry, 1, TimeUnit.SECONDS)) {
 
-		try (final Tx tx = app.tx()) {
+				if (aborted) {
+					throw new IOException("Import was aborted");
+				}
+			}
+
+		} catch (InterruptedException iex) {
 
-			final String relativePath = PathHelper.getRelativeNodePath(path.toString(), file.toString());
-			String parentPath         = targetPath + PathHelper.getFolderPath(relativePath);
+			Thread.currentThread().interrupt();
+			throw new IOException("Import was interrupted");
+		}
+	}
 
-			// fix broken path concatenation
-			if (parentPath.startsWith("//")) {
-				parentPath = parentPath.substring(1);
+	private void discardQueuedEntries() {
+
+		final List<Entry> entries = new ArrayList<>();
+
+		queue.drainTo(entries);
+		discard(entries);
+	}
+
+	/**
+	 * Deletes the staged files of the given entries, they count as failed
+	 * so that the journal is kept to resume the import.
+	 */
+	private void discard(final List<Entry> entries) {
+
+		for (final Entry entry : entries) {
+
+			if (entry.staged != null) {
+
+				failCount.incrementAndGet();
+				delete(entry.staged);
 			}
+		}
+	}
 
-			if (attrs.isDirectory()) {
+	/**
+	 * Creates the nodes for the staged entries in batches. Runs on the
+	 * writer thread.
+	 */
+	private void write() {
 
-				final Folder newFolder = app.create(Folder.class,
-						new NodeAttribute(Folder.name, name),
-						new NodeAttribute(StructrApp.key(File.class, "parent"), FileHelper.createFolderPath(securityContext, parentPath))
-				);
+		final List<Entry> batch = new ArrayList<>(batchSize);
+		boolean done            = false;
 
-				folderCount++;
+		try {
 
-				logger.info("Created folder " + newFolder.getPath());
+			while (!done) {
 
-			} else if (attrs.isRegularFile()) {
+				try {
 
-				final File existingFile = app.nodeQuery(File.class).and(StructrApp.key(AbstractFile.class, "path"), parentPath + name).getFirst();
-				if (existingFile != null) {
+					batch.add(queue.take());
+					queue.drainTo(batch, batchSize - 1);
 
-					switch (existing) {
+				} catch (InterruptedException iex) {
 
-						case SKIP:
-							logger.info("Skipping import of {}, file exists and mode is SKIP.", parentPath + name);
-							return FileVisitResult.CONTINUE;
+					// discard staged files that have not been imported
+					discard(batch);
+					discardQueuedEntries();
 
-						case OVERWRITE:
-							logger.info("Overwriting {}, file exists and mode is OVERWRITE.", parentPath + name);
-							app.delete(existingFile);
-							break;
+					return;
+				}
 
-						case RENAME:
-							logger.info("Renaming existing file {}, file exists and mode is RENAME.", parentPath + name);
-							existingFile.setProperty(AbstractFile.name, existingFile.getProperty(AbstractFile.name).concat("_").concat(FileHelper.getDateString()));
-							break;
-					}
+				if (batch.get(batch.size() - 1) == END) {
 
+					batch.remove(batch.size() - 1);
+					done = true;
 				}
 
-				final String contentType = FileHelper.getContentMimeType(file.toFile(), file.getFileName().toString());
+				if (!batch.isEmpty()) {
 
-				boolean isImage = (contentType != null && contentType.startsWith("image"));
-				boolean isVideo = (contentType != null && contentType.startsWith("video"));
+					commit(batch);
+				}
 
-				Class cls = null;
+				// committed entries must not be discarded if reporting fails
+				batch.clear();
 
-				if (isImage) {
+				reportProgress();
+			}
 
-					cls = Image.class;
+		} catch (Throwable t) {
 
-				} else if (isVideo) {
+			logger.error("Direct file import writer stopped unexpectedly", t);
 
-					cls = SchemaHelper.getEntityClassForRawType("VideoFile");
-					if (cls == null) {
+			// stop the producers, they would block on the full queue otherwise
+			aborted = true;
 
-						logger.warn("Unable to create entity of type VideoFile, class is not defined.");
-					}
+			discard(batch);
+			discardQueuedEntries();
+		}
+	}
+
+	private void commit(final List<Entry> batch) {
+
+		final App app                 = StructrApp.getInstance(ctx);
+		final List<String> newFolders = new ArrayList<>();
+
+		try (final Tx tx = app.tx()) {
+
+			for (final Entry entry : batch) {
+
+				if (entry.staged != null) {
+
+					createFile(app, entry, newFolders);
 
 				} else {
 
-					cls = File.class;
+					getFolder(app, entry.folderPath, newFolders);
+				}
+			}
+
+			tx.success();
+
+		} catch (IOException | FrameworkException | RuntimeException ex) {
+
+			// forget about folders that were rolled back
+			for (final String path : newFolders) {
+
+				folderCache.remove(path);
+				createdFolders.remove(path);
+			}
+
+			if (batch.size() > 1) {
+
+				// isolate the entries that caused the transaction to fail
+				for (final Entry entry : batch) {
+
+					final List<Entry> single = new ArrayList<>();
+
+					single.add(entry);
+					commit(single);
 				}
 
-				final File newFile = (File) app.create(cls,
-						new NodeAttribute(File.name, name),
-						new NodeAttribute(StructrApp.key(File.class, "parent"), FileHelper.createFolderPath(securityContext, parentPath)),
-						new NodeAttribute(AbstractNode.type, cls.getSimpleName())
-				);
+			} else {
+
+				final Entry entry = batch.get(0);
+
+				logger.warn("Unable to import {}: {}", entry.source, ex.getMessage());
+				logger.debug("File: " + entry.name + ", path: " + entry.source, ex);
+
+				failCount.incrementAndGet();
+				delete(entry.staged);
+			}
+
+			return;
+		}
+
+		folderCount.addAndGet(newFolders.size());
+
+		try {
+
+			for (final Entry entry : batch) {
+
+				if (entry.staged != null) {
+
+					if (entry.skipped) {
+
+						skipCount.incrementAndGet();
+						delete(entry.staged);
+
+					} else {
+
+						fileCount.incrementAndGet();
+						byteCount.addAndGet(entry.size);
+
+						if (Mode.MOVE.equals(mode)) {
+							delete(entry.source);
+						}
+					}
+
+					journal.write(entry.source.toAbsolutePath().toString());
+					journal.newLine();
+				}
+			}
+
+			journal.flush();
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to write import journal {}: {}", journalPath, ioex.getMessage());
+		}
+	}
+
+	private void createFile(final App app, final Entry entry, final List<String> newFolders) throws IOException, FrameworkException {
+
+		final Folder parent = getFolder(app, entry.folderPath, newFolders);
+		final String path   = entry.folderPath + PathHelper.PATH_SEP + entry.name;
+
+		entry.skipped = false;
+
+		// folders that were created by this import can not contain existing files
+		if (!createdFolders.contains(entry.folderPath)) {
 
-				final java.io.File fileOnDisk = newFile.getFileOnDisk(false);
-				final Path fullFolderPath     = fileOnDisk.toPath();
+			final File existingFile = app.nodeQuery(File.class).and(StructrApp.key(AbstractFile.class, "path"), path).getFirst();
+			if (existingFile != null) {
 
-				Files.createDirectories(fullFolderPath.getParent());
+				switch (existing) {
 
-				switch (mode) {
+					case SKIP:
+						logger.info("Skipping import of {}, file exists and mode is SKIP.", path);
+						entry.skipped = true;
+						return;
 
-					case MOVE:
-						Files.move(file, fullFolderPath);
+					case OVERWRITE:
+						logger.info("Overwriting {}, file exists and mode is OVERWRITE.", path);
+						app.delete(existingFile);
 						break;
 
-					case COPY:
-						Files.copy(file, fullFolderPath);
+					case RENAME:
+						logger.info("Renaming existing file {}, file exists and mode is RENAME.", path);
+						existingFile.setProperty(AbstractFile.name, existingFile.getProperty(AbstractFile.name).concat("_").concat(FileHelper.getDateString()));
 						break;
 				}
+			}
+		}
+
+		final Class cls    = getFileType(entry.contentType);
+		final File newFile = (File) app.create(cls,
+				new NodeAttribute(GraphObject.id, entry.uuid),
+				new NodeAttribute(File.name, entry.name),
+				new NodeAttribute(StructrApp.key(AbstractFile.class, "parent"), parent),
+				new NodeAttribute(AbstractNode.type, cls.getSimpleName()),
+				new NodeAttribute(StructrApp.key(File.class, "contentType"), entry.contentType),
+				new NodeAttribute(StructrApp.key(File.class, "fileModificationDate"), entry.lastModified),
+				new NodeAttribute(StructrApp.key(File.class, "checksum"), entry.checksum),
+				new NodeAttribute(StructrApp.key(File.class, "size"), entry.size)
+		);
+
+		// the file was staged in the default location, which differs for mounted folders
+		final Path fileOnDisk = newFile.getFileOnDisk(false).toPath().toAbsolutePath().normalize();
+		if (!fileOnDisk.equals(entry.staged)) {
+
+			Files.createDirectories(fileOnDisk.getParent());
+			Files.move(entry.staged, fileOnDisk);
+
+			entry.staged = fileOnDisk;
+		}
+
+		if (doIndex) {
+			indexer.addToFulltextIndex(newFile);
+		}
+	}
+
+	private Folder getFolder(final App app, final String path, final List<String> newFolders) throws FrameworkException {
+
+		if (path.isEmpty()) {
+			return null;
+		}
+
+		final String uuid = folderCache.get(path);
+		if (uuid != null) {
 
-				FileHelper.updateMetadata(newFile);
+			final Folder folder = app.get(Folder.class, uuid);
+			if (folder != null) {
+
+				return folder;
+			}
+		}
+
+		Folder folder = app.nodeQuery(Folder.class).and(StructrApp.key(AbstractFile.class, "path"), path).getFirst();
+		if (folder == null) {
+
+			folder = app.create(Folder.class,
+					new NodeAttribute(Folder.name, StringUtils.substringAfterLast(path, PathHelper.PATH_SEP)),
+					new NodeAttribute(StructrApp.key(AbstractFile.class, "parent"), getFolder(app, StringUtils.substringBeforeLast(path, PathHelper.PATH_SEP), newFolders))
+			);
+
+			newFolders.add(path);
+			createdFolders.add(path);
+		}
+
+		folderCache.put(path, folder.getUuid());
+
+		return folder;
+	}
+
+	private Class getFileType(final String contentType) {
+
+		if (contentType != null && contentType.startsWith("image")) {
+
+			return Image.class;
+		}
 
-				if (doIndex) {
-					indexer.addToFulltextIndex(newFile);
+		if (contentType != null && contentType.startsWith("video")) {
+
+			final Class cls = SchemaHelper.getEntityClassForRawType("VideoFile");
+			if (cls != null) {
+
+				return cls;
+			}
+
+			logger.warn("Unable to create entity of type VideoFile, class is not defined.");
+		}
+
+		return File.class;
+	}
+
+	private String getFolderPath(final String targetPath, final Path base, final Path dir) {
+
+		final StringBuilder buf = new StringBuilder(targetPath);
+
+		if (!dir.equals(base)) {
+
+			for (final Path part : base.relativize(dir)) {
+
+				buf.append(PathHelper.PATH_SEP);
+				buf.append(part.toString());
+			}
+		}
+
+		return buf.toString();
+	}
+
+	private void openJournal(final String sourcePath, final String targetPath) throws FrameworkException {
+
+		final Path dir = Paths.get(Settings.getFullSettingPath(Settings.DataExchangePath));
+
+		journalPath = dir.resolve("directFileImport-" + Long.toHexString(LongHashFunction.xx().hashChars(sourcePath + "|" + targetPath)) + ".journal");
+
+		try {
+
+			Files.createDirectories(dir);
+
+			if (Files.exists(journalPath)) {
+
+				for (final String line : Files.readAllLines(journalPath, StandardCharsets.UTF_8)) {
+					journaled.add(hash(Paths.get(line)));
 				}
 
-				fileCount++;
+				logger.info("Resuming direct file import, {} files were imported before.", journaled.size());
 			}
 
-			tx.success();
+			journal = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
 
-		} catch (IOException | FrameworkException ex) {
-			logger.debug("File: " + name + ", path: " + sourcePath, ex);
+		} catch (IOException ioex) {
+			throw new FrameworkException(500, "Unable to open import journal " + journalPath + ": " + ioex.getMessage());
 		}
+	}
+
+	private void closeJournal() {
 
-		return FileVisitResult.CONTINUE;
+		try {
+
+			journal.close();
+
+			// the journal is only needed to resume incomplete imports
+			if (failCount.get() == 0 && !aborted && !Thread.currentThread().isInterrupted()) {
+				Files.delete(journalPath);
+			}
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to close import journal {}: {}", journalPath, ioex.getMessage());
+		}
+	}
+
+	private void reportProgress() {
+
+		final long now = System.currentTimeMillis();
+
+		if (now - lastReport >= 10000L) {
+
+			final String msg = getStatus();
+
+			lastReport = now;
+
+			logger.info(msg);
+			publishProgressMessage(msg);
+		}
+	}
+
+	private String getStatus() {
+
+		final double seconds = Math.max(1L, System.currentTimeMillis() - startTime) / 1000.0;
+
+		return String.format("Imported %d folders and %d files in %.1f s (%.1f files/s, %.1f MB/s), skipped %d files, %d failed.",
+			folderCount.get(),
+			fileCount.get(),
+			seconds,
+			fileCount.get() / seconds,
+			byteCount.get() / seconds / (1024.0 * 1024.0),
+			skipCount.get(),
+			failCount.get()
+		);
+	}
+
+	private long hash(final Path path) {
+		return LongHashFunction.xx().hashChars(path.toAbsolutePath().toString());
+	}
+
+	private void delete(final Path path) {
+
+		try {
+
+			if (path != null) {
+				Files.deleteIfExists(path);
+			}
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to delete {}: {}", path, ioex.getMessage());
+		}
 	}
 
 	@Override
@@ -396,4 +862,24 @@ public class DirectFileImportCommand extends NodeServiceCommand implements Maint
 
 	}
 
+	// ----- nested classes -----
+	private static class Entry {
+
+		private String contentType = null;
+		private String folderPath  = null;
+		private boolean skipped    = false;
+		private String name        = null;
+		private String uuid        = null;
+		private Path source        = null;
+		private Path staged        = null;
+		private long lastModified  = 0L;
+		private long checksum      = 0L;
+		private long size          = 0L;
+
+		Entry(final Path source, final String folderPath) {
+
+			this.folderPath = folderPath;
+			this.source     = source;
+		}
+	}
 }
@@ -25,6 +25,7 @@ import org.structr.common.SecurityContext;
 import org.structr.core.GraphObject;
 import org.structr.core.property.AbstractReadOnlyProperty;
 import org.structr.core.property.Property;
+import org.structr.web.common.ThumbnailGenerator;
 import org.structr.web.entity.Image;
 
 /**
@@ -57,6 +58,12 @@ public class ThumbnailProperty extends AbstractReadOnlyProperty<Image> {
 			return null;
 		}
 
+		if (ThumbnailGenerator.isEnabled()) {
+
+			// don't block the request, thumbnail is created in the background
+			return Image.getScaledImageAsync((Image)obj, width, height, crop);
+		}
+
 		return ((Image)obj).getScaledImage(width, height, crop);
 	}
 
@@ -457,6 +457,9 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 							final AtomicBoolean finished = new AtomicBoolean(false);
 							final DOMNode rootNode = rootElement;
 
+							// the render buffer may be replaced temporarily while rendering (e.g. for caching)
+							final Queue<String> queue = renderContext.getBuffer().getQueue();
+
 							threadPool.submit(new Runnable() {
 
 								@Override
@@ -496,7 +499,6 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 									try {
 
-										final Queue<String> queue = renderContext.getBuffer().getQueue();
 										while (out.isReady()) {
 
 											String buffer = null;
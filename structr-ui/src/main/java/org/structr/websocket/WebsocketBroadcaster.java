@@ -0,0 +1,351 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.websocket;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+import org.structr.websocket.message.WebSocketMessage;
+
+/**
+ * Delivers broadcast messages to the connected websocket clients in the
+ * background, so that committing threads never wait for serialization
+ * or slow clients.
+ *
+ * Messages are collected for a short interval, and updates of the same
+ * object within that interval are merged into a single message. Each
+ * message is serialized once per distinct result the clients are allowed
+ * to see. Every client has its own bounded queue of outgoing messages;
+ * when a client cannot keep up, its oldest messages are dropped.
+ */
+public class WebsocketBroadcaster {
+
+	private static final Logger logger             = LoggerFactory.getLogger(WebsocketBroadcaster.class.getName());
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	private final Map<StructrWebSocket, ClientQueue> clientQueues = new ConcurrentHashMap<>();
+	private final AtomicLong coalescedMessages                    = new AtomicLong();
+	private final AtomicLong droppedMessages                      = new AtomicLong();
+	private final AtomicLong droppedBroadcasts                    = new AtomicLong();
+	private final AtomicLong sentMessages                         = new AtomicLong();
+	private BlockingQueue<Broadcast> queue                        = null;
+	private WebsocketController controller                        = null;
+	private ExecutorService senderPool                            = null;
+	private Thread dispatcher                                     = null;
+	private int clientQueueSize                                   = 0;
+	private long delay                                            = 0L;
+
+	public WebsocketBroadcaster(final WebsocketController controller) {
+
+		this.queue           = new ArrayBlockingQueue<>(Math.max(1, Settings.WebsocketBroadcastQueue.getValue()));
+		this.clientQueueSize = Math.max(1, Settings.WebsocketClientQueue.getValue());
+		this.delay           = Math.max(0, Settings.WebsocketBroadcastDelay.getValue());
+		this.controller      = controller;
+
+		this.senderPool = Executors.newFixedThreadPool(Math.max(1, Settings.WebsocketBroadcastThreads.getValue()), r -> {
+
+			final Thread thread = new Thread(r, "WebsocketSender" + threadCount.incrementAndGet());
+
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		this.dispatcher = new Thread(this::dispatch, "WebsocketBroadcaster");
+
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	/**
+	 * Stops the dispatcher and sender threads, pending messages are
+	 * discarded.
+	 */
+	public void stop() {
+
+		dispatcher.interrupt();
+		senderPool.shutdownNow();
+
+		try {
+
+			dispatcher.join(1000);
+
+		} catch (InterruptedException iex) {
+			Thread.currentThread().interrupt();
+		}
+
+		queue.clear();
+		clientQueues.clear();
+	}
+
+	/**
+	 * Schedules the given message for delivery to all clients except the
+	 * one with the given session ID. This method never blocks; when the
+	 * queue is full, the message is dropped.
+	 *
+	 * @param message
+	 * @param exemptedSessionId
+	 */
+	public void enqueue(final WebSocketMessage message, final String exemptedSessionId) {
+
+		if (!queue.offer(new Broadcast(message, exemptedSessionId))) {
+
+			if (droppedBroadcasts.incrementAndGet() % 1000 == 1) {
+				logger.warn("Websocket broadcast queue is full, {} messages dropped so far", droppedBroadcasts.get());
+			}
+		}
+	}
+
+	/**
+	 * Schedules the given serialized message for delivery to the given
+	 * client.
+	 *
+	 * @param socket
+	 * @param message
+	 */
+	public void send(final StructrWebSocket socket, final String message) {
+		clientQueues.computeIfAbsent(socket, ClientQueue::new).add(message);
+	}
+
+	public void remove(final StructrWebSocket socket) {
+		clientQueues.remove(socket);
+	}
+
+	Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new HashMap<>();
+
+		statistics.put("queued",            queue.size());
+		statistics.put("sent",              sentMessages.get());
+		statistics.put("coalesced",         coalescedMessages.get());
+		statistics.put("dropped",           droppedMessages.get());
+		statistics.put("droppedBroadcasts", droppedBroadcasts.get());
+
+		return statistics;
+	}
+
+	// ----- private methods -----
+	private void dispatch() {
+
+		final List<Broadcast> batch = new ArrayList<>();
+
+		while (!Thread.currentThread().isInterrupted()) {
+
+			try {
+
+				batch.add(queue.take());
+
+				// collect the messages of the next few transactions as well
+				if (delay > 0) {
+					Thread.sleep(delay);
+				}
+
+				queue.drainTo(batch);
+
+				// read-only transaction, needed to check visibility and to serialize results
+				try (final Tx tx = StructrApp.getInstance().tx(false, false, false)) {
+
+					for (final Broadcast broadcast : coalesce(batch)) {
+
+						// a single failing message must not drop the rest of the batch
+						try {
+
+							controller.deliver(broadcast.message, broadcast.exemptedSessionId);
+
+						} catch (Throwable t) {
+
+							logger.warn("Unable to broadcast websocket message {}", broadcast.message.getCommand(), t);
+						}
+					}
+				}
+
+			} catch (InterruptedException iex) {
+
+				return;
+
+			} catch (Throwable t) {
+
+				logger.warn("Unable to broadcast websocket messages", t);
+
+			} finally {
+
+				batch.clear();
+			}
+		}
+	}
+
+	private Collection<Broadcast> coalesce(final List<Broadcast> batch) {
+
+		final Map<Object, Broadcast> broadcasts = new LinkedHashMap<>();
+
+		for (final Broadcast broadcast : batch) {
+
+			final String key = broadcast.getCoalescingKey();
+			if (key != null) {
+
+				// move merged message to the position of the latest update
+				final Broadcast previous = broadcasts.remove(key);
+				if (previous != null) {
+
+					broadcast.merge(previous);
+					coalescedMessages.incrementAndGet();
+				}
+
+				broadcasts.put(key, broadcast);
+
+			} else {
+
+				broadcasts.put(broadcast, broadcast);
+			}
+		}
+
+		return broadcasts.values();
+	}
+
+	// ----- nested classes -----
+	private static class Broadcast {
+
+		private WebSocketMessage message = null;
+		private String exemptedSessionId = null;
+
+		Broadcast(final WebSocketMessage message, final String exemptedSessionId) {
+
+			this.message           = message;
+			this.exemptedSessionId = exemptedSessionId;
+		}
+
+		String getCoalescingKey() {
+
+			if (exemptedSessionId == null && "UPDATE".equals(message.getCommand()) && message.getId() != null) {
+				return message.getCommand() + ":" + message.getId() + ":" + message.getCallback();
+			}
+
+			return null;
+		}
+
+		void merge(final Broadcast previous) {
+
+			final WebSocketMessage other = previous.message;
+
+			message.getModifiedProperties().addAll(other.getModifiedProperties());
+			message.getRemovedProperties().addAll(other.getRemovedProperties());
+
+			for (final Map.Entry<String, Object> entry : other.getNodeData().entrySet()) {
+				message.getNodeData().putIfAbsent(entry.getKey(), entry.getValue());
+			}
+
+			for (final Map.Entry<String, Object> entry : other.getRelData().entrySet()) {
+				message.getRelData().putIfAbsent(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private class ClientQueue implements Runnable {
+
+		private final Queue<String> messages  = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private final AtomicInteger size      = new AtomicInteger();
+		private StructrWebSocket socket       = null;
+
+		ClientQueue(final StructrWebSocket socket) {
+			this.socket = socket;
+		}
+
+		void add(final String message) {
+
+			// client can't keep up, drop oldest message
+			if (size.incrementAndGet() > clientQueueSize && messages.poll() != null) {
+
+				size.decrementAndGet();
+
+				if (droppedMessages.incrementAndGet() % 1000 == 1) {
+					logger.warn("Websocket client {} is too slow, {} messages dropped so far", socket, droppedMessages.get());
+				}
+			}
+
+			messages.add(message);
+			schedule();
+		}
+
+		@Override
+		public void run() {
+
+			String message = null;
+
+			while ((message = messages.poll()) != null) {
+
+				size.decrementAndGet();
+
+				if (controller.send(socket, message)) {
+
+					sentMessages.incrementAndGet();
+
+				} else {
+
+					messages.clear();
+					size.set(0);
+					break;
+				}
+			}
+
+			scheduled.set(false);
+
+			// messages may have arrived after the queue was drained
+			if (!messages.isEmpty()) {
+				schedule();
+			}
+		}
+
+		private void schedule() {
+
+			if (scheduled.compareAndSet(false, true)) {
+
+				try {
+
+					senderPool.execute(this);
+
+				} catch (RejectedExecutionException rex) {
+
+					// broadcaster was stopped
+					messages.clear();
+					size.set(0);
+				}
+			}
+		}
+	}
+}
@@ -21,6 +21,7 @@ package org.structr.websocket;
 import com.google.gson.Gson;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -34,6 +35,7 @@ import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.WebSocketException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.api.graph.RelationshipType;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -62,11 +64,16 @@ public class WebsocketController implements StructrTransactionListener {
 	private static final Set<String> BroadcastCommands = new HashSet<>(Arrays.asList(new String[] { "UPDATE", "ADD", "CREATE" } ));
 
 	private final Set<StructrWebSocket> clients = ConcurrentHashMap.newKeySet();
+	private WebsocketBroadcaster broadcaster    = null;
 	private Gson gson                           = null;
 
 	public WebsocketController(final Gson gson) {
 
 		this.gson = gson;
+
+		if (Settings.WebsocketBroadcastAsync.getValue()) {
+			this.broadcaster = new WebsocketBroadcaster(this);
+		}
 	}
 
 	public void registerClient(final StructrWebSocket client) {
@@ -77,6 +84,20 @@ public class WebsocketController implements StructrTransactionListener {
 	public void unregisterClient(final StructrWebSocket client) {
 
 		clients.remove(client);
+
+		if (broadcaster != null) {
+			broadcaster.remove(client);
+		}
+	}
+
+	/**
+	 * Stops the background broadcaster, if any.
+	 */
+	public void stop() {
+
+		if (broadcaster != null) {
+			broadcaster.stop();
+		}
 	}
 
 	private void broadcast(final WebSocketMessage webSocketData) {
@@ -86,17 +107,33 @@ public class WebsocketController implements StructrTransactionListener {
 
 	private void broadcast(final WebSocketMessage webSocketData, final String exemptedSessionId) {
 
+		if (broadcaster != null) {
+
+			broadcaster.enqueue(webSocketData, exemptedSessionId);
+
+		} else {
+
+			deliver(webSocketData, exemptedSessionId);
+		}
+	}
+
+	/**
+	 * Serializes the given message for all clients that are allowed to
+	 * receive it, and sends it directly or via the broadcaster.
+	 * The message is serialized only once for all clients that see the
+	 * same result.
+	 */
+	void deliver(final WebSocketMessage webSocketData, final String exemptedSessionId) {
+
 		// session must be valid to be received by the client
 		webSocketData.setSessionValid(true);
 
-		final String pagePath                        = (String) webSocketData.getNodeData().get("pagePath");
-		final String encodedPath                     = URIUtil.encodePath(pagePath);
-		final List<StructrWebSocket> clientsToRemove = new LinkedList<>();
-		final List<? extends GraphObject> result     = webSocketData.getResult();
-		final String command                         = webSocketData.getCommand();
-		final GraphObject obj                        = webSocketData.getGraphObject();
-
-		String message;
+		final String pagePath                    = (String) webSocketData.getNodeData().get("pagePath");
+		final String encodedPath                 = URIUtil.encodePath(pagePath);
+		final List<? extends GraphObject> result = webSocketData.getResult();
+		final String command                     = webSocketData.getCommand();
+		final GraphObject obj                    = webSocketData.getGraphObject();
+		final Map<String, String> messages       = new HashMap<>();
 
 		// create message
 		for (StructrWebSocket socket : clients) {
@@ -135,45 +172,87 @@ public class WebsocketController implements StructrTransactionListener {
 					}
 				}
 
+				final String message;
+
 				if (result != null && !result.isEmpty() && BroadcastCommands.contains(command)) {
 
-					final WebSocketMessage clientData = webSocketData.copy();
+					final List<? extends GraphObject> filteredResult = filter(securityContext, result);
+
+					message = messages.computeIfAbsent(getResultKey(filteredResult), k -> {
+
+						final WebSocketMessage clientData = webSocketData.copy();
+
+						clientData.setResult(filteredResult);
 
-					clientData.setResult(filter(securityContext, result));
+						return gson.toJson(clientData, WebSocketMessage.class);
+					});
 
-					message = gson.toJson(clientData, WebSocketMessage.class);
+				} else {
+
+					message = messages.computeIfAbsent("", k -> gson.toJson(webSocketData, WebSocketMessage.class));
+				}
+
+				if (broadcaster != null) {
+
+					broadcaster.send(socket, message);
 
 				} else {
 
-					message = gson.toJson(webSocketData, WebSocketMessage.class);
+					send(socket, message);
 				}
+			}
+		}
+	}
 
-				try {
+	/**
+	 * Sends the given message to the given client, and removes the client
+	 * from the broadcast list if its connection was closed.
+	 *
+	 * @return false if the client was removed
+	 */
+	boolean send(final StructrWebSocket socket, final String message) {
 
-					session.getRemote().sendString(message);
+		final Session session = socket.getSession();
+		if (session != null) {
 
-				} catch (Throwable t) {
+			try {
 
-					if (t instanceof WebSocketException) {
+				session.getRemote().sendString(message);
 
-						WebSocketException wse = (WebSocketException) t;
+			} catch (Throwable t) {
 
-						if ("RemoteEndpoint unavailable, current state [CLOSED], expecting [OPEN or CONNECTED]".equals(wse.getMessage())) {
-							clientsToRemove.add(socket);
-						}
-					}
+				if (t instanceof WebSocketException) {
 
-					logger.debug("Error sending message to client.", t);
+					WebSocketException wse = (WebSocketException) t;
+
+					if ("RemoteEndpoint unavailable, current state [CLOSED], expecting [OPEN or CONNECTED]".equals(wse.getMessage())) {
+
+						unregisterClient(socket);
+
+						logger.warn("Client removed from broadcast list: {}", socket);
+
+						return false;
+					}
 				}
+
+				logger.debug("Error sending message to client.", t);
 			}
 		}
 
-		for (StructrWebSocket s : clientsToRemove) {
+		return true;
+	}
+
+	private String getResultKey(final List<? extends GraphObject> result) {
 
-			unregisterClient(s);
+		final StringBuilder buf = new StringBuilder();
 
-			logger.warn("Client removed from broadcast list: {}", s);
+		for (final GraphObject obj : result) {
+
+			buf.append(obj.getUuid());
+			buf.append(",");
 		}
+
+		return buf.toString();
 	}
 
 	private <T extends GraphObject> List<T> filter(final SecurityContext securityContext, final List<T> all) {
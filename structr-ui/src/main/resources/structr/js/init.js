@@ -1433,7 +1433,7 @@ var Structr = {
 
 					var texts = {
 						BEGIN: 'Started importing CSV data',
-						CHUNK: 'Finished importing chunk ' + data.currentChunkNo + ' / ' + data.totalChunkNo,
+						CHUNK: 'Finished importing chunk ' + data.currentChunkNo + ' (Rows: ' + data.rowsImported + ' - Rows/s: ' + data.rowsPerSecond + ')',
 						END:   'Finished importing CSV data (Time: ' + data.duration + ')'
 					};
 
@@ -1067,6 +1067,75 @@ public class DirectFileImportTest extends StructrUiTest {
 	}
 
 
+	@Test
+	public void testDirectFileImportWithNestedDirectoriesInBatches() {
+
+		final PropertyKey<String> pathKey = StructrApp.key(File.class, "path");
+		Path testDir                      = null;
+
+		try {
+
+			testDir = Files.createTempDirectory(Paths.get(basePath), "directFileImportTestNested");
+
+			for (int i=0; i<3; i++) {
+
+				final Path dir = Files.createDirectories(testDir.resolve("dir" + i).resolve("sub"));
+
+				for (int j=0; j<10; j++) {
+					createTestFile(dir.resolve("test" + j + ".txt"), "test file content " + i + "/" + j);
+				}
+			}
+
+			Files.createDirectory(testDir.resolve("empty"));
+
+		} catch (IOException ioex) {
+			fail("Unable to create test files.");
+		}
+
+		final Map<String, Object> attributes = setupParameters(testDir.toString(), "/", "COPY", "SKIP", false);
+
+		attributes.put("batchSize", 7);
+		attributes.put("threads",   4);
+
+		try (final Tx tx = app.tx()) {
+
+			app.command(DirectFileImportCommand.class).execute(attributes);
+			tx.success();
+
+		} catch (FrameworkException ex) {
+			ex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		final String root = "/" + testDir.getFileName().toString();
+
+		// verify successful file import
+		try (final Tx tx = app.tx()) {
+
+			assertEquals("All files should have been created by import", 30, app.nodeQuery(File.class).getAsList().size());
+			assertEquals("All folders should have been created by import", 8, app.nodeQuery(Folder.class).getAsList().size());
+			assertNotNull("Empty folder should have been created by import", app.nodeQuery(Folder.class).and(pathKey, root + "/empty").getFirst());
+
+			for (int i=0; i<3; i++) {
+
+				for (int j=0; j<10; j++) {
+
+					final File file = app.nodeQuery(File.class).and(pathKey, root + "/dir" + i + "/sub/test" + j + ".txt").getFirst();
+
+					assertNotNull("Test file should have been created by import", file);
+					assertEquals("Imported test file content does not match source", "test file content " + i + "/" + j, getContent(file));
+					assertNotNull("Checksum of imported test file should be set", file.getChecksum());
+				}
+			}
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+			ex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
 	// ----- private methods -----
 	private void createTestFile(final Path path, final String content) throws IOException {
 
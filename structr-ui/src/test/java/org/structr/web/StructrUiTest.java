@@ -141,6 +141,9 @@ public abstract class StructrUiTest {
 
 		Settings.NodeCacheSize.setValue(10000);
 		Settings.RelationshipCacheSize.setValue(10000);
+
+		// tests expect thumbnails to be created synchronously
+		Settings.ThumbnailsAsync.setValue(false);
 		
 		//Settings.LogSchemaOutput.setValue(true);
 
@@ -35,6 +35,7 @@ import org.structr.api.config.Settings;
 import org.structr.common.AccessMode;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Group;
@@ -53,6 +54,8 @@ import org.structr.schema.ConfigurationProvider;
 import org.structr.schema.action.ActionContext;
 import org.structr.web.StructrUiTest;
 import org.structr.web.common.RenderContext;
+import org.structr.web.common.RenderedFragmentCache;
+import org.structr.web.common.StringRenderBuffer;
 import org.structr.web.entity.TestOne;
 import org.structr.web.entity.User;
 import org.structr.web.entity.dom.DOMElement;
@@ -585,6 +588,163 @@ public class RenderContextTest extends StructrUiTest {
 		}
 	}
 
+	@Test
+	public void testParallelRenderingOfIndependentChildren() {
+
+		final PropertyKey<Boolean> renderIndependently = StructrApp.key(DOMNode.class, "renderIndependently");
+		final int count                                = 10;
+		Page page                                      = null;
+
+		try (final Tx tx = app.tx()) {
+
+			page = Page.createNewPage(securityContext, "parallel");
+
+			final DOMNode html = (DOMNode) page.createElement("html");
+			final DOMNode body = (DOMNode) page.createElement("body");
+
+			page.appendChild(html);
+			html.appendChild(body);
+
+			for (int i=0; i<count; i++) {
+
+				final DOMNode div = (DOMNode) page.createElement("div");
+
+				// every subtree writes to and reads from the context store
+				div.appendChild(page.createTextNode("${store('value', 'content" + i + "')}${retrieve('value')}"));
+
+				// every other child is rendered on the main thread
+				div.setProperty(renderIndependently, i % 2 == 1);
+
+				body.appendChild(div);
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final String content = render(page, RenderContext.EditMode.NONE, null);
+			int position         = -1;
+
+			for (int i=0; i<count; i++) {
+
+				final int next = content.indexOf("content" + i);
+
+				assertTrue("Content of child " + i + " should be rendered in document order", next > position);
+
+				position = next;
+			}
+
+			// forked children must not modify the context store of the page
+			assertEquals("Independent subtrees should use a separate context store", "content" + (count - 2), securityContext.getContextStore().retrieve("value"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void testRenderedFragmentCache() {
+
+		final PropertyKey<Boolean> cacheRenderedOutput = StructrApp.key(DOMNode.class, "cacheRenderedOutput");
+		Page page                                      = null;
+		TestOne testOne                                = null;
+
+		try (final Tx tx = app.tx()) {
+
+			page    = Page.createNewPage(securityContext, "cached");
+			testOne = app.create(TestOne.class, "testOne");
+
+			final DOMNode html = (DOMNode) page.createElement("html");
+			final DOMNode body = (DOMNode) page.createElement("body");
+			final DOMNode div  = (DOMNode) page.createElement("div");
+
+			page.appendChild(html);
+			html.appendChild(body);
+			body.appendChild(div);
+
+			// output differs each time the element is actually rendered
+			div.appendChild(page.createTextNode("${random(32)}"));
+			div.setProperty(cacheRenderedOutput, true);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		String first = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final long hits   = RenderedFragmentCache.getHitCount();
+			final long misses = RenderedFragmentCache.getMissCount();
+
+			first = render(page, RenderContext.EditMode.NONE, null);
+
+			assertEquals("Cached output should be returned for the second rendering", first, render(page, RenderContext.EditMode.NONE, null));
+			assertEquals("Invalid cache size", 1, RenderedFragmentCache.getSize());
+			assertEquals("Invalid hit count",  hits + 1, RenderedFragmentCache.getHitCount());
+			assertEquals("Invalid miss count", misses + 1, RenderedFragmentCache.getMissCount());
+
+			// data objects in scope are part of the cache key
+			assertTrue("Different details object should not use cached output", !first.equals(render(page, RenderContext.EditMode.NONE, testOne)));
+			assertEquals("Invalid cache size", 2, RenderedFragmentCache.getSize());
+
+			// caching only applies in edit mode NONE
+			final long rawHits = RenderedFragmentCache.getHitCount();
+
+			render(page, RenderContext.EditMode.RAW, null);
+			render(page, RenderContext.EditMode.RAW, null);
+
+			assertEquals("Cache should not be used in edit mode RAW", rawHits, RenderedFragmentCache.getHitCount());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		// any modification invalidates the cache
+		try (final Tx tx = app.tx()) {
+
+			testOne.setProperty(AbstractNode.name, "modified");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals("Cache should be empty after modification", 0, RenderedFragmentCache.getSize());
+			assertTrue("Output should be rendered again after modification", !first.equals(render(page, RenderContext.EditMode.NONE, null)));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+	}
+
 	@Test
 	public void testFiltering() {
 
@@ -815,4 +975,17 @@ public class RenderContextTest extends StructrUiTest {
                 }
 
 	}
+
+	// ----- private methods -----
+	private String render(final Page page, final RenderContext.EditMode editMode, final GraphObject details) throws FrameworkException {
+
+		final RenderContext ctx         = new RenderContext(securityContext, null, null, editMode);
+		final StringRenderBuffer buffer = new StringRenderBuffer();
+
+		ctx.setDetailsDataObject(details);
+		ctx.setBuffer(buffer);
+		page.render(ctx, 0);
+
+		return buffer.getBuffer().toString();
+	}
 }
@@ -38,12 +38,15 @@ import org.structr.common.AccessMode;
 import org.structr.common.Permission;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObjectMap;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyMap;
+import org.structr.core.script.Scripting;
+import org.structr.schema.action.ActionContext;
 import org.structr.schema.export.StructrSchema;
 import org.structr.schema.json.JsonSchema;
 import org.structr.schema.json.JsonType;
@@ -51,6 +54,7 @@ import org.structr.web.StructrUiTest;
 import org.structr.web.common.FileHelper;
 import org.structr.web.common.ImageHelper;
 import org.structr.web.common.ImageHelper.Thumbnail;
+import org.structr.web.common.ThumbnailGenerator;
 import org.structr.web.entity.AbstractFile;
 import org.structr.web.entity.File;
 import org.structr.web.entity.Folder;
@@ -93,6 +97,59 @@ public class UiTest extends StructrUiTest {
 		}
 	}
 
+	@Test
+	public void testAsyncThumbnailCreation() {
+
+		Settings.ThumbnailsAsync.setValue(true);
+
+		try {
+
+			final long completed = ThumbnailGenerator.getCompletedCount();
+			final long failed    = ThumbnailGenerator.getFailedCount();
+			Image testImage      = null;
+
+			// thumbnails are queued eagerly after the image is created
+			try (final Tx tx = app.tx()) {
+
+				testImage = (Image) ImageHelper.createFileBase64(securityContext, base64Image, Image.class);
+				testImage.setProperties(testImage.getSecurityContext(), new PropertyMap(Image.name, "async.png"));
+
+				tx.success();
+			}
+
+			for (int i=0; i<300 && (ThumbnailGenerator.getQueueSize() > 0 || ThumbnailGenerator.getCompletedCount() < completed + 2); i++) {
+				Thread.sleep(100);
+			}
+
+			assertEquals("Thumbnail queue should be empty", 0, ThumbnailGenerator.getQueueSize());
+			assertTrue("Thumbnails should have been created in the background", ThumbnailGenerator.getCompletedCount() >= completed + 2);
+			assertEquals("No thumbnail creation should have failed", failed, ThumbnailGenerator.getFailedCount());
+
+			try (final Tx tx = app.tx()) {
+
+				final Image tnSmall = testImage.getProperty(StructrApp.key(Image.class, "tnSmall"));
+
+				assertNotNull("Thumbnail should be available after background creation", tnSmall);
+				assertEquals("Invalid thumbnail name", ImageHelper.getThumbnailName("async.png", tnSmall.getWidth(), tnSmall.getHeight()), tnSmall.getProperty(StructrApp.key(Image.class, "name")));
+
+				final Map<String, Object> statistics = ((GraphObjectMap)Scripting.evaluate(new ActionContext(securityContext), null, "${thumbnail_statistics()}", "test")).toMap();
+
+				assertEquals("Invalid thumbnail_statistics() result", 0, statistics.get("queueSize"));
+
+				tx.success();
+			}
+
+		} catch (Exception ex) {
+
+			logger.error("", ex);
+			fail("Unexpected exception");
+
+		} finally {
+
+			Settings.ThumbnailsAsync.setValue(false);
+		}
+	}
+
 	@Test
 	public void test01AutoRenameThumbnail() {
 
@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.websocket;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.structr.api.config.Settings;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.property.PropertyKey;
+import org.structr.web.StructrUiTest;
+import org.structr.websocket.message.WebSocketMessage;
+
+/**
+ * Tests the coalescing and the per-client backpressure of the
+ * asynchronous websocket broadcaster.
+ */
+public class WebsocketBroadcasterTest extends StructrUiTest {
+
+	@Test
+	public void testCoalescingOfUpdates() {
+
+		final int delay = Settings.WebsocketBroadcastDelay.getValue();
+
+		Settings.WebsocketBroadcastDelay.setValue(500);
+
+		final TestController controller        = new TestController();
+		final WebsocketBroadcaster broadcaster = new WebsocketBroadcaster(controller);
+
+		try {
+
+			broadcaster.enqueue(createUpdate("1234", AbstractNode.name), null);
+			broadcaster.enqueue(createUpdate("1234", AbstractNode.visibleToPublicUsers), null);
+			broadcaster.enqueue(createUpdate("1234", AbstractNode.visibleToAuthenticatedUsers), null);
+			broadcaster.enqueue(createUpdate("5678", AbstractNode.name), null);
+
+			// updates with an exempted session must not be merged
+			broadcaster.enqueue(createUpdate("1234", AbstractNode.name), "session");
+			broadcaster.enqueue(createUpdate("1234", AbstractNode.name), "session");
+
+			assertTrue("Broadcast was not delivered", controller.delivered.await(10, TimeUnit.SECONDS));
+
+			final List<WebSocketMessage> messages = controller.deliveredMessages;
+
+			assertEquals("Updates of the same object should be coalesced", 4, messages.size());
+			assertEquals("Invalid coalescing statistics", 2L, broadcaster.getStatistics().get("coalesced"));
+
+			final WebSocketMessage merged = messages.get(0);
+
+			assertEquals("Invalid order of coalesced messages", "1234", merged.getId());
+			assertEquals("Coalesced message should contain all modified properties", 3, merged.getModifiedProperties().size());
+			assertEquals("Invalid order of coalesced messages", "5678", messages.get(1).getId());
+
+		} catch (InterruptedException iex) {
+
+			fail("Unexpected exception");
+
+		} finally {
+
+			broadcaster.stop();
+			controller.stop();
+			Settings.WebsocketBroadcastDelay.setValue(delay);
+		}
+	}
+
+	@Test
+	public void testSlowClientDropsOldestMessages() {
+
+		final int clientQueueSize = Settings.WebsocketClientQueue.getValue();
+
+		Settings.WebsocketClientQueue.setValue(10);
+
+		final TestController controller        = new TestController();
+		final WebsocketBroadcaster broadcaster = new WebsocketBroadcaster(controller);
+		final StructrWebSocket socket          = new StructrWebSocket();
+
+		try {
+
+			// first message blocks the sender until the client is released
+			broadcaster.send(socket, "message0");
+
+			assertTrue("Message was not sent", controller.sending.await(10, TimeUnit.SECONDS));
+
+			for (int i=1; i<=100; i++) {
+				broadcaster.send(socket, "message" + i);
+			}
+
+			controller.release.countDown();
+
+			final long timeout = System.currentTimeMillis() + 10000;
+			while (controller.sentMessages.size() < 11 && System.currentTimeMillis() < timeout) {
+				Thread.sleep(10);
+			}
+
+			// give the sender a chance to send more messages than expected
+			Thread.sleep(100);
+
+			final List<String> sent = controller.sentMessages;
+
+			assertEquals("Slow client should only receive the newest messages", 11, sent.size());
+			assertEquals("Invalid first message", "message0", sent.get(0));
+			assertEquals("Oldest messages should be dropped", "message91", sent.get(1));
+			assertEquals("Newest message should be sent", "message100", sent.get(10));
+			assertEquals("Invalid drop statistics", 90L, broadcaster.getStatistics().get("dropped"));
+
+		} catch (InterruptedException iex) {
+
+			fail("Unexpected exception");
+
+		} finally {
+
+			broadcaster.stop();
+			controller.stop();
+			Settings.WebsocketClientQueue.setValue(clientQueueSize);
+		}
+	}
+
+	// ----- private methods -----
+	private WebSocketMessage createUpdate(final String id, final PropertyKey key) {
+
+		final WebSocketMessage message = new WebSocketMessage();
+
+		message.setCommand("UPDATE");
+		message.setId(id);
+		message.getModifiedProperties().add(key);
+
+		return message;
+	}
+
+	// ----- nested classes -----
+	private static class TestController extends WebsocketController {
+
+		private final List<WebSocketMessage> deliveredMessages = new CopyOnWriteArrayList<>();
+		private final List<String> sentMessages                = new CopyOnWriteArrayList<>();
+		private final CountDownLatch delivered                 = new CountDownLatch(1);
+		private final CountDownLatch sending                   = new CountDownLatch(1);
+		private final CountDownLatch release                   = new CountDownLatch(1);
+
+		TestController() {
+			super(null);
+		}
+
+		@Override
+		void deliver(final WebSocketMessage message, final String exemptedSessionId) {
+
+			deliveredMessages.add(message);
+
+			if (deliveredMessages.size() == 4) {
+				delivered.countDown();
+			}
+		}
+
+		@Override
+		boolean send(final StructrWebSocket socket, final String message) {
+
+			sending.countDown();
+
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException iex) {
+				return false;
+			}
+
+			sentMessages.add(message);
+
+			return true;
+		}
+	}
+}